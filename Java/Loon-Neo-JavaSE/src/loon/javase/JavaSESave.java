@@ -20,169 +20,619 @@
  */
 package loon.javase;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.prefs.AbstractPreferences;
-import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
+import java.util.zip.CRC32;
 
 import loon.Log;
 import loon.Save;
 import loon.SaveBatchImpl;
 
+/**
+ * 以追加日志(write-ahead log)方式保存数据的Save实现.
+ * 
+ * 数据常驻内存,每次写入(或一次Batch提交)只编码为一条带CRC校验的记录,由后台线程追加到文件末尾,调用者不会等待磁盘操作.
+ * 日志中的过期记录超过有效数据一倍时,后台线程将当前数据写入临时文件后替换日志(压缩).
+ * 读取时以内存映射方式扫描日志,遇到不完整或校验失败的记录(写入中途崩溃)即停止,并以已读取的数据重写日志.
+ * 
+ * 首次使用时会导入旧版本保存在java.util.prefs中的数据.
+ */
 class JavaSESave implements Save {
 
+	private final static int MAGIC = 0x4C534156;
+
+	private final static int VERSION = 1;
+
+	private final static int HEADER_SIZE = 8;
+
+	private final static int FRAME_HEADER_SIZE = 8;
+
+	private final static byte OP_SET = 1;
+
+	private final static byte OP_REMOVE = 2;
+
+	private final static long COMPACT_MIN_SIZE = 64 * 1024;
+
+	private final static String LOG_NAME = "save.log";
+
+	private final static long RETRY_DELAY = 1000;
+
+	private final static int MAX_CLOSE_RETRIES = 3;
+
 	private final Log log;
+
 	private final String storageFileName;
-	private Preferences preferences;
+
+	private final Map<String, String> values = new HashMap<String, String>();
+
+	private final ArrayDeque<byte[]> pending = new ArrayDeque<byte[]>();
+
+	private boolean initialized;
+
 	private boolean isPersisted;
 
+	private boolean writing;
+
+	private boolean closed;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private RandomAccessFile access;
+
+	private long logSize;
+
+	private long liveSize;
+
+	private Thread writer;
+
 	JavaSESave(Log log, String storage) {
 		this.log = log;
 		this.storageFileName = storage;
 	}
 
-	private void init() {
-		if (preferences == null) {
-			Preferences prefs = null;
+	private static String toFileName(String name) {
+		StringBuilder sbr = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '.'
+					|| ch == '-' || ch == '_') {
+				sbr.append(ch);
+			} else {
+				sbr.append('_');
+			}
+		}
+		return sbr.length() == 0 ? "loon" : sbr.toString();
+	}
+
+	private synchronized void init() {
+		if (initialized) {
+			return;
+		}
+		initialized = true;
+		try {
+			File dir = new File(System.getProperty("user.home"), ".loon" + File.separator + toFileName(storageFileName));
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw new IOException("Couldn't create " + dir);
+			}
+			file = new File(dir, LOG_NAME);
+			File tmp = new File(dir, LOG_NAME + ".tmp");
+			File bak = new File(dir, LOG_NAME + ".bak");
+			if (!file.exists() && bak.exists()) {
+				// 压缩替换文件时中断,恢复旧日志
+				bak.renameTo(file);
+			}
+			if (tmp.exists()) {
+				tmp.delete();
+			}
+			if (bak.exists()) {
+				bak.delete();
+			}
+			final int state = file.exists() && file.length() >= HEADER_SIZE ? readLog() : -1;
+			if (state == 0) {
+				isPersisted = true;
+				openAppend();
+			} else if (state == 1) {
+				// 最后一次写入没有完成,以已读取的数据重写日志(去掉不完整的记录)
+				isPersisted = true;
+				writeSnapshot(new HashMap<String, String>(values));
+			} else {
+				importPreferences();
+				writeSnapshot(new HashMap<String, String>(values));
+			}
+		} catch (Throwable e) {
+			log.warn("Couldn't open save log: " + e.getMessage());
+			closeChannel();
+			file = null;
+		}
+	}
+
+	/**
+	 * 以内存映射读取日志,返回0表示读取完整,1表示末尾有不完整的记录,-1表示文件头无效
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private int readLog() throws IOException {
+		final long size = file.length();
+		long validEnd = HEADER_SIZE;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer = null;
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				log.warn("Invalid save log header: " + file);
+				return -1;
+			}
+			final CRC32 crc = new CRC32();
+			while (validEnd + FRAME_HEADER_SIZE <= size) {
+				buffer.position((int) validEnd);
+				final int length = buffer.getInt();
+				final int checksum = buffer.getInt();
+				if (length < 4 || validEnd + FRAME_HEADER_SIZE + length > size) {
+					break;
+				}
+				final byte[] payload = new byte[length];
+				buffer.get(payload);
+				crc.reset();
+				crc.update(payload, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				applyFrame(payload);
+				validEnd += FRAME_HEADER_SIZE + length;
+			}
+		} finally {
+			// 映射未释放时(Windows)文件不能被替换,重写日志前必须先解除
+			if (buffer != null) {
+				unmap(buffer);
+			}
+			raf.close();
+		}
+		logSize = validEnd;
+		if (validEnd < size) {
+			log.warn("Save log truncated at " + validEnd + " of " + size);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * 立即解除内存映射(不等待垃圾回收)
+	 * 
+	 * @param buffer
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			// Java 9以上
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Throwable e) {
+		}
+		try {
+			// Java 8
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Throwable e) {
+		}
+	}
+
+	private void applyFrame(byte[] payload) {
+		final ByteBuffer buffer = ByteBuffer.wrap(payload);
+		final int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			final byte op = buffer.get();
+			final String key = readString(buffer);
+			if (op == OP_SET) {
+				putValue(key, readString(buffer));
+			} else {
+				removeValue(key);
+			}
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (Exception e) {
+			return new String(bytes);
+		}
+	}
+
+	private void importPreferences() {
+		try {
+			Preferences root = Preferences.userRoot();
+			if (root.nodeExists(storageFileName)) {
+				Preferences prefs = root.node(storageFileName);
+				for (String key : prefs.keys()) {
+					String value = prefs.get(key, null);
+					if (value != null) {
+						putValue(key, value);
+					}
+				}
+				isPersisted = true;
+			}
+		} catch (Exception e) {
+			log.warn("Couldn't import Preferences: " + e.getMessage());
+		}
+	}
+
+	private void putValue(String key, String value) {
+		final String old = values.put(key, value);
+		if (old != null) {
+			liveSize -= entrySize(key, old);
+		}
+		liveSize += entrySize(key, value);
+	}
+
+	private void removeValue(String key) {
+		final String old = values.remove(key);
+		if (old != null) {
+			liveSize -= entrySize(key, old);
+		}
+	}
+
+	private static long entrySize(String key, String value) {
+		return 9 + key.length() + value.length();
+	}
+
+	private void openAppend() throws IOException {
+		access = new RandomAccessFile(file, "rw");
+		channel = access.getChannel();
+		// 去掉上次写入失败时留下的不完整记录
+		if (channel.size() > logSize) {
+			channel.truncate(logSize);
+		}
+		channel.position(logSize);
+	}
+
+	private void closeChannel() {
+		if (access != null) {
+			try {
+				access.close();
+			} catch (IOException e) {
+			}
+			access = null;
+			channel = null;
+		}
+	}
+
+	/**
+	 * 以当前数据生成新日志并替换旧日志,替换失败时重新打开旧日志,之后的记录继续追加到旧日志中
+	 * 
+	 * @param snapshot
+	 * @throws IOException
+	 */
+	private void writeSnapshot(Map<String, String> snapshot) throws IOException {
+		final File tmp = new File(file.getParentFile(), LOG_NAME + ".tmp");
+		final ArrayList<Object> ops = new ArrayList<Object>(snapshot.size() * 2);
+		for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+			ops.add(entry.getKey());
+			ops.add(entry.getValue());
+		}
+		final byte[] frame = ops.size() > 0 ? encodeFrame(ops) : null;
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			raf.setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			if (frame != null) {
+				raf.write(frame);
+			}
+			raf.getFD().sync();
+		} finally {
+			raf.close();
+		}
+		closeChannel();
+		try {
+			replaceLog(tmp);
+		} catch (IOException e) {
+			tmp.delete();
+			if (file.exists()) {
+				openAppend();
+			}
+			throw e;
+		}
+		logSize = HEADER_SIZE + (frame != null ? frame.length : 0);
+		openAppend();
+	}
+
+	private void replaceLog(File tmp) throws IOException {
+		if (tmp.renameTo(file)) {
+			return;
+		}
+		final File bak = new File(file.getParentFile(), LOG_NAME + ".bak");
+		bak.delete();
+		if (file.exists() && !file.renameTo(bak)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+		if (!tmp.renameTo(file)) {
+			bak.renameTo(file);
+			throw new IOException("Couldn't replace " + file);
+		}
+		bak.delete();
+	}
+
+	/**
+	 * 编码一条记录,ops依次为key与value,value为null表示删除
+	 * 
+	 * @param ops
+	 * @return
+	 */
+	private static byte[] encodeFrame(ArrayList<Object> ops) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0);
+			out.writeInt(0);
+			out.writeInt(ops.size() / 2);
+			for (int i = 0; i < ops.size(); i += 2) {
+				final String value = (String) ops.get(i + 1);
+				out.writeByte(value == null ? OP_REMOVE : OP_SET);
+				writeString(out, (String) ops.get(i));
+				if (value != null) {
+					writeString(out, value);
+				}
+			}
+			out.flush();
+			final byte[] frame = bytes.toByteArray();
+			final int length = frame.length - FRAME_HEADER_SIZE;
+			final CRC32 crc = new CRC32();
+			crc.update(frame, FRAME_HEADER_SIZE, length);
+			ByteBuffer.wrap(frame).putInt(length).putInt((int) crc.getValue());
+			return frame;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		final byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * 更新内存中的数据并提交给后台线程写入
+	 * 
+	 * @param ops
+	 */
+	private synchronized void append(ArrayList<Object> ops) {
+		if (ops.size() == 0) {
+			return;
+		}
+		for (int i = 0; i < ops.size(); i += 2) {
+			final String key = (String) ops.get(i);
+			final String value = (String) ops.get(i + 1);
+			if (value == null) {
+				removeValue(key);
+			} else {
+				putValue(key, value);
+			}
+		}
+		if (file == null) {
+			return;
+		}
+		pending.add(encodeFrame(ops));
+		if (writer == null) {
+			startWriter();
+		}
+		notifyAll();
+	}
+
+	private void startWriter() {
+		writer = new Thread("LoonSaveWriter") {
+
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	private void writeLoop() {
+		final ArrayList<byte[]> frames = new ArrayList<byte[]>();
+		int failures = 0;
+		for (;;) {
+			Map<String, String> snapshot = null;
+			synchronized (this) {
+				while (pending.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+					}
+				}
+				if (pending.isEmpty()) {
+					writer = null;
+					notifyAll();
+					return;
+				}
+				long size = logSize;
+				while (!pending.isEmpty()) {
+					final byte[] frame = pending.poll();
+					size += frame.length;
+					frames.add(frame);
+				}
+				if ((size > COMPACT_MIN_SIZE && size > liveSize * 2) || (channel == null && !file.exists())) {
+					// 快照已包含本次取出的全部记录,压缩时不再追加
+					snapshot = new HashMap<String, String>(values);
+				}
+				writing = true;
+			}
+			int written = 0;
+			try {
+				if (snapshot != null) {
+					writeSnapshot(snapshot);
+					written = frames.size();
+				} else {
+					if (channel == null) {
+						openAppend();
+					}
+					for (; written < frames.size(); written++) {
+						final ByteBuffer buffer = ByteBuffer.wrap(frames.get(written));
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+						logSize += frames.get(written).length;
+					}
+					channel.force(false);
+				}
+				isPersisted = true;
+				failures = 0;
+			} catch (Throwable e) {
+				log.warn("Error persisting save log: " + e.getMessage());
+				failures++;
+				if (snapshot == null) {
+					// 下次写入时重新打开日志,并截去写了一半的记录
+					closeChannel();
+				}
+			} finally {
+				synchronized (this) {
+					// 没有写入的记录放回队列最前面,稍后重试
+					for (int i = frames.size() - 1; i >= written; i--) {
+						pending.addFirst(frames.get(i));
+					}
+					frames.clear();
+					writing = false;
+					if (failures > 0) {
+						if (closed && failures >= MAX_CLOSE_RETRIES) {
+							log.warn("Discarding " + pending.size() + " unsaved records");
+							pending.clear();
+						} else if (!closed) {
+							try {
+								wait(RETRY_DELAY);
+							} catch (InterruptedException ex) {
+							}
+						}
+					}
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 等待全部已提交的数据写入磁盘
+	 */
+	public synchronized void flush() {
+		while ((!pending.isEmpty() && writer != null) || writing) {
 			try {
-				Preferences tmp = Preferences.userRoot();
-				isPersisted = tmp.nodeExists(storageFileName);
-				prefs = tmp.node(storageFileName);
-			} catch (Exception e) {
-				log.warn("Couldn't open Preferences: " + e.getMessage());
-				isPersisted = false;
-				prefs = new MemoryPreferences();
+				wait();
+			} catch (InterruptedException e) {
+				return;
 			}
-			preferences = prefs;
+		}
+	}
+
+	/**
+	 * 写入剩余数据并关闭日志文件
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		flush();
+		synchronized (this) {
+			closeChannel();
 		}
 	}
 
 	@Override
 	public void setItem(String key, String value) {
 		init();
-		preferences.put(key, value);
-		maybePersistPreferences();
+		final ArrayList<Object> ops = new ArrayList<Object>(2);
+		ops.add(key);
+		ops.add(value);
+		append(ops);
 	}
 
 	@Override
 	public void removeItem(String key) {
 		init();
-		preferences.remove(key);
-		maybePersistPreferences();
+		final ArrayList<Object> ops = new ArrayList<Object>(2);
+		ops.add(key);
+		ops.add(null);
+		append(ops);
 	}
 
 	@Override
-	public String getItem(String key) {
+	public synchronized String getItem(String key) {
 		init();
-		return preferences.get(key, null);
+		return values.get(key);
 	}
 
 	@Override
 	public Batch startBatch() {
 		return new SaveBatchImpl(this) {
+
+			private final ArrayList<Object> ops = new ArrayList<Object>();
+
 			@Override
 			protected void setImpl(String key, String data) {
-				init();
-				preferences.put(key, data);
+				ops.add(key);
+				ops.add(data);
 			}
 
 			@Override
 			protected void removeImpl(String key) {
-				init();
-				preferences.remove(key);
+				ops.add(key);
+				ops.add(null);
 			}
 
 			@Override
 			protected void onAfterCommit() {
 				init();
-				maybePersistPreferences();
+				// 整个Batch作为一条记录写入,崩溃时要么全部保存要么全部丢弃
+				append(ops);
 			}
 		};
 	}
 
 	@Override
-	public Iterable<String> keys() {
+	public synchronized Iterable<String> keys() {
 		init();
-		try {
-			return Arrays.asList(preferences.keys());
-		} catch (Exception e) {
-			log.warn("Error reading preferences: " + e.getMessage());
-			return Collections.emptyList();
-		}
+		return new ArrayList<String>(values.keySet());
 	}
 
 	@Override
 	public boolean isPersisted() {
-		return isPersisted;
-	}
-
-	private void maybePersistPreferences() {
 		init();
-		if (preferences instanceof MemoryPreferences) {
-			return;
-		}
-		try {
-			preferences.flush();
-			isPersisted = true;
-		} catch (Exception e) {
-			log.info("Error persisting properties: " + e.getMessage());
-			isPersisted = false;
-		}
+		return isPersisted;
 	}
 
-	private class MemoryPreferences extends AbstractPreferences {
-		MemoryPreferences() {
-			super(null, "");
-		}
-
-		@Override
-		protected void putSpi(String key, String value) {
-			_values.put(key, value);
-		}
-
-		@Override
-		protected String getSpi(String key) {
-			return _values.get(key);
-		}
-
-		@Override
-		protected void removeSpi(String key) {
-			_values.remove(key);
-		}
-
-		@Override
-		protected void removeNodeSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
-		}
-
-		@Override
-		protected String[] keysSpi() throws BackingStoreException {
-			return _values.keySet().toArray(new String[_values.size()]);
-		}
-
-		@Override
-		protected String[] childrenNamesSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
-		}
-
-		@Override
-		protected AbstractPreferences childSpi(String name) {
-			throw new RuntimeException("Not implemented");
-		}
-
-		@Override
-		protected void syncSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
-		}
-
-		@Override
-		protected void flushSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
-		}
-
-		protected Map<String, String> _values = new HashMap<String, String>();
-	}
 }
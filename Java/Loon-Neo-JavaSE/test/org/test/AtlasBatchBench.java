@@ -0,0 +1,101 @@
+package org.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import loon.LSetting;
+import loon.LSystem;
+import loon.LTexture;
+import loon.Stage;
+import loon.opengl.GLEx;
+import loon.opengl.LTextureAtlas;
+
+/**
+ * 运行时纹理合并(LTextureAtlas)的批处理测试,以RecordingGL20无窗口(Headless)方式启动游戏,
+ * 每帧轮流绘制多张不同的小纹理,分别统计关闭与开启纹理合并时每帧实际的drawcall与纹理绑定次数,并检查纹理页没有超出设定的大小.
+ */
+public class AtlasBatchBench {
+
+	private final static int TEXTURE_COUNT = 48;
+
+	private final static int QUADS_PER_FRAME = 2000;
+
+	private final static int FRAMES = 4;
+
+	private final static int PAGE_SIZE = 256;
+
+	public static void main(String[] args) throws IOException {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "AtlasBatchBench";
+		setting.isLogo = false;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		RecordingGL20 gl = game.gl();
+		// LTexturePack合并纹理时需要Display,注册一个空的Screen以创建它
+		GLEx g = game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		}).GL();
+
+		File dir = new File(System.getProperty("java.io.tmpdir"), "atlas_batch_bench");
+		dir.mkdirs();
+		game.assets().addDirectory(dir);
+		LTexture[] textures = new LTexture[TEXTURE_COUNT];
+		for (int i = 0; i < TEXTURE_COUNT; i++) {
+			// 横条,竖条与方块混合,最后几张接近纹理页一半大小(两张并排放不下),令装箱时出现按面积估算可以放下而实际放不下的情况
+			final boolean large = i >= TEXTURE_COUNT - 4;
+			final int width = large ? 127 : (i % 3 == 0 ? 62 : (i % 3 == 1 ? 14 : 40));
+			final int height = large ? 127 : (i % 3 == 0 ? 14 : (i % 3 == 1 ? 62 : 40));
+			BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d = img.createGraphics();
+			g2d.setColor(Color.getHSBColor(i / (float) TEXTURE_COUNT, 0.8f, 0.9f));
+			g2d.fillRect(0, 0, width, height);
+			g2d.dispose();
+			File file = new File(dir, "tex" + i + ".png");
+			ImageIO.write(img, "png", file);
+			textures[i] = LSystem.loadTexture(file.getName());
+		}
+
+		System.out.println("without atlas:");
+		run(g, gl, textures);
+
+		LTextureAtlas atlas = new LTextureAtlas(PAGE_SIZE, 128, 8);
+		g.setTextureAtlas(atlas);
+		System.out.println("with atlas (page " + PAGE_SIZE + "):");
+		run(g, gl, textures);
+
+		int oversize = 0;
+		for (int i = 0; i < atlas.getPageCount(); i++) {
+			LTexture page = atlas.getPageTexture(i);
+			System.out.println("page " + i + ": " + (page == null ? "none" : page.width() + "x" + page.height()));
+			if (page != null && (page.width() > PAGE_SIZE || page.height() > PAGE_SIZE)) {
+				oversize++;
+			}
+		}
+		System.out.println("pages larger than " + PAGE_SIZE + ": " + oversize);
+		System.out.println("entries: " + atlas.getEntryCount() + ", packs: " + atlas.getPackCount());
+		System.exit(0);
+	}
+
+	private static void run(GLEx g, RecordingGL20 gl, LTexture[] textures) {
+		for (int frame = 0; frame < FRAMES; frame++) {
+			gl.reset();
+			g.begin();
+			for (int i = 0; i < QUADS_PER_FRAME; i++) {
+				g.draw(textures[i % textures.length], (i * 13) % 400, (i * 7) % 280);
+			}
+			g.end();
+			System.out.println("  frame " + frame + ": draw calls " + gl.drawCalls + ", texture binds "
+					+ gl.textureBinds);
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package org.test;
+
+import java.util.Random;
+
+import loon.LSetting;
+import loon.Stage;
+import loon.font.DistanceFieldAtlas;
+import loon.font.DistanceFieldFont;
+import loon.font.DistanceFieldGenerator;
+import loon.opengl.GLEx;
+
+/**
+ * 距离场字体的测试:以解析的圆盘检查DistanceFieldGenerator的距离误差,检查图集装箱不重叠,写满后添加新页与按页数上限清空最久未使用的页,
+ * 最后以RecordingGL20无窗口(Headless)方式逐段绘制大量CJK文字,检查不会抛出异常,并且新增字形时只上传修改过的区域.
+ */
+public class DistanceFieldAtlasTest {
+
+	private final static float MAX_DISC_ERROR = 0.25f;
+
+	public static void main(String[] args) {
+		int errors = 0;
+		errors += checkDisc();
+		errors += checkPacking();
+		errors += checkEviction();
+		errors += checkFont();
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	/**
+	 * 放大渲染的圆盘生成距离场后,与解析距离比较(只比较扩散范围内的像素)
+	 */
+	private static int checkDisc() {
+		final int upscale = 4, spread = 4;
+		final DistanceFieldGenerator gen = new DistanceFieldGenerator(spread, upscale);
+		final int size = 160;
+		final float cx = 80, cy = 80, radius = 40;
+		final int[] pixels = new int[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				final float dx = x + 0.5f - cx, dy = y + 0.5f - cy;
+				if (dx * dx + dy * dy <= radius * radius) {
+					pixels[y * size + x] = 0xFFFFFFFF;
+				}
+			}
+		}
+		final int[] field = gen.generate(pixels, size, size);
+		final int out = gen.getOutputSize(size);
+		double maxError = 0;
+		for (int oy = 0; oy < out; oy++) {
+			for (int ox = 0; ox < out; ox++) {
+				final double d = (Math.hypot((ox + 0.5f) * upscale - cx, (oy + 0.5f) * upscale - cy) - radius)
+						/ upscale;
+				if (Math.abs(d) >= spread - 0.5) {
+					continue;
+				}
+				final double decoded = (0.5 - (field[oy * out + ox] >>> 24) / 255.0) * 2 * spread;
+				maxError = Math.max(maxError, Math.abs(decoded - d));
+			}
+		}
+		System.out.println("disc: max distance error " + (float) maxError + "px");
+		if (maxError > MAX_DISC_ERROR) {
+			System.out.println("distance error is larger than " + MAX_DISC_ERROR);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * 装入比一页多得多的字形,检查会添加新页,并且每个字形的像素都没有被其它字形覆盖
+	 */
+	private static int checkPacking() {
+		final DistanceFieldAtlas atlas = new DistanceFieldAtlas(512, 64, 2048);
+		final Random random = new Random(1);
+		final int count = 3000;
+		for (int i = 0; i < count; i++) {
+			final int w = 20 + random.nextInt(30), h = 30 + random.nextInt(12);
+			final int[] field = new int[w * h];
+			java.util.Arrays.fill(field, i + 1);
+			atlas.add((char) (0x4E00 + i), field, w, h, 0, 0, w);
+		}
+		int overlap = 0;
+		for (int i = 0; i < count; i++) {
+			final DistanceFieldAtlas.Glyph g = atlas.getGlyph((char) (0x4E00 + i));
+			final int[] pixels = atlas.getPage(g.page).getPixels();
+			for (int y = 0; y < g.height; y++) {
+				for (int x = 0; x < g.width; x++) {
+					if (pixels[(g.y + y) * atlas.getWidth() + g.x + x] != i + 1) {
+						overlap++;
+					}
+				}
+			}
+		}
+		System.out.println("packing: " + count + " glyphs in " + atlas.getPageCount() + " pages, overlap pixels "
+				+ overlap);
+		if (overlap != 0 || atlas.getPageCount() < 2) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * 页数上限为2时持续装入新字形,检查只保留2页,最久未使用的页被清空,本次使用的字形不会被清空
+	 */
+	private static int checkEviction() {
+		final DistanceFieldAtlas atlas = new DistanceFieldAtlas(128, 32, 128, 2);
+		final int[] field = new int[30 * 30];
+		atlas.nextStamp();
+		atlas.add('A', field, 30, 30, 0, 0, 30);
+		int errors = 0;
+		for (int i = 0; i < 200; i++) {
+			atlas.nextStamp();
+			// 每次都使用'A'
+			if (atlas.getGlyph('A') == null) {
+				errors++;
+			}
+			atlas.add((char) (0x4E00 + i), field, 30, 30, 0, 0, 30);
+		}
+		System.out.println("eviction: pages " + atlas.getPageCount() + " evicted " + atlas.getEvictCount()
+				+ " glyphs " + atlas.getGlyphCount() + ", lost glyphs in use " + errors);
+		if (atlas.getPageCount() != 2 || atlas.getEvictCount() == 0 || errors != 0) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * 以20字一段绘制1200个不同的CJK字符,记录首次绘制后每段新增字形时上传的像素数量
+	 */
+	private static int checkFont() {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "DistanceFieldAtlasTest";
+		setting.isLogo = false;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		RecordingGL20 gl = game.gl();
+		GLEx g = game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		}).GL();
+
+		DistanceFieldFont font = new DistanceFieldFont("Dialog", 0, 24, "0123456789");
+		font.drawString(g, "0123", 0, 0);
+		final DistanceFieldAtlas atlas = font.getAtlas();
+		final int segments = 60;
+		long texels = 0;
+		int measured = 0;
+		int errors = 0;
+		try {
+			for (int s = 0; s < segments; s++) {
+				StringBuilder sbr = new StringBuilder();
+				for (int i = 0; i < 20; i++) {
+					sbr.append((char) (0x4E00 + s * 20 + i));
+				}
+				final int memory = atlas.getMemorySize();
+				gl.reset();
+				font.drawString(g, sbr.toString(), 10, 10);
+				// 没有添加或扩大页时只上传新字形所在的区域,不再整页上传
+				if (atlas.getMemorySize() == memory) {
+					texels += gl.texelUploads;
+					measured++;
+				}
+			}
+		} catch (Throwable ex) {
+			ex.printStackTrace();
+			errors++;
+		}
+		if (measured == 0) {
+			measured = 1;
+			errors++;
+		}
+		final long fullPage = (long) atlas.getWidth() * atlas.getMaxHeight();
+		System.out.println("font: " + atlas.getGlyphCount() + " glyphs, " + atlas.getPageCount() + " pages, evicted "
+				+ atlas.getEvictCount() + ", avg texels uploaded per segment " + (texels / measured) + " (full page "
+				+ fullPage + ")");
+		if (texels / measured >= fullPage / 8) {
+			System.out.println("new glyphs upload too much of the atlas");
+			errors++;
+		}
+		font.close();
+		return errors;
+	}
+
+}
@@ -0,0 +1,194 @@
+package org.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import loon.LSetting;
+import loon.LSystem;
+import loon.LTexture;
+import loon.Stage;
+import loon.opengl.BaseBatch;
+import loon.opengl.GL20;
+import loon.opengl.GLDrawCommand;
+import loon.opengl.GLEx;
+
+/**
+ * 延迟渲染命令缓冲(GLDrawCommand)的测试,以RecordingGL20无窗口(Headless)方式启动游戏,记录3000个随机位置,随机纹理的四边形,
+ * 回放到一个只记录顺序的Batch中,检查互相重叠且纹理不同的四边形保持原有的先后顺序,
+ * 然后以GLEx分别在立即模式与延迟模式下绘制同样的四边形,比较RecordingGL20记录的纹理绑定与绘制次数.
+ */
+public class GLDrawCommandTest {
+
+	private final static int QUADS = 3000;
+
+	private final static int TEXTURE_COUNT = 6;
+
+	/**
+	 * 只记录回放顺序的Batch,四边形的编号保存在tint中
+	 */
+	private static class OrderBatch extends BaseBatch {
+
+		final int[] ids = new int[QUADS];
+
+		final LTexture[] textures = new LTexture[QUADS];
+
+		int count;
+
+		int textureSwitches;
+
+		private LTexture current;
+
+		OrderBatch(GL20 gl) {
+			super(gl);
+		}
+
+		@Override
+		public void init() {
+		}
+
+		@Override
+		public void setTexture(LTexture texture) {
+			if (texture != current) {
+				textureSwitches++;
+				current = texture;
+			}
+		}
+
+		@Override
+		public void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1,
+				float y1, float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3,
+				float sy3, float x4, float y4, float sx4, float sy4) {
+			ids[count] = tint;
+			textures[count] = current;
+			count++;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "GLDrawCommandTest";
+		setting.isLogo = false;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		RecordingGL20 gl = game.gl();
+		GLEx g = game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		}).GL();
+
+		File dir = new File(System.getProperty("java.io.tmpdir"), "gl_draw_command_test");
+		dir.mkdirs();
+		game.assets().addDirectory(dir);
+		LTexture[] textures = new LTexture[TEXTURE_COUNT];
+		for (int i = 0; i < TEXTURE_COUNT; i++) {
+			BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d = img.createGraphics();
+			g2d.setColor(Color.getHSBColor(i / (float) TEXTURE_COUNT, 0.8f, 0.9f));
+			g2d.fillRect(0, 0, 16, 16);
+			g2d.dispose();
+			File file = new File(dir, "cmd" + i + ".png");
+			ImageIO.write(img, "png", file);
+			textures[i] = LSystem.loadTexture(file.getName());
+			textures[i].loadTexture();
+		}
+
+		final Random random = new Random(24);
+		final float[] xs = new float[QUADS], ys = new float[QUADS], ws = new float[QUADS], hs = new float[QUADS];
+		final int[] texs = new int[QUADS];
+		for (int i = 0; i < QUADS; i++) {
+			ws[i] = 8 + random.nextInt(40);
+			hs[i] = 8 + random.nextInt(40);
+			xs[i] = random.nextFloat() * (setting.width - ws[i]);
+			ys[i] = random.nextFloat() * (setting.height - hs[i]);
+			texs[i] = random.nextInt(TEXTURE_COUNT);
+		}
+
+		int errors = 0;
+		errors += checkOrdering(gl, textures, xs, ys, ws, hs, texs, setting.width, setting.height);
+		errors += checkBinds(g, gl, textures, xs, ys, ws, hs, texs);
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	private static int checkOrdering(RecordingGL20 gl, LTexture[] textures, float[] xs, float[] ys, float[] ws,
+			float[] hs, int[] texs, int width, int height) {
+		GLDrawCommand commands = new GLDrawCommand(gl);
+		for (int i = 0; i < QUADS; i++) {
+			commands.setTexture(textures[texs[i]]);
+			final float x = xs[i], y = ys[i], r = x + ws[i], b = y + hs[i];
+			commands.addQuad(i, 1f, 0f, 0f, 1f, 0f, 0f, x, y, 0f, 0f, r, y, 1f, 0f, x, b, 0f, 1f, r, b, 1f, 1f);
+		}
+		OrderBatch batch = new OrderBatch(gl);
+		batch.begin(width, height, true);
+		commands.replay(batch, width, height, true);
+		batch.end();
+
+		final int[] position = new int[QUADS];
+		java.util.Arrays.fill(position, -1);
+		int lost = 0;
+		for (int n = 0; n < batch.count; n++) {
+			position[batch.ids[n]] = n;
+			if (batch.textures[n] != textures[texs[batch.ids[n]]]) {
+				lost++;
+			}
+		}
+		for (int i = 0; i < QUADS; i++) {
+			if (position[i] == -1) {
+				lost++;
+			}
+		}
+		int violations = 0, overlapping = 0;
+		for (int i = 0; i < QUADS; i++) {
+			for (int j = i + 1; j < QUADS; j++) {
+				if (texs[i] == texs[j]) {
+					continue;
+				}
+				if (xs[i] < xs[j] + ws[j] && xs[j] < xs[i] + ws[i] && ys[i] < ys[j] + hs[j] && ys[j] < ys[i] + hs[i]) {
+					overlapping++;
+					if (position[i] > position[j]) {
+						violations++;
+					}
+				}
+			}
+		}
+		System.out.println("ordering: " + QUADS + " quads, " + overlapping + " overlapping pairs with different textures, "
+				+ violations + " ordering violations, texture switches " + batch.textureSwitches
+				+ ", lost or wrong texture " + lost);
+		commands.close();
+		return (violations != 0 || lost != 0) ? 1 : 0;
+	}
+
+	private static int checkBinds(GLEx g, RecordingGL20 gl, LTexture[] textures, float[] xs, float[] ys, float[] ws,
+			float[] hs, int[] texs) {
+		final int[] binds = new int[2], draws = new int[2];
+		for (int mode = 0; mode < 2; mode++) {
+			g.begin();
+			g.setDeferred(mode == 1);
+			gl.reset();
+			for (int i = 0; i < QUADS; i++) {
+				g.draw(textures[texs[i]], xs[i], ys[i], ws[i], hs[i]);
+			}
+			g.setDeferred(false);
+			g.end();
+			binds[mode] = gl.textureBinds;
+			draws[mode] = gl.drawCalls;
+		}
+		System.out.println("immediate: texture binds " + binds[0] + " draw calls " + draws[0] + ", deferred: texture binds "
+				+ binds[1] + " draw calls " + draws[1]);
+		if (binds[1] >= binds[0] || draws[1] > draws[0]) {
+			System.out.println("deferred mode did not reduce state changes");
+			return 1;
+		}
+		return 0;
+	}
+
+}
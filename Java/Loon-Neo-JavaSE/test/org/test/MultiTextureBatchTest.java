@@ -0,0 +1,100 @@
+package org.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import loon.LSetting;
+import loon.LSystem;
+import loon.LTexture;
+import loon.Stage;
+import loon.opengl.MultiTextureBatch;
+
+/**
+ * 多纹理单元Batch(MultiTextureBatch)的测试,以RecordingGL20无窗口(Headless)方式启动游戏,另外创建一个RecordingGL20传给Batch,
+ * 轮流绘制多张纹理,检查着色器与Mesh的创建,纹理绑定与绘制全部发生在传入的GL20上,系统的GL20没有收到任何调用,
+ * 并且只有绑定的纹理超过纹理单元数量时才会提交.
+ */
+public class MultiTextureBatchTest {
+
+	private final static int UNITS = 4;
+
+	private final static int TEXTURE_COUNT = 6;
+
+	private final static int QUADS = 600;
+
+	public static void main(String[] args) throws IOException {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "MultiTextureBatchTest";
+		setting.isLogo = false;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		RecordingGL20 global = game.gl();
+		game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		});
+
+		File dir = new File(System.getProperty("java.io.tmpdir"), "multi_texture_batch_test");
+		dir.mkdirs();
+		game.assets().addDirectory(dir);
+		LTexture[] textures = new LTexture[TEXTURE_COUNT];
+		for (int i = 0; i < TEXTURE_COUNT; i++) {
+			BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d = img.createGraphics();
+			g2d.setColor(Color.getHSBColor(i / (float) TEXTURE_COUNT, 0.8f, 0.9f));
+			g2d.fillRect(0, 0, 16, 16);
+			g2d.dispose();
+			File file = new File(dir, "unit" + i + ".png");
+			ImageIO.write(img, "png", file);
+			textures[i] = LSystem.loadTexture(file.getName());
+			// 纹理本身由系统GL上传,先加载以免计入Batch的调用
+			textures[i].loadTexture();
+		}
+
+		RecordingGL20 injected = new RecordingGL20();
+		MultiTextureBatch batch = new MultiTextureBatch(injected, UNITS);
+		global.reset();
+		injected.reset();
+		batch.begin(setting.width, setting.height, true);
+		for (int i = 0; i < QUADS; i++) {
+			// 前一半只用前UNITS张纹理,后一半用全部纹理
+			final int count = i < QUADS / 2 ? UNITS : TEXTURE_COUNT;
+			batch.setTexture(textures[i % count]);
+			final float x = (i * 7) % setting.width, y = (i * 13) % setting.height;
+			batch.addQuad(-1, 1, 0, 0, 1, 0, 0, x, y, 0, 0, x + 16, y, 1, 0, x, y + 16, 0, 1, x + 16, y + 16, 1, 1);
+		}
+		final int queued = batch.getQueuedQuadCount();
+		batch.end();
+		System.out.println("injected gl: programs " + injected.programsCreated + " draw calls " + injected.drawCalls
+				+ " texture binds " + injected.textureBinds + " (queued quads before end " + queued + ")");
+		System.out.println("global gl: programs " + global.programsCreated + " draw calls " + global.drawCalls
+				+ " texture binds " + global.textureBinds);
+
+		int errors = 0;
+		if (injected.programsCreated != 1 || injected.drawCalls == 0) {
+			System.out.println("shader or mesh did not use the injected gl");
+			errors++;
+		}
+		if (global.programsCreated != 0 || global.drawCalls != 0 || global.textureBinds != 0) {
+			System.out.println("the batch made calls on the global gl");
+			errors++;
+		}
+		// 前一半不需要提交,后一半纹理单元用尽时每个四边形最多提交一次
+		if (injected.drawCalls > QUADS / 2 + 1) {
+			System.out.println("too many draw calls: " + injected.drawCalls);
+			errors++;
+		}
+		batch.close();
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.test;
+
+import java.lang.reflect.Method;
+
+import loon.Display;
+import loon.LGame;
+import loon.LSetting;
+import loon.LSystem;
+import loon.Stage;
+import loon.utils.reply.Port;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 流水线模式(LSetting.isPipelinedUpdate)的测试,以RecordingGL20无窗口(Headless)方式启动游戏并逐帧驱动LSystemView,
+ * 检查simulate事件在后台线程按固定步长执行,模拟的步数跟随经过的时间,update同样按固定步长触发,
+ * 并且在主线程停顿(落后超过MAX_SIMULATE_STEPS步)之后模拟时间能追上当前时间,渲染的alpha不会一直停留在1.
+ */
+public class PipelinedFrameTest {
+
+	private final static int FRAMES = 120;
+
+	private final static int FRAME_SLEEP = 8;
+
+	private final static int STALL_FRAME = 60;
+
+	private final static int STALL_TIME = 600;
+
+	private static volatile int simulateSteps;
+
+	private static volatile int simulateOnFrameThread;
+
+	private static volatile int simulateBadDelta;
+
+	private static int updateSteps;
+
+	private static int updateBadDelta;
+
+	private static int alphaOutOfRange;
+
+	private static volatile boolean afterStall;
+
+	private static int alphaOneAfterStall;
+
+	private static int paintsAfterStall;
+
+	public static void main(String[] args) throws Exception {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.fps = 20;
+		setting.appName = "PipelinedFrameTest";
+		setting.isLogo = false;
+		setting.isPipelinedUpdate = true;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		final Display display = game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		});
+		// Display以setting.fps作为固定步长(毫秒)
+		final long updateRate = setting.fps;
+		final Thread frameThread = Thread.currentThread();
+
+		display.simulate.connect(new Port<LTimerContext>() {
+
+			@Override
+			public void onEmit(LTimerContext clock) {
+				if (Thread.currentThread() == frameThread) {
+					simulateOnFrameThread++;
+				}
+				if (clock.timeSinceLastUpdate != updateRate) {
+					simulateBadDelta++;
+				}
+				simulateSteps++;
+			}
+		});
+		display.update.connect(new Port<LTimerContext>() {
+
+			@Override
+			public void onEmit(LTimerContext clock) {
+				if (clock.timeSinceLastUpdate != updateRate) {
+					updateBadDelta++;
+				}
+				updateSteps++;
+			}
+		});
+		display.paint.connect(new Port<LTimerContext>() {
+
+			@Override
+			public void onEmit(LTimerContext clock) {
+				if (clock.alpha < 0f || clock.alpha > 1f) {
+					alphaOutOfRange++;
+				}
+				if (afterStall) {
+					paintsAfterStall++;
+					if (clock.alpha >= 1f) {
+						alphaOneAfterStall++;
+					}
+				}
+			}
+		});
+
+		Method emitFrame = LGame.class.getDeclaredMethod("emitFrame");
+		emitFrame.setAccessible(true);
+		final int startTick = game.tick();
+		for (int i = 0; i < FRAMES; i++) {
+			if (i == STALL_FRAME) {
+				Thread.sleep(STALL_TIME);
+			} else if (i == STALL_FRAME + 4) {
+				afterStall = true;
+			}
+			emitFrame.invoke(game);
+			Thread.sleep(FRAME_SLEEP);
+		}
+		waitSimulate(display);
+		final int elapsed = game.tick() - startTick;
+		final long behind = display.getPaint().tick - display.getSimulatedTick();
+		System.out.println("elapsed " + elapsed + "ms, step " + updateRate + "ms, async " + LSystem.isAsyncSupported());
+		System.out.println("simulate steps " + simulateSteps + " (on frame thread " + simulateOnFrameThread
+				+ ", bad dt " + simulateBadDelta + "), update steps " + updateSteps + " (bad dt " + updateBadDelta
+				+ ")");
+		System.out.println("simulated time behind last paint " + behind + "ms, alpha out of range "
+				+ alphaOutOfRange + ", alpha 1 after the stall " + alphaOneAfterStall + "/" + paintsAfterStall);
+
+		int errors = 0;
+		if (simulateSteps == 0 || simulateBadDelta != 0 || updateBadDelta != 0) {
+			System.out.println("simulate and update must step by the fixed rate");
+			errors++;
+		}
+		if (LSystem.isAsyncSupported() && simulateOnFrameThread != 0) {
+			System.out.println("simulate ran on the frame thread");
+			errors++;
+		}
+		// 停顿时丢弃了超出的步数,因此总步数少于经过的时间,但不能超过它
+		// (模拟时间没有前移时,simulatedTick会一直落后,alpha也会一直停留在1)
+		final int maxSteps = elapsed / (int) updateRate + 1;
+		final int minSteps = (elapsed - STALL_TIME) / (int) updateRate - 2;
+		if (simulateSteps > maxSteps || updateSteps > maxSteps || simulateSteps < minSteps) {
+			System.out.println("steps do not follow the elapsed time: expected " + minSteps + " to " + maxSteps);
+			errors++;
+		}
+		if (behind > updateRate * 2 || behind < -updateRate) {
+			System.out.println("simulation did not catch up after the stall");
+			errors++;
+		}
+		if (alphaOutOfRange != 0 || alphaOneAfterStall * 2 > paintsAfterStall) {
+			System.out.println("paint alpha is out of range or stuck at 1");
+			errors++;
+		}
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	private static void waitSimulate(Display display) throws InterruptedException {
+		for (int i = 0; i < 100 && display.isSimulating(); i++) {
+			Thread.sleep(1);
+		}
+	}
+
+}
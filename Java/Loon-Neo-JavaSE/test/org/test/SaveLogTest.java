@@ -0,0 +1,160 @@
+package org.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+
+import loon.LSetting;
+import loon.LSystem;
+import loon.Save;
+import loon.Session;
+import loon.javase.JavaSEGame;
+
+/**
+ * 存档日志(JavaSESave)的崩溃恢复测试,以无窗口(Headless)方式启动游戏,user.home指向临时目录.
+ *
+ * 依次检查:会话名互为前缀时(会话"a"与"a#b")各自只读取与删除自己的记录;日志末尾的记录写到一半(截断)或校验失败时,
+ * 重新打开只丢弃最后一次提交的Batch(Batch整体保存或整体丢弃),之前的数据完整,并且之后可以继续写入;
+ * 压缩日志时在替换文件之间中断(只剩.bak)时从.bak恢复.
+ */
+public class SaveLogTest {
+
+	private final static String APP_NAME = "SaveLogTest";
+
+	private static int errors;
+
+	public static void main(String[] args) throws Exception {
+		File home = new File(System.getProperty("java.io.tmpdir"), "save_log_test");
+		deleteAll(home);
+		home.mkdirs();
+		System.setProperty("user.home", home.getAbsolutePath());
+		final File log = new File(home, ".loon" + File.separator + APP_NAME + File.separator + "save.log");
+
+		// 会话名互为前缀
+		Save save = open();
+		Session a = new Session("a");
+		a.set("score", 10);
+		a.save();
+		Session ab = new Session("a#b");
+		ab.set("score", 20);
+		ab.set("level", 3);
+		ab.save();
+		check("session a sees only its record", new Session("a").getSize() == 1);
+		check("session a#b sees its two records", new Session("a#b").getSize() == 2);
+		new Session("a").dispose();
+		check("disposing a keeps a#b", new Session("a#b").getInt("score") == 20);
+		close(save);
+
+		// 末尾记录写到一半
+		save = open();
+		Save.Batch batch = save.startBatch();
+		batch.setItem("k1", "v1");
+		batch.setItem("k2", "v2");
+		batch.commit();
+		flush(save);
+		final long committed = log.length();
+		batch = save.startBatch();
+		batch.setItem("k1", "changed");
+		batch.setItem("k3", "v3");
+		batch.commit();
+		close(save);
+		truncate(log, log.length() - 3);
+		save = open();
+		check("torn batch is dropped as a whole",
+				"v1".equals(save.getItem("k1")) && save.getItem("k3") == null && "v2".equals(save.getItem("k2")));
+		check("log is rewritten without the torn frame", log.length() <= committed);
+		check("earlier sessions survive", new Session("a#b").getInt("score") == 20);
+		save.setItem("k4", "v4");
+		close(save);
+		save = open();
+		check("appends after recovery are kept", "v4".equals(save.getItem("k4")));
+
+		// 末尾记录校验失败
+		save.setItem("k5", "v5");
+		close(save);
+		corrupt(log, log.length() - 1);
+		save = open();
+		check("frame with a bad checksum is dropped", save.getItem("k5") == null && "v4".equals(save.getItem("k4")));
+		close(save);
+
+		// 压缩替换文件时中断
+		final File bak = new File(log.getParentFile(), "save.log.bak");
+		if (!log.renameTo(bak)) {
+			throw new IOException("Couldn't rename " + log);
+		}
+		save = open();
+		check("log is restored from .bak", "v4".equals(save.getItem("k4")) && !bak.exists());
+		close(save);
+
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	/**
+	 * 每次启动一个新的游戏实例,存档对象重新读取日志(相当于程序重新启动)
+	 */
+	private static Save open() {
+		LSetting setting = new LSetting();
+		setting.appName = APP_NAME;
+		setting.isLogo = false;
+		new JavaSEGame.Headless(null, setting);
+		return LSystem.base().save();
+	}
+
+	private static void flush(Save save) throws Exception {
+		invoke(save, "flush");
+	}
+
+	private static void close(Save save) throws Exception {
+		invoke(save, "close");
+	}
+
+	/**
+	 * JavaSESave不是公开类,以反射调用它的flush与close
+	 */
+	private static void invoke(Save save, String name) throws Exception {
+		Method method = save.getClass().getMethod(name);
+		method.setAccessible(true);
+		method.invoke(save);
+	}
+
+	private static void truncate(File file, long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void corrupt(File file, long pos) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(pos);
+			final int value = raf.read();
+			raf.seek(pos);
+			raf.write(value ^ 0xFF);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void check(String name, boolean ok) {
+		System.out.println((ok ? "ok     " : "FAILED ") + name);
+		if (!ok) {
+			errors++;
+		}
+	}
+
+	private static void deleteAll(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				deleteAll(child);
+			}
+		}
+		file.delete();
+	}
+
+}
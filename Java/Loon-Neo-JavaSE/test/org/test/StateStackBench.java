@@ -0,0 +1,70 @@
+package org.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import loon.LSetting;
+import loon.opengl.GLEx;
+
+/**
+ * GLEx状态栈的分配计数测试,以RecordingGL20无窗口(Headless)方式启动游戏后,在同一个GLEx上反复执行嵌套的save/restore/restoreToCount,
+ * 以ThreadMXBean统计测试线程在计时区间内分配的字节数,同时输出状态栈扩容(重新分配数组)的次数.
+ *
+ * 状态栈层级稳定后,每次save分配的字节数应接近0,扩容次数不再增加.
+ */
+public class StateStackBench {
+
+	private final static int WARMUP_ROUNDS = 100000;
+
+	private final static int ROUNDS = 1000000;
+
+	public static void main(String[] args) {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "StateStackBench";
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		GLEx g = new GLEx(game.graphics(), game.graphics().defaultRenderTarget, game.graphics().gl);
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("allocation counting is not supported by this JVM");
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		final long threadId = Thread.currentThread().getId();
+
+		run(g, WARMUP_ROUNDS);
+
+		final int grows = g.getStateStackGrowCount();
+		final long bytes = threads.getThreadAllocatedBytes(threadId);
+		final long start = System.nanoTime();
+		run(g, ROUNDS);
+		final long nanos = System.nanoTime() - start;
+		final long allocated = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+		final long saves = ROUNDS * 3L;
+		System.out.println("saves: " + saves);
+		System.out.println("time: " + nanos / 1000000 + "ms (" + (float) nanos / saves + "ns per save)");
+		System.out.println("allocated: " + allocated + " bytes (" + (float) allocated / saves + " bytes per save)");
+		System.out.println("stack grows: " + (g.getStateStackGrowCount() - grows) + ", capacity: "
+				+ g.getStateStackCapacity() + ", depth: " + g.getSaveDepth());
+		System.exit(0);
+	}
+
+	private static void run(GLEx g, int rounds) {
+		for (int i = 0; i < rounds; i++) {
+			final int idx = g.saveCount();
+			g.translate(1f, 1f);
+			g.setAlpha(0.5f);
+			g.save();
+			g.rotate(1f);
+			g.save();
+			g.scale(1.01f);
+			g.restore();
+			g.restore();
+			g.restoreToCount(idx);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import loon.LSetting;
+import loon.Stage;
+import loon.action.map.tmx.TMXMap;
+import loon.action.map.tmx.TMXTileLayer;
+import loon.action.map.tmx.renderers.TMXMapRenderer;
+import loon.opengl.GLEx;
+
+/**
+ * 无限地图(infinite)的测试,以RecordingGL20无窗口(Headless)方式启动游戏,生成一个两个图层分块范围不同的地图,
+ * 检查两个图层的图层坐标指向同一位置(渲染时对齐),并检查第一帧即已生成可见分块的顶点(图块不会晚一帧出现).
+ */
+public class TMXInfiniteTest {
+
+	private final static int CHUNK = 16;
+
+	public static void main(String[] args) throws IOException {
+		LSetting setting = new LSetting();
+		setting.width = 480;
+		setting.height = 320;
+		setting.appName = "TMXInfiniteTest";
+		setting.isLogo = false;
+		RecordingGL20.Headless game = new RecordingGL20.Headless(null, setting);
+		RecordingGL20 gl = game.gl();
+		GLEx g = game.register(new Stage() {
+
+			@Override
+			public void create() {
+			}
+		}).GL();
+
+		File dir = new File(System.getProperty("java.io.tmpdir"), "tmx_infinite_test");
+		dir.mkdirs();
+		game.assets().addDirectory(dir);
+		BufferedImage img = new BufferedImage(64, 32, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d = img.createGraphics();
+		g2d.setColor(Color.GREEN);
+		g2d.fillRect(0, 0, 32, 32);
+		g2d.setColor(Color.RED);
+		g2d.fillRect(32, 0, 32, 32);
+		g2d.dispose();
+		ImageIO.write(img, "png", new File(dir, "infinite_tiles.png"));
+
+		// ground图层的分块从-16,-16开始,marker图层只有0,0处的一个分块,在地图坐标0,0放置gid为2的图块
+		StringBuilder sbr = new StringBuilder();
+		sbr.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sbr.append("<map version=\"1.2\" orientation=\"orthogonal\" renderorder=\"right-down\" width=\"30\" height=\"20\""
+				+ " tilewidth=\"32\" tileheight=\"32\" infinite=\"1\" nextobjectid=\"1\">\n");
+		sbr.append(" <tileset firstgid=\"1\" name=\"tiles\" tilewidth=\"32\" tileheight=\"32\" tilecount=\"2\" columns=\"2\">\n");
+		sbr.append("  <image source=\"infinite_tiles.png\" width=\"64\" height=\"32\"/>\n");
+		sbr.append(" </tileset>\n");
+		sbr.append(" <layer name=\"ground\" width=\"30\" height=\"20\">\n  <data encoding=\"csv\">\n");
+		for (int cy = -1; cy <= 0; cy++) {
+			for (int cx = -1; cx <= 0; cx++) {
+				appendChunk(sbr, cx * CHUNK, cy * CHUNK, 1, -1);
+			}
+		}
+		sbr.append("  </data>\n </layer>\n");
+		sbr.append(" <layer name=\"marker\" width=\"30\" height=\"20\">\n  <data encoding=\"csv\">\n");
+		appendChunk(sbr, 0, 0, 0, 2);
+		sbr.append("  </data>\n </layer>\n</map>\n");
+		FileWriter writer = new FileWriter(new File(dir, "infinite.tmx"));
+		writer.write(sbr.toString());
+		writer.close();
+
+		TMXMap map = new TMXMap("infinite.tmx", "");
+		TMXTileLayer ground = map.getTileLayer(0);
+		TMXTileLayer marker = map.getTileLayer(1);
+		int errors = 0;
+		System.out.println("map start: " + map.getStartX() + "," + map.getStartY() + " size: " + map.getWidth() + "x"
+				+ map.getHeight());
+		System.out.println("ground start: " + ground.getStartX() + "," + ground.getStartY() + " marker start: "
+				+ marker.getStartX() + "," + marker.getStartY());
+		if (ground.getStartX() != marker.getStartX() || ground.getStartY() != marker.getStartY()
+				|| ground.getWidth() != marker.getWidth() || ground.getHeight() != marker.getHeight()) {
+			System.out.println("layers are not aligned");
+			errors++;
+		}
+		if (map.getStartX() != -CHUNK || map.getStartY() != -CHUNK) {
+			System.out.println("map start should be " + (-CHUNK));
+			errors++;
+		}
+
+		TMXMapRenderer renderer = map.getMapRenderer();
+		renderer.setChunkSize(8);
+		renderer.setLocation(-(CHUNK - 4) * 32, -(CHUNK - 4) * 32);
+		gl.reset();
+		g.begin();
+		renderer.createUI(g);
+		g.end();
+		System.out.println("first frame: vertices " + renderer.getLastVertexCount() + " visible chunks "
+				+ renderer.getLastVisibleChunkCount() + " draw calls " + gl.drawCalls);
+		if (renderer.getLastVertexCount() == 0) {
+			System.out.println("visible chunks were built before their tiles were loaded");
+			errors++;
+		}
+
+		// 地图坐标0,0在图层坐标中为(startX的相反数),两个图层在此处分别为ground与marker的图块
+		final int x = -map.getStartX();
+		final int y = -map.getStartY();
+		System.out.println("tile at map 0,0: ground " + ground.getTileGID(x, y) + " marker " + marker.getTileGID(x, y)
+				+ ", at map -1,-1: marker " + marker.getTileGID(x - 1, y - 1));
+		if (ground.getTileGID(x, y) != 1 || marker.getTileGID(x, y) != 2 || marker.getTileGID(x - 1, y - 1) != 0) {
+			System.out.println("layer coordinates do not point to the same map position");
+			errors++;
+		}
+
+		System.out.println(errors == 0 ? "OK" : "FAILED " + errors);
+		renderer.close();
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	private static void appendChunk(StringBuilder sbr, int x, int y, int fill, int first) {
+		sbr.append("   <chunk x=\"" + x + "\" y=\"" + y + "\" width=\"" + CHUNK + "\" height=\"" + CHUNK + "\">\n");
+		for (int i = 0; i < CHUNK * CHUNK; i++) {
+			sbr.append(i == 0 && first != -1 ? first : fill);
+			if (i < CHUNK * CHUNK - 1) {
+				sbr.append(',');
+			}
+			if (i % CHUNK == CHUNK - 1) {
+				sbr.append('\n');
+			}
+		}
+		sbr.append("   </chunk>\n");
+	}
+
+}
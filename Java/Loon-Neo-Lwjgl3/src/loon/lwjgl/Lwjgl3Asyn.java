@@ -1,6 +1,8 @@
 package loon.lwjgl;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import loon.Asyn;
 import loon.Log;
@@ -24,4 +26,71 @@ public class Lwjgl3Asyn extends Asyn.Default {
 	public void invokeAsync(Runnable action) {
 		pool.execute(action);
 	}
+
+	@Override
+	public int getParallelism() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (pool instanceof ThreadPoolExecutor) {
+			threads = Math.min(threads, ((ThreadPoolExecutor) pool).getMaximumPoolSize() + 1);
+		}
+		return Math.max(1, threads);
+	}
+
+	/**
+	 * 调用者线程与线程池共同领取任务,调用者只等待已被其它线程领取且尚未完成的任务,
+	 * 所以即使在线程池中调用(或线程池已满)也不会死锁
+	 */
+	@Override
+	public void invokeParallel(final int count, final ParallelTask task) {
+		final int helpers = Math.min(count, getParallelism()) - 1;
+		if (helpers <= 0) {
+			super.invokeParallel(count, task);
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final Throwable[] error = new Throwable[1];
+		final Runnable worker = new Runnable() {
+
+			@Override
+			public void run() {
+				running.incrementAndGet();
+				try {
+					for (int i; (i = next.getAndIncrement()) < count;) {
+						task.run(i);
+					}
+				} catch (Throwable e) {
+					synchronized (error) {
+						error[0] = e;
+					}
+					next.set(count);
+				} finally {
+					if (running.decrementAndGet() == 0) {
+						synchronized (running) {
+							running.notifyAll();
+						}
+					}
+				}
+			}
+		};
+		for (int i = 0; i < helpers; i++) {
+			pool.execute(worker);
+		}
+		worker.run();
+		synchronized (running) {
+			while (running.get() > 0) {
+				try {
+					running.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		synchronized (error) {
+			if (error[0] != null) {
+				throw new RuntimeException("Parallel task failed", error[0]);
+			}
+		}
+	}
 }
@@ -150,4 +150,33 @@ public abstract class Asyn {
 	public void invokeAsync(Runnable action) {
 		throw new UnsupportedOperationException();
 	}
+
+	/**
+	 * 可以拆分后并行执行的任务,index为拆分后的序号
+	 */
+	public static interface ParallelTask {
+
+		public void run(int index);
+	}
+
+	/**
+	 * 可以同时执行的并行任务数量
+	 * 
+	 * @return
+	 */
+	public int getParallelism() {
+		return 1;
+	}
+
+	/**
+	 * 执行序号为0到count-1的并行任务,全部完成后返回(不支持多线程的环境中依次执行)
+	 * 
+	 * @param count
+	 * @param task
+	 */
+	public void invokeParallel(int count, ParallelTask task) {
+		for (int i = 0; i < count; i++) {
+			task.run(i);
+		}
+	}
 }
@@ -54,10 +54,18 @@ public class Display extends LSystemView {
 
 	private final static String DESKTOP_STR = "DESKTOP:";
 
+	private final static String DRAW_STR = "DRAW:";
+
+	private final static String STATE_STR = "STATE:";
+
+	private final static String COMMAND_STR = "COMMAND:";
+
 	private String displayMemony = MEMORY_STR;
 
 	private String displaySprites = SPRITE_STR;
 
+	private String displayDraws = DRAW_STR;
+
 	private StrBuilder displayMessage = new StrBuilder(32);
 
 	private GifEncoder gifEncoder;
@@ -462,6 +470,7 @@ public class Display extends LSystemView {
 		} finally {
 			_glEx.end();
 			_glEx.restoreTx();
+			_glEx.updateFrameStats();
 			_glEx.clearFrame();
 			_process.resetTouch();
 		}
@@ -538,6 +547,21 @@ public class Display extends LSystemView {
 				displaySprites = displayMessage.toString();
 
 			}
+			// 上一帧的提交与状态切换次数每帧都会变化,所以只在debug时逐帧生成
+			if (debug) {
+				displayMessage.delete(0, displayMessage.length());
+				displayMessage.append(DRAW_STR);
+				displayMessage.append(gl.getFrameDrawCalls());
+				displayMessage.append(", ");
+				displayMessage.append(STATE_STR);
+				displayMessage.append(gl.getFrameStateChanges());
+				if (gl.isDeferred()) {
+					displayMessage.append(", ");
+					displayMessage.append(COMMAND_STR);
+					displayMessage.append(gl.getFrameCommands());
+				}
+				displayDraws = displayMessage.toString();
+			}
 			// 显示fps速度
 			if (debug || setting.isFPS) {
 				fpsFont.drawString(gl, FPS_STR + frameRate, 5, 5, 0, LColor.white);
@@ -550,9 +574,13 @@ public class Display extends LSystemView {
 			if (debug || setting.isSprites) {
 				fpsFont.drawString(gl, displaySprites, 5, 45, 0, LColor.white);
 			}
+			// 显示上一帧的提交与状态切换次数
+			if (debug) {
+				fpsFont.drawString(gl, displayDraws, 5, 65, 0, LColor.white);
+			}
 			// 若打印日志到界面,很可能挡住游戏界面内容,所以isDisplayLog为true并且debug才显示
 			if (debug && setting.isDisplayLog) {
-				_process.paintLog(gl, 5, 65);
+				_process.paintLog(gl, 5, 85);
 			}
 		}
 	}
@@ -369,6 +369,36 @@ public abstract class LGame {
 		return this;
 	}
 
+	/**
+	 * 执行可拆分的并行任务,全部完成后返回(不支持多线程的环境中依次执行)
+	 * 
+	 * @param count
+	 * @param task
+	 * @return
+	 */
+	public LGame invokeParallel(int count, Asyn.ParallelTask task) {
+		if (task == null || count <= 0) {
+			return this;
+		}
+		if (count == 1 || asyn().getParallelism() <= 1) {
+			for (int i = 0; i < count; i++) {
+				task.run(i);
+			}
+		} else {
+			asyn().invokeParallel(count, task);
+		}
+		return this;
+	}
+
+	/**
+	 * 可以同时执行的并行任务数量
+	 * 
+	 * @return
+	 */
+	public int getParallelism() {
+		return asyn().getParallelism();
+	}
+
 	/**
 	 * 单独纹理批处理渲染器的数量
 	 * 
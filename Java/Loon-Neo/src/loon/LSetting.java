@@ -86,6 +86,14 @@ public class LSetting {
 	 */
 	public boolean isSyncTween = false;
 
+	/**
+	 * 如果此项为true,则LSystemView的simulate事件以固定步长逐步执行(每个补帧步骤单独执行一次),
+	 * 支持异步的平台上在后台线程中与画面渲染同时进行,渲染时可以用LTimerContext.alpha在两次模拟结果间插值.
+	 * <p>
+	 * simulate事件在后台线程执行,因此只应修改模拟自身的数据,并通过SnapshotBuffer发布给渲染使用
+	 */
+	public boolean isPipelinedUpdate = false;
+
 	/**
 	 * 若此处true,则fps,memory以及sprite数量之类数据强制显示
 	 */
@@ -225,6 +233,7 @@ public class LSetting {
 	 */
 	public void copy(LSetting setting) {
 		this.isSyncTween = setting.isSyncTween;
+		this.isPipelinedUpdate = setting.isPipelinedUpdate;
 		this.isFPS = setting.isFPS;
 		this.isLogo = setting.isLogo;
 		this.isCheckReisze = setting.isCheckReisze;
@@ -45,6 +45,7 @@ import loon.opengl.FrameBuffer;
 import loon.opengl.GLEx;
 import loon.opengl.GLFrameBuffer;
 import loon.opengl.GlobalSource;
+import loon.opengl.LSTRAtlas;
 import loon.opengl.LSTRDictionary;
 import loon.opengl.LSTRFont;
 import loon.opengl.Mesh;
@@ -260,6 +261,7 @@ public class LSystem {
 	public static final void freeStaticObject() {
 		LGame.freeStatic();
 		LSTRDictionary.freeStatic();
+		LSTRAtlas.freeStatic();
 		ActionControl.freeStatic();
 		RealtimeProcessManager.freeStatic();
 		LGradation.freeStatic();
@@ -931,6 +933,20 @@ public class LSystem {
 		}
 	}
 
+	public static final int getParallelism() {
+		return base() != null ? base().getParallelism() : 1;
+	}
+
+	public static final void invokeParallel(int count, Asyn.ParallelTask task) {
+		if (base() != null) {
+			base().invokeParallel(count, task);
+		} else {
+			for (int i = 0; i < count; i++) {
+				task.run(i);
+			}
+		}
+	}
+
 	public static final int batchCacheSize() {
 		if (base() != null) {
 			return base().batchCacheSize();
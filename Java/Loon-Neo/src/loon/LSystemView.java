@@ -20,6 +20,7 @@
  */
 package loon;
 
+import loon.utils.MathUtils;
 import loon.utils.reply.Act;
 import loon.utils.reply.Port;
 import loon.utils.timer.LTimerContext;
@@ -30,10 +31,46 @@ public abstract class LSystemView extends BaseIO {
 
 	public final Act<LTimerContext> paint = Act.create();
 
+	/**
+	 * 固定步长的模拟事件,LSetting.isPipelinedUpdate为true时才会触发,支持异步的平台上在后台线程执行
+	 */
+	public final Act<LTimerContext> simulate = Act.create();
+
+	/**
+	 * 模拟落后太多时一次最多补足的步数,超出的步数被丢弃
+	 */
+	public final static int MAX_SIMULATE_STEPS = 8;
+
+	private final class SimulateTask implements Runnable {
+
+		int steps;
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < steps; i++) {
+					simulateClock.tick += updateRate;
+					simulateClock.timeSinceLastUpdate = updateRate;
+					simulate.emit(simulateClock);
+					simulatedTick = simulateClock.tick;
+				}
+			} catch (Throwable cause) {
+				LSystem.error("Simulate dispatch failure", cause);
+			} finally {
+				simulating = false;
+			}
+		}
+	}
+
 	private final LTimerContext updateClock = new LTimerContext();
 	private final LTimerContext paintClock = new LTimerContext();
+	private final LTimerContext simulateClock = new LTimerContext();
+	private final SimulateTask simulateTask = new SimulateTask();
 	private final long updateRate;
 	private int nextUpdate;
+	private long nextSimulate = -1;
+	private volatile long simulatedTick;
+	private volatile boolean simulating;
 	private LGame game;
 
 	public LGame getGame() {
@@ -69,6 +106,11 @@ public abstract class LSystemView extends BaseIO {
 		final long paintLoop = setting.fixedPaintLoopTime;
 		final long updateLoop = setting.fixedUpdateLoopTime;
 		
+		if (setting.isPipelinedUpdate) {
+			onPipelinedFrame(updateTick, paintLoop);
+			return;
+		}
+
 		int nextUpdate = this.nextUpdate;
 
 		if (updateTick >= nextUpdate) {
@@ -99,6 +141,87 @@ public abstract class LSystemView extends BaseIO {
 		paint(paintClock);
 	}
 
+	/**
+	 * 流水线模式:模拟按固定步长逐步执行(与本帧的渲染同时进行),update也按固定步长逐步触发,
+	 * 渲染的alpha为最后一次模拟结果之后经过的时间占步长的比例
+	 * 
+	 * @param updateTick
+	 * @param paintLoop
+	 */
+	private void onPipelinedFrame(int updateTick, long paintLoop) {
+		final long updateRate = this.updateRate;
+		if (nextSimulate == -1) {
+			// 首次进入流水线模式,模拟与update都从当前时间开始计步
+			nextSimulate = updateTick + updateRate;
+			simulateClock.tick = updateTick;
+			simulatedTick = updateTick;
+			nextUpdate = (int) (updateTick + updateRate);
+			updateClock.tick = updateTick;
+		}
+		if (!simulating && updateTick >= nextSimulate) {
+			int steps = 0;
+			while (updateTick >= nextSimulate && steps < MAX_SIMULATE_STEPS) {
+				nextSimulate += updateRate;
+				steps++;
+			}
+			if (updateTick >= nextSimulate) {
+				// 落后太多,丢弃无法补足的步数,模拟时间同时前移,令本次模拟结束时恰好追上当前时间(否则alpha会一直停留在1)
+				nextSimulate = updateTick + updateRate;
+				simulateClock.tick = nextSimulate - updateRate - steps * updateRate;
+				simulatedTick = simulateClock.tick;
+			}
+			simulateTask.steps = steps;
+			simulating = true;
+			if (LSystem.isAsyncSupported()) {
+				LSystem.invokeAsync(simulateTask);
+			} else {
+				simulateTask.run();
+			}
+		}
+		int steps = 0;
+		while (updateTick >= nextUpdate && steps < MAX_SIMULATE_STEPS) {
+			nextUpdate += updateRate;
+			updateClock.tick += updateRate;
+			updateClock.timeSinceLastUpdate = updateRate;
+			update(updateClock);
+			steps++;
+		}
+		if (updateTick >= nextUpdate) {
+			nextUpdate = (int) (updateTick + updateRate);
+		}
+		long paintTick = game.tick();
+		if (paintLoop == -1) {
+			paintClock.timeSinceLastUpdate = paintTick - paintClock.tick;
+		} else {
+			paintClock.timeSinceLastUpdate = paintLoop;
+		}
+		paintClock.tick = paintTick;
+		paintClock.alpha = MathUtils.clamp((paintTick - simulatedTick) / (float) updateRate, 0f, 1f);
+		paint(paintClock);
+	}
+
+	/**
+	 * 是否有模拟步骤正在执行
+	 * 
+	 * @return
+	 */
+	public boolean isSimulating() {
+		return simulating;
+	}
+
+	/**
+	 * 最后一次完成的模拟步骤对应的时间
+	 * 
+	 * @return
+	 */
+	public long getSimulatedTick() {
+		return simulatedTick;
+	}
+
+	public final LTimerContext getSimulate() {
+		return simulateClock;
+	}
+
 	public final LTimerContext getUpdate() {
 		return updateClock;
 	}
@@ -26,9 +26,13 @@ import loon.geom.Vector2f;
 import loon.opengl.BlendState;
 import loon.opengl.ExpandVertices;
 import loon.opengl.GL20;
+import loon.opengl.Mesh;
+import loon.opengl.Mesh.VertexDataType;
 import loon.opengl.MeshDefault;
 import loon.opengl.ShaderProgram;
 import loon.opengl.ShaderSource;
+import loon.opengl.VertexAttribute;
+import loon.opengl.VertexAttributes.Usage;
 import loon.utils.GLUtils;
 import loon.utils.MathUtils;
 import loon.utils.NumberUtils;
@@ -65,12 +69,130 @@ public class LTextureBatch implements LRelease {
 
 		int count;
 
+		private boolean retained;
+
+		private Mesh staticMesh;
+
+		private int staticMemory;
+
+		private int dirtyStart = -1, dirtyEnd = -1;
+
 		public Cache(LTextureBatch batch) {
 			count = batch.count;
 			vertexIdx = batch.vertexIdx;
 			float[] verts = batch.expandVertices.getVertices();
-			vertices = new float[verts.length];
-			System.arraycopy(verts, 0, vertices, 0, verts.length);
+			// 只复制实际写入的顶点,不复制整个扩展缓冲区
+			vertices = new float[vertexIdx];
+			System.arraycopy(verts, 0, vertices, 0, vertexIdx);
+			retained = batch.staticCache;
+		}
+
+		/**
+		 * 是否将顶点数据常驻于GPU(VBO),开启后首次提交时上传一次,之后每次提交只改变矩阵与颜色
+		 * 
+		 * @param r
+		 * @return
+		 */
+		public Cache setStatic(boolean r) {
+			if (!r) {
+				freeStatic();
+			}
+			this.retained = r;
+			return this;
+		}
+
+		public boolean isStatic() {
+			return retained;
+		}
+
+		public int getVertexIdx() {
+			return vertexIdx;
+		}
+
+		public float getVertex(int index) {
+			return vertices[index];
+		}
+
+		/**
+		 * 修改缓存中的顶点数据,常驻GPU时只会上传被修改的区间
+		 * 
+		 * @param index
+		 * @param v
+		 * @return
+		 */
+		public Cache setVertex(int index, float v) {
+			vertices[index] = v;
+			markDirty(index, 1);
+			return this;
+		}
+
+		public Cache updateVertices(int offset, float[] src, int srcOffset, int len) {
+			System.arraycopy(src, srcOffset, vertices, offset, len);
+			markDirty(offset, len);
+			return this;
+		}
+
+		private void markDirty(int offset, int len) {
+			if (staticMesh == null) {
+				return;
+			}
+			if (dirtyStart < 0 || offset < dirtyStart) {
+				dirtyStart = offset;
+			}
+			if (offset + len > dirtyEnd) {
+				dirtyEnd = offset + len;
+			}
+		}
+
+		Mesh getStaticMesh() {
+			if (staticMesh == null || staticMesh.isClosed()) {
+				final int quads = MathUtils.max(1, vertexIdx / 20);
+				staticMesh = new Mesh(VertexDataType.VertexBufferObjectSubData, true, quads * 4, quads * 6,
+						new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+						new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+						new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+				staticMesh.setVertices(vertices, 0, vertexIdx);
+				LSystem.resetIndices(quads, staticMesh);
+				staticMemory = quads * 4 * staticMesh.getVertexSize() + quads * 6 * 2;
+				_static_cache_memory += staticMemory;
+				_static_cache_count++;
+				dirtyStart = dirtyEnd = -1;
+			} else if (dirtyStart >= 0) {
+				final int end = MathUtils.min(dirtyEnd, vertexIdx);
+				if (end > dirtyStart) {
+					staticMesh.updateVertices(dirtyStart, vertices, dirtyStart, end - dirtyStart);
+				}
+				dirtyStart = dirtyEnd = -1;
+			}
+			return staticMesh;
+		}
+
+		private void freeStatic() {
+			if (staticMesh != null) {
+				staticMesh.close();
+				staticMesh = null;
+				_static_cache_memory -= staticMemory;
+				_static_cache_count--;
+				staticMemory = 0;
+			}
+		}
+
+		/**
+		 * 缓存在内存中占用的字节数
+		 * 
+		 * @return
+		 */
+		public int getMemSize() {
+			return vertices == null ? 0 : vertices.length * 4;
+		}
+
+		/**
+		 * 缓存在GPU中占用的字节数(顶点与索引)
+		 * 
+		 * @return
+		 */
+		public int getStaticMemSize() {
+			return staticMemory;
 		}
 
 		public boolean isClosed() {
@@ -82,10 +204,45 @@ public class LTextureBatch implements LRelease {
 			if (vertices != null) {
 				vertices = null;
 			}
+			freeStatic();
 		}
 
 	}
 
+	private static int _static_cache_memory = 0;
+
+	private static int _static_cache_count = 0;
+
+	/**
+	 * 全部常驻GPU的缓存所占用的字节数
+	 * 
+	 * @return
+	 */
+	public final static int getStaticCacheMemory() {
+		return _static_cache_memory;
+	}
+
+	public final static int getStaticCacheCount() {
+		return _static_cache_count;
+	}
+
+	private boolean staticCache;
+
+	/**
+	 * 设置此后newCache创建的缓存是否常驻GPU
+	 * 
+	 * @param s
+	 * @return
+	 */
+	public LTextureBatch setStaticCache(boolean s) {
+		this.staticCache = s;
+		return this;
+	}
+
+	public boolean isStaticCache() {
+		return staticCache;
+	}
+
 	protected int count = 0;
 
 	private final ExpandVertices expandVertices;
@@ -108,6 +265,8 @@ public class LTextureBatch implements LRelease {
 
 	public int maxSpritesInBatch = 0;
 
+	private int submitCount = 0;
+
 	protected boolean isLoaded;
 
 	protected LTexture texture;
@@ -391,6 +550,7 @@ public class LTextureBatch implements LRelease {
 		if (vertexIdx == 0) {
 			return this;
 		}
+		submitCount++;
 		if (!isCacheLocked) {
 			int spritesInBatch = vertexIdx / 20;
 			if (spritesInBatch > maxSpritesInBatch) {
@@ -431,6 +591,78 @@ public class LTextureBatch implements LRelease {
 		return this;
 	}
 
+	/**
+	 * 累计提交(drawcall)次数
+	 * 
+	 * @return
+	 */
+	public int getSubmitCount() {
+		return submitCount;
+	}
+
+	public LTextureBatch resetSubmitCount() {
+		this.submitCount = 0;
+		return this;
+	}
+
+	/**
+	 * 单次提交最多的四边形数量(顶点索引为short,一次提交不能超过65536个顶点)
+	 */
+	public final static int MAX_BULK_QUADS = 8192;
+
+	/**
+	 * 为批量写入顶点预留空间,返回本次可以写入的四边形数量(可能少于quads,为0表示无法写入).
+	 * 
+	 * 每个四边形20个float,依次为左上,左下,右下,右上四个顶点的x,y,color,u,v,从getVertexIndex()处开始写入getVertices(),
+	 * 写入后以commitQuads提交写入的数量.已写满MAX_BULK_QUADS时会先提交之前的内容,所以批量写入时不要再设置location.
+	 * 
+	 * @param quads
+	 * @return
+	 */
+	public int reserveQuads(int quads) {
+		if (quads <= 0 || !checkTexture(texture)) {
+			return 0;
+		}
+		if (vertexIdx / 20 >= MAX_BULK_QUADS) {
+			submit();
+			vertexIdx = 0;
+		}
+		final int count = MathUtils.min(quads, MAX_BULK_QUADS - vertexIdx / 20);
+		if (expandVertices.expand(vertexIdx, count)) {
+			mesh.reset(name, expandVertices.length());
+		}
+		return count;
+	}
+
+	/**
+	 * 当前的顶点数组(预留空间后才能写入)
+	 * 
+	 * @return
+	 */
+	public float[] getVertices() {
+		return expandVertices.getVertices();
+	}
+
+	/**
+	 * 下一个写入顶点数据的位置
+	 * 
+	 * @return
+	 */
+	public int getVertexIndex() {
+		return vertexIdx;
+	}
+
+	/**
+	 * 确认以reserveQuads预留并已写入的四边形
+	 * 
+	 * @param quads
+	 * @return
+	 */
+	public LTextureBatch commitQuads(int quads) {
+		vertexIdx += quads * 20;
+		return this;
+	}
+
 	public LTextureBatch setTextureBatchName(String n) {
 		this.name = n;
 		return this;
@@ -551,7 +783,12 @@ public class LTextureBatch implements LRelease {
 			case Null:
 				break;
 			}
-			mesh.post(name, expandVertices.getSize(), globalShader, cache.vertices, cache.vertexIdx, cache.count);
+			if (cache.isStatic() && mesh.getGLType() == GL20.GL_TRIANGLES) {
+				// 常驻GPU的缓存,顶点数据只在首次与局部修改时上传
+				cache.getStaticMesh().render(globalShader, GL20.GL_TRIANGLES, 0, cache.count);
+			} else {
+				mesh.post(name, expandVertices.getSize(), globalShader, cache.vertices, cache.vertexIdx, cache.count);
+			}
 			GLUtils.setBlendMode(gl, old);
 		} else if (color != null) {
 			globalShader.setUniformf("v_color", oldColor);
@@ -601,6 +838,19 @@ public class LTextureBatch implements LRelease {
 		}
 	}
 
+	/**
+	 * 以当前顶点数据创建一个独立的缓存(不替换lastCache,也不会被disposeLastCache释放)
+	 * 
+	 * @return
+	 */
+	public Cache createCache() {
+		if (isLoaded) {
+			return new Cache(this);
+		} else {
+			return null;
+		}
+	}
+
 	public boolean disposeLastCache() {
 		if (lastCache != null) {
 			lastCache.close();
@@ -24,6 +24,7 @@ import loon.utils.ArrayMap;
 import loon.utils.ArrayMap.Entry;
 import loon.utils.Base64Coder;
 import loon.utils.Bundle;
+import loon.utils.MathUtils;
 import loon.utils.StrBuilder;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
@@ -39,7 +40,10 @@ public class Session implements Bundle<String> {
 	private boolean isPersisted = false;
 
 	private String loadData() {
-		String result = _save.getItem(name);
+		return decodeData(_save.getItem(name));
+	}
+
+	private static String decodeData(String result) {
 		if (StringUtils.isEmpty(result)) {
 			return result;
 		}
@@ -53,10 +57,7 @@ public class Session implements Bundle<String> {
 		return result;
 	}
 
-	private void saveData(String result) {
-		if (StringUtils.isEmpty(result)) {
-			return;
-		}
+	private static String encodeData(String result) {
 		if (!Base64Coder.isBase64(result)) {
 			try {
 				result = new String(Base64Coder.encode(result.getBytes()), LSystem.ENCODING);
@@ -64,11 +65,19 @@ public class Session implements Bundle<String> {
 				result = new String(Base64Coder.encode(result.getBytes()));
 			}
 		}
-		_save.setItem(name, result);
+		return result;
 	}
 
 	private void removeData() {
-		_save.removeItem(name);
+		Save.Batch batch = _save.startBatch();
+		batch.removeItem(name);
+		final String prefix = getRecordPrefix();
+		for (String key : _save.keys()) {
+			if (key.startsWith(prefix)) {
+				batch.removeItem(key);
+			}
+		}
+		batch.commit();
 	}
 
 	public static Session load(String name) {
@@ -77,6 +86,12 @@ public class Session implements Bundle<String> {
 
 	private final char flag = '&';
 
+	/**
+	 * 单条记录保存时使用的键为 会话名 + RECORD_FLAG + 记录名,会话名中的'%'与RECORD_FLAG会被转义(%25与%23),
+	 * 所以键中第一个RECORD_FLAG之前的部分只对应一个会话(会话"a"不会读取或删除会话"a#b"的记录)
+	 */
+	public final static String RECORD_FLAG = "#";
+
 	private final class Record {
 
 		private String name;
@@ -85,9 +100,15 @@ public class Session implements Bundle<String> {
 
 		private boolean active;
 
+		private int order;
+
+		private boolean dirty;
+
 		public Record(String name) {
 			this.values = new String[0];
 			this.name = name;
+			this.order = nextOrder++;
+			this.dirty = true;
 		}
 
 		public int size() {
@@ -136,6 +157,7 @@ public class Session implements Bundle<String> {
 				this.values = res;
 			}
 			this.values[index] = value;
+			this.dirty = true;
 		}
 
 		public String encode() {
@@ -161,6 +183,12 @@ public class Session implements Bundle<String> {
 
 	private TArray<Record> recordsList;
 
+	private final TArray<String> removedNames = new TArray<String>();
+
+	private int nextOrder;
+
+	private boolean legacyData;
+
 	public Session(String name) {
 		this(name, true);
 	}
@@ -343,6 +371,7 @@ public class Session implements Bundle<String> {
 	public Session delete(String name) {
 		synchronized (recordsList) {
 			records.remove(name);
+			removedNames.add(name);
 			for (int i = 0; i < recordsList.size; i++) {
 				Record record = recordsList.get(i);
 				if (record.name.equals(name)) {
@@ -400,6 +429,7 @@ public class Session implements Bundle<String> {
 
 	public int decode(String[] parts, int n) {
 		synchronized (recordsList) {
+			markAllRemoved();
 			records.clear();
 			recordsList.clear();
 			if (n >= parts.length) {
@@ -439,6 +469,7 @@ public class Session implements Bundle<String> {
 
 	public Session activate(String name) {
 		synchronized (recordsList) {
+			removeRecord(name);
 			Record record = new Record(name);
 			record.active = true;
 			records.put(name, record);
@@ -452,6 +483,7 @@ public class Session implements Bundle<String> {
 			Record record = (Record) records.remove(name);
 			if (record != null) {
 				recordsList.remove(record);
+				removedNames.add(name);
 			}
 		}
 		return this;
@@ -484,14 +516,86 @@ public class Session implements Bundle<String> {
 		return name;
 	}
 
+	/**
+	 * 保存会话,每条记录单独保存,只写入上次保存后被修改或删除的记录(以一个Save.Batch提交)
+	 * 
+	 * @return
+	 */
 	public Session save() {
-		String result = encode();
-		if (!StringUtils.isEmpty(result)) {
-			saveData(result);
+		if (_save == null) {
+			return this;
+		}
+		Save.Batch batch = _save.startBatch();
+		boolean changed = false;
+		synchronized (recordsList) {
+			final String prefix = getRecordPrefix();
+			if (legacyData) {
+				// 旧版本整体保存的数据,改为逐条保存
+				batch.removeItem(name);
+				legacyData = false;
+				changed = true;
+			}
+			for (int i = 0; i < removedNames.size; i++) {
+				batch.removeItem(prefix + removedNames.get(i));
+				changed = true;
+			}
+			removedNames.clear();
+			for (int i = 0; i < recordsList.size; i++) {
+				Record record = recordsList.get(i);
+				if (record.dirty) {
+					batch.setItem(prefix + record.name, encodeData(record.order + String.valueOf(flag) + record.encode()));
+					record.dirty = false;
+					changed = true;
+				}
+			}
+		}
+		if (changed) {
+			batch.commit();
 		}
 		return this;
 	}
 
+	/**
+	 * 尚未保存的修改数量(被修改的记录与被删除的记录)
+	 * 
+	 * @return
+	 */
+	public int getChangedCount() {
+		synchronized (recordsList) {
+			int count = removedNames.size + (legacyData ? 1 : 0);
+			for (int i = 0; i < recordsList.size; i++) {
+				if (recordsList.get(i).dirty) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private String getRecordPrefix() {
+		String owner = name;
+		if (owner.indexOf('%') != -1) {
+			owner = StringUtils.replace(owner, "%", "%25");
+		}
+		if (owner.indexOf(RECORD_FLAG) != -1) {
+			owner = StringUtils.replace(owner, RECORD_FLAG, "%23");
+		}
+		return owner + RECORD_FLAG;
+	}
+
+	private void removeRecord(String name) {
+		Record record = (Record) records.remove(name);
+		if (record != null) {
+			recordsList.remove(record);
+		}
+	}
+
+	private void markAllRemoved() {
+		for (int i = 0; i < recordsList.size; i++) {
+			removedNames.add(recordsList.get(i).name);
+		}
+	}
+
 	public ArrayMap getRecords(int index) {
 		ArrayMap result = new ArrayMap(records.size());
 		for (int i = 0; i < records.size(); i++) {
@@ -502,7 +606,66 @@ public class Session implements Bundle<String> {
 	}
 
 	public int load() {
-		return loadEncodeSession(loadData());
+		if (_save == null) {
+			return -1;
+		}
+		String legacy = loadData();
+		int result = -1;
+		if (!StringUtils.isEmpty(legacy)) {
+			result = loadEncodeSession(legacy);
+			legacyData = true;
+		}
+		final String prefix = getRecordPrefix();
+		TArray<Record> loaded = new TArray<Record>();
+		for (String key : _save.keys()) {
+			if (!key.startsWith(prefix)) {
+				continue;
+			}
+			String data = decodeData(_save.getItem(key));
+			if (StringUtils.isEmpty(data)) {
+				continue;
+			}
+			String[] parts = StringUtils.split(data, flag);
+			if (parts.length < 2) {
+				continue;
+			}
+			Record record = new Record(parts[1]);
+			record.order = Integer.parseInt(parts[0]);
+			record.decode(parts, 2);
+			record.dirty = false;
+			loaded.add(record);
+		}
+		if (loaded.size > 0) {
+			synchronized (recordsList) {
+				// 按记录最初加入的顺序排列
+				for (int i = 1; i < loaded.size; i++) {
+					Record record = loaded.get(i);
+					int j = i - 1;
+					while (j >= 0 && loaded.get(j).order > record.order) {
+						loaded.set(j + 1, loaded.get(j));
+						j--;
+					}
+					loaded.set(j + 1, record);
+				}
+				for (int i = 0; i < loaded.size; i++) {
+					Record record = loaded.get(i);
+					removeRecord(record.name);
+					records.put(record.name, record);
+					recordsList.add(record);
+					nextOrder = MathUtils.max(nextOrder, record.order + 1);
+				}
+				removedNames.clear();
+			}
+			result = recordsList.size;
+		}
+		if (legacyData) {
+			synchronized (recordsList) {
+				for (int i = 0; i < recordsList.size; i++) {
+					recordsList.get(i).dirty = true;
+				}
+			}
+		}
+		return result;
 	}
 
 	public Session cpy() {
@@ -516,7 +679,10 @@ public class Session implements Bundle<String> {
 
 	@Override
 	public void clear() {
-		recordsList.clear();
+		synchronized (recordsList) {
+			markAllRemoved();
+			recordsList.clear();
+		}
 	}
 
 	@Override
@@ -24,6 +24,7 @@ import loon.LSysException;
 import loon.LSystem;
 import loon.action.map.CustomPath;
 import loon.action.map.Field2D;
+import loon.action.map.FlowField;
 import loon.action.sprite.ISprite;
 import loon.action.sprite.effect.BaseEffect;
 import loon.canvas.LColor;
@@ -534,6 +535,14 @@ public class ActionTween extends ActionTweenBase<ActionTween> {
 		}
 	}
 
+	public ActionTween flowTo(FlowField flow) {
+		return event(new FlowTo(flow));
+	}
+
+	public ActionTween flowTo(FlowField flow, float speed) {
+		return event(new FlowTo(flow, speed));
+	}
+
 	public ActionTween followTo(ActionBind actorToFollow) {
 		return event(new FollowTo(actorToFollow));
 	}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action;
+
+import loon.action.map.Field2D;
+import loon.action.map.FlowField;
+import loon.utils.MathUtils;
+import loon.utils.StringKeyValue;
+
+/**
+ * 沿FlowField流场移动到目标的缓动事件,每步仅查询当前格子的前进方向,适合大量单位前往同一目标
+ */
+public class FlowTo extends ActionEvent {
+
+	private FlowField _flowField;
+
+	private float _speed;
+
+	private int _direction = Field2D.EMPTY;
+
+	private boolean _isDirUpdate;
+
+	private float _targetX, _targetY;
+
+	private int _lastTileX = -1, _lastTileY = -1;
+
+	public FlowTo(FlowField flow) {
+		this(flow, 4f);
+	}
+
+	public FlowTo(FlowField flow, float speed) {
+		this._flowField = flow;
+		this._speed = speed;
+	}
+
+	@Override
+	public void onLoad() {
+		_lastTileX = -1;
+		_lastTileY = -1;
+	}
+
+	@Override
+	public void update(long elapsedTime) {
+		if (_flowField == null) {
+			_isCompleted = true;
+			return;
+		}
+		final Field2D field = _flowField.getField2D();
+		final float width = original.getWidth();
+		final float height = original.getHeight();
+		final float x = original.getX() - offsetX;
+		final float y = original.getY() - offsetY;
+		final int tx = field.pixelsToTilesWidth(x + width / 2f);
+		final int ty = field.pixelsToTilesHeight(y + height / 2f);
+		if (tx != _lastTileX || ty != _lastTileY) {
+			_lastTileX = tx;
+			_lastTileY = ty;
+			if (_flowField.isGoal(tx, ty)) {
+				_targetX = field.tilesToWidthPixels(tx) + (field.getTileWidth() - width) / 2f;
+				_targetY = field.tilesToHeightPixels(ty) + (field.getTileHeight() - height) / 2f;
+			} else {
+				final int dx = _flowField.getDirectionX(tx, ty);
+				final int dy = _flowField.getDirectionY(tx, ty);
+				if (dx == 0 && dy == 0) {
+					_isCompleted = true;
+					return;
+				}
+				_targetX = field.tilesToWidthPixels(tx + dx) + (field.getTileWidth() - width) / 2f;
+				_targetY = field.tilesToHeightPixels(ty + dy) + (field.getTileHeight() - height) / 2f;
+			}
+		}
+		final float distX = _targetX - x;
+		final float distY = _targetY - y;
+		final float dist = MathUtils.sqrt(distX * distX + distY * distY);
+		if (dist <= _speed) {
+			updateDirection((int) distX, (int) distY);
+			movePos(_targetX + offsetX, _targetY + offsetY);
+			if (_flowField.isGoal(tx, ty)) {
+				_isCompleted = true;
+			}
+		} else {
+			final float newX = x + distX / dist * _speed;
+			final float newY = y + distY / dist * _speed;
+			updateDirection((int) distX, (int) distY);
+			movePos(newX + offsetX, newY + offsetY);
+		}
+	}
+
+	public int getDirection() {
+		return _direction;
+	}
+
+	public boolean isDirectionUpdate() {
+		return _isDirUpdate;
+	}
+
+	public void updateDirection(int x, int y) {
+		int oldDir = _direction;
+		_direction = Field2D.getDirection(x, y, oldDir);
+		_isDirUpdate = (oldDir != _direction);
+	}
+
+	public FlowField getFlowField() {
+		return _flowField;
+	}
+
+	public FlowTo setFlowField(FlowField flow) {
+		this._flowField = flow;
+		this._lastTileX = -1;
+		this._lastTileY = -1;
+		return this;
+	}
+
+	public float getSpeed() {
+		return _speed;
+	}
+
+	public FlowTo setSpeed(float speed) {
+		this._speed = speed;
+		return this;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return _isCompleted;
+	}
+
+	@Override
+	public ActionEvent cpy() {
+		FlowTo flow = new FlowTo(_flowField, _speed);
+		flow.set(this);
+		return flow;
+	}
+
+	@Override
+	public ActionEvent reverse() {
+		return cpy();
+	}
+
+	@Override
+	public String getName() {
+		return "flow";
+	}
+
+	@Override
+	public String toString() {
+		StringKeyValue builder = new StringKeyValue(getName());
+		builder.kv("speed", _speed).comma().kv("direction", _direction).comma().kv("targetX", _targetX).comma()
+				.kv("targetY", _targetY);
+		return builder.toString();
+	}
+
+}
@@ -26,10 +26,10 @@ import loon.action.ActionBind;
 import loon.action.collision.CollisionGrid.TraverseCallback;
 import loon.geom.PointF;
 import loon.geom.RectF;
+import loon.utils.LongMap;
 import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
 import loon.utils.TArray;
-import loon.utils.ObjectMap.Keys;
 
 /**
  * 一个碰撞物体自动管理用类,和CollisionManager不同,它会自动获得碰撞后新的物体坐标
@@ -40,7 +40,70 @@ public class CollisionWorld implements LRelease {
 		public int itemCount = 0;
 		public float x;
 		public float y;
+		/**
+		 * 此单元中的碰撞物体,查询时按此集合的顺序遍历(保持以前的结果顺序),只应读取,修改它不会更新碰撞世界
+		 * 
+		 * @deprecated 使用getItem(int)与contains(ActionBind)
+		 */
+		@Deprecated
 		public ObjectMap<ActionBind, Boolean> items = new ObjectMap<ActionBind, Boolean>();
+		private Item[] entries = new Item[4];
+		private int visitStamp;
+
+		public ActionBind getItem(int idx) {
+			if (idx < 0 || idx >= itemCount) {
+				return null;
+			}
+			return entries[idx].bind;
+		}
+
+		@SuppressWarnings("deprecation")
+		public boolean contains(ActionBind bind) {
+			return items.containsKey(bind);
+		}
+
+		@SuppressWarnings("deprecation")
+		private boolean add(Item item) {
+			if (items.containsKey(item.bind)) {
+				return false;
+			}
+			items.put(item.bind, true);
+			if (itemCount == entries.length) {
+				Item[] newItems = new Item[itemCount * 2];
+				System.arraycopy(entries, 0, newItems, 0, itemCount);
+				entries = newItems;
+			}
+			entries[itemCount++] = item;
+			return true;
+		}
+
+		@SuppressWarnings("deprecation")
+		private boolean remove(Item item) {
+			if (items.remove(item.bind) == null) {
+				return false;
+			}
+			for (int i = 0; i < itemCount; i++) {
+				if (entries[i] == item) {
+					System.arraycopy(entries, i + 1, entries, i, itemCount - i - 1);
+					entries[--itemCount] = null;
+					break;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 碰撞物体在世界中的矩形
+	 */
+	private static final class Item extends RectF {
+
+		final ActionBind bind;
+
+		Item(ActionBind bind, float x, float y, float w, float h) {
+			super(x, y, w, h);
+			this.bind = bind;
+		}
 	}
 
 	private final static float DELTA = 1e-5f;
@@ -56,9 +119,10 @@ public class CollisionWorld implements LRelease {
 	private final PointF segmentIntersectionIndicesn2 = new PointF();
 	private final CollisionData segmentIntersectionIndicescol = new CollisionData();
 
-	private ObjectMap<ActionBind, RectF> rects = new ObjectMap<ActionBind, RectF>();
-	private ObjectMap<Float, ObjectMap<Float, Cell>> rows = new ObjectMap<Float, ObjectMap<Float, Cell>>();
-	private ObjectMap<Cell, Boolean> nonEmptyCells = new ObjectMap<Cell, Boolean>();
+	private ObjectMap<ActionBind, Item> rects = new ObjectMap<ActionBind, Item>();
+	private LongMap<Cell> cells = new LongMap<Cell>(256);
+	private int nonEmptyCellCount;
+	private int queryStamp;
 	private CollisionGrid grid = new CollisionGrid();
 
 	private boolean tileMode = false;
@@ -69,11 +133,23 @@ public class CollisionWorld implements LRelease {
 	private final float cellSizeX;
 	private final float cellSizeY;
 
-	private final TArray<Cell> getCellsTouchedBySegment_visited = new TArray<Cell>();
+	private int getCellsTouchedBySegment_stamp;
+	private TArray<Cell> getCellsTouchedBySegment_result;
+	private final TraverseCallback getCellsTouchedBySegment_callback = new TraverseCallback() {
+		@Override
+		public void onTraverse(float cx, float cy) {
+			Cell cell = cells.get((int) cx, (int) cy);
+			if (cell == null || cell.visitStamp == getCellsTouchedBySegment_stamp) {
+				return;
+			}
+			cell.visitStamp = getCellsTouchedBySegment_stamp;
+			getCellsTouchedBySegment_result.add(cell);
+		}
+	};
 
 	private final RectF remove_c = new RectF();
-	private final TArray<ActionBind> project_visited = new TArray<ActionBind>();
 	private final RectF project_c = new RectF();
+	private final TArray<Item> project_itemsInCellRect = new TArray<Item>();
 	private final ObjectMap<ActionBind, Boolean> project_dictItemsInCellRect = new ObjectMap<ActionBind, Boolean>();
 
 	private final RectF add_c = new RectF();
@@ -81,6 +157,19 @@ public class CollisionWorld implements LRelease {
 	private final RectF update_c2 = new RectF();
 
 	private final TArray<ActionBind> check_visited = new TArray<ActionBind>();
+	private CollisionFilter check_filter;
+	private final CollisionFilter check_visitedFilter = new CollisionFilter() {
+		@Override
+		public CollisionResult filter(ActionBind bind, ActionBind other) {
+			if (check_visited.contains(other, true)) {
+				return null;
+			}
+			if (check_filter == null) {
+				return worldCollisionFilter.filter(bind, other);
+			}
+			return check_filter.filter(bind, other);
+		}
+	};
 
 	private final Collisions check_cols = new Collisions();
 	private final Collisions check_projectedCols = new Collisions();
@@ -208,71 +297,74 @@ public class CollisionWorld implements LRelease {
 		return tileMode;
 	}
 
-	private void addItemToCell(ActionBind bind, float cx, float cy) {
+	private void addItemToCell(Item item, int cx, int cy) {
 		if (closed) {
 			return;
 		}
-		if (!rows.containsKey(cy)) {
-			rows.put(cy, new ObjectMap<Float, Cell>());
-		}
-		ObjectMap<Float, Cell> row = rows.get(cy);
-		if (!row.containsKey(cx)) {
-			row.put(cx, new Cell());
+		final long key = LongMap.pack(cx, cy);
+		Cell cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell();
+			cell.x = cx;
+			cell.y = cy;
+			cells.put(key, cell);
 		}
-		Cell cell = row.get(cx);
-
-		nonEmptyCells.put(cell, true);
-		if (!cell.items.containsKey(bind)) {
-			cell.items.put(bind, true);
-			cell.itemCount = cell.itemCount + 1;
+		if (cell.add(item) && cell.itemCount == 1) {
+			nonEmptyCellCount++;
 		}
 	}
 
-	private boolean removeItemFromCell(ActionBind bind, float cx, float cy) {
+	private boolean removeItemFromCell(Item item, int cx, int cy) {
 		if (closed) {
 			return false;
 		}
-		if (!rows.containsKey(cy)) {
-			return false;
-		}
-		ObjectMap<Float, Cell> row = rows.get(cy);
-		if (!row.containsKey(cx)) {
-			return false;
-		}
-		Cell cell = row.get(cx);
-		if (!cell.items.containsKey(bind)) {
+		Cell cell = cells.get(cx, cy);
+		if (cell == null || !cell.remove(item)) {
 			return false;
 		}
-		cell.items.remove(bind);
-		cell.itemCount = cell.itemCount - 1;
 		if (cell.itemCount == 0) {
-			nonEmptyCells.remove(cell);
+			nonEmptyCellCount--;
 		}
 		return true;
 	}
 
-	private ObjectMap<ActionBind, Boolean> getDictItemsInCellRect(float cl, float ct, float cw, float ch,
-			ObjectMap<ActionBind, Boolean> result) {
+	private int nextQueryStamp() {
+		if (++queryStamp == Integer.MAX_VALUE) {
+			for (int i = 0, size = cells.capacity(); i < size; i++) {
+				Cell cell = cells.getValueAt(i);
+				if (cell != null) {
+					cell.visitStamp = 0;
+				}
+			}
+			queryStamp = 1;
+		}
+		return queryStamp;
+	}
+
+	/**
+	 * 以ObjectMap去重,结果的顺序与以前的实现一致(Collisions在同一时间的碰撞之间保持加入顺序)
+	 */
+	@SuppressWarnings("deprecation")
+	private TArray<Item> getItemsInCellRect(int cl, int ct, int cw, int ch, TArray<Item> result) {
 		if (closed) {
 			return null;
 		}
 		result.clear();
-		for (float cy = ct; cy < ct + ch; cy++) {
-			if (rows.containsKey(cy)) {
-				ObjectMap<Float, Cell> row = rows.get(cy);
-				for (float cx = cl; cx < cl + cw; cx++) {
-					if (row.containsKey(cx)) {
-						Cell cell = row.get(cx);
-						if (cell.itemCount > 0) {
-							Keys<ActionBind> keys = cell.items.keys();
-							for (ActionBind bind : keys) {
-								result.put(bind, true);
-							}
-						}
+		final ObjectMap<ActionBind, Boolean> dict = project_dictItemsInCellRect;
+		dict.clear();
+		for (int cy = ct; cy < ct + ch; cy++) {
+			for (int cx = cl; cx < cl + cw; cx++) {
+				Cell cell = cells.get(cx, cy);
+				if (cell != null && cell.itemCount > 0) {
+					for (ObjectMap.Keys<ActionBind> keys = cell.items.keys(); keys.hasNext();) {
+						dict.put(keys.next(), true);
 					}
 				}
 			}
 		}
+		for (ObjectMap.Keys<ActionBind> keys = dict.keys(); keys.hasNext();) {
+			result.add(rects.get(keys.next()));
+		}
 		return result;
 	}
 
@@ -281,28 +373,10 @@ public class CollisionWorld implements LRelease {
 			return null;
 		}
 		result.clear();
-		getCellsTouchedBySegment_visited.clear();
-		final TArray<Cell> visited = getCellsTouchedBySegment_visited;
-
-		grid.traverse(cellSizeX, cellSizeY, x1, y1, x2, y2, new TraverseCallback() {
-			@Override
-			public void onTraverse(float cx, float cy) {
-				if (!rows.containsKey(cy)) {
-					return;
-				}
-				ObjectMap<Float, Cell> row = rows.get(cy);
-				if (!row.containsKey(cx)) {
-					return;
-				}
-				Cell cell = row.get(cx);
-				if (visited.contains(cell)) {
-					return;
-				}
-				visited.add(cell);
-				result.add(cell);
-			}
-		});
-
+		getCellsTouchedBySegment_stamp = nextQueryStamp();
+		getCellsTouchedBySegment_result = result;
+		grid.traverse(cellSizeX, cellSizeY, x1, y1, x2, y2, getCellsTouchedBySegment_callback);
+		getCellsTouchedBySegment_result = null;
 		return result;
 	}
 
@@ -317,11 +391,6 @@ public class CollisionWorld implements LRelease {
 			return null;
 		}
 		collisions.clear();
-		TArray<ActionBind> visited = project_visited;
-		visited.clear();
-		if (bind != null) {
-			visited.add(bind);
-		}
 		float tl = MathUtils.min(goalX, x);
 		float tt = MathUtils.min(goalY, y);
 		float tr = MathUtils.max(goalX + w, x + w);
@@ -331,27 +400,28 @@ public class CollisionWorld implements LRelease {
 		float th = tb - tt;
 
 		grid.toCellRect(cellSizeX, cellSizeY, tl, tt, tw, th, project_c);
-		float cl = project_c.x, ct = project_c.y, cw = project_c.width, ch = project_c.height;
-		ObjectMap<ActionBind, Boolean> dictItemsInCellRect = getDictItemsInCellRect(cl, ct, cw, ch,
-				project_dictItemsInCellRect);
-		for (ActionBind other : dictItemsInCellRect.keys()) {
-			if (!visited.contains(other)) {
-				visited.add(other);
-				CollisionResult response = filter.filter(bind, other);
-				if (response != null) {
-					RectF o = getRect(other);
-					float ox = o.x, oy = o.y, ow = o.width, oh = o.height;
-					CollisionData col = detectCollision(x, y, w, h, ox, oy, ow, oh, goalX, goalY);
-
-					if (col != null) {
-						collisions.add(col.overlaps, col.ti, col.move.x, col.move.y, col.normal.x, col.normal.y,
-								col.touch.x, col.touch.y, col.itemRect.x, col.itemRect.y, col.itemRect.width,
-								col.itemRect.height, col.otherRect.x, col.otherRect.y, col.otherRect.width,
-								col.otherRect.height, bind, other, response);
-					}
+		int cl = (int) project_c.x, ct = (int) project_c.y, cw = (int) project_c.width, ch = (int) project_c.height;
+		TArray<Item> itemsInCellRect = getItemsInCellRect(cl, ct, cw, ch, project_itemsInCellRect);
+		for (int i = 0, n = itemsInCellRect.size; i < n; i++) {
+			Item o = itemsInCellRect.get(i);
+			ActionBind other = o.bind;
+			if (other == bind) {
+				continue;
+			}
+			CollisionResult response = filter.filter(bind, other);
+			if (response != null) {
+				float ox = o.x, oy = o.y, ow = o.width, oh = o.height;
+				CollisionData col = detectCollision(x, y, w, h, ox, oy, ow, oh, goalX, goalY);
+
+				if (col != null) {
+					collisions.add(col.overlaps, col.ti, col.move.x, col.move.y, col.normal.x, col.normal.y,
+							col.touch.x, col.touch.y, col.itemRect.x, col.itemRect.y, col.itemRect.width,
+							col.itemRect.height, col.otherRect.x, col.otherRect.y, col.otherRect.width,
+							col.otherRect.height, bind, other, response);
 				}
 			}
 		}
+		itemsInCellRect.clear();
 		if (tileMode) {
 			collisions.sort();
 		}
@@ -369,15 +439,14 @@ public class CollisionWorld implements LRelease {
 		if (closed) {
 			return 0;
 		}
-		int count = 0;
-		for (ObjectMap<Float, Cell> row : rows.values()) {
-			for (Float x : row.keys()) {
-				if (x != null) {
-					count++;
-				}
-			}
+		return cells.size();
+	}
+
+	public int countNonEmptyCells() {
+		if (closed) {
+			return 0;
 		}
-		return count;
+		return nonEmptyCellCount;
 	}
 
 	public boolean hasItem(ActionBind bind) {
@@ -430,12 +499,13 @@ public class CollisionWorld implements LRelease {
 		if (gameScreen != null) {
 			gameScreen.add(bind);
 		}
-		rects.put(bind, new RectF(x, y, w, h));
+		Item item = new Item(bind, x, y, w, h);
+		rects.put(bind, item);
 		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, add_c);
-		float cl = add_c.x, ct = add_c.y, cw = add_c.width, ch = add_c.height;
-		for (float cy = ct; cy < ct + ch; cy++) {
-			for (float cx = cl; cx < cl + cw; cx++) {
-				addItemToCell(bind, cx, cy);
+		int cl = (int) add_c.x, ct = (int) add_c.y, cw = (int) add_c.width, ch = (int) add_c.height;
+		for (int cy = ct; cy < ct + ch; cy++) {
+			for (int cx = cl; cx < cl + cw; cx++) {
+				addItemToCell(item, cx, cy);
 			}
 		}
 		return bind;
@@ -445,18 +515,21 @@ public class CollisionWorld implements LRelease {
 		if (closed) {
 			return;
 		}
-		RectF rect = getRect(bind);
-		float x = rect.x, y = rect.y, w = rect.width, h = rect.height;
+		Item item = rects.get(bind);
+		if (item == null) {
+			return;
+		}
+		float x = item.x, y = item.y, w = item.width, h = item.height;
 		if (gameScreen != null) {
 			gameScreen.remove(bind);
 		}
 		rects.remove(bind);
 		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, remove_c);
-		float cl = remove_c.x, ct = remove_c.y, cw = remove_c.width, ch = remove_c.height;
+		int cl = (int) remove_c.x, ct = (int) remove_c.y, cw = (int) remove_c.width, ch = (int) remove_c.height;
 
-		for (float cy = ct; cy < ct + ch; cy++) {
-			for (float cx = cl; cx < cl + cw; cx++) {
-				removeItemFromCell(bind, cx, cy);
+		for (int cy = ct; cy < ct + ch; cy++) {
+			for (int cx = cl; cx < cl + cw; cx++) {
+				removeItemFromCell(item, cx, cy);
 			}
 		}
 	}
@@ -474,7 +547,10 @@ public class CollisionWorld implements LRelease {
 		if (closed) {
 			return;
 		}
-		RectF rect = getRect(bind);
+		Item rect = rects.get(bind);
+		if (rect == null) {
+			return;
+		}
 		float x1 = rect.x, y1 = rect.y, w1 = rect.width, h1 = rect.height;
 		if (x1 != x2 || y1 != y2 || w1 != w2 || h1 != h2) {
 
@@ -482,28 +558,28 @@ public class CollisionWorld implements LRelease {
 			RectF c1 = grid.toCellRect(cellSizeX, cellSizeY, x1, y1, w1, h1, update_c1);
 			RectF c2 = grid.toCellRect(cellSizeX, cellSizeY, x2, y2, w2, h2, update_c2);
 
-			float cl1 = c1.x, ct1 = c1.y, cw1 = c1.width, ch1 = c1.height;
-			float cl2 = c2.x, ct2 = c2.y, cw2 = c2.width, ch2 = c2.height;
+			int cl1 = (int) c1.x, ct1 = (int) c1.y, cw1 = (int) c1.width, ch1 = (int) c1.height;
+			int cl2 = (int) c2.x, ct2 = (int) c2.y, cw2 = (int) c2.width, ch2 = (int) c2.height;
 
 			if (cl1 != cl2 || ct1 != ct2 || cw1 != cw2 || ch1 != ch2) {
-				float cr1 = cl1 + cw1 - 1, cb1 = ct1 + ch1 - 1;
-				float cr2 = cl2 + cw2 - 1, cb2 = ct2 + ch2 - 1;
+				int cr1 = cl1 + cw1 - 1, cb1 = ct1 + ch1 - 1;
+				int cr2 = cl2 + cw2 - 1, cb2 = ct2 + ch2 - 1;
 				boolean cyOut;
 
-				for (float cy = ct1; cy <= cb1; cy++) {
+				for (int cy = ct1; cy <= cb1; cy++) {
 					cyOut = cy < ct2 || cy > cb2;
-					for (float cx = cl1; cx <= cr1; cx++) {
+					for (int cx = cl1; cx <= cr1; cx++) {
 						if (cyOut || cx < cl2 || cx > cr2) {
-							removeItemFromCell(bind, cx, cy);
+							removeItemFromCell(rect, cx, cy);
 						}
 					}
 				}
 
-				for (float cy = ct2; cy <= cb2; cy++) {
+				for (int cy = ct2; cy <= cb2; cy++) {
 					cyOut = cy < ct1 || cy > cb1;
-					for (float cx = cl2; cx <= cr2; cx++) {
-						if (cyOut || cx < cl1 || cy > cr1) {
-							addItemToCell(bind, cx, cy);
+					for (int cx = cl2; cx <= cr2; cx++) {
+						if (cyOut || cx < cl1 || cx > cr1) {
+							addItemToCell(rect, cx, cy);
 						}
 					}
 				}
@@ -525,19 +601,8 @@ public class CollisionWorld implements LRelease {
 		final TArray<ActionBind> visited = check_visited;
 		visited.clear();
 		visited.add(bind);
-
-		CollisionFilter visitedFilter = new CollisionFilter() {
-			@Override
-			public CollisionResult filter(ActionBind bind, ActionBind other) {
-				if (visited.contains(other)) {
-					return null;
-				}
-				if (filter == null) {
-					return worldCollisionFilter.filter(bind, other);
-				}
-				return filter.filter(bind, other);
-			}
-		};
+		check_filter = filter;
+		CollisionFilter visitedFilter = check_visitedFilter;
 
 		RectF rect = getRect(bind);
 		float x = rect.x, y = rect.y, w = rect.width, h = rect.height;
@@ -608,22 +673,19 @@ public class CollisionWorld implements LRelease {
 		if (rects != null) {
 			rects.clear();
 		}
-		if (rows != null) {
-			rows.clear();
-			rows = null;
-		}
-		if (nonEmptyCells != null) {
-			nonEmptyCells.clear();
-			nonEmptyCells = null;
+		if (cells != null) {
+			cells.clear();
+			cells = null;
 		}
+		nonEmptyCellCount = 0;
 		if (collisionManager != null) {
 			collisionManager.clear();
 			collisionManager = null;
 		}
-		getCellsTouchedBySegment_visited.clear();
-		project_visited.clear();
-		project_dictItemsInCellRect.clear();
+		getCellsTouchedBySegment_result = null;
+		project_itemsInCellRect.clear();
 		check_visited.clear();
+		check_filter = null;
 		check_cols.clear();
 		check_projectedCols.clear();
 	}
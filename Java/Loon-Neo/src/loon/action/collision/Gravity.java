@@ -62,6 +62,8 @@ public class Gravity implements LRelease {
 
 	public RectBox bounds = new RectBox();
 
+	int broadPhaseId = -1;
+
 	public Gravity(ActionBind o) {
 		this(LSystem.UNKNOWN, o);
 	}
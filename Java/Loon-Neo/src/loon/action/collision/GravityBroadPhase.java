@@ -0,0 +1,444 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.collision;
+
+import loon.LRelease;
+import loon.utils.IntArray;
+import loon.utils.LongMap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * GravityHandler使用的宽检测(Sort and Sweep),在x轴上保存排序后的端点数组,每帧以插入排序修正(物体每帧移动很少时接近线性),
+ * 然后扫描一次得出所有包围盒重叠的物体对,并与上一帧的结果比较,产生开始,持续与结束三种接触事件.
+ */
+public class GravityBroadPhase implements LRelease {
+
+	/**
+	 * 接触事件监听
+	 */
+	public static interface GravityContact {
+
+		public void begin(Gravity a, Gravity b);
+
+		public void stay(Gravity a, Gravity b);
+
+		public void end(Gravity a, Gravity b);
+
+	}
+
+	private static class Pair {
+
+		Gravity a, b;
+
+		long key;
+
+		int frame;
+
+		boolean fresh;
+
+	}
+
+	private Gravity[] bodies = new Gravity[16];
+
+	private int[] orders = new int[16];
+
+	private int[] seen = new int[16];
+
+	private float[] minXs = new float[16], maxXs = new float[16], minYs = new float[16], maxYs = new float[16];
+
+	private int bodyCapacity;
+
+	private final IntArray freeIds = new IntArray();
+
+	private float[] endValues = new float[32];
+
+	private int[] endIds = new int[32];
+
+	private int endCount;
+
+	private final LongMap<Pair> pairs = new LongMap<Pair>(256);
+
+	private final TArray<Pair> pairList = new TArray<Pair>(256);
+
+	private final TArray<Pair> freePairs = new TArray<Pair>();
+
+	private final IntArray active = new IntArray(64);
+
+	private int frame;
+
+	private int bodyCount;
+
+	private float maxExtentX;
+
+	private int lastSwapCount;
+
+	private int lastTestCount;
+
+	private boolean removed;
+
+	private int allocId(Gravity g) {
+		int id;
+		if (freeIds.length > 0) {
+			id = freeIds.pop();
+		} else {
+			id = bodyCapacity++;
+			if (id >= bodies.length) {
+				final int size = bodies.length * 2;
+				Gravity[] newBodies = new Gravity[size];
+				System.arraycopy(bodies, 0, newBodies, 0, bodies.length);
+				bodies = newBodies;
+				orders = copyOf(orders, size);
+				seen = copyOf(seen, size);
+				minXs = copyOf(minXs, size);
+				maxXs = copyOf(maxXs, size);
+				minYs = copyOf(minYs, size);
+				maxYs = copyOf(maxYs, size);
+			}
+		}
+		bodies[id] = g;
+		g.broadPhaseId = id;
+		if (endCount + 2 > endValues.length) {
+			endValues = copyOf(endValues, endValues.length * 2);
+			endIds = copyOf(endIds, endIds.length * 2);
+		}
+		endIds[endCount++] = id << 1;
+		endIds[endCount++] = (id << 1) | 1;
+		bodyCount++;
+		return id;
+	}
+
+	private static int[] copyOf(int[] src, int size) {
+		int[] dst = new int[size];
+		System.arraycopy(src, 0, dst, 0, MathUtils.min(src.length, size));
+		return dst;
+	}
+
+	private static float[] copyOf(float[] src, int size) {
+		float[] dst = new float[size];
+		System.arraycopy(src, 0, dst, 0, MathUtils.min(src.length, size));
+		return dst;
+	}
+
+	/**
+	 * 以当前物体列表刷新端点数据并重新扫描,返回值为当前重叠的物体对数量
+	 *
+	 * @param objects
+	 * @param syncBind
+	 *            是否以ActionBind的当前位置刷新Gravity.bounds
+	 * @param listener
+	 * @return
+	 */
+	public int update(TArray<Gravity> objects, boolean syncBind, GravityContact listener) {
+		frame++;
+		maxExtentX = 0f;
+		for (int i = 0; i < objects.size; i++) {
+			final Gravity g = objects.get(i);
+			if (g == null) {
+				continue;
+			}
+			if (syncBind && g.bind != null) {
+				g.bounds.setBounds(g.bind.getX(), g.bind.getY(), g.bind.getWidth(), g.bind.getHeight());
+			}
+			int id = g.broadPhaseId;
+			if (id < 0 || id >= bodyCapacity || bodies[id] != g) {
+				id = allocId(g);
+			}
+			orders[id] = i;
+			seen[id] = frame;
+			minXs[id] = g.bounds.x;
+			maxXs[id] = g.bounds.x + g.bounds.width;
+			minYs[id] = g.bounds.y;
+			maxYs[id] = g.bounds.y + g.bounds.height;
+			maxExtentX = MathUtils.max(maxExtentX, g.bounds.width);
+		}
+		removed = false;
+		for (int id = 0; id < bodyCapacity; id++) {
+			if (bodies[id] != null && seen[id] != frame) {
+				if (bodies[id].broadPhaseId == id) {
+					bodies[id].broadPhaseId = -1;
+				}
+				bodies[id] = null;
+				freeIds.add(id);
+				bodyCount--;
+				removed = true;
+			}
+		}
+		if (removed) {
+			int count = 0;
+			for (int i = 0; i < endCount; i++) {
+				if (bodies[endIds[i] >> 1] != null) {
+					endIds[count] = endIds[i];
+					endValues[count] = endValues[i];
+					count++;
+				}
+			}
+			endCount = count;
+		}
+		for (int i = 0; i < endCount; i++) {
+			final int id = endIds[i] >> 1;
+			endValues[i] = (endIds[i] & 1) == 0 ? minXs[id] : maxXs[id];
+		}
+		sortEndpoints();
+		sweep();
+		return dispatch(listener);
+	}
+
+	private boolean before(float value, int end, float otherValue, int otherEnd) {
+		if (value != otherValue) {
+			return value < otherValue;
+		}
+		// 数值相同时结束端点排在开始端点之前,仅接触边缘不视为重叠(同一物体除外)
+		if ((end >> 1) == (otherEnd >> 1)) {
+			return (end & 1) < (otherEnd & 1);
+		}
+		return (end & 1) > (otherEnd & 1);
+	}
+
+	private void sortEndpoints() {
+		int swaps = 0;
+		for (int i = 1; i < endCount; i++) {
+			final float value = endValues[i];
+			final int end = endIds[i];
+			int j = i - 1;
+			for (; j >= 0 && before(value, end, endValues[j], endIds[j]); j--) {
+				endValues[j + 1] = endValues[j];
+				endIds[j + 1] = endIds[j];
+				swaps++;
+			}
+			endValues[j + 1] = value;
+			endIds[j + 1] = end;
+		}
+		lastSwapCount = swaps;
+	}
+
+	private void sweep() {
+		int tests = 0;
+		active.clear();
+		for (int i = 0; i < endCount; i++) {
+			final int id = endIds[i] >> 1;
+			if ((endIds[i] & 1) == 0) {
+				final float minY = minYs[id];
+				final float maxY = maxYs[id];
+				for (int j = 0; j < active.length; j++) {
+					final int other = active.get(j);
+					tests++;
+					if (minY < maxYs[other] && minYs[other] < maxY) {
+						addPair(id, other);
+					}
+				}
+				active.add(id);
+			} else {
+				active.removeValue(id);
+			}
+		}
+		lastTestCount = tests;
+	}
+
+	private void addPair(int id1, int id2) {
+		final long key = LongMap.pack(MathUtils.min(id1, id2), MathUtils.max(id1, id2));
+		Pair pair = pairs.get(key);
+		if (pair == null) {
+			pair = freePairs.size > 0 ? freePairs.pop() : new Pair();
+			pair.key = key;
+			pair.fresh = true;
+			if (orders[id1] < orders[id2]) {
+				pair.a = bodies[id1];
+				pair.b = bodies[id2];
+			} else {
+				pair.a = bodies[id2];
+				pair.b = bodies[id1];
+			}
+			pairs.put(key, pair);
+			pairList.add(pair);
+		}
+		pair.frame = frame;
+	}
+
+	private int dispatch(GravityContact listener) {
+		for (int i = 0; i < pairList.size;) {
+			final Pair pair = pairList.get(i);
+			if (pair.frame == frame) {
+				if (listener != null) {
+					if (pair.fresh) {
+						listener.begin(pair.a, pair.b);
+					} else {
+						listener.stay(pair.a, pair.b);
+					}
+				}
+				pair.fresh = false;
+				i++;
+			} else {
+				if (listener != null) {
+					listener.end(pair.a, pair.b);
+				}
+				pairs.remove(pair.key);
+				pairList.set(i, pairList.get(pairList.size - 1));
+				pairList.pop();
+				pair.a = pair.b = null;
+				freePairs.add(pair);
+			}
+		}
+		return pairList.size;
+	}
+
+	private int lowerBound(float value) {
+		int low = 0, high = endCount;
+		for (; low < high;) {
+			final int mid = (low + high) >>> 1;
+			if (endValues[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 以Gravity.bounds的当前值刷新上次update后移动过的物体端点(不重新扫描物体对),返回移动过的物体数量
+	 *
+	 * @return
+	 */
+	public int refresh() {
+		int moved = 0;
+		float extent = 0f;
+		for (int id = 0; id < bodyCapacity; id++) {
+			final Gravity g = bodies[id];
+			if (g == null) {
+				continue;
+			}
+			final float minX = g.bounds.x;
+			final float maxX = g.bounds.x + g.bounds.width;
+			final float minY = g.bounds.y;
+			final float maxY = g.bounds.y + g.bounds.height;
+			if (minXs[id] != minX || maxXs[id] != maxX || minYs[id] != minY || maxYs[id] != maxY) {
+				minXs[id] = minX;
+				maxXs[id] = maxX;
+				minYs[id] = minY;
+				maxYs[id] = maxY;
+				moved++;
+			}
+			extent = MathUtils.max(extent, g.bounds.width);
+		}
+		if (moved > 0) {
+			maxExtentX = extent;
+			for (int i = 0; i < endCount; i++) {
+				final int id = endIds[i] >> 1;
+				endValues[i] = (endIds[i] & 1) == 0 ? minXs[id] : maxXs[id];
+			}
+			sortEndpoints();
+		}
+		return moved;
+	}
+
+	/**
+	 * 查询与指定区域相交(包含边缘接触)的物体,结果按物体在GravityHandler中的顺序排列,查询前会先刷新移动过的物体
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param result
+	 * @return
+	 */
+	public TArray<Gravity> query(float x, float y, float w, float h, TArray<Gravity> result) {
+		result.clear();
+		refresh();
+		final float right = x + w;
+		final float bottom = y + h;
+		for (int i = lowerBound(x - maxExtentX); i < endCount && endValues[i] <= right; i++) {
+			if ((endIds[i] & 1) != 0) {
+				continue;
+			}
+			final int id = endIds[i] >> 1;
+			if (maxXs[id] >= x && minYs[id] <= bottom && maxYs[id] >= y) {
+				final Gravity g = bodies[id];
+				int j = result.size - 1;
+				result.add(g);
+				for (; j >= 0 && orders[result.get(j).broadPhaseId] > orders[id]; j--) {
+					result.set(j + 1, result.get(j));
+				}
+				result.set(j + 1, g);
+			}
+		}
+		return result;
+	}
+
+	public boolean isOverlapping(Gravity a, Gravity b) {
+		if (a == null || b == null || a.broadPhaseId < 0 || b.broadPhaseId < 0) {
+			return false;
+		}
+		final long key = LongMap.pack(MathUtils.min(a.broadPhaseId, b.broadPhaseId),
+				MathUtils.max(a.broadPhaseId, b.broadPhaseId));
+		final Pair pair = pairs.get(key);
+		return pair != null && pair.frame == frame;
+	}
+
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	public int getPairCount() {
+		return pairList.size;
+	}
+
+	/**
+	 * 上次更新中插入排序移动端点的次数,物体大致有序时应远小于物体数量
+	 *
+	 * @return
+	 */
+	public int getLastSwapCount() {
+		return lastSwapCount;
+	}
+
+	/**
+	 * 上次扫描中进行y轴检测的次数
+	 *
+	 * @return
+	 */
+	public int getLastTestCount() {
+		return lastTestCount;
+	}
+
+	public void clear() {
+		for (int id = 0; id < bodyCapacity; id++) {
+			if (bodies[id] != null && bodies[id].broadPhaseId == id) {
+				bodies[id].broadPhaseId = -1;
+			}
+			bodies[id] = null;
+		}
+		bodyCapacity = 0;
+		bodyCount = 0;
+		endCount = 0;
+		freeIds.clear();
+		pairs.clear();
+		pairList.clear();
+		freePairs.clear();
+		active.clear();
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+}
@@ -23,6 +23,7 @@ package loon.action.collision;
 import loon.LRelease;
 import loon.LSystem;
 import loon.action.ActionBind;
+import loon.action.collision.GravityBroadPhase.GravityContact;
 import loon.geom.RectBox;
 import loon.geom.Vector2f;
 import loon.utils.Easing.EasingMode;
@@ -62,6 +63,12 @@ public class GravityHandler implements LRelease {
 
 	private GravityUpdate listener;
 
+	private GravityBroadPhase broadPhase;
+
+	private GravityContact contactListener;
+
+	private boolean broadPhaseDirty = true;
+
 	private boolean closed;
 
 	private int width, height;
@@ -96,6 +103,8 @@ public class GravityHandler implements LRelease {
 
 	private final TArray<Gravity> collisionObjects = new TArray<Gravity>();
 
+	private final TArray<Gravity> queryObjects = new TArray<Gravity>();
+
 	public GravityHandler() {
 		this(EasingMode.Linear, 1f);
 	}
@@ -170,6 +179,15 @@ public class GravityHandler implements LRelease {
 
 		final float delta = MathUtils.max(elapsedTime / 1000f, LSystem.MIN_SECONE_SPEED_FIXED) * easeTimer.getProgress();
 
+		updateObjects(delta);
+
+		if (broadPhase != null) {
+			broadPhase.update(objects, syncActionBind, contactListener);
+			broadPhaseDirty = false;
+		}
+	}
+
+	private void updateObjects(final float delta) {
 		for (Gravity g : objects) {
 
 			if (g.enabled && g.bind != null) {
@@ -296,6 +314,10 @@ public class GravityHandler implements LRelease {
 			return;
 		}
 		final int additionCount = pendingAdd.size;
+		final int removalCount = pendingRemove.size;
+		if (additionCount > 0 || removalCount > 0) {
+			broadPhaseDirty = true;
+		}
 		if (additionCount > 0) {
 			for (int i = 0; i < additionCount; i++) {
 				Gravity o = pendingAdd.get(i);
@@ -303,7 +325,6 @@ public class GravityHandler implements LRelease {
 			}
 			pendingAdd.clear();
 		}
-		final int removalCount = pendingRemove.size;
 		if (removalCount > 0) {
 			for (int i = 0; i < removalCount; i++) {
 				Gravity o = pendingRemove.get(i);
@@ -392,9 +413,10 @@ public class GravityHandler implements LRelease {
 				}
 			}
 		}
-		size = objects.size;
+		final TArray<Gravity> list = queryObjects(x, y, w, h);
+		size = list.size;
 		for (int i = 0; i < size; i++) {
-			Gravity g = objects.get(i);
+			Gravity g = list.get(i);
 			if (g.bounds != null) {
 				if (g.bounds.intersects(x, y, w, h)) {
 					return g;
@@ -453,9 +475,10 @@ public class GravityHandler implements LRelease {
 				}
 			}
 		}
-		size = objects.size;
+		final TArray<Gravity> list = queryObjects(x, y, w, h);
+		size = list.size;
 		for (int i = 0; i < size; i++) {
-			Gravity g = objects.get(i);
+			Gravity g = list.get(i);
 			if (g.bounds != null) {
 				if (g.bounds.contains(x, y, w, h)) {
 					return g;
@@ -465,6 +488,20 @@ public class GravityHandler implements LRelease {
 		return null;
 	}
 
+	private boolean isBroadPhaseReady() {
+		return broadPhase != null && !broadPhaseDirty;
+	}
+
+	/**
+	 * 宽检测有效时仅返回与指定区域相交的物体(以物体当前的bounds为准),否则返回全部物体
+	 */
+	private TArray<Gravity> queryObjects(float x, float y, float w, float h) {
+		if (!isBroadPhaseReady()) {
+			return objects;
+		}
+		return broadPhase.query(x, y, w, h, queryObjects);
+	}
+
 	public boolean contains(ActionBind g, float x, float y, float width, float height) {
 		if (g == null) {
 			return false;
@@ -642,7 +679,10 @@ public class GravityHandler implements LRelease {
 
 		collisionObjects.clear();
 
-		for (Gravity b : otherObjects) {
+		final TArray<Gravity> candidates = (otherObjects == objects && pathBounds != null)
+				? queryObjects(pathBounds.x, pathBounds.y, pathBounds.width, pathBounds.height)
+				: otherObjects;
+		for (Gravity b : candidates) {
 			if (b.bounds.overlaps(pathBounds)) {
 				collisionObjects.add(b);
 			}
@@ -854,6 +894,55 @@ public class GravityHandler implements LRelease {
 		return this;
 	}
 
+	/**
+	 * 启用或关闭宽检测(Sort and Sweep),启用后每次update会刷新物体间的重叠数据并产生接触事件,
+	 * intersects,contains以及getCollisionBetweenObjects也将只检测候选物体
+	 *
+	 * @param enabled
+	 * @return
+	 */
+	public GravityHandler setBroadPhase(boolean enabled) {
+		if (enabled) {
+			if (broadPhase == null) {
+				broadPhase = new GravityBroadPhase();
+				broadPhaseDirty = true;
+			}
+		} else if (broadPhase != null) {
+			broadPhase.close();
+			broadPhase = null;
+		}
+		return this;
+	}
+
+	public boolean isBroadPhase() {
+		return broadPhase != null;
+	}
+
+	public GravityBroadPhase getBroadPhase() {
+		return broadPhase;
+	}
+
+	/**
+	 * 设定接触事件监听,启用宽检测后生效
+	 *
+	 * @param contact
+	 * @return
+	 */
+	public GravityHandler onContact(GravityContact contact) {
+		this.contactListener = contact;
+		if (contact != null) {
+			setBroadPhase(true);
+		}
+		return this;
+	}
+
+	public boolean isOverlapping(Gravity a, Gravity b) {
+		if (!isBroadPhaseReady()) {
+			return intersect(a, b);
+		}
+		return broadPhase.isOverlapping(a, b);
+	}
+
 	public CollisionFilter getCollisionFilter() {
 		return worldCollisionFilter;
 	}
@@ -910,6 +999,12 @@ public class GravityHandler implements LRelease {
 			gravityMap.clear();
 			gravityMap = null;
 		}
+		if (broadPhase != null) {
+			broadPhase.close();
+			broadPhase = null;
+		}
+		contactListener = null;
+		queryObjects.clear();
 		lazyObjects = null;
 		closed = true;
 	}
@@ -58,6 +58,12 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 
 	}
 
+	public final static int SEARCH_ASTAR = 0;
+
+	public final static int SEARCH_JPS = 1;
+
+	public final static int SEARCH_HPA = 2;
+
 	public final static AStarFindHeuristic ASTAR_CLOSEST = new Closest();
 
 	public final static AStarFindHeuristic ASTAR_CLOSEST_SQUARED = new ClosestSquared();
@@ -82,6 +88,13 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 
 	private final static IntMap<TArray<Vector2f>> FINDER_LAZY = new IntMap<TArray<Vector2f>>(100);
 
+	/**
+	 * 静态find使用的空闲搜索器,每次搜索独占一个(搜索过程不加锁,多线程同时寻径时各自使用不同的搜索器),用完放回以复用其内部数组
+	 */
+	private final static TArray<AStarSearch> FINDER_SEARCHES = new TArray<AStarSearch>();
+
+	private final static int DEFAULT_OVERFLOW = 4096;
+
 	private final static int makeLazyKey(AStarFindHeuristic heuristic, int[][] map, int[] limits, int sx, int sy,
 			int ex, int ey, boolean flag) {
 		int hashCode = 1;
@@ -106,37 +119,57 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 		return hashCode;
 	}
 
+	private final static AStarSearch obtainSearch(AStarFindHeuristic heuristic) {
+		AStarSearch search = null;
+		synchronized (FINDER_SEARCHES) {
+			if (FINDER_SEARCHES.size > 0) {
+				search = FINDER_SEARCHES.pop();
+			}
+		}
+		if (search == null) {
+			return new AStarSearch(heuristic);
+		}
+		return search.setHeuristic(heuristic);
+	}
+
+	private final static void freeSearch(AStarSearch search) {
+		synchronized (FINDER_SEARCHES) {
+			if (FINDER_SEARCHES.size < LSystem.getParallelism()) {
+				FINDER_SEARCHES.add(search);
+			}
+		}
+	}
+
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic, int[][] maps, int[] limits, int x1, int y1,
 			int x2, int y2, boolean flag) {
 		heuristic = (heuristic == null ? ASTAR_MANHATTAN : heuristic);
+		final int key = makeLazyKey(heuristic, maps, limits, x1, y1, x2, y2, flag);
+		TArray<Vector2f> result = null;
 		synchronized (FINDER_LAZY) {
 			if (FINDER_LAZY.size >= LSystem.DEFAULT_MAX_CACHE_SIZE * 10) {
 				FINDER_LAZY.clear();
 			}
-			int key = makeLazyKey(heuristic, maps, limits, x1, y1, x2, y2, flag);
-			TArray<Vector2f> result = FINDER_LAZY.get(key);
-			if (result == null) {
-				AStarFinder astar = new AStarFinder(heuristic);
-				Field2D fieldMap = new Field2D(maps);
-				if (limits != null) {
-					fieldMap.setLimit(limits);
-				}
-				Vector2f start = new Vector2f(x1, y1);
-				Vector2f over = new Vector2f(x2, y2);
-				result = astar.calc(fieldMap, start, over, flag);
-				FINDER_LAZY.put(key, result);
-				astar.close();
+			result = FINDER_LAZY.get(key);
+		}
+		if (result == null) {
+			Field2D fieldMap = new Field2D(maps);
+			if (limits != null) {
+				fieldMap.setLimit(limits);
 			}
-			if (result != null) {
-				TArray<Vector2f> newResult = new TArray<Vector2f>();
-				newResult.addAll(result);
-				result = newResult;
+			final AStarSearch search = obtainSearch(heuristic);
+			try {
+				result = search.find(fieldMap, x1, y1, x2, y2, flag, false, DEFAULT_OVERFLOW);
+			} finally {
+				freeSearch(search);
 			}
-			if (result == null) {
-				return new TArray<Vector2f>();
+			synchronized (FINDER_LAZY) {
+				FINDER_LAZY.put(key, result);
 			}
-			return new TArray<Vector2f>(result);
 		}
+		if (result == null) {
+			return new TArray<Vector2f>();
+		}
+		return new TArray<Vector2f>(result);
 	}
 
 	public static TArray<Vector2f> find(int[][] maps, int x1, int y1, int x2, int y2, boolean flag) {
@@ -145,7 +178,7 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic, int[][] maps, int x1, int y1, int x2, int y2,
 			boolean flag) {
-		return find(heuristic, maps, x1, y1, x2, y2, flag);
+		return find(heuristic, maps, null, x1, y1, x2, y2, flag);
 	}
 
 	public static TArray<Vector2f> find(HexagonMap map, int x1, int y1, int x2, int y2, boolean flag) {
@@ -195,6 +228,16 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 
 	private AStarFindHeuristic findHeuristic;
 
+	private AStarSearch search;
+
+	private JumpPointSearch jumpSearch;
+
+	private int hierarchicalExpanded;
+
+	private int searchMode = SEARCH_ASTAR;
+
+	private boolean legacySearch;
+
 	public AStarFinder(AStarFindHeuristic heuristic) {
 		this(heuristic, false);
 	}
@@ -231,6 +274,7 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 		this.flying = find.flying;
 		this.flag = find.flag;
 		this.findHeuristic = find.findHeuristic;
+		this.searchMode = find.searchMode;
 	}
 
 	@Override
@@ -253,6 +297,32 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 	}
 
 	private TArray<Vector2f> calc(Field2D m, Vector2f start, Vector2f goal, boolean flag) {
+		if (!legacySearch && searchMode == SEARCH_JPS) {
+			if (jumpSearch == null) {
+				jumpSearch = new JumpPointSearch(findHeuristic);
+			} else {
+				jumpSearch.setHeuristic(findHeuristic);
+			}
+			return jumpSearch.find(m, start.x(), start.y(), goal.x(), goal.y(), flag, flying, overflow);
+		}
+		if (!legacySearch && searchMode == SEARCH_HPA && !flying) {
+			// 分层寻径器由地图持有,同一地图的寻径器共用一个抽象图
+			final HierarchicalSearch hpa = m.getHierarchicalSearch(flag);
+			synchronized (hpa) {
+				hpa.setHeuristic(findHeuristic);
+				final TArray<Vector2f> result = hpa.find(start.x(), start.y(), goal.x(), goal.y(), overflow);
+				hierarchicalExpanded = hpa.getExpandedCount();
+				return result;
+			}
+		}
+		if (!legacySearch) {
+			if (search == null) {
+				search = new AStarSearch(findHeuristic);
+			} else {
+				search.setHeuristic(findHeuristic);
+			}
+			return search.find(m, start.x(), start.y(), goal.x(), goal.y(), flag, flying, overflow);
+		}
 		if (start.equals(goal)) {
 			TArray<Vector2f> v = new TArray<Vector2f>();
 			v.add(start);
@@ -286,7 +356,7 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 		return astar(m, flag);
 	}
 
-	private int overflow = 4096;
+	private int overflow = DEFAULT_OVERFLOW;
 
 	public AStarFinder setOverflow(int over) {
 		this.overflow = over;
@@ -297,6 +367,51 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 		return this.overflow;
 	}
 
+	/**
+	 * 设定寻径模式,可选SEARCH_ASTAR(默认),SEARCH_JPS(跳点搜索),SEARCH_HPA(分层寻径,适合超大地图)
+	 * 
+	 * @param mode
+	 * @return
+	 */
+	public AStarFinder setSearchMode(int mode) {
+		this.searchMode = mode;
+		return this;
+	}
+
+	public int getSearchMode() {
+		return this.searchMode;
+	}
+
+	/**
+	 * 是否使用旧版(逐路径复制,线性插入开放列表)的寻径实现,默认使用AStarSearch
+	 * 
+	 * @param legacy
+	 * @return
+	 */
+	public AStarFinder setLegacySearch(boolean legacy) {
+		this.legacySearch = legacy;
+		return this;
+	}
+
+	public boolean isLegacySearch() {
+		return this.legacySearch;
+	}
+
+	/**
+	 * 返回上次检索展开的节点数量(旧版寻径时无效)
+	 * 
+	 * @return
+	 */
+	public int getExpandedCount() {
+		if (searchMode == SEARCH_JPS && jumpSearch != null) {
+			return jumpSearch.getExpandedCount();
+		}
+		if (searchMode == SEARCH_HPA && !flying) {
+			return hierarchicalExpanded;
+		}
+		return search == null ? 0 : search.getExpandedCount();
+	}
+
 	private TArray<Vector2f> astar(Field2D map, boolean flag) {
 		for (int j = 0; pathes.size > 0; j++) {
 			if (j > overflow) {
@@ -385,6 +500,14 @@ public class AStarFinder extends TileImplPathFind implements Updateable, LReleas
 				visitedCache.clear();
 				visitedCache = null;
 			}
+			if (search != null) {
+				search.clear();
+				search = null;
+			}
+			if (jumpSearch != null) {
+				jumpSearch.clear();
+				jumpSearch = null;
+			}
 			spath = null;
 			goal = null;
 			closed = true;
@@ -21,23 +21,16 @@
 package loon.action.map;
 
 import loon.geom.Vector2f;
-import loon.utils.LIterator;
-import loon.utils.SortedList;
 import loon.utils.TArray;
-import loon.utils.processes.GameProcessType;
-import loon.utils.processes.RealtimeProcess;
-import loon.utils.processes.RealtimeProcessManager;
-import loon.utils.timer.LTimerContext;
 
+/**
+ * 寻径任务池,异步请求交由AStarFinderService在工作线程中计算,并在游戏线程中回调结果
+ */
 public class AStarFinderPool {
 
 	private Field2D field;
 
-	private RealtimeProcess pathfinderProcess;
-
-	private boolean running;
-
-	private TaskQueue pathQueue = new TaskQueue();
+	private AStarFinderService service;
 
 	public AStarFinderPool(int[][] maps) {
 		this(new Field2D(maps));
@@ -45,50 +38,25 @@ public class AStarFinderPool {
 
 	public AStarFinderPool(Field2D field) {
 		this.field = field;
-		this.running = true;
-		pathfinderProcess = new RealtimeProcess("AStarProcess") {
-
-			@Override
-			public void run(LTimerContext time) {
-				if (running) {
-					emptyPathQueue();
-					kill();
-				}
-			}
-		};
-		pathfinderProcess.setProcessType(GameProcessType.Progress);
-		pathfinderProcess.sleep(1000000);
-		RealtimeProcessManager.get().addProcess(pathfinderProcess);
+		this.service = new AStarFinderService(field);
 	}
 
 	public void run() {
 
 	}
 
-	private void emptyPathQueue() {
-		AStarFinder task;
-		for (; (task = pathQueue.poll()) != null;) {
-			task.action(task);
-		}
+	public void stop() {
+		service.close();
 	}
 
-	public void stop() {
-		running = true;
-		pathfinderProcess.kill();
+	public AStarFinderService getService() {
+		return service;
 	}
 
 	public void search(AStarFindHeuristic heuristic, int startx, int starty,
 			int endx, int endy, boolean flying, boolean flag,
 			AStarFinderListener callback) {
-		AStarFinder pathfinderTask = new AStarFinder(heuristic, field, startx,
-				starty, endx, endy, flying, flag, callback);
-		AStarFinder existing = pathQueue.contains(pathfinderTask);
-		if (existing != null) {
-			existing.update(pathfinderTask);
-		} else {
-			pathQueue.add(pathfinderTask);
-		}
-		pathfinderProcess.kill();
+		service.search(heuristic, startx, starty, endx, endy, flying, flag, callback);
 	}
 
 	public void search(AStarFindHeuristic heuristic, int startx, int starty,
@@ -116,26 +84,4 @@ public class AStarFinderPool {
 		return result;
 	}
 
-	static class TaskQueue {
-
-		private SortedList<AStarFinder> queue = new SortedList<AStarFinder>();
-
-		public synchronized AStarFinder contains(AStarFinder element) {
-			for (LIterator<AStarFinder> it = queue.listIterator(); it.hasNext();) {
-				AStarFinder af = it.next();
-				if (af.equals(element)) {
-					return af;
-				}
-			}
-			return null;
-		}
-
-		public synchronized AStarFinder poll() {
-			return queue.poll();
-		}
-
-		public synchronized void add(AStarFinder t) {
-			queue.add(t);
-		}
-	}
 }
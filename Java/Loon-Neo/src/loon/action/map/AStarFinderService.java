@@ -0,0 +1,469 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.geom.Vector2f;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+import loon.utils.processes.GameProcessType;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 异步寻径服务,寻径请求在平台的异步线程(LSystem.invokeAsync)上对Field2D的只读快照进行计算,同时执行的任务数有上限,
+ * 同一请求者(AStarFinderListener)在结果返回前的重复请求会被合并为最新的一次,寻径结果则在游戏线程中按每帧的时间预算回调.
+ *
+ * 当平台不支持异步时(比如HTML5),寻径会在游戏线程中按同样的时间预算逐帧执行.
+ */
+public class AStarFinderService implements Field2DListener, LRelease {
+
+	private final static int STATE_IDLE = 0;
+
+	private final static int STATE_QUEUED = 1;
+
+	private final static int STATE_RUNNING = 2;
+
+	private static class PathRequest {
+
+		AStarFinderListener listener;
+
+		AStarFindHeuristic heuristic;
+
+		int startX, startY, endX, endY;
+
+		boolean flying, flag;
+
+		int state = STATE_IDLE;
+
+		boolean superseded;
+
+		long submitTime;
+
+	}
+
+	private static class SearchJob implements Runnable {
+
+		final AStarFinderService service;
+
+		final AStarSearch search = new AStarSearch(null);
+
+		final JumpPointSearch jumpSearch = new JumpPointSearch(null);
+
+		PathRequest request;
+
+		Field2D snapshot;
+
+		AStarFindHeuristic heuristic;
+
+		int startX, startY, endX, endY, overflow, mode;
+
+		boolean flying, flag;
+
+		TArray<Vector2f> result;
+
+		SearchJob(AStarFinderService s) {
+			this.service = s;
+		}
+
+		void bind(PathRequest req, Field2D field, int over, int searchMode) {
+			this.request = req;
+			this.snapshot = field;
+			this.heuristic = req.heuristic;
+			this.startX = req.startX;
+			this.startY = req.startY;
+			this.endX = req.endX;
+			this.endY = req.endY;
+			this.flying = req.flying;
+			this.flag = req.flag;
+			this.overflow = over;
+			this.mode = searchMode;
+			this.result = null;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (mode == AStarFinder.SEARCH_JPS) {
+					jumpSearch.setHeuristic(heuristic);
+					result = jumpSearch.find(snapshot, startX, startY, endX, endY, flag, flying, overflow);
+				} else {
+					search.setHeuristic(heuristic);
+					result = search.find(snapshot, startX, startY, endX, endY, flag, flying, overflow);
+				}
+			} catch (Throwable ex) {
+				LSystem.error("AStarFinderService search failure", ex);
+				result = null;
+			}
+			service.complete(this);
+		}
+
+	}
+
+	private final Field2D field;
+
+	private Field2D snapshot;
+
+	private boolean snapshotDirty;
+
+	private final ObjectMap<AStarFinderListener, PathRequest> requests = new ObjectMap<AStarFinderListener, PathRequest>();
+
+	private final TArray<PathRequest> pending = new TArray<PathRequest>();
+
+	private int pendingHead;
+
+	private final TArray<SearchJob> idleJobs = new TArray<SearchJob>();
+
+	private final TArray<SearchJob> completed = new TArray<SearchJob>();
+
+	private final TArray<SearchJob> delivering = new TArray<SearchJob>();
+
+	private final RealtimeProcess process;
+
+	private final int maxWorkers;
+
+	private int runningCount;
+
+	private int overflow = 4096;
+
+	private int searchMode = AStarFinder.SEARCH_ASTAR;
+
+	private long frameBudget = 2;
+
+	private boolean closed;
+
+	private long completedCount;
+
+	private long coalescedCount;
+
+	private long totalLatency;
+
+	private long maxLatency;
+
+	private int lastFrameDelivered;
+
+	public AStarFinderService(Field2D field) {
+		this(field, 2);
+	}
+
+	public AStarFinderService(Field2D field, int maxWorkers) {
+		this.field = field;
+		this.maxWorkers = MathUtils.max(1, maxWorkers);
+		for (int i = 0; i < this.maxWorkers; i++) {
+			idleJobs.add(new SearchJob(this));
+		}
+		this.snapshotDirty = true;
+		this.field.addListener(this);
+		this.process = new RealtimeProcess("AStarFinderService", 0) {
+
+			@Override
+			public void run(LTimerContext time) {
+				update();
+			}
+		};
+		this.process.setProcessType(GameProcessType.Progress);
+		RealtimeProcessManager.get().addProcess(process);
+	}
+
+	/**
+	 * 提交寻径请求,同一listener尚未返回结果的请求会被新的请求覆盖
+	 *
+	 * @param heuristic
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param flag
+	 * @param listener
+	 */
+	public void search(AStarFindHeuristic heuristic, int startX, int startY, int endX, int endY, boolean flying,
+			boolean flag, AStarFinderListener listener) {
+		if (closed || listener == null) {
+			return;
+		}
+		PathRequest req = requests.get(listener);
+		if (req == null) {
+			req = new PathRequest();
+			req.listener = listener;
+			requests.put(listener, req);
+		} else if (req.state != STATE_IDLE) {
+			coalescedCount++;
+		}
+		req.heuristic = heuristic;
+		req.startX = startX;
+		req.startY = startY;
+		req.endX = endX;
+		req.endY = endY;
+		req.flying = flying;
+		req.flag = flag;
+		req.submitTime = TimeUtils.millis();
+		if (req.state == STATE_IDLE) {
+			req.state = STATE_QUEUED;
+			pending.add(req);
+		} else if (req.state == STATE_RUNNING) {
+			req.superseded = true;
+		}
+	}
+
+	/**
+	 * 取消指定请求者尚未返回的寻径请求
+	 *
+	 * @param listener
+	 */
+	public void cancel(AStarFinderListener listener) {
+		PathRequest req = requests.remove(listener);
+		if (req != null) {
+			req.listener = null;
+		}
+	}
+
+	void complete(SearchJob job) {
+		synchronized (completed) {
+			completed.add(job);
+		}
+	}
+
+	/**
+	 * 由游戏线程每帧调用,分配待处理请求并回调已完成的结果
+	 */
+	public void update() {
+		if (closed) {
+			return;
+		}
+		final long begin = TimeUtils.millis();
+		lastFrameDelivered = 0;
+		if (LSystem.isAsyncSupported()) {
+			dispatch(true);
+			deliver(begin);
+		} else {
+			// 每帧至少执行一次,时间预算过小时也能继续推进
+			for (boolean first = true; pendingHead < pending.size
+					&& (first || TimeUtils.millis() - begin < frameBudget); first = false) {
+				dispatch(false);
+				deliver(begin);
+			}
+			// 上一帧因时间预算没有回调的结果,即使已没有待处理的请求也要回调
+			deliver(begin);
+		}
+	}
+
+	private void dispatch(boolean async) {
+		if (pendingHead >= pending.size) {
+			return;
+		}
+		if (snapshotDirty || snapshot == null) {
+			snapshot = field.cpy();
+			snapshotDirty = false;
+		}
+		for (; pendingHead < pending.size && runningCount < maxWorkers;) {
+			PathRequest req = pending.get(pendingHead++);
+			if (req.listener == null) {
+				continue;
+			}
+			SearchJob job = idleJobs.pop();
+			job.bind(req, snapshot, overflow, searchMode);
+			req.state = STATE_RUNNING;
+			req.superseded = false;
+			runningCount++;
+			if (async) {
+				LSystem.invokeAsync(job);
+			} else {
+				job.run();
+			}
+		}
+		if (pendingHead >= pending.size) {
+			pending.clear();
+			pendingHead = 0;
+		}
+	}
+
+	private void deliver(long begin) {
+		synchronized (completed) {
+			delivering.addAll(completed);
+			completed.clear();
+		}
+		int delivered = 0;
+		int index = 0;
+		for (; index < delivering.size; index++) {
+			if (delivered > 0 && TimeUtils.millis() - begin >= frameBudget) {
+				break;
+			}
+			SearchJob job = delivering.get(index);
+			PathRequest req = job.request;
+			TArray<Vector2f> result = job.result;
+			job.request = null;
+			job.snapshot = null;
+			job.result = null;
+			idleJobs.add(job);
+			runningCount--;
+			if (req.listener == null) {
+				continue;
+			}
+			if (req.superseded) {
+				req.superseded = false;
+				req.state = STATE_QUEUED;
+				pending.add(req);
+				continue;
+			}
+			req.state = STATE_IDLE;
+			// 已完成的请求不再保留,避免一次性的listener一直被引用
+			requests.remove(req.listener);
+			long latency = TimeUtils.millis() - req.submitTime;
+			totalLatency += latency;
+			maxLatency = MathUtils.max(maxLatency, latency);
+			completedCount++;
+			delivered++;
+			try {
+				req.listener.pathFound(result);
+			} catch (Throwable ex) {
+				LSystem.error("AStarFinderService callback failure", ex);
+			}
+		}
+		if (index > 0) {
+			delivering.removeRange(0, index - 1);
+		}
+		lastFrameDelivered += delivered;
+	}
+
+	@Override
+	public void tileChanged(Field2D f, int x, int y, int oldType, int newType) {
+		snapshotDirty = true;
+	}
+
+	@Override
+	public void mapChanged(Field2D f) {
+		snapshotDirty = true;
+	}
+
+	public AStarFinderService setOverflow(int overflow) {
+		this.overflow = overflow;
+		return this;
+	}
+
+	public int getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * 设定寻径模式,支持AStarFinder.SEARCH_ASTAR与AStarFinder.SEARCH_JPS
+	 *
+	 * @param mode
+	 * @return
+	 */
+	public AStarFinderService setSearchMode(int mode) {
+		this.searchMode = mode;
+		return this;
+	}
+
+	public int getSearchMode() {
+		return searchMode;
+	}
+
+	/**
+	 * 设定每帧在游戏线程中回调结果(或同步寻径)所能占用的毫秒数
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public AStarFinderService setFrameBudget(long millis) {
+		this.frameBudget = millis;
+		return this;
+	}
+
+	public long getFrameBudget() {
+		return frameBudget;
+	}
+
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+
+	/**
+	 * 尚未完成(等待中,计算中以及等待回调)的请求数量
+	 *
+	 * @return
+	 */
+	public int getQueueDepth() {
+		return (pending.size - pendingHead) + runningCount;
+	}
+
+	public int getRunningCount() {
+		return runningCount;
+	}
+
+	public long getCompletedCount() {
+		return completedCount;
+	}
+
+	public long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * 从提交到回调的平均延迟(毫秒)
+	 *
+	 * @return
+	 */
+	public float getAverageLatency() {
+		return completedCount == 0 ? 0f : (float) totalLatency / completedCount;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	public int getLastFrameDelivered() {
+		return lastFrameDelivered;
+	}
+
+	public void resetStats() {
+		completedCount = 0;
+		coalescedCount = 0;
+		totalLatency = 0;
+		maxLatency = 0;
+		lastFrameDelivered = 0;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		field.removeListener(this);
+		process.kill();
+		for (ObjectMap.Values<PathRequest> it = requests.values(); it.hasNext();) {
+			it.next().listener = null;
+		}
+		requests.clear();
+		pending.clear();
+		pendingHead = 0;
+		delivering.clear();
+		snapshot = null;
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.geom.Vector2f;
+import loon.utils.IntBinaryHeap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * A*寻径的检索核心,直接以Field2D中的格子索引(y * width + x)进行计算,以g+h为评分,开放列表使用基本类型二叉堆,
+ * 父节点与评分数组在多次检索间复用,检索过程中不产生临时对象(仅最终路径结果会生成Vector2f).
+ */
+public class AStarSearch {
+
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private AStarFindHeuristic heuristic;
+
+	private final IntBinaryHeap openList = new IntBinaryHeap();
+
+	private int[] parents;
+
+	private float[] gScores;
+
+	private int[] openStamps;
+
+	private int[] closedStamps;
+
+	private int stamp;
+
+	private int capacity;
+
+	private int expanded;
+
+	public AStarSearch(AStarFindHeuristic heuristic) {
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic;
+	}
+
+	public AStarSearch setHeuristic(AStarFindHeuristic heuristic) {
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic;
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return heuristic;
+	}
+
+	private void prepare(int size) {
+		if (capacity < size) {
+			capacity = size;
+			parents = new int[size];
+			gScores = new float[size];
+			openStamps = new int[size];
+			closedStamps = new int[size];
+			openList.ensureCapacity(size);
+			stamp = 0;
+		}
+		openList.clear();
+		if (++stamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < capacity; i++) {
+				openStamps[i] = 0;
+				closedStamps[i] = 0;
+			}
+			stamp = 1;
+		}
+		expanded = 0;
+	}
+
+	/**
+	 * 检索指定起点到终点的路径,并返回包含起点与终点在内的路径,无法到达时返回null
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flag
+	 *            是否允许斜向移动
+	 * @param flying
+	 *            是否无视地图阻挡
+	 * @param overflow
+	 *            最大展开节点数
+	 * @return
+	 */
+	public TArray<Vector2f> find(Field2D field, int startX, int startY, int endX, int endY, boolean flag,
+			boolean flying, int overflow) {
+		final int width = field.getWidth();
+		final int height = field.getHeight();
+		if (!field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return null;
+		}
+		if (startX == endX && startY == endY) {
+			TArray<Vector2f> v = new TArray<Vector2f>(1);
+			v.add(new Vector2f(startX, startY));
+			return v;
+		}
+		prepare(width * height);
+		final int start = startY * width + startX;
+		final int goal = endY * width + endX;
+		final int dirs = flag ? 8 : 4;
+		final int curStamp = stamp;
+		parents[start] = -1;
+		gScores[start] = 0f;
+		openStamps[start] = curStamp;
+		openList.push(start, heuristic.getScore(endX, endY, startX, startY));
+		for (; !openList.isEmpty();) {
+			if (expanded++ > overflow) {
+				break;
+			}
+			final int current = openList.pop();
+			if (current == goal) {
+				return buildPath(current, width);
+			}
+			closedStamps[current] = curStamp;
+			final int cx = current % width;
+			final int cy = current / width;
+			final float currentScore = gScores[current];
+			for (int i = 0; i < dirs; i++) {
+				final int nx = cx + DIR_X[i];
+				final int ny = cy + DIR_Y[i];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (closedStamps[next] == curStamp) {
+					continue;
+				}
+				if (!flying && !field.isHit(nx, ny)) {
+					continue;
+				}
+				final float g = currentScore + (i < 4 ? 1f : MathUtils.SQRT2);
+				if (openStamps[next] == curStamp && g >= gScores[next]) {
+					continue;
+				}
+				openStamps[next] = curStamp;
+				parents[next] = current;
+				gScores[next] = g;
+				openList.update(next, g + heuristic.getScore(endX, endY, nx, ny));
+			}
+		}
+		openList.clear();
+		return null;
+	}
+
+	private TArray<Vector2f> buildPath(int goal, int width) {
+		int count = 0;
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			count++;
+		}
+		Vector2f[] nodes = new Vector2f[count];
+		int pos = count;
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			nodes[--pos] = new Vector2f(idx % width, idx / width);
+		}
+		openList.clear();
+		return new TArray<Vector2f>(nodes);
+	}
+
+	/**
+	 * 返回上次检索所展开的节点数量
+	 *
+	 * @return
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	public void clear() {
+		parents = null;
+		gScores = null;
+		openStamps = null;
+		closedStamps = null;
+		capacity = 0;
+		stamp = 0;
+		openList.clear();
+	}
+
+}
@@ -72,6 +72,10 @@ public class Field2D implements IArray, Config {
 
 	private IntArray allowMove;
 
+	private TArray<Field2DListener> _listeners;
+
+	private HierarchicalSearch _hierarchicalSearch, _hierarchicalDiagonalSearch;
+
 	public TArray<PointI> getPosOfLine(int x0, int y0, int x1, int y1) {
 		TArray<PointI> list = new TArray<PointI>();
 		int dx = MathUtils.abs(x1 - x0);
@@ -605,7 +609,9 @@ public class Field2D implements IArray, Config {
 		if (this.allowMove == null) {
 			this.allowMove = new IntArray();
 		}
-		this.setMap(arrays);
+		if (arrays != null) {
+			this.mapArrays = arrays;
+		}
 		this.setTileWidth(tw);
 		this.setTileHeight(th);
 		if (arrays != null) {
@@ -618,6 +624,7 @@ public class Field2D implements IArray, Config {
 			this._tileImpl.setWidth(tileWidth);
 			this._tileImpl.setHeight(tileHeight);
 		}
+		fireMapChanged();
 		return this;
 	}
 
@@ -759,11 +766,12 @@ public class Field2D implements IArray, Config {
 				int dstTileHeight = dstTileY + pixelsToTilesWidth(h);
 				int fieldWidth = mapArrays[0].length;
 				int fieldHeight = mapArrays.length;
-				for (int i = 0; i < fieldHeight; i++) {
-					for (int j = 0; j < fieldWidth; j++) {
-						if (j > dstTileX && j < dstTileWidth && i > dstTileY && i < dstTileHeight) {
-							mapArrays[i][j] = flagid;
-						}
+				int endX = MathUtils.min(fieldWidth, dstTileWidth);
+				int endY = MathUtils.min(fieldHeight, dstTileHeight);
+				// 经setTileType修改,共享的寻径数据(分层寻径,流场等)才能得到通知
+				for (int i = MathUtils.max(0, dstTileY + 1); i < endY; i++) {
+					for (int j = MathUtils.max(0, dstTileX + 1); j < endX; j++) {
+						setTileType(j, i, flagid);
 					}
 				}
 			}
@@ -777,14 +785,85 @@ public class Field2D implements IArray, Config {
 
 	public Field2D setLimit(int[] limit) {
 		this.moveLimited = limit;
+		fireMapChanged();
 		return this;
 	}
 
 	public Field2D setAllowMove(int[] args) {
 		this.allowMove.addAll(args);
+		fireMapChanged();
+		return this;
+	}
+
+	/**
+	 * 获得此地图共享的分层寻径器(按是否允许斜向移动各保留一个),所有以此地图分层寻径的AStarFinder共用它,避免每个寻径器各自构建抽象图并注册监听.
+	 * 
+	 * 共享的寻径器并非线程安全,使用时需以它本身加锁
+	 * 
+	 * @param diagonal
+	 * @return
+	 */
+	public HierarchicalSearch getHierarchicalSearch(boolean diagonal) {
+		HierarchicalSearch search = diagonal ? _hierarchicalDiagonalSearch : _hierarchicalSearch;
+		if (search == null) {
+			search = new HierarchicalSearch(this, null, 16, diagonal);
+			if (diagonal) {
+				_hierarchicalDiagonalSearch = search;
+			} else {
+				_hierarchicalSearch = search;
+			}
+		} else {
+			// 监听可能已被clearListeners清除
+			addListener(search);
+		}
+		return search;
+	}
+
+	public Field2D addListener(Field2DListener listener) {
+		if (listener == null) {
+			return this;
+		}
+		if (_listeners == null) {
+			_listeners = new TArray<Field2DListener>(4);
+		}
+		if (!_listeners.contains(listener, true)) {
+			_listeners.add(listener);
+		}
 		return this;
 	}
 
+	public Field2D removeListener(Field2DListener listener) {
+		if (_listeners != null) {
+			_listeners.removeValue(listener, true);
+		}
+		return this;
+	}
+
+	public Field2D clearListeners() {
+		if (_listeners != null) {
+			_listeners.clear();
+		}
+		return this;
+	}
+
+	protected void fireTileChanged(int x, int y, int oldType, int newType) {
+		if (_listeners == null) {
+			return;
+		}
+		for (int i = 0; i < _listeners.size; i++) {
+			_listeners.get(i).tileChanged(this, x, y, oldType, newType);
+		}
+	}
+
+	protected void fireMapChanged() {
+		if (_listeners == null) {
+			return;
+		}
+		for (int i = 0; i < _listeners.size; i++) {
+			_listeners.get(i).mapChanged(this);
+		}
+	}
+
 	public boolean contains(int x, int y) {
 		return x >= 0 && x < width && y >= 0 && y < height;
 	}
@@ -800,6 +879,7 @@ public class Field2D implements IArray, Config {
 				}
 			}
 		}
+		fireMapChanged();
 		return this;
 	}
 
@@ -823,8 +903,13 @@ public class Field2D implements IArray, Config {
 			if (!contains(x, y)) {
 				return this;
 			}
-			this.mapArrays[y][x] = tile;
+			int oldType = this.mapArrays[y][x];
+			if (oldType != tile) {
+				this.mapArrays[y][x] = tile;
+				fireTileChanged(x, y, oldType, tile);
+			}
 		} catch (Throwable e) {
+			LSystem.error("Field2D setTileType(" + x + "," + y + ") exception", e);
 		}
 		return this;
 	}
@@ -838,6 +923,7 @@ public class Field2D implements IArray, Config {
 			return this;
 		}
 		this.mapArrays = arrays;
+		fireMapChanged();
 		return this;
 	}
 
@@ -1058,6 +1144,7 @@ public class Field2D implements IArray, Config {
 				mapArrays[i][j] = val;
 			}
 		}
+		fireMapChanged();
 		return this;
 	}
 
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+/**
+ * Field2D地图数据变化监听器
+ */
+public interface Field2DListener {
+
+	/**
+	 * 单一格子的类型发生改变
+	 */
+	void tileChanged(Field2D field, int x, int y, int oldType, int newType);
+
+	/**
+	 * 地图整体(或阻挡规则)发生改变
+	 */
+	void mapChanged(Field2D field);
+
+}
@@ -0,0 +1,457 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.utils.IntArray;
+import loon.utils.IntBinaryHeap;
+import loon.utils.MathUtils;
+
+/**
+ * 流场(Dijkstra Map),以一次全图扫描计算所有格子到目标的代价(integration field)以及每个格子的前进方向(direction
+ * field),大量单位前往同一目标时,每个单位每步只需一次数组查询,无需各自寻径.
+ *
+ * 本类会监听所绑定的Field2D,当Field2D.setTileType修改格子时,仅重新计算受影响的区域.
+ */
+public class FlowField implements Field2DListener, LRelease {
+
+	public final static float UNREACHABLE = Float.MAX_VALUE;
+
+	public final static byte NONE = -1;
+
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private final static float[] DIR_COST = { 1f, 1f, 1f, 1f, MathUtils.SQRT2, MathUtils.SQRT2, MathUtils.SQRT2,
+			MathUtils.SQRT2 };
+
+	private final Field2D field;
+
+	private final boolean flag;
+
+	private final IntArray goals = new IntArray(4);
+
+	private final IntBinaryHeap openList = new IntBinaryHeap();
+
+	private final IntArray changed = new IntArray(64);
+
+	private final IntArray queue = new IntArray(64);
+
+	private int width, height;
+
+	private float[] integration;
+
+	private byte[] directions;
+
+	private boolean[] marks;
+
+	private boolean dirty;
+
+	private int buildCount, updateCount;
+
+	public FlowField(Field2D field) {
+		this(field, true);
+	}
+
+	public FlowField(Field2D field, boolean flag) {
+		this.field = field;
+		this.flag = flag;
+		this.dirty = true;
+		this.field.addListener(this);
+	}
+
+	public FlowField(Field2D field, int goalX, int goalY, boolean flag) {
+		this(field, flag);
+		setGoal(goalX, goalY);
+	}
+
+	/**
+	 * 设定唯一的目标格子
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public FlowField setGoal(int tx, int ty) {
+		goals.clear();
+		return addGoal(tx, ty);
+	}
+
+	/**
+	 * 添加目标格子,存在多个目标时,每个格子流向距离最近的目标
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public FlowField addGoal(int tx, int ty) {
+		if (field.contains(tx, ty)) {
+			goals.add(ty * field.getWidth() + tx);
+			dirty = true;
+		}
+		return this;
+	}
+
+	public FlowField clearGoals() {
+		goals.clear();
+		dirty = true;
+		return this;
+	}
+
+	private boolean walkable(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height && field.isHit(x, y);
+	}
+
+	/**
+	 * 重新生成整个流场(仅在目标或地图整体改变后需要,格子改变时自动增量更新)
+	 *
+	 * @return
+	 */
+	public FlowField build() {
+		width = field.getWidth();
+		height = field.getHeight();
+		final int size = width * height;
+		if (integration == null || integration.length != size) {
+			integration = new float[size];
+			directions = new byte[size];
+			marks = new boolean[size];
+			openList.ensureCapacity(size);
+		}
+		for (int i = 0; i < size; i++) {
+			integration[i] = UNREACHABLE;
+			directions[i] = NONE;
+		}
+		openList.clear();
+		for (int i = 0; i < goals.length; i++) {
+			final int goal = goals.get(i);
+			if (goal < size) {
+				integration[goal] = 0f;
+				openList.push(goal, 0f);
+			}
+		}
+		changed.clear();
+		propagate(false);
+		for (int i = 0; i < size; i++) {
+			updateDirection(i);
+		}
+		dirty = false;
+		buildCount++;
+		return this;
+	}
+
+	private void validate() {
+		if (dirty || integration == null) {
+			build();
+		}
+	}
+
+	private void propagate(boolean record) {
+		final int dirs = flag ? 8 : 4;
+		for (; !openList.isEmpty();) {
+			final int current = openList.pop();
+			final int cx = current % width;
+			final int cy = current / width;
+			final float cost = integration[current];
+			for (int i = 0; i < dirs; i++) {
+				final int nx = cx + DIR_X[i];
+				final int ny = cy + DIR_Y[i];
+				if (!walkable(nx, ny)) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				final float nc = cost + DIR_COST[i];
+				if (nc < integration[next]) {
+					integration[next] = nc;
+					openList.update(next, nc);
+					if (record) {
+						mark(next);
+					}
+				}
+			}
+		}
+	}
+
+	private void mark(int idx) {
+		if (!marks[idx]) {
+			marks[idx] = true;
+			changed.add(idx);
+		}
+	}
+
+	private void updateDirection(int idx) {
+		final int cx = idx % width;
+		final int cy = idx / width;
+		float best = integration[idx];
+		byte dir = NONE;
+		if (best != UNREACHABLE && best > 0f) {
+			// 指向代价最小的上游格子,即Dijkstra扩展时的父节点
+			best += MathUtils.EPSILON;
+			final int dirs = flag ? 8 : 4;
+			for (int i = 0; i < dirs; i++) {
+				final int nx = cx + DIR_X[i];
+				final int ny = cy + DIR_Y[i];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final float c = integration[ny * width + nx];
+				if (c != UNREACHABLE && c + DIR_COST[i] <= best) {
+					best = c + DIR_COST[i];
+					dir = (byte) i;
+				}
+			}
+		}
+		directions[idx] = dir;
+	}
+
+	private boolean flowsInto(int from, int to) {
+		final byte dir = directions[from];
+		if (dir == NONE) {
+			return false;
+		}
+		return (from % width) + DIR_X[dir] == to % width && (from / width) + DIR_Y[dir] == to / width;
+	}
+
+	private void updateTile(int x, int y) {
+		final int idx = y * width + x;
+		changed.clear();
+		openList.clear();
+		final int dirs = flag ? 8 : 4;
+		if (!walkable(x, y) && !goals.contains(idx)) {
+			// 格子被阻挡,所有流经该格子的上游格子需要重新计算
+			queue.clear();
+			queue.add(idx);
+			mark(idx);
+			for (int q = 0; q < queue.length; q++) {
+				final int current = queue.get(q);
+				final int cx = current % width;
+				final int cy = current / width;
+				for (int i = 0; i < dirs; i++) {
+					final int nx = cx + DIR_X[i];
+					final int ny = cy + DIR_Y[i];
+					if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+						continue;
+					}
+					final int next = ny * width + nx;
+					if (!marks[next] && flowsInto(next, current)) {
+						mark(next);
+						queue.add(next);
+					}
+				}
+			}
+			for (int i = 0; i < changed.length; i++) {
+				integration[changed.get(i)] = UNREACHABLE;
+			}
+			// 由失效区域的边界重新向内传播
+			for (int i = 0; i < changed.length; i++) {
+				final int current = changed.get(i);
+				final int cx = current % width;
+				final int cy = current / width;
+				if (!walkable(cx, cy)) {
+					continue;
+				}
+				float best = UNREACHABLE;
+				for (int j = 0; j < dirs; j++) {
+					final int nx = cx + DIR_X[j];
+					final int ny = cy + DIR_Y[j];
+					if (!walkable(nx, ny)) {
+						continue;
+					}
+					final float c = integration[ny * width + nx];
+					if (c != UNREACHABLE && c + DIR_COST[j] < best) {
+						best = c + DIR_COST[j];
+					}
+				}
+				if (best != UNREACHABLE) {
+					integration[current] = best;
+					openList.push(current, best);
+				}
+			}
+		} else {
+			// 格子变为可通行,只可能降低周围格子的代价
+			mark(idx);
+			if (goals.contains(idx)) {
+				integration[idx] = 0f;
+			} else {
+				float best = UNREACHABLE;
+				for (int j = 0; j < dirs; j++) {
+					final int nx = x + DIR_X[j];
+					final int ny = y + DIR_Y[j];
+					if (!walkable(nx, ny)) {
+						continue;
+					}
+					final float c = integration[ny * width + nx];
+					if (c != UNREACHABLE && c + DIR_COST[j] < best) {
+						best = c + DIR_COST[j];
+					}
+				}
+				integration[idx] = best;
+			}
+			if (integration[idx] != UNREACHABLE) {
+				openList.push(idx, integration[idx]);
+			}
+		}
+		propagate(true);
+		for (int i = 0; i < changed.length; i++) {
+			final int current = changed.get(i);
+			marks[current] = false;
+			final int cx = current % width;
+			final int cy = current / width;
+			updateDirection(current);
+			for (int j = 0; j < 8; j++) {
+				final int nx = cx + DIR_X[j];
+				final int ny = cy + DIR_Y[j];
+				if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
+					updateDirection(ny * width + nx);
+				}
+			}
+		}
+		changed.clear();
+		updateCount++;
+	}
+
+	@Override
+	public void tileChanged(Field2D f, int x, int y, int oldType, int newType) {
+		if (dirty || integration == null || width != f.getWidth() || height != f.getHeight()) {
+			dirty = true;
+			return;
+		}
+		updateTile(x, y);
+	}
+
+	@Override
+	public void mapChanged(Field2D f) {
+		dirty = true;
+	}
+
+	/**
+	 * 返回指定格子到目标的代价,无法到达时返回UNREACHABLE
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public float getCost(int tx, int ty) {
+		validate();
+		if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+			return UNREACHABLE;
+		}
+		return integration[ty * width + tx];
+	}
+
+	/**
+	 * 返回指定格子前进方向的x偏移(-1,0,1)
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public int getDirectionX(int tx, int ty) {
+		validate();
+		if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+			return 0;
+		}
+		final byte dir = directions[ty * width + tx];
+		return dir == NONE ? 0 : DIR_X[dir];
+	}
+
+	/**
+	 * 返回指定格子前进方向的y偏移(-1,0,1)
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public int getDirectionY(int tx, int ty) {
+		validate();
+		if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+			return 0;
+		}
+		final byte dir = directions[ty * width + tx];
+		return dir == NONE ? 0 : DIR_Y[dir];
+	}
+
+	/**
+	 * 返回指定格子的前进方向,数值与Field2D中的方向常量一致,没有方向时返回Config.EMPTY
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public int getDirection(int tx, int ty) {
+		return Field2D.getDirection(getDirectionX(tx, ty), getDirectionY(tx, ty));
+	}
+
+	public boolean isGoal(int tx, int ty) {
+		return field.contains(tx, ty) && goals.contains(ty * field.getWidth() + tx);
+	}
+
+	public boolean isReachable(int tx, int ty) {
+		return getCost(tx, ty) != UNREACHABLE;
+	}
+
+	/**
+	 * 返回代价数组(按y * width + x排列),请勿修改
+	 *
+	 * @return
+	 */
+	public float[] getIntegrationField() {
+		validate();
+		return integration;
+	}
+
+	/**
+	 * 返回方向数组(按y * width + x排列,数值为内部方向索引,NONE表示无方向),请勿修改
+	 *
+	 * @return
+	 */
+	public byte[] getDirectionField() {
+		validate();
+		return directions;
+	}
+
+	public Field2D getField2D() {
+		return field;
+	}
+
+	public boolean isDiagonal() {
+		return flag;
+	}
+
+	public int getBuildCount() {
+		return buildCount;
+	}
+
+	public int getUpdateCount() {
+		return updateCount;
+	}
+
+	@Override
+	public void close() {
+		field.removeListener(this);
+		integration = null;
+		directions = null;
+		marks = null;
+		goals.clear();
+		openList.clear();
+	}
+
+}
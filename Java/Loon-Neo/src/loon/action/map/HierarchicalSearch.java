@@ -0,0 +1,661 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.IntBinaryHeap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 分层寻径(HPA*),将Field2D划分为固定大小的区块,并缓存区块边界出入口以及区块内出入口之间的距离,
+ * 检索时先在出入口构成的抽象图上寻径,再以AStarSearch细化为逐格路径,适用于超大地图的频繁检索.
+ *
+ * 本类会监听所绑定的Field2D,当Field2D.setTileType修改格子时,仅标记受影响的区块,并在下次检索时增量重建.
+ */
+public class HierarchicalSearch implements Field2DListener, LRelease {
+
+	private final static float UNREACHABLE = Float.MAX_VALUE;
+
+	private final static int ENTRANCE_SPLIT = 6;
+
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private Field2D field;
+
+	private AStarFindHeuristic heuristic;
+
+	private final AStarSearch refiner;
+
+	private final int clusterSize;
+
+	private boolean flag;
+
+	private int width, height, clustersX, clustersY;
+
+	private int[][] entrances;
+
+	private float[][] distances;
+
+	private IntArray[] eastPairs;
+
+	private IntArray[] southPairs;
+
+	private boolean[] dirtyIntra;
+
+	private boolean[] dirtyEast;
+
+	private boolean[] dirtySouth;
+
+	private boolean dirty;
+
+	private boolean needInit;
+
+	private final IntBinaryHeap localHeap = new IntBinaryHeap();
+
+	private float[] localDist;
+
+	private int[] localStamps;
+
+	private int localStamp;
+
+	private final IntBinaryHeap openList = new IntBinaryHeap();
+
+	private int[] parents;
+
+	private float[] gScores;
+
+	private int[] openStamps;
+
+	private int[] closedStamps;
+
+	private int stamp;
+
+	private float[] startLinks;
+
+	private float[] goalLinks;
+
+	private int expanded;
+
+	private int rebuildCount;
+
+	public HierarchicalSearch(Field2D field) {
+		this(field, null, 16, true);
+	}
+
+	public HierarchicalSearch(Field2D field, AStarFindHeuristic heuristic, int clusterSize, boolean flag) {
+		this.field = field;
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic;
+		this.refiner = new AStarSearch(this.heuristic);
+		this.clusterSize = MathUtils.max(4, clusterSize);
+		this.flag = flag;
+		this.needInit = true;
+		this.field.addListener(this);
+	}
+
+	public HierarchicalSearch setHeuristic(AStarFindHeuristic heuristic) {
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic;
+		this.refiner.setHeuristic(this.heuristic);
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return heuristic;
+	}
+
+	public HierarchicalSearch setDiagonal(boolean flag) {
+		if (this.flag != flag) {
+			this.flag = flag;
+			markAll();
+		}
+		return this;
+	}
+
+	public boolean isDiagonal() {
+		return flag;
+	}
+
+	public Field2D getField2D() {
+		return field;
+	}
+
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	private void init() {
+		this.width = field.getWidth();
+		this.height = field.getHeight();
+		this.clustersX = (width + clusterSize - 1) / clusterSize;
+		this.clustersY = (height + clusterSize - 1) / clusterSize;
+		final int count = clustersX * clustersY;
+		this.entrances = new int[count][];
+		this.distances = new float[count][];
+		this.eastPairs = new IntArray[count];
+		this.southPairs = new IntArray[count];
+		this.dirtyIntra = new boolean[count];
+		this.dirtyEast = new boolean[count];
+		this.dirtySouth = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			eastPairs[i] = new IntArray(8);
+			southPairs[i] = new IntArray(8);
+		}
+		final int size = width * height;
+		this.parents = new int[size];
+		this.gScores = new float[size];
+		this.openStamps = new int[size];
+		this.closedStamps = new int[size];
+		this.stamp = 0;
+		this.openList.ensureCapacity(size);
+		this.localDist = new float[clusterSize * clusterSize];
+		this.localStamps = new int[clusterSize * clusterSize];
+		this.localStamp = 0;
+		this.localHeap.ensureCapacity(clusterSize * clusterSize);
+		this.needInit = false;
+		markAll();
+	}
+
+	private void markAll() {
+		if (dirtyIntra == null) {
+			return;
+		}
+		for (int i = 0; i < dirtyIntra.length; i++) {
+			dirtyIntra[i] = true;
+			dirtyEast[i] = true;
+			dirtySouth[i] = true;
+		}
+		dirty = true;
+	}
+
+	private void markCluster(int x, int y) {
+		if (dirtyIntra == null) {
+			return;
+		}
+		final int cx = x / clusterSize;
+		final int cy = y / clusterSize;
+		final int c = cy * clustersX + cx;
+		dirtyIntra[c] = true;
+		final int lx = x - cx * clusterSize;
+		final int ly = y - cy * clusterSize;
+		final int right = MathUtils.min(clusterSize, width - cx * clusterSize) - 1;
+		final int bottom = MathUtils.min(clusterSize, height - cy * clusterSize) - 1;
+		if (lx == 0 && cx > 0) {
+			dirtyEast[c - 1] = true;
+			dirtyIntra[c - 1] = true;
+		}
+		if (lx == right && cx < clustersX - 1) {
+			dirtyEast[c] = true;
+			dirtyIntra[c + 1] = true;
+		}
+		if (ly == 0 && cy > 0) {
+			dirtySouth[c - clustersX] = true;
+			dirtyIntra[c - clustersX] = true;
+		}
+		if (ly == bottom && cy < clustersY - 1) {
+			dirtySouth[c] = true;
+			dirtyIntra[c + clustersX] = true;
+		}
+		dirty = true;
+	}
+
+	@Override
+	public void tileChanged(Field2D f, int x, int y, int oldType, int newType) {
+		if (!needInit && f.contains(x, y)) {
+			markCluster(x, y);
+		}
+	}
+
+	@Override
+	public void mapChanged(Field2D f) {
+		if (width != f.getWidth() || height != f.getHeight()) {
+			needInit = true;
+		} else {
+			markAll();
+		}
+	}
+
+	/**
+	 * 重建所有被标记为需要更新的区块
+	 */
+	public void refresh() {
+		if (needInit) {
+			init();
+		}
+		if (!dirty) {
+			return;
+		}
+		final int count = clustersX * clustersY;
+		for (int c = 0; c < count; c++) {
+			if (dirtyEast[c]) {
+				rebuildBorder(c, true);
+				dirtyEast[c] = false;
+			}
+			if (dirtySouth[c]) {
+				rebuildBorder(c, false);
+				dirtySouth[c] = false;
+			}
+		}
+		for (int c = 0; c < count; c++) {
+			if (dirtyIntra[c]) {
+				rebuildCluster(c);
+				dirtyIntra[c] = false;
+			}
+		}
+		dirty = false;
+	}
+
+	private boolean walkable(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height && field.isHit(x, y);
+	}
+
+	private void rebuildBorder(int c, boolean east) {
+		final IntArray pairs = east ? eastPairs[c] : southPairs[c];
+		pairs.clear();
+		final int cx = c % clustersX;
+		final int cy = c / clustersX;
+		if ((east && cx >= clustersX - 1) || (!east && cy >= clustersY - 1)) {
+			return;
+		}
+		final int begin = east ? cy * clusterSize : cx * clusterSize;
+		final int end = east ? MathUtils.min(height, begin + clusterSize) : MathUtils.min(width, begin + clusterSize);
+		final int edge = east ? (cx + 1) * clusterSize - 1 : (cy + 1) * clusterSize - 1;
+		int runStart = -1;
+		for (int i = begin; i <= end; i++) {
+			boolean open = false;
+			if (i < end) {
+				open = borderOpen(east, edge, i, i);
+			}
+			if (open) {
+				if (runStart == -1) {
+					runStart = i;
+				}
+			} else if (runStart != -1) {
+				final int runEnd = i - 1;
+				final int len = runEnd - runStart + 1;
+				if (len < ENTRANCE_SPLIT) {
+					addPair(pairs, east, edge, runStart + len / 2, runStart + len / 2);
+				} else {
+					addPair(pairs, east, edge, runStart, runStart);
+					addPair(pairs, east, edge, runEnd, runEnd);
+				}
+				runStart = -1;
+			}
+		}
+		if (flag) {
+			// 允许斜向移动时,补充仅能斜向穿越边界的出入口
+			for (int i = begin; i < end - 1; i++) {
+				if (borderOpen(east, edge, i, i) || borderOpen(east, edge, i + 1, i + 1)) {
+					continue;
+				}
+				if (borderOpen(east, edge, i, i + 1)) {
+					addPair(pairs, east, edge, i, i + 1);
+				} else if (borderOpen(east, edge, i + 1, i)) {
+					addPair(pairs, east, edge, i + 1, i);
+				}
+			}
+		}
+	}
+
+	private boolean borderOpen(boolean east, int edge, int a, int b) {
+		return east ? (walkable(edge, a) && walkable(edge + 1, b)) : (walkable(a, edge) && walkable(b, edge + 1));
+	}
+
+	private void addPair(IntArray pairs, boolean east, int edge, int a, int b) {
+		if (east) {
+			pairs.add(a * width + edge);
+			pairs.add(b * width + edge + 1);
+		} else {
+			pairs.add(edge * width + a);
+			pairs.add((edge + 1) * width + b);
+		}
+	}
+
+	private int collectEntrances(int c, IntArray dst) {
+		dst.clear();
+		final int cx = c % clustersX;
+		final int cy = c / clustersX;
+		addEntrances(dst, eastPairs[c], 0);
+		addEntrances(dst, southPairs[c], 0);
+		if (cx > 0) {
+			addEntrances(dst, eastPairs[c - 1], 1);
+		}
+		if (cy > 0) {
+			addEntrances(dst, southPairs[c - clustersX], 1);
+		}
+		return dst.length;
+	}
+
+	private void addEntrances(IntArray dst, IntArray pairs, int offset) {
+		for (int i = offset; i < pairs.length; i += 2) {
+			final int cell = pairs.get(i);
+			if (!dst.contains(cell)) {
+				dst.add(cell);
+			}
+		}
+	}
+
+	private final IntArray tempEntrances = new IntArray(32);
+
+	private void rebuildCluster(int c) {
+		final int count = collectEntrances(c, tempEntrances);
+		final int[] list = new int[count];
+		for (int i = 0; i < count; i++) {
+			list[i] = tempEntrances.get(i);
+		}
+		final float[] dist = new float[count * count];
+		for (int i = 0; i < count; i++) {
+			searchLocal(c, list[i]);
+			for (int j = 0; j < count; j++) {
+				dist[i * count + j] = localDistance(c, list[j]);
+			}
+		}
+		entrances[c] = list;
+		distances[c] = dist;
+		rebuildCount++;
+	}
+
+	private int clusterOf(int cell) {
+		return ((cell / width) / clusterSize) * clustersX + (cell % width) / clusterSize;
+	}
+
+	/**
+	 * 在区块内部以Dijkstra计算指定格子到区块内其它格子的距离
+	 */
+	private void searchLocal(int c, int source) {
+		final int x0 = (c % clustersX) * clusterSize;
+		final int y0 = (c / clustersX) * clusterSize;
+		final int x1 = MathUtils.min(width, x0 + clusterSize);
+		final int y1 = MathUtils.min(height, y0 + clusterSize);
+		if (++localStamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < localStamps.length; i++) {
+				localStamps[i] = 0;
+			}
+			localStamp = 1;
+		}
+		final int curStamp = localStamp;
+		final int dirs = flag ? 8 : 4;
+		localHeap.clear();
+		final int src = (source / width - y0) * clusterSize + (source % width - x0);
+		localDist[src] = 0f;
+		localStamps[src] = curStamp;
+		localHeap.push(src, 0f);
+		for (; !localHeap.isEmpty();) {
+			final int current = localHeap.pop();
+			final int lx = current % clusterSize;
+			final int ly = current / clusterSize;
+			final float d = localDist[current];
+			for (int i = 0; i < dirs; i++) {
+				final int nx = x0 + lx + DIR_X[i];
+				final int ny = y0 + ly + DIR_Y[i];
+				if (nx < x0 || ny < y0 || nx >= x1 || ny >= y1 || !field.isHit(nx, ny)) {
+					continue;
+				}
+				final int next = (ny - y0) * clusterSize + (nx - x0);
+				final float nd = d + (i < 4 ? 1f : MathUtils.SQRT2);
+				if (localStamps[next] == curStamp && nd >= localDist[next]) {
+					continue;
+				}
+				localStamps[next] = curStamp;
+				localDist[next] = nd;
+				localHeap.update(next, nd);
+			}
+		}
+	}
+
+	private float localDistance(int c, int cell) {
+		final int x0 = (c % clustersX) * clusterSize;
+		final int y0 = (c / clustersX) * clusterSize;
+		final int idx = (cell / width - y0) * clusterSize + (cell % width - x0);
+		return localStamps[idx] == localStamp ? localDist[idx] : UNREACHABLE;
+	}
+
+	private float[] linkCluster(int c, int cell, float[] links) {
+		final int[] list = entrances[c];
+		if (links == null || links.length < list.length) {
+			links = new float[MathUtils.max(16, list.length)];
+		}
+		searchLocal(c, cell);
+		for (int i = 0; i < list.length; i++) {
+			links[i] = localDistance(c, list[i]);
+		}
+		return links;
+	}
+
+	private int indexOf(int[] list, int cell) {
+		for (int i = 0; i < list.length; i++) {
+			if (list[i] == cell) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void relax(int from, int to, float cost, int goalX, int goalY) {
+		if (cost >= UNREACHABLE || closedStamps[to] == stamp) {
+			return;
+		}
+		final float g = gScores[from] + cost;
+		if (openStamps[to] == stamp && g >= gScores[to]) {
+			return;
+		}
+		openStamps[to] = stamp;
+		parents[to] = from;
+		gScores[to] = g;
+		openList.update(to, g + heuristic.getScore(goalX, goalY, to % width, to / width));
+	}
+
+	private void relaxPartners(int from, IntArray pairs, int self, int goalX, int goalY) {
+		for (int i = 0; i < pairs.length; i += 2) {
+			if (pairs.get(i + self) == from) {
+				final int to = pairs.get(i + 1 - self);
+				relax(from, to, (from % width == to % width || from / width == to / width) ? 1f : MathUtils.SQRT2,
+						goalX, goalY);
+			}
+		}
+	}
+
+	/**
+	 * 检索指定起点到终点的路径,并返回包含起点与终点在内的逐格路径,无法到达时返回null
+	 *
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param overflow
+	 *            抽象图上最大展开节点数
+	 * @return
+	 */
+	public TArray<Vector2f> find(int startX, int startY, int endX, int endY, int overflow) {
+		refresh();
+		if (!field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return null;
+		}
+		final int start = startY * width + startX;
+		final int goal = endY * width + endX;
+		final int startCluster = clusterOf(start);
+		final int goalCluster = clusterOf(goal);
+		if (startCluster == goalCluster || start == goal) {
+			TArray<Vector2f> local = refiner.find(field, startX, startY, endX, endY, flag, false, overflow);
+			if (local != null || start == goal) {
+				return local;
+			}
+		}
+		if (!field.isHit(endX, endY)) {
+			return null;
+		}
+		startLinks = linkCluster(startCluster, start, startLinks);
+		goalLinks = linkCluster(goalCluster, goal, goalLinks);
+		if (++stamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < openStamps.length; i++) {
+				openStamps[i] = 0;
+				closedStamps[i] = 0;
+			}
+			stamp = 1;
+		}
+		expanded = 0;
+		openList.clear();
+		parents[start] = -1;
+		gScores[start] = 0f;
+		openStamps[start] = stamp;
+		openList.push(start, heuristic.getScore(endX, endY, startX, startY));
+		final int[] goalList = entrances[goalCluster];
+		for (; !openList.isEmpty();) {
+			if (expanded++ > overflow) {
+				break;
+			}
+			final int current = openList.pop();
+			if (current == goal) {
+				openList.clear();
+				return refine(goal);
+			}
+			closedStamps[current] = stamp;
+			final int c = clusterOf(current);
+			final int[] list = entrances[c];
+			final int index = indexOf(list, current);
+			if (current == start) {
+				for (int i = 0; i < list.length; i++) {
+					relax(current, list[i], startLinks[i], endX, endY);
+				}
+			} else if (index != -1) {
+				final float[] dist = distances[c];
+				for (int i = 0; i < list.length; i++) {
+					if (i != index) {
+						relax(current, list[i], dist[index * list.length + i], endX, endY);
+					}
+				}
+			}
+			if (index != -1) {
+				final int cx = c % clustersX;
+				final int cy = c / clustersX;
+				relaxPartners(current, eastPairs[c], 0, endX, endY);
+				relaxPartners(current, southPairs[c], 0, endX, endY);
+				if (cx > 0) {
+					relaxPartners(current, eastPairs[c - 1], 1, endX, endY);
+				}
+				if (cy > 0) {
+					relaxPartners(current, southPairs[c - clustersX], 1, endX, endY);
+				}
+			}
+			if (c == goalCluster) {
+				final int goalIndex = indexOf(goalList, current);
+				if (goalIndex != -1) {
+					relax(current, goal, goalLinks[goalIndex], endX, endY);
+				}
+			}
+		}
+		openList.clear();
+		return null;
+	}
+
+	private TArray<Vector2f> refine(int goal) {
+		final IntArray nodes = tempEntrances;
+		nodes.clear();
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			nodes.add(idx);
+		}
+		TArray<Vector2f> result = new TArray<Vector2f>();
+		int prev = nodes.get(nodes.length - 1);
+		result.add(new Vector2f(prev % width, prev / width));
+		for (int i = nodes.length - 2; i > -1; i--) {
+			final int next = nodes.get(i);
+			final int px = prev % width;
+			final int py = prev / width;
+			final int nx = next % width;
+			final int ny = next / width;
+			final int dx = MathUtils.abs(nx - px);
+			final int dy = MathUtils.abs(ny - py);
+			if (dx + dy == 1 || (flag && dx == 1 && dy == 1)) {
+				result.add(new Vector2f(nx, ny));
+			} else {
+				TArray<Vector2f> segment = refiner.find(field, px, py, nx, ny, flag, false,
+						clusterSize * clusterSize * 4);
+				if (segment == null) {
+					return null;
+				}
+				for (int j = 1; j < segment.size; j++) {
+					result.add(segment.get(j));
+				}
+			}
+			prev = next;
+		}
+		return result;
+	}
+
+	/**
+	 * 返回上次检索在抽象图上展开的节点数量
+	 *
+	 * @return
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	/**
+	 * 返回区块重建的累计次数
+	 *
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	public int getClusterCount() {
+		return clustersX * clustersY;
+	}
+
+	public int getEntranceCount() {
+		int count = 0;
+		if (entrances != null) {
+			for (int i = 0; i < entrances.length; i++) {
+				if (entrances[i] != null) {
+					count += entrances[i].length;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+		if (field != null) {
+			field.removeListener(this);
+		}
+		entrances = null;
+		distances = null;
+		eastPairs = null;
+		southPairs = null;
+		dirtyIntra = null;
+		dirtyEast = null;
+		dirtySouth = null;
+		parents = null;
+		gScores = null;
+		openStamps = null;
+		closedStamps = null;
+		needInit = true;
+		openList.clear();
+		refiner.clear();
+	}
+
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.geom.Vector2f;
+import loon.utils.IntBinaryHeap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * Jump Point Search(跳点搜索)寻径,适用于所有格子移动代价一致的Field2D地图,仅将跳点放入开放列表,
+ * 在空旷地图上较普通A*展开的节点少一个数量级.返回结果会将跳点之间的格子补全,与AStarSearch的结果格式一致.
+ */
+public class JumpPointSearch {
+
+	private AStarFindHeuristic heuristic;
+
+	private final IntBinaryHeap openList = new IntBinaryHeap();
+
+	private final int[] neighbors = new int[16];
+
+	private int[] parents;
+
+	private float[] gScores;
+
+	private int[] openStamps;
+
+	private int[] closedStamps;
+
+	private int stamp;
+
+	private int capacity;
+
+	private int expanded;
+
+	private Field2D field;
+
+	private boolean flying;
+
+	private int width, height, endX, endY;
+
+	public JumpPointSearch(AStarFindHeuristic heuristic) {
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic;
+	}
+
+	public JumpPointSearch setHeuristic(AStarFindHeuristic heuristic) {
+		this.heuristic = heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic;
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return heuristic;
+	}
+
+	private void prepare(int size) {
+		if (capacity < size) {
+			capacity = size;
+			parents = new int[size];
+			gScores = new float[size];
+			openStamps = new int[size];
+			closedStamps = new int[size];
+			openList.ensureCapacity(size);
+			stamp = 0;
+		}
+		openList.clear();
+		if (++stamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < capacity; i++) {
+				openStamps[i] = 0;
+				closedStamps[i] = 0;
+			}
+			stamp = 1;
+		}
+		expanded = 0;
+	}
+
+	private boolean walkable(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return false;
+		}
+		return flying || field.isHit(x, y);
+	}
+
+	/**
+	 * 检索指定起点到终点的路径,并返回包含起点与终点在内的逐格路径,无法到达时返回null
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flag
+	 *            是否允许斜向移动
+	 * @param flying
+	 *            是否无视地图阻挡
+	 * @param overflow
+	 *            最大展开跳点数
+	 * @return
+	 */
+	public TArray<Vector2f> find(Field2D field, int startX, int startY, int endX, int endY, boolean flag,
+			boolean flying, int overflow) {
+		if (!field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return null;
+		}
+		if (startX == endX && startY == endY) {
+			TArray<Vector2f> v = new TArray<Vector2f>(1);
+			v.add(new Vector2f(startX, startY));
+			return v;
+		}
+		this.field = field;
+		this.flying = flying;
+		this.width = field.getWidth();
+		this.height = field.getHeight();
+		this.endX = endX;
+		this.endY = endY;
+		try {
+			return search(startX, startY, flag, overflow);
+		} finally {
+			this.field = null;
+		}
+	}
+
+	private TArray<Vector2f> search(int startX, int startY, boolean flag, int overflow) {
+		prepare(width * height);
+		final int start = startY * width + startX;
+		final int goal = endY * width + endX;
+		final int curStamp = stamp;
+		parents[start] = -1;
+		gScores[start] = 0f;
+		openStamps[start] = curStamp;
+		openList.push(start, heuristic.getScore(endX, endY, startX, startY));
+		for (; !openList.isEmpty();) {
+			if (expanded++ > overflow) {
+				break;
+			}
+			final int current = openList.pop();
+			if (current == goal) {
+				return buildPath(current);
+			}
+			closedStamps[current] = curStamp;
+			final int cx = current % width;
+			final int cy = current / width;
+			final int count = flag ? findNeighbors8(current, cx, cy) : findNeighbors4(current, cx, cy);
+			for (int i = 0; i < count; i += 2) {
+				final int nx = neighbors[i];
+				final int ny = neighbors[i + 1];
+				final int jump = flag ? jump8(nx, ny, nx - cx, ny - cy) : jump4(nx, ny, nx - cx, ny - cy);
+				if (jump == -1 || closedStamps[jump] == curStamp) {
+					continue;
+				}
+				final int jx = jump % width;
+				final int jy = jump / width;
+				final int dx = MathUtils.abs(jx - cx);
+				final int dy = MathUtils.abs(jy - cy);
+				final float g = gScores[current] + (dx < dy ? (MathUtils.SQRT2 - 1f) * dx + dy
+						: (MathUtils.SQRT2 - 1f) * dy + dx);
+				if (openStamps[jump] == curStamp && g >= gScores[jump]) {
+					continue;
+				}
+				openStamps[jump] = curStamp;
+				parents[jump] = current;
+				gScores[jump] = g;
+				openList.update(jump, g + heuristic.getScore(endX, endY, jx, jy));
+			}
+		}
+		openList.clear();
+		return null;
+	}
+
+	private int addNeighbor(int count, int x, int y) {
+		if (walkable(x, y)) {
+			neighbors[count++] = x;
+			neighbors[count++] = y;
+		}
+		return count;
+	}
+
+	private int findNeighbors4(int current, int x, int y) {
+		int count = 0;
+		final int parent = parents[current];
+		if (parent == -1) {
+			count = addNeighbor(count, x, y - 1);
+			count = addNeighbor(count, x + 1, y);
+			count = addNeighbor(count, x, y + 1);
+			count = addNeighbor(count, x - 1, y);
+			return count;
+		}
+		final int dx = MathUtils.sign(x - parent % width);
+		final int dy = MathUtils.sign(y - parent / width);
+		if (dx != 0) {
+			count = addNeighbor(count, x, y - 1);
+			count = addNeighbor(count, x, y + 1);
+			count = addNeighbor(count, x + dx, y);
+		} else {
+			count = addNeighbor(count, x - 1, y);
+			count = addNeighbor(count, x + 1, y);
+			count = addNeighbor(count, x, y + dy);
+		}
+		return count;
+	}
+
+	private int findNeighbors8(int current, int x, int y) {
+		int count = 0;
+		final int parent = parents[current];
+		if (parent == -1) {
+			for (int i = -1; i <= 1; i++) {
+				for (int j = -1; j <= 1; j++) {
+					if (i != 0 || j != 0) {
+						count = addNeighbor(count, x + i, y + j);
+					}
+				}
+			}
+			return count;
+		}
+		final int dx = MathUtils.sign(x - parent % width);
+		final int dy = MathUtils.sign(y - parent / width);
+		if (dx != 0 && dy != 0) {
+			count = addNeighbor(count, x, y + dy);
+			count = addNeighbor(count, x + dx, y);
+			count = addNeighbor(count, x + dx, y + dy);
+			if (!walkable(x - dx, y)) {
+				count = addNeighbor(count, x - dx, y + dy);
+			}
+			if (!walkable(x, y - dy)) {
+				count = addNeighbor(count, x + dx, y - dy);
+			}
+		} else if (dx != 0) {
+			count = addNeighbor(count, x + dx, y);
+			if (!walkable(x, y + 1)) {
+				count = addNeighbor(count, x + dx, y + 1);
+			}
+			if (!walkable(x, y - 1)) {
+				count = addNeighbor(count, x + dx, y - 1);
+			}
+		} else {
+			count = addNeighbor(count, x, y + dy);
+			if (!walkable(x + 1, y)) {
+				count = addNeighbor(count, x + 1, y + dy);
+			}
+			if (!walkable(x - 1, y)) {
+				count = addNeighbor(count, x - 1, y + dy);
+			}
+		}
+		return count;
+	}
+
+	private int jump8(int x, int y, int dx, int dy) {
+		for (;;) {
+			if (!walkable(x, y)) {
+				return -1;
+			}
+			if (x == endX && y == endY) {
+				return y * width + x;
+			}
+			if (dx != 0 && dy != 0) {
+				if ((walkable(x - dx, y + dy) && !walkable(x - dx, y))
+						|| (walkable(x + dx, y - dy) && !walkable(x, y - dy))) {
+					return y * width + x;
+				}
+				if (jump8(x + dx, y, dx, 0) != -1 || jump8(x, y + dy, 0, dy) != -1) {
+					return y * width + x;
+				}
+			} else if (dx != 0) {
+				if ((walkable(x + dx, y + 1) && !walkable(x, y + 1))
+						|| (walkable(x + dx, y - 1) && !walkable(x, y - 1))) {
+					return y * width + x;
+				}
+			} else {
+				if ((walkable(x + 1, y + dy) && !walkable(x + 1, y))
+						|| (walkable(x - 1, y + dy) && !walkable(x - 1, y))) {
+					return y * width + x;
+				}
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	private int jump4(int x, int y, int dx, int dy) {
+		for (;;) {
+			if (!walkable(x, y)) {
+				return -1;
+			}
+			if (x == endX && y == endY) {
+				return y * width + x;
+			}
+			if (dx != 0) {
+				if ((walkable(x, y - 1) && !walkable(x - dx, y - 1))
+						|| (walkable(x, y + 1) && !walkable(x - dx, y + 1))) {
+					return y * width + x;
+				}
+			} else {
+				if ((walkable(x - 1, y) && !walkable(x - 1, y - dy))
+						|| (walkable(x + 1, y) && !walkable(x + 1, y - dy))) {
+					return y * width + x;
+				}
+				if (jump4(x + 1, y, 1, 0) != -1 || jump4(x - 1, y, -1, 0) != -1) {
+					return y * width + x;
+				}
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	private TArray<Vector2f> buildPath(int goal) {
+		int count = 1;
+		for (int idx = goal; parents[idx] != -1; idx = parents[idx]) {
+			final int parent = parents[idx];
+			count += MathUtils.max(MathUtils.abs(idx % width - parent % width),
+					MathUtils.abs(idx / width - parent / width));
+		}
+		Vector2f[] nodes = new Vector2f[count];
+		int pos = count;
+		for (int idx = goal; parents[idx] != -1; idx = parents[idx]) {
+			final int parent = parents[idx];
+			int x = idx % width;
+			int y = idx / width;
+			final int px = parent % width;
+			final int py = parent / width;
+			final int dx = MathUtils.sign(px - x);
+			final int dy = MathUtils.sign(py - y);
+			for (; x != px || y != py;) {
+				nodes[--pos] = new Vector2f(x, y);
+				if (x != px) {
+					x += dx;
+				}
+				if (y != py) {
+					y += dy;
+				}
+			}
+		}
+		final int root = parentRoot(goal);
+		nodes[--pos] = new Vector2f(root % width, root / width);
+		openList.clear();
+		return new TArray<Vector2f>(nodes);
+	}
+
+	private int parentRoot(int idx) {
+		for (; parents[idx] != -1;) {
+			idx = parents[idx];
+		}
+		return idx;
+	}
+
+	/**
+	 * 返回上次检索所展开的跳点数量
+	 *
+	 * @return
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	public void clear() {
+		parents = null;
+		gScores = null;
+		openStamps = null;
+		closedStamps = null;
+		capacity = 0;
+		stamp = 0;
+		openList.clear();
+	}
+
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map.tmx;
+
+import loon.LSysException;
+import loon.LSystem;
+import loon.action.map.tmx.TMXTileLayer.Compression;
+import loon.action.map.tmx.TMXTileLayer.Encoding;
+import loon.utils.MathUtils;
+
+/**
+ * 图层数据(<data>)的增量解码,文本分多次送入,CSV与未压缩的base64数据直接写入图块数组,压缩的base64数据先解码为字节,
+ * 结束时再解压(压缩后的数据远小于原始文本)
+ */
+final class TMXDataDecoder {
+
+	private final static int[] BASE64 = new int[128];
+
+	static {
+		for (int i = 0; i < BASE64.length; i++) {
+			BASE64[i] = -1;
+		}
+		final String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < chars.length(); i++) {
+			BASE64[chars.charAt(i)] = i;
+		}
+	}
+
+	private final Encoding encoding;
+
+	private final Compression compression;
+
+	private final int[] out;
+
+	private int count;
+
+	private long value;
+
+	private boolean digit;
+
+	private int quad, quadSize;
+
+	private int word, wordSize;
+
+	private byte[] compressed;
+
+	private int compressedSize;
+
+	TMXDataDecoder(Encoding encoding, Compression compression, int[] out) {
+		this.encoding = encoding;
+		this.compression = compression == null ? Compression.NONE : compression;
+		this.out = out;
+		if (encoding == Encoding.BASE64 && this.compression != Compression.NONE) {
+			this.compressed = new byte[1024];
+		}
+	}
+
+	/**
+	 * 送入一个<tile>元素的gid(XML格式)
+	 *
+	 * @param gid
+	 */
+	void addTile(int gid) {
+		if (count < out.length) {
+			out[count++] = gid;
+		}
+	}
+
+	/**
+	 * 送入一段文本(CSV或base64格式)
+	 *
+	 * @param text
+	 */
+	void addText(String text) {
+		switch (encoding) {
+		case CSV:
+			addCSV(text);
+			break;
+		case BASE64:
+			addBase64(text);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void addCSV(String csv) {
+		final int max = out.length;
+		for (int i = 0, size = csv.length(); i < size && count < max; i++) {
+			final char ch = csv.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				value = value * 10 + (ch - '0');
+				digit = true;
+			} else if (ch == ',') {
+				out[count++] = (int) value;
+				value = 0;
+				digit = false;
+			} else if (ch == '-') {
+				throw new LSysException("on unsigned string " + csv.substring(i, MathUtils.min(size, i + 12)) + ".");
+			}
+		}
+	}
+
+	private void addBase64(String base64) {
+		for (int i = 0, size = base64.length(); i < size; i++) {
+			final char ch = base64.charAt(i);
+			if (ch == '=') {
+				// 补位字符,之前不足4个字符的部分按实际字节数写出
+				flushQuad();
+				continue;
+			}
+			final int v = ch < 128 ? BASE64[ch] : -1;
+			if (v < 0) {
+				continue;
+			}
+			quad = (quad << 6) | v;
+			if (++quadSize == 4) {
+				addByte(quad >> 16);
+				addByte(quad >> 8);
+				addByte(quad);
+				quad = 0;
+				quadSize = 0;
+			}
+		}
+	}
+
+	private void flushQuad() {
+		if (quadSize == 2) {
+			addByte(quad >> 4);
+		} else if (quadSize == 3) {
+			addByte(quad >> 10);
+			addByte(quad >> 2);
+		}
+		quad = 0;
+		quadSize = 0;
+	}
+
+	private void addByte(int b) {
+		if (compressed != null) {
+			if (compressedSize == compressed.length) {
+				final byte[] newBytes = new byte[compressedSize * 2];
+				System.arraycopy(compressed, 0, newBytes, 0, compressedSize);
+				compressed = newBytes;
+			}
+			compressed[compressedSize++] = (byte) b;
+			return;
+		}
+		// 未压缩的数据直接组合为小端序的GID
+		word |= (b & 0xFF) << (wordSize * 8);
+		if (++wordSize == 4) {
+			if (count < out.length) {
+				out[count++] = word;
+			}
+			word = 0;
+			wordSize = 0;
+		}
+	}
+
+	/**
+	 * 结束解码,返回图块数组
+	 *
+	 * @return
+	 */
+	int[] finish() {
+		switch (encoding) {
+		case CSV:
+			if (digit && count < out.length) {
+				out[count++] = (int) value;
+			}
+			digit = false;
+			break;
+		case BASE64:
+			flushQuad();
+			if (compressed != null) {
+				try {
+					final byte[] bytes = new byte[compressedSize];
+					System.arraycopy(compressed, 0, bytes, 0, compressedSize);
+					TMXTileLayer.decodeBytes(bytes, compression, out);
+					count = out.length;
+				} catch (Throwable e) {
+					LSystem.error("TMXTile parse base64 exception", e);
+				}
+				compressed = null;
+			}
+			break;
+		default:
+			break;
+		}
+		return out;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+}
@@ -29,8 +29,8 @@ import loon.action.map.tmx.renderers.TMXMapRenderer;
 import loon.action.map.tmx.renderers.TMXOrthogonalMapRenderer;
 import loon.action.map.tmx.renderers.TMXStaggeredMapRenderer;
 import loon.canvas.LColor;
+import loon.utils.MathUtils;
 import loon.utils.TArray;
-import loon.utils.xml.XMLDocument;
 import loon.utils.xml.XMLElement;
 import loon.utils.xml.XMLParser;
 
@@ -85,6 +85,8 @@ public class TMXMap {
 	private int tileHeight;
 	private int nextObjectID;
 	private int hexSideLength;
+	private boolean infinite;
+	private int startX, startY;
 
 	private TArray<TMXMapLayer> layers;
 	private TArray<TMXTileLayer> tileLayers;
@@ -115,15 +117,17 @@ public class TMXMap {
 		this.filePath = filePath;
 		this.tilesLocation = tilesLocation;
 
-		XMLDocument doc = XMLParser.parse(filePath);
-		XMLElement docElement = doc.getRoot();
+		// 以事件方式读取文件,图块数据在读取时直接解码,不保存为XMLElement与字符串
+		TMXStreamLoader loader = new TMXStreamLoader();
+		XMLParser.stream(filePath, loader);
+		XMLElement docElement = loader.getRoot();
 
-		if (!docElement.getName().equals("map")) {
+		if (docElement == null || !docElement.getName().equals("map")) {
 			throw new LSysException(
 					"Invalid TMX map file. The first child must be a <map> element.");
 		}
 
-		parse(docElement, tilesLocation);
+		parse(docElement, tilesLocation, loader);
 	}
 
 	/**
@@ -196,6 +200,55 @@ public class TMXMap {
 		return hexSideLength;
 	}
 
+	/**
+	 * 是否为无限地图(图层数据分块保存并按需载入)
+	 * 
+	 * @return
+	 */
+	public boolean isInfinite() {
+		return infinite;
+	}
+
+	/**
+	 * 无限地图左上角的图块坐标(图块图层坐标0,0对应的地图坐标),对象图层中的像素坐标需减去startX * tileWidth才与图块图层对齐
+	 * 
+	 * @return
+	 */
+	public int getStartX() {
+		return startX;
+	}
+
+	public int getStartY() {
+		return startY;
+	}
+
+	/**
+	 * 设置无限地图每个图层已解码分块可占用的内存(字节)
+	 * 
+	 * @param bytes
+	 */
+	public void setChunkMemoryBudget(int bytes) {
+		for (TMXTileLayer layer : tileLayers) {
+			if (layer.isInfinite()) {
+				layer.getTileChunks().setMemoryBudget(bytes);
+			}
+		}
+	}
+
+	/**
+	 * 请求全部无限地图图层载入指定区域(图层坐标)的图块数据
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void requestChunks(int x, int y, int w, int h) {
+		for (TMXTileLayer layer : tileLayers) {
+			layer.requestChunks(x, y, w, h);
+		}
+	}
+
 	public TMXMapLayer getLayer(int index) {
 		return layers.get(index);
 	}
@@ -244,9 +297,50 @@ public class TMXMap {
 		return imageLayers;
 	}
 
+	/**
+	 * GID到图块集索引的查询表最多覆盖的GID数量
+	 */
+	private static final int MAX_TILESET_LOOKUP = 1 << 16;
+
+	private int[] tileSetLookup;
+
+	private int tileSetLookupCount = -1;
+
+	private void updateTileSetLookup() {
+		int maxGID = 0;
+		for (int i = 0; i < tileSets.size; i++) {
+			TMXTileSet tileSet = tileSets.get(i);
+			maxGID = MathUtils.max(maxGID, tileSet.getFirstGID() + tileSet.getTiles().size);
+		}
+		maxGID = MathUtils.min(maxGID, MAX_TILESET_LOOKUP);
+		int[] lookup = new int[maxGID + 1];
+		for (int i = 0; i < lookup.length; i++) {
+			lookup[i] = -1;
+		}
+		for (int i = 0; i < tileSets.size; i++) {
+			final int first = tileSets.get(i).getFirstGID();
+			if (first >= 0 && first < lookup.length) {
+				lookup[first] = MathUtils.max(lookup[first], i);
+			}
+		}
+		// 与逐个比较相同:取firstGID不大于gid的最后一个图块集
+		for (int i = 1; i < lookup.length; i++) {
+			lookup[i] = MathUtils.max(lookup[i], lookup[i - 1]);
+		}
+		tileSetLookup = lookup;
+		tileSetLookupCount = tileSets.size;
+	}
+
 	public int findTileSetIndex(int gid) {
 		gid &= ~(FLIPPED_HORIZONTALLY_FLAG | FLIPPED_VERTICALLY_FLAG | FLIPPED_DIAGONALLY_FLAG);
 
+		if (tileSetLookupCount != tileSets.size) {
+			updateTileSetLookup();
+		}
+		if (gid < tileSetLookup.length) {
+			return tileSetLookup[gid];
+		}
+
 		for (int i = getNumTileSets() - 1; i >= 0; i--) {
 			if (gid >= getTileset(i).getFirstGID()) {
 				return i;
@@ -281,7 +375,7 @@ public class TMXMap {
 		return properties;
 	}
 
-	private void parse(XMLElement element, String tilesLocation) {
+	private void parse(XMLElement element, String tilesLocation, TMXStreamLoader loader) {
 
 		version = element.getDoubleAttribute("version", 0);
 		width = element.getIntAttribute("width", 0);
@@ -289,6 +383,7 @@ public class TMXMap {
 		tileWidth = element.getIntAttribute("tilewidth", 0);
 		tileHeight = element.getIntAttribute("tileheight", 0);
 		nextObjectID = element.getIntAttribute("nextobjectid", 0);
+		infinite = element.getIntAttribute("infinite", 0) == 1;
 
 		if (element.hasAttribute("background")) {
 			String hexColor = element.getAttribute("background",
@@ -366,7 +461,7 @@ public class TMXMap {
 
 			case "layer":
 				TMXTileLayer tileLayer = new TMXTileLayer(this);
-				tileLayer.parse(node);
+				tileLayer.parse(node, loader.getTileData(node.getChildrenByName("data")));
 				tileLayers.add(tileLayer);
 				break;
 
@@ -385,11 +480,41 @@ public class TMXMap {
 
 		}
 
+		alignChunkLayers();
+
 		layers.addAll(tileLayers);
 		layers.addAll(imageLayers);
 		layers.addAll(objectLayers);
 	}
 
+	/**
+	 * 无限地图的各图层分块范围不同,统一以全部图层的合并范围作为图层坐标,渲染时各图层才能对齐
+	 */
+	private void alignChunkLayers() {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (TMXTileLayer layer : tileLayers) {
+			if (layer.isInfinite()) {
+				minX = MathUtils.min(minX, layer.getStartX());
+				minY = MathUtils.min(minY, layer.getStartY());
+				maxX = MathUtils.max(maxX, layer.getStartX() + layer.getWidth());
+				maxY = MathUtils.max(maxY, layer.getStartY() + layer.getHeight());
+			}
+		}
+		if (minX > maxX || minY > maxY) {
+			return;
+		}
+		startX = minX;
+		startY = minY;
+		width = maxX - minX;
+		height = maxY - minY;
+		for (TMXTileLayer layer : tileLayers) {
+			if (layer.isInfinite()) {
+				layer.setChunkArea(startX, startY, width, height);
+			}
+		}
+	}
+
 	public String getTilesLocation() {
 		return tilesLocation;
 	}
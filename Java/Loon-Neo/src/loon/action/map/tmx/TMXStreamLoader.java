@@ -0,0 +1,159 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map.tmx;
+
+import loon.LSystem;
+import loon.action.map.tmx.TMXTileLayer.Compression;
+import loon.action.map.tmx.TMXTileLayer.Encoding;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.xml.XMLAttribute;
+import loon.utils.xml.XMLComment;
+import loon.utils.xml.XMLData;
+import loon.utils.xml.XMLElement;
+import loon.utils.xml.XMLListener;
+import loon.utils.xml.XMLProcessing;
+
+/**
+ * 以事件方式读取TMX文件,除有限地图图层的<data>外都组成XMLElement树交给TMXMap读取,
+ * <data>中的文本与<tile>元素在读取时直接解码为图块数组,不保存为字符串与XMLElement
+ */
+final class TMXStreamLoader implements XMLListener {
+
+	private final TArray<XMLElement> stack = new TArray<XMLElement>();
+
+	private final ObjectMap<XMLElement, int[]> tileData = new ObjectMap<XMLElement, int[]>();
+
+	private XMLElement root;
+
+	private XMLElement dataElement;
+
+	private TMXDataDecoder decoder;
+
+	private int mapWidth, mapHeight;
+
+	@Override
+	public void addHeader(int line, XMLProcessing xp) {
+		if (decoder == null && stack.size > 0) {
+			stack.peek().addContents(xp);
+		}
+	}
+
+	@Override
+	public void addComment(int line, XMLComment c) {
+		if (decoder == null && stack.size > 0) {
+			stack.peek().addContents(c);
+		}
+	}
+
+	@Override
+	public void addData(int line, XMLData data) {
+		if (decoder != null) {
+			decoder.addText(data.toString());
+		} else if (stack.size > 0) {
+			stack.peek().addContents(data);
+		}
+	}
+
+	@Override
+	public void addAttribute(int line, XMLAttribute a) {
+	}
+
+	@Override
+	public void addElement(int line, XMLElement e) {
+		final String name = e.getName();
+		if (decoder != null) {
+			if ("tile".equals(name)) {
+				decoder.addTile(MathUtils.parseUnsignedInt(e.getAttribute("gid", "0")));
+				stack.add(e);
+				return;
+			}
+			if ("chunk".equals(name)) {
+				// 无限地图,分块数据由TMXTileChunks在需要时解码,按原样保存
+				decoder = null;
+			}
+		}
+		if (stack.size == 0) {
+			root = e;
+			if ("map".equals(name)) {
+				mapWidth = e.getIntAttribute("width", 0);
+				mapHeight = e.getIntAttribute("height", 0);
+			}
+		} else {
+			final XMLElement parent = stack.peek();
+			parent.addContents(e);
+			if ("data".equals(name) && "layer".equals(parent.getName()) && stack.size == 2) {
+				beginData(e);
+			}
+		}
+		stack.add(e);
+	}
+
+	private void beginData(XMLElement e) {
+		Encoding encoding = Encoding.XML;
+		final String encodingName = e.getAttribute("encoding", LSystem.EMPTY).trim().toLowerCase();
+		if ("base64".equals(encodingName)) {
+			encoding = Encoding.BASE64;
+		} else if ("csv".equals(encodingName)) {
+			encoding = Encoding.CSV;
+		}
+		Compression compression = Compression.NONE;
+		final String compressionName = e.getAttribute("compression", LSystem.EMPTY).trim().toLowerCase();
+		if ("gzip".equals(compressionName)) {
+			compression = Compression.GZIP;
+		} else if ("zlib".equals(compressionName)) {
+			compression = Compression.ZLIB;
+		}
+		dataElement = e;
+		decoder = new TMXDataDecoder(encoding, compression, new int[mapWidth * mapHeight]);
+	}
+
+	@Override
+	public void endElement(int line, XMLElement e) {
+		stack.pop();
+		if (e == dataElement) {
+			if (decoder != null) {
+				tileData.put(e, decoder.finish());
+				decoder = null;
+			}
+			dataElement = null;
+		}
+	}
+
+	XMLElement getRoot() {
+		return root;
+	}
+
+	/**
+	 * 取出(并移除)指定<data>元素已经解码的图块数据
+	 *
+	 * @param data
+	 * @return
+	 */
+	int[] getTileData(XMLElement data) {
+		if (data == null) {
+			return null;
+		}
+		return tileData.remove(data);
+	}
+
+}
@@ -0,0 +1,498 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map.tmx;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.action.map.tmx.TMXTileLayer.Compression;
+import loon.action.map.tmx.TMXTileLayer.Encoding;
+import loon.utils.LongMap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.xml.XMLElement;
+
+/**
+ * 无限地图(infinite)图层的分块数据,分块只保存未解码的原始数据,在镜头接近时于后台线程解码(不支持异步的环境中同步解码),
+ * 超出内存预算时按最久未使用的顺序释放已解码的分块,释放后的分块在需要时重新解码.运行时修改过的分块不会被释放(否则修改会丢失).
+ *
+ * 所有读写函数与request都只应在主线程调用,后台线程只负责解码.
+ */
+public class TMXTileChunks implements LRelease {
+
+	/**
+	 * 默认的内存预算(字节)
+	 */
+	public final static int DEFAULT_MEMORY_BUDGET = 8 * 1024 * 1024;
+
+	private static class Chunk {
+
+		final int x, y, width, height;
+
+		final String data;
+
+		final XMLElement element;
+
+		int[] tiles;
+
+		int[] decoded;
+
+		boolean pending;
+
+		boolean dirty;
+
+		int lastUse;
+
+		Chunk(int x, int y, int width, int height, String data, XMLElement element) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.data = data;
+			this.element = element;
+		}
+
+		int getMemSize() {
+			return width * height * 4;
+		}
+	}
+
+	private final TMXTileLayer layer;
+
+	private final Encoding encoding;
+
+	private final Compression compression;
+
+	private final LongMap<Chunk> chunks = new LongMap<Chunk>(64);
+
+	private final TArray<Chunk> completed = new TArray<Chunk>();
+
+	private int chunkWidth, chunkHeight;
+
+	private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+
+	private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+	private int memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+	private int memSize;
+
+	private int loadedCount;
+
+	private int pendingCount;
+
+	private int stamp;
+
+	private int decodeCount;
+
+	private int evictCount;
+
+	private int dirtyCount;
+
+	private Chunk lastChunk;
+
+	private volatile boolean closed;
+
+	TMXTileChunks(TMXTileLayer layer, Encoding encoding, Compression compression) {
+		this.layer = layer;
+		this.encoding = encoding;
+		this.compression = compression;
+	}
+
+	/**
+	 * 登记一个<chunk>元素,此时只保存原始数据不解码
+	 *
+	 * @param element
+	 */
+	void addSource(XMLElement element) {
+		final int x = element.getIntAttribute("x", 0);
+		final int y = element.getIntAttribute("y", 0);
+		final int w = element.getIntAttribute("width", 0);
+		final int h = element.getIntAttribute("height", 0);
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		if (chunkWidth == 0) {
+			chunkWidth = w;
+			chunkHeight = h;
+		}
+		final Chunk chunk = new Chunk(x, y, w, h, encoding == Encoding.XML ? null : element.getContents(),
+				encoding == Encoding.XML ? element : null);
+		chunks.put(floorDiv(x, chunkWidth), floorDiv(y, chunkHeight), chunk);
+		minX = MathUtils.min(minX, x);
+		minY = MathUtils.min(minY, y);
+		maxX = MathUtils.max(maxX, x + w);
+		maxY = MathUtils.max(maxY, y + h);
+	}
+
+	private static int floorDiv(int v, int d) {
+		final int q = v / d;
+		return (v % d != 0 && (v < 0)) ? q - 1 : q;
+	}
+
+	private Chunk find(int x, int y) {
+		final Chunk last = lastChunk;
+		if (last != null && x >= last.x && y >= last.y && x < last.x + last.width && y < last.y + last.height) {
+			return last;
+		}
+		if (chunkWidth == 0) {
+			return null;
+		}
+		final Chunk chunk = chunks.get(floorDiv(x, chunkWidth), floorDiv(y, chunkHeight));
+		if (chunk != null && chunk.tiles != null) {
+			lastChunk = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * 读取指定地图坐标的原始GID,所在分块未载入时返回0
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int get(int x, int y) {
+		final Chunk chunk = find(x, y);
+		if (chunk == null || chunk.tiles == null) {
+			return 0;
+		}
+		final int cx = x - chunk.x;
+		final int cy = y - chunk.y;
+		if (cx < 0 || cy < 0 || cx >= chunk.width || cy >= chunk.height) {
+			return 0;
+		}
+		return chunk.tiles[cy * chunk.width + cx];
+	}
+
+	/**
+	 * 修改指定地图坐标的原始GID,所在分块未载入时立即解码(修改后的分块不再被释放),坐标不在任何分块中时返回false
+	 *
+	 * @param x
+	 * @param y
+	 * @param gid
+	 * @return
+	 */
+	public boolean set(int x, int y, int gid) {
+		if (closed) {
+			return false;
+		}
+		final Chunk chunk = find(x, y);
+		if (chunk == null) {
+			return false;
+		}
+		final int cx = x - chunk.x;
+		final int cy = y - chunk.y;
+		if (cx < 0 || cy < 0 || cx >= chunk.width || cy >= chunk.height) {
+			return false;
+		}
+		if (chunk.tiles == null) {
+			// 后台解码的结果完成时会被忽略
+			install(chunk, decode(chunk));
+			lastChunk = chunk;
+		}
+		if (!chunk.dirty) {
+			chunk.dirty = true;
+			dirtyCount++;
+		}
+		chunk.tiles[cy * chunk.width + cx] = gid;
+		return true;
+	}
+
+	/**
+	 * 指定地图坐标所在的分块是否已经解码
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean isLoaded(int x, int y) {
+		final Chunk chunk = find(x, y);
+		return chunk != null && chunk.tiles != null;
+	}
+
+	/**
+	 * 请求指定区域(地图坐标)的分块,未解码的分块提交解码,并按内存预算释放最久未使用的分块(本次请求的分块不会被释放)
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void request(int x, int y, int w, int h) {
+		if (closed || chunkWidth == 0) {
+			return;
+		}
+		stamp++;
+		installCompleted();
+		final int left = floorDiv(MathUtils.max(x, minX), chunkWidth);
+		final int top = floorDiv(MathUtils.max(y, minY), chunkHeight);
+		final int right = floorDiv(MathUtils.min(x + w, maxX) - 1, chunkWidth);
+		final int bottom = floorDiv(MathUtils.min(y + h, maxY) - 1, chunkHeight);
+		final boolean async = LSystem.isAsyncSupported();
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				final Chunk chunk = chunks.get(cx, cy);
+				if (chunk == null) {
+					continue;
+				}
+				chunk.lastUse = stamp;
+				if (chunk.tiles == null && !chunk.pending) {
+					if (async) {
+						submit(chunk);
+					} else {
+						install(chunk, decode(chunk));
+					}
+				}
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * 立即解码指定区域(地图坐标)中尚未载入的分块(正在后台解码的分块也直接解码,后台结果完成时会被忽略),用于当前可见的区域
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void load(int x, int y, int w, int h) {
+		if (closed || chunkWidth == 0) {
+			return;
+		}
+		installCompleted();
+		final int left = floorDiv(MathUtils.max(x, minX), chunkWidth);
+		final int top = floorDiv(MathUtils.max(y, minY), chunkHeight);
+		final int right = floorDiv(MathUtils.min(x + w, maxX) - 1, chunkWidth);
+		final int bottom = floorDiv(MathUtils.min(y + h, maxY) - 1, chunkHeight);
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				final Chunk chunk = chunks.get(cx, cy);
+				if (chunk == null) {
+					continue;
+				}
+				chunk.lastUse = stamp;
+				if (chunk.tiles == null) {
+					install(chunk, decode(chunk));
+				}
+			}
+		}
+	}
+
+	private void submit(final Chunk chunk) {
+		chunk.pending = true;
+		pendingCount++;
+		LSystem.invokeAsync(new Runnable() {
+
+			@Override
+			public void run() {
+				final int[] tiles = decode(chunk);
+				synchronized (completed) {
+					chunk.decoded = tiles;
+					completed.add(chunk);
+				}
+			}
+		});
+	}
+
+	private int[] decode(Chunk chunk) {
+		final int[] tiles = new int[chunk.width * chunk.height];
+		if (closed) {
+			return tiles;
+		}
+		try {
+			switch (encoding) {
+			case XML:
+				TMXTileLayer.decodeXML(chunk.element, tiles);
+				break;
+			case BASE64:
+				TMXTileLayer.decodeBase64(chunk.data, compression, tiles);
+				break;
+			case CSV:
+				TMXTileLayer.decodeCSV(chunk.data, tiles);
+				break;
+			}
+		} catch (Throwable e) {
+			LSystem.error("TMXTile chunk decode exception at " + chunk.x + "," + chunk.y + " (" + chunk.width + "x"
+					+ chunk.height + "), the chunk is left empty", e);
+		}
+		return tiles;
+	}
+
+	private void installCompleted() {
+		synchronized (completed) {
+			for (int i = 0; i < completed.size; i++) {
+				final Chunk chunk = completed.get(i);
+				chunk.pending = false;
+				pendingCount--;
+				install(chunk, chunk.decoded);
+				chunk.decoded = null;
+			}
+			completed.clear();
+		}
+	}
+
+	private void install(Chunk chunk, int[] tiles) {
+		if (chunk.tiles != null || tiles == null) {
+			return;
+		}
+		chunk.tiles = tiles;
+		memSize += chunk.getMemSize();
+		loadedCount++;
+		decodeCount++;
+		layer.markAreaChanged(chunk.x, chunk.y, chunk.width, chunk.height);
+	}
+
+	private void evict() {
+		while (memSize > memoryBudget) {
+			Chunk oldest = null;
+			for (int i = 0, n = chunks.capacity(); i < n; i++) {
+				final Chunk chunk = chunks.getValueAt(i);
+				if (chunk != null && chunk.tiles != null && !chunk.dirty && chunk.lastUse != stamp
+						&& (oldest == null || chunk.lastUse < oldest.lastUse)) {
+					oldest = chunk;
+				}
+			}
+			if (oldest == null) {
+				return;
+			}
+			release(oldest);
+			evictCount++;
+		}
+	}
+
+	private void release(Chunk chunk) {
+		chunk.tiles = null;
+		memSize -= chunk.getMemSize();
+		loadedCount--;
+		if (lastChunk == chunk) {
+			lastChunk = null;
+		}
+		layer.markAreaChanged(chunk.x, chunk.y, chunk.width, chunk.height);
+	}
+
+	/**
+	 * 设置已解码分块可占用的内存(字节)
+	 *
+	 * @param bytes
+	 */
+	public void setMemoryBudget(int bytes) {
+		this.memoryBudget = MathUtils.max(0, bytes);
+		evict();
+	}
+
+	public int getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * 已解码分块占用的内存(字节)
+	 *
+	 * @return
+	 */
+	public int getMemSize() {
+		return memSize;
+	}
+
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	public int getLoadedChunkCount() {
+		return loadedCount;
+	}
+
+	/**
+	 * 运行时修改过(常驻内存)的分块数量
+	 *
+	 * @return
+	 */
+	public int getDirtyChunkCount() {
+		return dirtyCount;
+	}
+
+	public int getPendingChunkCount() {
+		return pendingCount;
+	}
+
+	/**
+	 * 累计解码的分块数量
+	 *
+	 * @return
+	 */
+	public int getDecodeCount() {
+		return decodeCount;
+	}
+
+	/**
+	 * 累计因内存预算而释放的分块数量
+	 *
+	 * @return
+	 */
+	public int getEvictCount() {
+		return evictCount;
+	}
+
+	public int getChunkWidth() {
+		return chunkWidth;
+	}
+
+	public int getChunkHeight() {
+		return chunkHeight;
+	}
+
+	int getMinX() {
+		return minX == Integer.MAX_VALUE ? 0 : minX;
+	}
+
+	int getMinY() {
+		return minY == Integer.MAX_VALUE ? 0 : minY;
+	}
+
+	int getMaxX() {
+		return maxX == Integer.MIN_VALUE ? 0 : maxX;
+	}
+
+	int getMaxY() {
+		return maxY == Integer.MIN_VALUE ? 0 : maxY;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (completed) {
+			completed.clear();
+		}
+		for (int i = 0, n = chunks.capacity(); i < n; i++) {
+			final Chunk chunk = chunks.getValueAt(i);
+			if (chunk != null) {
+				chunk.tiles = null;
+			}
+		}
+		chunks.clear();
+		lastChunk = null;
+		memSize = 0;
+		loadedCount = 0;
+		pendingCount = 0;
+		dirtyCount = 0;
+	}
+
+}
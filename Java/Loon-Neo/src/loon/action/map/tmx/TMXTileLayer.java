@@ -20,7 +20,6 @@
  */
 package loon.action.map.tmx;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
@@ -32,8 +31,10 @@ import loon.action.map.Field2D;
 import loon.action.map.TileMapConfig;
 import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.utils.Base64Coder;
+import loon.utils.IntArray;
 import loon.utils.MathUtils;
 import loon.utils.TArray;
+import loon.utils.TimeUtils;
 import loon.utils.xml.XMLElement;
 
 public class TMXTileLayer extends TMXMapLayer {
@@ -46,7 +47,38 @@ public class TMXTileLayer extends TMXMapLayer {
 		NONE, GZIP, ZLIB
 	}
 
-	private TMXMapTile[] tileMap;
+	/**
+	 * 保留的最大修改记录数(每条记录为一个矩形区域),超过时之前的记录被丢弃
+	 */
+	private final static int MAX_CHANGE_LOG = 4096;
+
+	/**
+	 * 去除翻转标记后的GID
+	 */
+	private final static int GID_MASK = 0x1FFFFFFF;
+
+	private final static int FLIPPED_HORIZONTALLY = 0x80000000;
+
+	private final static int FLIPPED_VERTICALLY = 0x40000000;
+
+	private final static int FLIPPED_DIAGONALLY = 0x20000000;
+
+	/**
+	 * 图块数据(y * width + x),低29位为GID,高3位为翻转标记(与TMX文件中的格式一致)
+	 */
+	private int[] tileData;
+
+	private long parseTime;
+
+	private final IntArray changeLog = new IntArray();
+
+	private int changeLogBase;
+
+	private int revision;
+
+	private TMXTileChunks chunks;
+
+	private int startX, startY;
 
 	private Encoding encoding;
 	private Compression compression;
@@ -59,6 +91,16 @@ public class TMXTileLayer extends TMXMapLayer {
 	}
 
 	public void parse(XMLElement element) {
+		parse(element, null);
+	}
+
+	/**
+	 * 读取图层,streamed为以流方式读取文件时已经解码的图块数据(没有时为null)
+	 * 
+	 * @param element
+	 * @param streamed
+	 */
+	void parse(XMLElement element, int[] streamed) {
 
 		name = element.getAttribute("name", LSystem.EMPTY);
 
@@ -72,7 +114,7 @@ public class TMXTileLayer extends TMXMapLayer {
 		if (nodes != null)
 			properties.parse(nodes);
 
-		tileMap = new TMXMapTile[width * height];
+		final long start = TimeUtils.millis();
 
 		XMLElement dataElement = element.getChildrenByName("data");
 
@@ -103,141 +145,376 @@ public class TMXTileLayer extends TMXMapLayer {
 			}
 		}
 
-		switch (encoding) {
-		case XML:
-			parseXML(dataElement);
-			break;
-
-		case BASE64:
-			try {
-				parseBase64(dataElement.getContents());
-			} catch (Throwable e) {
-				LSystem.error("TMXTile parse base64 exception", e);
+		TArray<XMLElement> chunkList = dataElement.list("chunk");
+		if (chunkList.size > 0) {
+			// 无限地图,图块数据分块保存,只在需要时解码
+			if (chunks != null) {
+				chunks.close();
 			}
-			break;
+			chunks = new TMXTileChunks(this, encoding, compression);
+			for (int i = 0; i < chunkList.size; i++) {
+				chunks.addSource(chunkList.get(i));
+			}
+			startX = chunks.getMinX();
+			startY = chunks.getMinY();
+			width = chunks.getMaxX() - startX;
+			height = chunks.getMaxY() - startY;
+			tileData = null;
+		} else if (streamed != null && streamed.length == width * height) {
+			// 数据已在读取文件时解码
+			tileData = streamed;
+		} else {
+			tileData = new int[width * height];
+			switch (encoding) {
+			case XML:
+				decodeXML(dataElement, tileData);
+				break;
 
-		case CSV:
-			parseCSV(dataElement.getContents());
-			break;
+			case BASE64:
+				try {
+					decodeBase64(dataElement.getContents(), compression, tileData);
+				} catch (Throwable e) {
+					LSystem.error("TMXTile parse base64 exception", e);
+				}
+				break;
+
+			case CSV:
+				decodeCSV(dataElement.getContents(), tileData);
+				break;
+			}
 		}
+		// 整个图层被重新读取,清空修改记录使使用者全部刷新
+		changeLog.clear();
+		revision++;
+		changeLogBase = revision;
+		parseTime = TimeUtils.millis() - start;
 	}
 
-	private void parseXML(XMLElement element) {
-		XMLElement nodes = element.getChildrenByName("tile");
-		TArray<XMLElement> list = nodes.list();
-		for (int tileCount = 0; tileCount < list.size; tileCount++) {
+	static void decodeXML(XMLElement element, int[] out) {
+		TArray<XMLElement> list = element.list("tile");
+		final int size = MathUtils.min(list.size, out.length);
+		for (int tileCount = 0; tileCount < size; tileCount++) {
 			XMLElement tileElement = list.get(tileCount);
-
-			int gid = MathUtils.parseUnsignedInt(tileElement.getAttribute("gid", "-1"));
-
-			int tileSetIndex = map.findTileSetIndex(gid);
-
-			if (tileSetIndex != -1) {
-				TMXTileSet tileSet = map.getTileset(tileSetIndex);
-				tileMap[tileCount] = new TMXMapTile(gid, tileSet.getFirstGID(), tileSetIndex);
-			} else
-				tileMap[tileCount] = new TMXMapTile(gid, 0, -1);
+			out[tileCount] = MathUtils.parseUnsignedInt(tileElement.getAttribute("gid", "0"));
 		}
 	}
 
-	private static int byteToInt(byte b) {
-		return b & 0xFF;
+	static void decodeBase64(String base64, Compression compression, int[] out) throws Exception {
+		decodeBytes(Base64Coder.decodeBase64(base64.toCharArray()), compression, out);
 	}
 
-	private void parseBase64(String base64) throws Exception {
-		byte[] bytes = Base64Coder.decodeBase64(base64.toCharArray());
-		InputStream is = null;
+	/**
+	 * 解压(如果需要)并读取小端序的GID
+	 * 
+	 * @param bytes
+	 * @param compression
+	 * @param out
+	 * @throws Exception
+	 */
+	static void decodeBytes(byte[] bytes, Compression compression, int[] out) throws Exception {
+		final int length = out.length * 4;
+		byte[] data;
 		if (compression == null || compression == Compression.NONE) {
-			is = new ByteArrayInputStream(bytes);
-		} else if (compression == Compression.GZIP) {
-			is = new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes), bytes.length));
-		} else if (compression == Compression.ZLIB) {
-			is = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
-		}
-		byte[] temp = new byte[4];
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				int read = is.read(temp);
-				while (read < temp.length) {
-					int curr = is.read(temp, read, temp.length - read);
-					if (curr == -1)
+			data = bytes;
+		} else {
+			InputStream is = null;
+			if (compression == Compression.GZIP) {
+				is = new GZIPInputStream(new ByteArrayInputStream(bytes), MathUtils.max(512, bytes.length));
+			} else {
+				is = new InflaterInputStream(new ByteArrayInputStream(bytes));
+			}
+			// 一次解压全部数据,不逐个图块读取
+			data = new byte[length];
+			int read = 0;
+			try {
+				for (; read < length;) {
+					int curr = is.read(data, read, length - read);
+					if (curr == -1) {
 						break;
+					}
 					read += curr;
 				}
-				if (read != temp.length) {
-					throw new LSysException("Error Reading TMX Layer Data: Premature end of tile data");
-				}
-				int gid = byteToInt(temp[0]) | byteToInt(temp[1]) << 8 | byteToInt(temp[2]) << 16
-						| byteToInt(temp[3]) << 24;
-
-				int tileSetIndex = map.findTileSetIndex(gid);
-
-				if (tileSetIndex != -1) {
-					TMXTileSet tileSet = map.getTileset(tileSetIndex);
-					tileMap[y * width + x] = new TMXMapTile(gid, tileSet.getFirstGID(), tileSetIndex);
-				} else {
-					tileMap[y * width + x] = new TMXMapTile(gid, 0, -1);
-				}
+			} finally {
+				is.close();
+			}
+			if (read != length) {
+				throw new LSysException("Error Reading TMX Layer Data: Premature end of tile data");
 			}
 		}
+		if (data.length < length) {
+			throw new LSysException("Error Reading TMX Layer Data: Premature end of tile data");
+		}
+		for (int i = 0, j = 0; i < out.length; i++, j += 4) {
+			out[i] = (data[j] & 0xFF) | (data[j + 1] & 0xFF) << 8 | (data[j + 2] & 0xFF) << 16
+					| (data[j + 3] & 0xFF) << 24;
+		}
 	}
 
-	private void parseCSV(String csv) {
-		String[] tokens = csv.split(",");
+	/**
+	 * 直接从字符中读取以逗号分隔的GID,不创建中间字符串
+	 * 
+	 * @param csv
+	 * @param out
+	 */
+	static void decodeCSV(String csv, int[] out) {
+		final int size = csv.length();
+		final int max = out.length;
 		int tileCount = 0;
-
-		for (String token : tokens) {
-			int gid = MathUtils.parseUnsignedInt(token.trim());
-
-			int tileSetIndex = map.findTileSetIndex(gid);
-
-			if (tileSetIndex != -1) {
-				TMXTileSet tileSet = map.getTileset(tileSetIndex);
-				tileMap[tileCount] = new TMXMapTile(gid, tileSet.getFirstGID(), tileSetIndex);
-			} else {
-				tileMap[tileCount] = new TMXMapTile(gid, 0, -1);
+		long value = 0;
+		boolean digit = false;
+		for (int i = 0; i < size && tileCount < max; i++) {
+			final char ch = csv.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				value = value * 10 + (ch - '0');
+				digit = true;
+			} else if (ch == ',') {
+				out[tileCount++] = (int) value;
+				value = 0;
+				digit = false;
+			} else if (ch == '-') {
+				throw new LSysException("on unsigned string " + csv.substring(i, MathUtils.min(size, i + 12)) + ".");
 			}
+		}
+		if (digit && tileCount < max) {
+			out[tileCount] = (int) value;
+		}
+	}
 
-			tileCount++;
+	private int getRaw(int x, int y) {
+		if (chunks != null) {
+			return chunks.get(x + startX, y + startY);
 		}
+		return tileData[y * width + x];
 	}
 
+	/**
+	 * 修改指定位置的图块(无限地图中未载入的分块会立即解码,修改过的分块不会因内存预算被释放)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param gid
+	 */
 	public void setTileGID(int x, int y, int gid) {
-		int tileSetIndex = map.findTileSetIndex(gid);
-		if (tileSetIndex != -1) {
-			TMXTileSet tileSet = map.getTileset(tileSetIndex);
-			tileMap[y * width + x] = new TMXMapTile(gid, tileSet.getFirstGID(), tileSetIndex);
+		if (chunks != null) {
+			if (!chunks.set(x + startX, y + startY, gid)) {
+				return;
+			}
 		} else {
-			tileMap[y * width + x] = new TMXMapTile(gid, 0, -1);
+			tileData[y * width + x] = gid;
+		}
+		markChanged(x, y, 1, 1);
+	}
+
+	private void markChanged(int x, int y, int w, int h) {
+		if (changeLog.length >= MAX_CHANGE_LOG * 4) {
+			changeLog.clear();
+			changeLogBase = revision;
+		}
+		changeLog.add(x);
+		changeLog.add(y);
+		changeLog.add(w);
+		changeLog.add(h);
+		revision++;
+	}
+
+	/**
+	 * 标记一个区域改变(地图坐标,无限地图的分块载入或释放时调用)
+	 * 
+	 * @param mapX
+	 * @param mapY
+	 * @param w
+	 * @param h
+	 */
+	void markAreaChanged(int mapX, int mapY, int w, int h) {
+		final int left = MathUtils.max(0, mapX - startX);
+		final int top = MathUtils.max(0, mapY - startY);
+		final int right = MathUtils.min(width, mapX - startX + w);
+		final int bottom = MathUtils.min(height, mapY - startY + h);
+		if (right > left && bottom > top) {
+			// 整个区域只记录一次,分块载入与释放不会很快填满修改记录
+			markChanged(left, top, right - left, bottom - top);
+		}
+	}
+
+	/**
+	 * 图层数据的修订号,每次修改图块(或区域)后递增
+	 * 
+	 * @return
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * 获得指定修订号之后被修改的区域,每个区域依次以x,y,width,height(图块坐标)四个值写入out,返回false表示记录已被丢弃,需要视为全部改变
+	 * 
+	 * @param sinceRevision
+	 * @param out
+	 * @return
+	 */
+	public boolean getChangedAreas(int sinceRevision, IntArray out) {
+		final int count = revision - sinceRevision;
+		if (count < 0 || sinceRevision < changeLogBase || count * 4 > changeLog.length) {
+			return false;
+		}
+		for (int i = changeLog.length - count * 4; i < changeLog.length; i++) {
+			out.add(changeLog.get(i));
 		}
+		return true;
 	}
 
 	public int getTileID(int x, int y) {
-		return tileMap[y * width + x].getID();
+		final int gid = getRaw(x, y) & GID_MASK;
+		final int tileSetIndex = map.findTileSetIndex(gid);
+		if (tileSetIndex != -1) {
+			return gid - map.getTileset(tileSetIndex).getFirstGID();
+		}
+		return gid;
 	}
 
 	public int getTileGID(int x, int y) {
-		return tileMap[y * width + x].getGID();
+		return getRaw(x, y) & GID_MASK;
+	}
+
+	/**
+	 * 包含翻转标记的原始GID
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getRawTileGID(int x, int y) {
+		return getRaw(x, y);
 	}
 
 	public int getTileTileSetIndex(int x, int y) {
-		return tileMap[y * width + x].getTileSetID();
+		return map.findTileSetIndex(getRaw(x, y));
 	}
 
 	public boolean isTileFlippedHorizontally(int x, int y) {
-		return tileMap[y * width + x].isFlippedHorizontally();
+		return (getRaw(x, y) & FLIPPED_HORIZONTALLY) != 0;
 	}
 
 	public boolean isTileFlippedVertically(int x, int y) {
-		return tileMap[y * width + x].isFlippedVertically();
+		return (getRaw(x, y) & FLIPPED_VERTICALLY) != 0;
 	}
 
 	public boolean isTileFlippedDiagonally(int x, int y) {
-		return tileMap[y * width + x].isFlippedDiagonally();
+		return (getRaw(x, y) & FLIPPED_DIAGONALLY) != 0;
 	}
 
+	/**
+	 * 获得指定位置的图块信息(每次调用都会创建新对象,大量读取时请使用getTileGID等函数)
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
 	public TMXMapTile getTile(int x, int y) {
-		return tileMap[y * width + x];
+		final int gid = getRaw(x, y);
+		final int tileSetIndex = map.findTileSetIndex(gid);
+		if (tileSetIndex != -1) {
+			return new TMXMapTile(gid, map.getTileset(tileSetIndex).getFirstGID(), tileSetIndex);
+		}
+		return new TMXMapTile(gid, 0, -1);
+	}
+
+	/**
+	 * 上次读取图层数据所用的时间(毫秒)
+	 * 
+	 * @return
+	 */
+	public long getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * 图块数据占用的字节数
+	 * 
+	 * @return
+	 */
+	public int getMemSize() {
+		if (chunks != null) {
+			return chunks.getMemSize();
+		}
+		return tileData == null ? 0 : tileData.length * 4;
+	}
+
+	/**
+	 * 是否为无限地图的分块图层(图块数据按需解码,未载入的位置读取结果为0)
+	 * 
+	 * @return
+	 */
+	public boolean isInfinite() {
+		return chunks != null;
+	}
+
+	public TMXTileChunks getTileChunks() {
+		return chunks;
+	}
+
+	/**
+	 * 无限地图图层左上角的图块坐标(图层坐标0,0对应的地图坐标,地图中全部无限图层使用相同的值)
+	 * 
+	 * @return
+	 */
+	public int getStartX() {
+		return startX;
+	}
+
+	public int getStartY() {
+		return startY;
+	}
+
+	/**
+	 * 以地图中全部无限图层的合并范围设置图层原点与大小,使各图层的图层坐标指向同一位置
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	void setChunkArea(int x, int y, int w, int h) {
+		startX = x;
+		startY = y;
+		width = w;
+		height = h;
+	}
+
+	/**
+	 * 请求载入指定区域(图层坐标)的图块数据,并释放超出内存预算且最久未使用的分块,非无限地图时无效果
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void requestChunks(int x, int y, int w, int h) {
+		if (chunks != null) {
+			chunks.request(x + startX, y + startY, w, h);
+		}
+	}
+
+	/**
+	 * 立即解码指定区域(图层坐标)中尚未载入的图块数据,非无限地图时无效果
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void loadChunks(int x, int y, int w, int h) {
+		if (chunks != null) {
+			chunks.load(x + startX, y + startY, w, h);
+		}
+	}
+
+	public void close() {
+		if (chunks != null) {
+			chunks.close();
+			chunks = null;
+		}
+		tileData = null;
 	}
 
 	public Encoding getEncoding() {
@@ -266,13 +543,13 @@ public class TMXTileLayer extends TMXMapLayer {
 			for (int y = 0; y < height; y++) {
 				switch (mode) {
 				case 0:
-					tmp[x][y] = tileMap[y * width + x].getGID();
+					tmp[x][y] = getTileGID(x, y);
 					break;
 				case 1:
-					tmp[x][y] = tileMap[y * width + x].getTileSetID();
+					tmp[x][y] = getTileTileSetIndex(x, y);
 					break;
 				default:
-					tmp[x][y] = tileMap[y * width + x].getID();
+					tmp[x][y] = getTileID(x, y);
 					break;
 				}
 			}
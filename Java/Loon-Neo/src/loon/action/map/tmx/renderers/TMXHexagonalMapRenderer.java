@@ -27,8 +27,9 @@ import loon.action.map.tmx.TMXImageLayer;
 import loon.action.map.tmx.TMXMap;
 import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
-import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
+import loon.geom.RectBox;
+import loon.geom.Vector2f;
 import loon.opengl.BlendState;
 import loon.opengl.GLEx;
 import loon.utils.MathUtils;
@@ -40,6 +41,36 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 
 	public TMXHexagonalMapRenderer(TMXMap map) {
 		super(map);
+		this._chunkRowOrder = true;
+	}
+
+	@Override
+	protected float getLayerOffsetX() {
+		return _location.x;
+	}
+
+	@Override
+	protected float getLayerOffsetY() {
+		return _location.y;
+	}
+
+	@Override
+	protected void tileToLocal(float x, float y, Vector2f out) {
+		out.set(x * map.getTileWidth() * 0.75f * scaleX, y * map.getTileWidth() * 0.5f * scaleY);
+	}
+
+	@Override
+	protected void getChunkBounds(int x, int y, int w, int h, RectBox out) {
+		// 奇数行向右错开半个图块
+		super.getChunkBounds(x, y, w + 1, h, out);
+		if (scaleX != 1f || scaleY != 1f) {
+			// 图块右下角的顶点会再次乘以缩放值
+			final float minX = MathUtils.min(out.x, out.x * scaleX);
+			final float minY = MathUtils.min(out.y, out.y * scaleY);
+			final float maxX = MathUtils.max(out.x + out.width, (out.x + out.width + map.getTileWidth()) * scaleX);
+			final float maxY = MathUtils.max(out.y + out.height, (out.y + out.height + map.getTileHeight()) * scaleY);
+			out.setBounds(minX, minY, maxX - minX, maxY - minY);
+		}
 	}
 
 	@Override
@@ -82,6 +113,11 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 				opacity = 1f;
 			}
 
+			if (_chunked) {
+				renderChunks(g, tileLayer, opacity);
+				return;
+			}
+
 			int tx = _location.x() / map.getTileWidth();
 			int ty = _location.y() / map.getTileHeight();
 			float windowWidth = LSystem.viewSize.getWidth()
@@ -148,15 +184,15 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 							continue;
 						}
 
-						TMXMapTile mapTile = tileLayer.getTile(x, y);
+						int tileSetID = tileLayer.getTileTileSetIndex(x, y);
 
-						if (mapTile.getTileSetID() == -1) {
+						if (tileSetID == -1) {
 							continue;
 						}
 
-						TMXTileSet tileSet = map.getTileset(mapTile
-								.getTileSetID());
-						TMXTile tile = tileSet.getTile(mapTile.getGID()
+						int gid = tileLayer.getTileGID(x, y);
+						TMXTileSet tileSet = map.getTileset(tileSetID);
+						TMXTile tile = tileSet.getTile(gid
 								- tileSet.getFirstGID());
 
 						LTexture texture = textureMap.get(tileSet.getImage()
@@ -171,198 +207,14 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 							batch.checkTexture(current);
 						}
 
-						int tileID = mapTile.getGID() - tileSet.getFirstGID();
+						int tileID = gid - tileSet.getFirstGID();
 						if (tile != null && tile.isAnimated()) {
 							tileID = tileAnimators.get(tile).getCurrentFrame()
 									.getTileID();
 						}
 
-						int numColsPerRow = tileSet.getImage().getWidth()
-								/ tileSet.getTileWidth();
-
-						int tileSetCol = tileID % numColsPerRow;
-						int tileSetRow = tileID / numColsPerRow;
-
-						float tileWidth = tileSet.getTileWidth();
-						float tileHeight = tileSet.getTileHeight();
-
-						float srcX = (tileSet.getMargin() + (tileSet
-								.getTileWidth() + tileSet.getSpacing())
-								* tileSetCol);
-						float srcY = (tileSet.getMargin() + (tileSet
-								.getTileHeight() + tileSet.getSpacing())
-								* tileSetRow);
-						float srcWidth = srcX + tileWidth;
-						float srcHeight = srcY + tileHeight;
-
-						float xOff = srcX * batch.getInvTexWidth()
-								+ texture.xOff();
-						float widthRatio = srcWidth * batch.getInvTexWidth();
-						float yOff = srcY * batch.getInvTexHeight()
-								+ texture.yOff();
-						float heightRatio = srcHeight * batch.getInvTexHeight();
-
-						boolean flipX = mapTile.isFlippedHorizontally();
-						boolean flipY = mapTile.isFlippedVertically();
-						boolean flipZ = mapTile.isFlippedDiagonally();
-
-						if (flipZ) {
-							flipX = !flipX;
-							flipY = !flipY;
-						}
-
-						if (flipX) {
-							float temp = xOff;
-							xOff = widthRatio;
-							widthRatio = temp;
-						}
-
-						if (flipY) {
-							float temp = yOff;
-							yOff = heightRatio;
-							heightRatio = temp;
-						}
-
-						float nx = x;
-						if (y % 2 == 1) {
-							nx = x + 0.5f;
-						}
-
-						float nx1 = _location.x + nx * tileWidth * 0.75f
-								* scaleX;
-						float ny1 = _location.y + y * tileWidth * 0.5f * scaleY;
-
-						float nx2 = (nx1 + tileWidth) * scaleX;
-						float ny2 = (ny1 + tileHeight) * scaleY;
-
-						float uvCorrectionX = (0.2f / tileSet.getImage()
-								.getWidth());
-						float uvCorrectionY = (0.2f / tileSet.getImage()
-								.getHeight());
-
-						if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
-
-							float originX = tileWidth / 2;
-							float originY = tileHeight / 2;
-							final float worldOriginX = nx1 + tileWidth / 2;
-							final float worldOriginY = ny1 + tileHeight / 2;
-							float fx = -originX;
-							float fy = -originY;
-							float fx2 = tileWidth - originX;
-							float fy2 = tileHeight - originY;
-
-							if (scaleX != 1 || scaleY != 1) {
-								fx *= scaleX;
-								fy *= scaleY;
-								fx2 *= scaleX;
-								fy2 *= scaleY;
-							}
-
-							final float p1x = fx;
-							final float p1y = fy;
-							final float p2x = fx;
-							final float p2y = fy2;
-							final float p3x = fx2;
-							final float p3y = fy2;
-							final float p4x = fx2;
-							final float p4y = fy;
-
-							float x1;
-							float y1;
-							float x2;
-							float y2;
-							float x3;
-							float y3;
-							float x4;
-							float y4;
-
-							if (_rotation != 0) {
-								final float cos = MathUtils.cosDeg(_rotation);
-								final float sin = MathUtils.sinDeg(_rotation);
-
-								x1 = cos * p1x - sin * p1y;
-								y1 = sin * p1x + cos * p1y;
-
-								x2 = cos * p2x - sin * p2y;
-								y2 = sin * p2x + cos * p2y;
-
-								x3 = cos * p3x - sin * p3y;
-								y3 = sin * p3x + cos * p3y;
-
-								x4 = x1 + (x3 - x2);
-								y4 = y3 - (y2 - y1);
-							} else {
-								x1 = p1x;
-								y1 = p1y;
-
-								x2 = p2x;
-								y2 = p2y;
-
-								x3 = p3x;
-								y3 = p3y;
-
-								x4 = p4x;
-								y4 = p4y;
-							}
-
-							x1 += worldOriginX;
-							y1 += worldOriginY;
-							x2 += worldOriginX;
-							y2 += worldOriginY;
-							x3 += worldOriginX;
-							y3 += worldOriginY;
-							x4 += worldOriginX;
-							y4 += worldOriginY;
-
-							if (flipZ) {
-								x2 += tileWidth;
-								y2 += tileHeight;
-								x4 += tileWidth;
-								y4 += tileHeight;
-							}
-
-							batch.glVertex2f(x1, y1);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-							batch.glVertex2f(x2, y2);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(x3, y3);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(x4, y4);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-						} else {
-							batch.glVertex2f(nx1, ny1);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-							batch.glVertex2f(nx1, ny2);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(nx2, ny2);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(nx2, ny1);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
-									+ uvCorrectionY);
-						}
-
+						addTileVertices(batch, texture, tileSet, tileLayer, tileID,
+								x, y, _location.x, _location.y);
 					}
 				}
 			} finally {
@@ -377,4 +229,194 @@ public class TMXHexagonalMapRenderer extends TMXMapRenderer {
 		}
 	}
 
+	@Override
+	protected void addTileVertices(LTextureBatch batch, LTexture texture, TMXTileSet tileSet,
+			TMXTileLayer tileLayer, int tileID, int x, int y, float offsetX, float offsetY) {
+		int numColsPerRow = tileSet.getImage().getWidth()
+				/ tileSet.getTileWidth();
+
+		int tileSetCol = tileID % numColsPerRow;
+		int tileSetRow = tileID / numColsPerRow;
+
+		float tileWidth = tileSet.getTileWidth();
+		float tileHeight = tileSet.getTileHeight();
+
+		float srcX = (tileSet.getMargin() + (tileSet
+				.getTileWidth() + tileSet.getSpacing())
+				* tileSetCol);
+		float srcY = (tileSet.getMargin() + (tileSet
+				.getTileHeight() + tileSet.getSpacing())
+				* tileSetRow);
+		float srcWidth = srcX + tileWidth;
+		float srcHeight = srcY + tileHeight;
+
+		float xOff = srcX * batch.getInvTexWidth()
+				+ texture.xOff();
+		float widthRatio = srcWidth * batch.getInvTexWidth();
+		float yOff = srcY * batch.getInvTexHeight()
+				+ texture.yOff();
+		float heightRatio = srcHeight * batch.getInvTexHeight();
+
+		boolean flipX = tileLayer.isTileFlippedHorizontally(x, y);
+		boolean flipY = tileLayer.isTileFlippedVertically(x, y);
+		boolean flipZ = tileLayer.isTileFlippedDiagonally(x, y);
+
+		if (flipZ) {
+			flipX = !flipX;
+			flipY = !flipY;
+		}
+
+		if (flipX) {
+			float temp = xOff;
+			xOff = widthRatio;
+			widthRatio = temp;
+		}
+
+		if (flipY) {
+			float temp = yOff;
+			yOff = heightRatio;
+			heightRatio = temp;
+		}
+
+		float nx = x;
+		if (y % 2 == 1) {
+			nx = x + 0.5f;
+		}
+
+		float nx1 = offsetX + nx * tileWidth * 0.75f
+				* scaleX;
+		float ny1 = offsetY + y * tileWidth * 0.5f * scaleY;
+
+		float nx2 = (nx1 + tileWidth) * scaleX;
+		float ny2 = (ny1 + tileHeight) * scaleY;
+
+		float uvCorrectionX = (0.2f / tileSet.getImage()
+				.getWidth());
+		float uvCorrectionY = (0.2f / tileSet.getImage()
+				.getHeight());
+
+		if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
+
+			float originX = tileWidth / 2;
+			float originY = tileHeight / 2;
+			final float worldOriginX = nx1 + tileWidth / 2;
+			final float worldOriginY = ny1 + tileHeight / 2;
+			float fx = -originX;
+			float fy = -originY;
+			float fx2 = tileWidth - originX;
+			float fy2 = tileHeight - originY;
+
+			if (scaleX != 1 || scaleY != 1) {
+				fx *= scaleX;
+				fy *= scaleY;
+				fx2 *= scaleX;
+				fy2 *= scaleY;
+			}
+
+			final float p1x = fx;
+			final float p1y = fy;
+			final float p2x = fx;
+			final float p2y = fy2;
+			final float p3x = fx2;
+			final float p3y = fy2;
+			final float p4x = fx2;
+			final float p4y = fy;
+
+			float x1;
+			float y1;
+			float x2;
+			float y2;
+			float x3;
+			float y3;
+			float x4;
+			float y4;
+
+			if (_rotation != 0) {
+				final float cos = MathUtils.cosDeg(_rotation);
+				final float sin = MathUtils.sinDeg(_rotation);
+
+				x1 = cos * p1x - sin * p1y;
+				y1 = sin * p1x + cos * p1y;
+
+				x2 = cos * p2x - sin * p2y;
+				y2 = sin * p2x + cos * p2y;
+
+				x3 = cos * p3x - sin * p3y;
+				y3 = sin * p3x + cos * p3y;
+
+				x4 = x1 + (x3 - x2);
+				y4 = y3 - (y2 - y1);
+			} else {
+				x1 = p1x;
+				y1 = p1y;
+
+				x2 = p2x;
+				y2 = p2y;
+
+				x3 = p3x;
+				y3 = p3y;
+
+				x4 = p4x;
+				y4 = p4y;
+			}
+
+			x1 += worldOriginX;
+			y1 += worldOriginY;
+			x2 += worldOriginX;
+			y2 += worldOriginY;
+			x3 += worldOriginX;
+			y3 += worldOriginY;
+			x4 += worldOriginX;
+			y4 += worldOriginY;
+
+			if (flipZ) {
+				x2 += tileWidth;
+				y2 += tileHeight;
+				x4 += tileWidth;
+				y4 += tileHeight;
+			}
+
+			batch.glVertex2f(x1, y1);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+			batch.glVertex2f(x2, y2);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(x3, y3);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(x4, y4);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+		} else {
+			batch.glVertex2f(nx1, ny1);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+			batch.glVertex2f(nx1, ny2);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(nx2, ny2);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(nx2, ny1);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
+					+ uvCorrectionY);
+		}
+	}
+
 }
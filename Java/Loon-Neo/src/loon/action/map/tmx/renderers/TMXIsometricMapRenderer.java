@@ -27,7 +27,6 @@ import loon.action.map.tmx.TMXImageLayer;
 import loon.action.map.tmx.TMXMap;
 import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
-import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
 import loon.geom.Vector2f;
 import loon.opengl.BlendState;
@@ -45,12 +44,34 @@ public class TMXIsometricMapRenderer extends TMXMapRenderer {
 		super(map);
 	}
 
-	private Vector2f orthoToIso(float x, float y) {
-		tempVector.x = (x - y) * map.getTileWidth() / 2 + _location.x;
-		tempVector.y = (x + y) * map.getTileHeight() / 2 + _location.y;
+	private Vector2f orthoToIso(float x, float y, float offsetX, float offsetY) {
+		tempVector.x = (x - y) * map.getTileWidth() / 2 + offsetX;
+		tempVector.y = (x + y) * map.getTileHeight() / 2 + offsetY;
 		return tempVector.addSelf(map.getWidth() * map.getTileWidth() / 2, 0);
 	}
 
+	private Vector2f transformLocal(Vector2f v) {
+		if (_rotation != 0f) {
+			return v.rotateSelf(_rotation);
+		}
+		return v.mulSelf(scaleX, scaleY);
+	}
+
+	@Override
+	protected float getLayerOffsetX() {
+		return transformLocal(tempVector.set(_location.x, _location.y)).x;
+	}
+
+	@Override
+	protected float getLayerOffsetY() {
+		return transformLocal(tempVector.set(_location.x, _location.y)).y;
+	}
+
+	@Override
+	protected void tileToLocal(float x, float y, Vector2f out) {
+		out.set(transformLocal(orthoToIso(x, y, 0f, 0f)));
+	}
+
 	@Override
 	protected void renderImageLayer(GLEx g, TMXImageLayer imageLayer) {
 		if (!imageLayer.isVisible()) {
@@ -91,6 +112,11 @@ public class TMXIsometricMapRenderer extends TMXMapRenderer {
 				opacity = 1f;
 			}
 
+			if (_chunked) {
+				renderChunks(g, tileLayer, opacity);
+				return;
+			}
+
 			int tx = _location.x() / map.getTileWidth();
 			int ty = _location.y() / map.getTileHeight();
 			float windowWidth = LSystem.viewSize.getWidth()
@@ -155,15 +181,15 @@ public class TMXIsometricMapRenderer extends TMXMapRenderer {
 							continue;
 						}
 
-						TMXMapTile mapTile = tileLayer.getTile(x, y);
+						int tileSetID = tileLayer.getTileTileSetIndex(x, y);
 
-						if (mapTile.getTileSetID() == -1) {
+						if (tileSetID == -1) {
 							continue;
 						}
 
-						TMXTileSet tileSet = map.getTileset(mapTile
-								.getTileSetID());
-						TMXTile tile = tileSet.getTile(mapTile.getGID()
+						int gid = tileLayer.getTileGID(x, y);
+						TMXTileSet tileSet = map.getTileset(tileSetID);
+						TMXTile tile = tileSet.getTile(gid
 								- tileSet.getFirstGID());
 
 						LTexture texture = textureMap.get(tileSet.getImage()
@@ -178,203 +204,14 @@ public class TMXIsometricMapRenderer extends TMXMapRenderer {
 							batch.checkTexture(current);
 						}
 
-						int tileID = mapTile.getGID() - tileSet.getFirstGID();
+						int tileID = gid - tileSet.getFirstGID();
 						if (tile != null && tile.isAnimated()) {
 							tileID = tileAnimators.get(tile).getCurrentFrame()
 									.getTileID();
 						}
 
-						int numColsPerRow = tileSet.getImage().getWidth()
-								/ tileSet.getTileWidth();
-
-						int tileSetCol = tileID % numColsPerRow;
-						int tileSetRow = tileID / numColsPerRow;
-
-						float tileWidth = tileSet.getTileWidth();
-						float tileHeight = tileSet.getTileHeight();
-
-						float srcX = (tileSet.getMargin() + (tileSet
-								.getTileWidth() + tileSet.getSpacing())
-								* tileSetCol);
-						float srcY = (tileSet.getMargin() + (tileSet
-								.getTileHeight() + tileSet.getSpacing())
-								* tileSetRow);
-						float srcWidth = srcX + tileWidth;
-						float srcHeight = srcY + tileHeight;
-
-						float xOff = srcX * batch.getInvTexWidth()
-								+ texture.xOff();
-						float widthRatio = srcWidth * batch.getInvTexWidth();
-						float yOff = srcY * batch.getInvTexHeight()
-								+ texture.yOff();
-						float heightRatio = srcHeight * batch.getInvTexHeight();
-
-						boolean flipX = mapTile.isFlippedHorizontally();
-						boolean flipY = mapTile.isFlippedVertically();
-						boolean flipZ = mapTile.isFlippedDiagonally();
-
-						if (flipZ) {
-							flipX = !flipX;
-							flipY = !flipY;
-						}
-
-						if (flipX) {
-							float temp = xOff;
-							xOff = widthRatio;
-							widthRatio = temp;
-						}
-
-						if (flipY) {
-							float temp = yOff;
-							yOff = heightRatio;
-							heightRatio = temp;
-						}
-
-						float uvCorrectionX = (0.5f / tileSet.getImage()
-								.getWidth());
-						float uvCorrectionY = (0.5f / tileSet.getImage()
-								.getHeight());
-
-						if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
-
-							if (_rotation != 0f) {
-
-								batch.glVertex2f(orthoToIso(x, y).addSelf(
-										-tileWidth / 2, 0).rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-										+ uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? tileWidth : 0,
-												flipZ ? 0 : tileHeight)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(tileWidth, tileHeight)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? 0 : tileWidth,
-												flipZ ? tileHeight : 0)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										yOff + uvCorrectionY);
-
-							} else if (scaleX != 1f || srcY != 1f) {
-
-								batch.glVertex2f(orthoToIso(x, y).addSelf(
-										-tileWidth / 2, 0).mul(scaleX, scaleY));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-										+ uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? tileWidth : 0,
-												flipZ ? 0 : tileHeight)
-										.mul(scaleX, scaleY));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(tileWidth, tileHeight)
-										.mul(scaleX, scaleY));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? 0 : tileWidth,
-												flipZ ? tileHeight : 0)
-										.mul(scaleX, scaleY));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										yOff + uvCorrectionY);
-
-							} else {
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.mul(scaleX, scaleY)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-										+ uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? tileWidth : 0,
-												flipZ ? 0 : tileHeight)
-										.mul(scaleX, scaleY)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(xOff + uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(tileWidth, tileHeight)
-										.mul(scaleX, scaleY)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										heightRatio - uvCorrectionY);
-
-								batch.glVertex2f(orthoToIso(x, y)
-										.addSelf(-tileWidth / 2, 0)
-										.addSelf(flipZ ? 0 : tileWidth,
-												flipZ ? tileHeight : 0)
-										.mul(scaleX, scaleY)
-										.rotate(_rotation));
-								batch.glColor4f();
-								batch.glTexCoord2f(widthRatio - uvCorrectionX,
-										yOff + uvCorrectionY);
-
-							}
-						} else {
-							batch.glVertex2f(orthoToIso(x, y).addSelf(
-									-tileWidth / 2, 0));
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-							batch.glVertex2f(orthoToIso(x, y).addSelf(
-									-tileWidth / 2, 0).addSelf(
-									flipZ ? tileWidth : 0,
-									flipZ ? 0 : tileHeight));
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(orthoToIso(x, y).addSelf(
-									-tileWidth / 2, 0).addSelf(tileWidth,
-									tileHeight));
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(orthoToIso(x, y).addSelf(
-									-tileWidth / 2, 0).addSelf(
-									flipZ ? 0 : tileWidth,
-									flipZ ? tileHeight : 0));
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
-									+ uvCorrectionY);
-						}
-
+						addTileVertices(batch, texture, tileSet, tileLayer, tileID,
+								x, y, _location.x, _location.y);
 					}
 				}
 			} finally {
@@ -389,4 +226,199 @@ public class TMXIsometricMapRenderer extends TMXMapRenderer {
 		}
 	}
 
+	@Override
+	protected void addTileVertices(LTextureBatch batch, LTexture texture, TMXTileSet tileSet,
+			TMXTileLayer tileLayer, int tileID, int x, int y, float offsetX, float offsetY) {
+		int numColsPerRow = tileSet.getImage().getWidth()
+				/ tileSet.getTileWidth();
+
+		int tileSetCol = tileID % numColsPerRow;
+		int tileSetRow = tileID / numColsPerRow;
+
+		float tileWidth = tileSet.getTileWidth();
+		float tileHeight = tileSet.getTileHeight();
+
+		float srcX = (tileSet.getMargin() + (tileSet
+				.getTileWidth() + tileSet.getSpacing())
+				* tileSetCol);
+		float srcY = (tileSet.getMargin() + (tileSet
+				.getTileHeight() + tileSet.getSpacing())
+				* tileSetRow);
+		float srcWidth = srcX + tileWidth;
+		float srcHeight = srcY + tileHeight;
+
+		float xOff = srcX * batch.getInvTexWidth()
+				+ texture.xOff();
+		float widthRatio = srcWidth * batch.getInvTexWidth();
+		float yOff = srcY * batch.getInvTexHeight()
+				+ texture.yOff();
+		float heightRatio = srcHeight * batch.getInvTexHeight();
+
+		boolean flipX = tileLayer.isTileFlippedHorizontally(x, y);
+		boolean flipY = tileLayer.isTileFlippedVertically(x, y);
+		boolean flipZ = tileLayer.isTileFlippedDiagonally(x, y);
+
+		if (flipZ) {
+			flipX = !flipX;
+			flipY = !flipY;
+		}
+
+		if (flipX) {
+			float temp = xOff;
+			xOff = widthRatio;
+			widthRatio = temp;
+		}
+
+		if (flipY) {
+			float temp = yOff;
+			yOff = heightRatio;
+			heightRatio = temp;
+		}
+
+		float uvCorrectionX = (0.5f / tileSet.getImage()
+				.getWidth());
+		float uvCorrectionY = (0.5f / tileSet.getImage()
+				.getHeight());
+
+		if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
+
+			if (_rotation != 0f) {
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+						-tileWidth / 2, 0).rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+						+ uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? tileWidth : 0,
+								flipZ ? 0 : tileHeight)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(tileWidth, tileHeight)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? 0 : tileWidth,
+								flipZ ? tileHeight : 0)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						yOff + uvCorrectionY);
+
+			} else if (scaleX != 1f || srcY != 1f) {
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+						-tileWidth / 2, 0).mul(scaleX, scaleY));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+						+ uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? tileWidth : 0,
+								flipZ ? 0 : tileHeight)
+						.mul(scaleX, scaleY));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(tileWidth, tileHeight)
+						.mul(scaleX, scaleY));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? 0 : tileWidth,
+								flipZ ? tileHeight : 0)
+						.mul(scaleX, scaleY));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						yOff + uvCorrectionY);
+
+			} else {
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.mul(scaleX, scaleY)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+						+ uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? tileWidth : 0,
+								flipZ ? 0 : tileHeight)
+						.mul(scaleX, scaleY)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(xOff + uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(tileWidth, tileHeight)
+						.mul(scaleX, scaleY)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						heightRatio - uvCorrectionY);
+
+				batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY)
+						.addSelf(-tileWidth / 2, 0)
+						.addSelf(flipZ ? 0 : tileWidth,
+								flipZ ? tileHeight : 0)
+						.mul(scaleX, scaleY)
+						.rotate(_rotation));
+				batch.glColor4f();
+				batch.glTexCoord2f(widthRatio - uvCorrectionX,
+						yOff + uvCorrectionY);
+
+			}
+		} else {
+			batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+					-tileWidth / 2, 0));
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+			batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+					-tileWidth / 2, 0).addSelf(
+					flipZ ? tileWidth : 0,
+					flipZ ? 0 : tileHeight));
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+					-tileWidth / 2, 0).addSelf(tileWidth,
+					tileHeight));
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(orthoToIso(x, y, offsetX, offsetY).addSelf(
+					-tileWidth / 2, 0).addSelf(
+					flipZ ? 0 : tileWidth,
+					flipZ ? tileHeight : 0));
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
+					+ uvCorrectionY);
+		}
+	}
+
 }
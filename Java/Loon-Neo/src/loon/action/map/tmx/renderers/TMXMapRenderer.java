@@ -21,9 +21,11 @@
 package loon.action.map.tmx.renderers;
 
 import loon.LObject;
+import loon.LRelease;
 import loon.LSysException;
 import loon.LSystem;
 import loon.LTexture;
+import loon.LTextureBatch;
 import loon.PlayerUtils;
 import loon.Screen;
 import loon.action.ActionTween;
@@ -40,8 +42,15 @@ import loon.action.sprite.Sprites;
 import loon.canvas.LColor;
 import loon.event.ResizeListener;
 import loon.geom.RectBox;
+import loon.geom.Vector2f;
+import loon.opengl.BlendState;
 import loon.opengl.GLEx;
+import loon.utils.IntArray;
+import loon.utils.LongArray;
+import loon.utils.LongMap;
+import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
+import loon.utils.TArray;
 import loon.utils.TimeUtils;
 
 /**
@@ -85,8 +94,135 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 		}
 	}
 
+	/**
+	 * 默认的分块大小(以图块为单位)
+	 */
+	public final static int DEFAULT_CHUNK_SIZE = 16;
+
+	/**
+	 * 连续多少帧不可见的分块会被释放
+	 */
+	private final static int CHUNK_EXPIRE_FRAMES = 600;
+
+	/**
+	 * 图层中的一个分块,按绘制顺序保存每张纹理的顶点缓存
+	 */
+	protected static class TileChunk implements LRelease {
+
+		final TArray<LTextureBatch> batches = new TArray<LTextureBatch>(2);
+
+		final TArray<LTextureBatch.Cache> caches = new TArray<LTextureBatch.Cache>(2);
+
+		boolean dirty = true;
+
+		boolean animated;
+
+		int animationStamp;
+
+		int vertexCount;
+
+		int lastFrame;
+
+		void clear() {
+			for (int i = 0; i < caches.size; i++) {
+				caches.get(i).close();
+			}
+			caches.clear();
+			batches.clear();
+			animated = false;
+			vertexCount = 0;
+			dirty = true;
+		}
+
+		@Override
+		public void close() {
+			clear();
+		}
+	}
+
+	/**
+	 * 单个图层的全部分块
+	 */
+	protected static class TileLayerChunks implements LRelease {
+
+		final LongMap<TileChunk> chunks = new LongMap<TileChunk>(64);
+
+		int revision;
+
+		int stateHash;
+
+		void invalidate() {
+			for (int i = 0, n = chunks.capacity(); i < n; i++) {
+				TileChunk chunk = chunks.getValueAt(i);
+				if (chunk != null) {
+					chunk.dirty = true;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			for (int i = 0, n = chunks.capacity(); i < n; i++) {
+				TileChunk chunk = chunks.getValueAt(i);
+				if (chunk != null) {
+					chunk.close();
+				}
+			}
+			chunks.clear();
+		}
+	}
+
+	protected boolean _chunked = true;
+
+	protected int _chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * 分块内是否逐行(y在外层)生成图块,应与渲染器原本的图块绘制顺序一致
+	 */
+	protected boolean _chunkRowOrder = false;
+
+	private final ObjectMap<TMXTileLayer, TileLayerChunks> _layerChunks = new ObjectMap<TMXTileLayer, TileLayerChunks>();
+
+	private final IntArray _changedAreas = new IntArray();
+
+	private final IntArray _visibleChunks = new IntArray();
+
+	private final LongArray _expiredChunks = new LongArray();
+
+	private final RectBox _chunkRect = new RectBox();
+
+	private final Vector2f _chunkPoint = new Vector2f();
+
+	private float _maxTileSize;
+
+	private int _animationStamp;
+
+	private int _frameCount;
+
+	private int _vertexCount, _lastVertexCount;
+
+	private int _buildCount, _lastBuildCount;
+
+	private int _visibleCount, _lastVisibleCount;
+
 	protected abstract void renderTileLayer(GLEx gl, TMXTileLayer tileLayer);
 
+	/**
+	 * 以指定偏移写入一个图块的四个顶点(偏移为0时写入的是图层本地坐标)
+	 * 
+	 * @param batch
+	 * @param texture
+	 * @param tileSet
+	 * @param tileLayer
+	 * @param tileID
+	 * @param x
+	 * @param y
+	 * @param offsetX
+	 * @param offsetY
+	 */
+	protected abstract void addTileVertices(LTextureBatch batch, LTexture texture, TMXTileSet tileSet,
+			TMXTileLayer tileLayer, int tileID, int x, int y, float offsetX, float offsetY);
+
 	protected abstract void renderImageLayer(GLEx gl, TMXImageLayer imageLayer);
 
 	protected TMXMap map;
@@ -124,6 +260,12 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 				textureMap.put(path, LSystem.loadTexture(path));
 			}
 		}
+
+		_maxTileSize = MathUtils.max(map.getTileWidth(), map.getTileHeight());
+		for (TMXTileSet tileSet : map.getTileSets()) {
+			_maxTileSize = MathUtils.max(_maxTileSize,
+					MathUtils.max(tileSet.getTileWidth(), tileSet.getTileHeight()));
+		}
 	}
 
 	public static TMXMapRenderer create(TMXMap map) {
@@ -141,8 +283,373 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 
 	public void update(long delta) {
 		for (TileAnimator animator : tileAnimators.values()) {
+			int frame = animator.currentFrameIndex;
 			animator.update(delta);
+			if (frame != animator.currentFrameIndex) {
+				_animationStamp++;
+			}
+		}
+	}
+
+	/**
+	 * 图层(在缩放与旋转后)的本地坐标到屏幕坐标的x偏移
+	 * 
+	 * @return
+	 */
+	protected float getLayerOffsetX() {
+		return _location.x * scaleX;
+	}
+
+	/**
+	 * 图层(在缩放与旋转后)的本地坐标到屏幕坐标的y偏移
+	 * 
+	 * @return
+	 */
+	protected float getLayerOffsetY() {
+		return _location.y * scaleY;
+	}
+
+	/**
+	 * 图块坐标转为图层本地坐标(不含偏移)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param out
+	 */
+	protected void tileToLocal(float x, float y, Vector2f out) {
+		out.set(x * map.getTileWidth() * scaleX, y * map.getTileHeight() * scaleY);
+	}
+
+	/**
+	 * 获得指定图块区域在图层本地坐标中的范围(不含图块自身的大小,由调用者补足)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param out
+	 */
+	protected void getChunkBounds(int x, int y, int w, int h, RectBox out) {
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			tileToLocal((i & 1) == 0 ? x : x + w, (i & 2) == 0 ? y : y + h, _chunkPoint);
+			minX = MathUtils.min(minX, _chunkPoint.x);
+			minY = MathUtils.min(minY, _chunkPoint.y);
+			maxX = MathUtils.max(maxX, _chunkPoint.x);
+			maxY = MathUtils.max(maxY, _chunkPoint.y);
+		}
+		out.setBounds(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * 分块渲染图层,只有与画面相交的分块才会被处理,分块的顶点数据只在图块改变(或缩放,旋转,动画帧改变)时重新生成,
+	 * 否则直接提交缓存
+	 * 
+	 * @param g
+	 * @param tileLayer
+	 * @param opacity
+	 */
+	protected void renderChunks(GLEx g, TMXTileLayer tileLayer, float opacity) {
+		float tmpAlpha = baseColor.a;
+		baseColor.a *= opacity;
+		try {
+			renderChunks(tileLayer);
+		} finally {
+			baseColor.a = tmpAlpha;
+		}
+	}
+
+	private void renderChunks(TMXTileLayer tileLayer) {
+		final int size = _chunkSize;
+		final int layerWidth = tileLayer.getWidth();
+		final int layerHeight = tileLayer.getHeight();
+		final int cols = (layerWidth + size - 1) / size;
+		final int rows = (layerHeight + size - 1) / size;
+
+		TileLayerChunks layerChunks = _layerChunks.get(tileLayer);
+		if (layerChunks == null) {
+			layerChunks = new TileLayerChunks();
+			layerChunks.revision = tileLayer.getRevision();
+			_layerChunks.put(tileLayer, layerChunks);
+		}
+
+		final float offsetX = getLayerOffsetX();
+		final float offsetY = getLayerOffsetY();
+		float margin = _maxTileSize * MathUtils.max(MathUtils.abs(scaleX), MathUtils.abs(scaleY));
+		if (_rotation != 0) {
+			margin *= 2f;
+		}
+		final float left = -offsetX - margin;
+		final float top = -offsetY - margin;
+		final float right = LSystem.viewSize.getWidth() - offsetX + margin;
+		final float bottom = LSystem.viewSize.getHeight() - offsetY + margin;
+
+		int minCX = cols, minCY = rows, maxCX = -1, maxCY = -1;
+		_visibleChunks.clear();
+		for (int i = 0, n = cols * rows; i < n; i++) {
+			final int cx = _chunkRowOrder ? i % cols : i / rows;
+			final int cy = _chunkRowOrder ? i / cols : i % rows;
+			final int startX = cx * size;
+			final int startY = cy * size;
+			getChunkBounds(startX, startY, MathUtils.min(size, layerWidth - startX),
+					MathUtils.min(size, layerHeight - startY), _chunkRect);
+			if (_chunkRect.x > right || _chunkRect.y > bottom || _chunkRect.x + _chunkRect.width < left
+					|| _chunkRect.y + _chunkRect.height < top) {
+				continue;
+			}
+			_visibleChunks.add(cx);
+			_visibleChunks.add(cy);
+			minCX = MathUtils.min(minCX, cx);
+			minCY = MathUtils.min(minCY, cy);
+			maxCX = MathUtils.max(maxCX, cx);
+			maxCY = MathUtils.max(maxCY, cy);
+		}
+		if (tileLayer.isInfinite() && maxCX != -1) {
+			// 无限地图在生成分块缓存前预先请求外围一圈分块的数据(后台解码,载入后通过修改记录刷新),可见范围内的数据则立即解码,避免图块晚一帧出现
+			tileLayer.requestChunks((minCX - 1) * size, (minCY - 1) * size, (maxCX - minCX + 3) * size,
+					(maxCY - minCY + 3) * size);
+			tileLayer.loadChunks(minCX * size, minCY * size, (maxCX - minCX + 1) * size, (maxCY - minCY + 1) * size);
+		}
+
+		int hashCode = 1;
+		hashCode = LSystem.unite(hashCode, size);
+		hashCode = LSystem.unite(hashCode, scaleX);
+		hashCode = LSystem.unite(hashCode, scaleY);
+		hashCode = LSystem.unite(hashCode, _rotation);
+		if (hashCode != layerChunks.stateHash) {
+			layerChunks.close();
+			layerChunks.stateHash = hashCode;
+			layerChunks.revision = tileLayer.getRevision();
+		} else if (layerChunks.revision != tileLayer.getRevision()) {
+			_changedAreas.clear();
+			if (tileLayer.getChangedAreas(layerChunks.revision, _changedAreas)) {
+				for (int i = 0; i < _changedAreas.length; i += 4) {
+					final int ax = _changedAreas.get(i);
+					final int ay = _changedAreas.get(i + 1);
+					final int areaRight = (ax + _changedAreas.get(i + 2) - 1) / size;
+					final int areaBottom = (ay + _changedAreas.get(i + 3) - 1) / size;
+					for (int cy = ay / size; cy <= areaBottom; cy++) {
+						for (int cx = ax / size; cx <= areaRight; cx++) {
+							TileChunk chunk = layerChunks.chunks.get(cx, cy);
+							if (chunk != null) {
+								chunk.dirty = true;
+							}
+						}
+					}
+				}
+			} else {
+				layerChunks.invalidate();
+			}
+			layerChunks.revision = tileLayer.getRevision();
+		}
+
+		for (int i = 0; i < _visibleChunks.length; i += 2) {
+			final int cx = _visibleChunks.get(i);
+			final int cy = _visibleChunks.get(i + 1);
+			final int startX = cx * size;
+			final int startY = cy * size;
+			TileChunk chunk = layerChunks.chunks.get(cx, cy);
+			if (chunk == null) {
+				chunk = new TileChunk();
+				layerChunks.chunks.put(cx, cy, chunk);
+			}
+			chunk.lastFrame = _frameCount;
+			_visibleCount++;
+			if (chunk.animated && chunk.animationStamp != _animationStamp) {
+				chunk.dirty = true;
+			}
+			if (chunk.dirty) {
+				// 生成顶点时即以当前偏移完成绘制
+				buildChunk(tileLayer, chunk, startX, startY, offsetX, offsetY);
+			} else {
+				for (int j = 0; j < chunk.caches.size; j++) {
+					LTextureBatch batch = chunk.batches.get(j);
+					batch.setBlendState(BlendState.AlphaBlend);
+					batch.postCache(chunk.caches.get(j), baseColor, offsetX, offsetY);
+				}
+			}
+		}
+	}
+
+	private void buildChunk(TMXTileLayer tileLayer, TileChunk chunk, int startX, int startY, float offsetX,
+			float offsetY) {
+		chunk.clear();
+		final int endX = MathUtils.min(startX + _chunkSize, tileLayer.getWidth());
+		final int endY = MathUtils.min(startY + _chunkSize, tileLayer.getHeight());
+		final int w = endX - startX;
+		final int n = w * (endY - startY);
+		LTexture current = null;
+		LTextureBatch batch = null;
+		try {
+			for (int i = 0; i < n; i++) {
+				final int x = _chunkRowOrder ? startX + i % w : startX + i / (endY - startY);
+				final int y = _chunkRowOrder ? startY + i / w : startY + i % (endY - startY);
+				final int tileSetID = tileLayer.getTileTileSetIndex(x, y);
+				if (tileSetID == -1) {
+					continue;
+				}
+				final int gid = tileLayer.getTileGID(x, y);
+				TMXTileSet tileSet = map.getTileset(tileSetID);
+				TMXTile tile = tileSet.getTile(gid - tileSet.getFirstGID());
+				LTexture texture = textureMap.get(tileSet.getImage().getSource());
+				if (current == null || texture.getID() != current.getID()) {
+					if (batch != null) {
+						endChunkBatch(chunk, batch);
+					}
+					current = texture;
+					batch = current.getTextureBatch();
+					batch.begin();
+					batch.setBlendState(BlendState.AlphaBlend);
+					batch.setColor(baseColor);
+					batch.checkTexture(current);
+					batch.setLocation(offsetX, offsetY);
+				}
+				int tileID = gid - tileSet.getFirstGID();
+				if (tile != null && tile.isAnimated()) {
+					tileID = tileAnimators.get(tile).getCurrentFrame().getTileID();
+					chunk.animated = true;
+				}
+				addTileVertices(batch, texture, tileSet, tileLayer, tileID, x, y, 0f, 0f);
+			}
+		} finally {
+			if (batch != null) {
+				endChunkBatch(chunk, batch);
+			}
+		}
+		chunk.animationStamp = _animationStamp;
+		chunk.dirty = false;
+		_buildCount++;
+	}
+
+	private void endChunkBatch(TileChunk chunk, LTextureBatch batch) {
+		batch.end();
+		batch.setLocation(0, 0);
+		LTextureBatch.Cache cache = batch.createCache();
+		if (cache != null && cache.getVertexIdx() > 0) {
+			chunk.batches.add(batch);
+			chunk.caches.add(cache);
+			// 每个顶点5个float(x,y,color,u,v)
+			final int vertices = cache.getVertexIdx() / 5;
+			chunk.vertexCount += vertices;
+			_vertexCount += vertices;
+		} else if (cache != null) {
+			cache.close();
+		}
+	}
+
+	private void beginChunkFrame() {
+		_frameCount++;
+		_vertexCount = 0;
+		_buildCount = 0;
+		_visibleCount = 0;
+	}
+
+	private void endChunkFrame() {
+		_lastVertexCount = _vertexCount;
+		_lastBuildCount = _buildCount;
+		_lastVisibleCount = _visibleCount;
+		if (_frameCount % 60 == 0) {
+			for (TileLayerChunks layerChunks : _layerChunks.values()) {
+				_expiredChunks.clear();
+				for (int i = 0, n = layerChunks.chunks.capacity(); i < n; i++) {
+					TileChunk chunk = layerChunks.chunks.getValueAt(i);
+					if (chunk != null && _frameCount - chunk.lastFrame > CHUNK_EXPIRE_FRAMES) {
+						_expiredChunks.add(layerChunks.chunks.getKeyAt(i));
+					}
+				}
+				for (int i = 0; i < _expiredChunks.length; i++) {
+					TileChunk chunk = layerChunks.chunks.remove(_expiredChunks.get(i));
+					if (chunk != null) {
+						chunk.close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 是否分块缓存顶点数据(默认开启)
+	 * 
+	 * @param c
+	 * @return
+	 */
+	public TMXMapRenderer setChunked(boolean c) {
+		if (!c) {
+			clearChunks();
+		}
+		this._chunked = c;
+		return this;
+	}
+
+	public boolean isChunked() {
+		return _chunked;
+	}
+
+	/**
+	 * 设置分块大小(以图块为单位)
+	 * 
+	 * @param size
+	 * @return
+	 */
+	public TMXMapRenderer setChunkSize(int size) {
+		size = MathUtils.max(1, size);
+		if (size != _chunkSize) {
+			clearChunks();
+			this._chunkSize = size;
+		}
+		return this;
+	}
+
+	public int getChunkSize() {
+		return _chunkSize;
+	}
+
+	/**
+	 * 上一帧生成的顶点数量(只包含重新生成的分块,直接提交缓存的分块不计入)
+	 * 
+	 * @return
+	 */
+	public int getLastVertexCount() {
+		return _lastVertexCount;
+	}
+
+	/**
+	 * 上一帧重新生成的分块数量
+	 * 
+	 * @return
+	 */
+	public int getLastBuildChunkCount() {
+		return _lastBuildCount;
+	}
+
+	/**
+	 * 上一帧与画面相交的分块数量
+	 * 
+	 * @return
+	 */
+	public int getLastVisibleChunkCount() {
+		return _lastVisibleCount;
+	}
+
+	/**
+	 * 当前缓存的分块数量
+	 * 
+	 * @return
+	 */
+	public int getChunkCount() {
+		int count = 0;
+		for (TileLayerChunks layerChunks : _layerChunks.values()) {
+			count += layerChunks.chunks.size();
+		}
+		return count;
+	}
+
+	public void clearChunks() {
+		for (TileLayerChunks layerChunks : _layerChunks.values()) {
+			layerChunks.close();
 		}
+		_layerChunks.clear();
 	}
 
 	protected void renderBackgroundColor(GLEx gl) {
@@ -219,6 +726,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 
 	@Override
 	public void createUI(GLEx g, float offsetX, float offsetY) {
+		beginChunkFrame();
 		float tmp = g.alpha();
 		float tmpAlpha = baseColor.a;
 		int color = g.color();
@@ -241,10 +749,12 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 		baseColor.a = tmpAlpha;
 		g.setColor(color);
 		g.setAlpha(tmp);
+		endChunkFrame();
 	}
 
 	@Override
 	public void createUI(GLEx g) {
+		beginChunkFrame();
 		float tmp = g.alpha();
 		float tmpAlpha = baseColor.a;
 		int color = g.color();
@@ -263,6 +773,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 		baseColor.a = tmpAlpha;
 		g.setColor(color);
 		g.setAlpha(tmp);
+		endChunkFrame();
 	}
 
 	@Override
@@ -445,6 +956,7 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 		for (LTexture texture : textureMap.values()) {
 			texture.close();
 		}
+		clearChunks();
 		lastHashCode = 1;
 		_resizeListener = null;
 		setState(State.DISPOSED);
@@ -27,7 +27,6 @@ import loon.action.map.tmx.TMXImageLayer;
 import loon.action.map.tmx.TMXMap;
 import loon.action.map.tmx.TMXTileLayer;
 import loon.action.map.tmx.TMXTileSet;
-import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
 import loon.opengl.BlendState;
 import loon.opengl.GLEx;
@@ -76,6 +75,11 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 				opacity = 1f;
 			}
 
+			if (_chunked) {
+				renderChunks(g, tileLayer, opacity);
+				return;
+			}
+
 			int tx = _location.x() / map.getTileWidth();
 			int ty = _location.y() / map.getTileHeight();
 			int windowWidth = (int) (LSystem.viewSize.getWidth()
@@ -138,15 +142,15 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 
 							continue;
 						}
-						TMXMapTile mapTile = tileLayer.getTile(x, y);
+						int tileSetID = tileLayer.getTileTileSetIndex(x, y);
 
-						if (mapTile.getTileSetID() == -1) {
+						if (tileSetID == -1) {
 							continue;
 						}
 
-						TMXTileSet tileSet = map.getTileset(mapTile
-								.getTileSetID());
-						TMXTile tile = tileSet.getTile(mapTile.getGID()
+						int gid = tileLayer.getTileGID(x, y);
+						TMXTileSet tileSet = map.getTileset(tileSetID);
+						TMXTile tile = tileSet.getTile(gid
 								- tileSet.getFirstGID());
 
 						LTexture texture = textureMap.get(tileSet.getImage()
@@ -161,192 +165,15 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 							batch.checkTexture(current);
 						}
 
-						int tileID = mapTile.getGID() - tileSet.getFirstGID();
+						int tileID = gid - tileSet.getFirstGID();
 
 						if (tile != null && tile.isAnimated()) {
 							tileID = tileAnimators.get(tile).getCurrentFrame()
 									.getTileID();
 						}
 
-						int numColsPerRow = tileSet.getImage().getWidth()
-								/ tileSet.getTileWidth();
-
-						int tileSetCol = tileID % numColsPerRow;
-						int tileSetRow = tileID / numColsPerRow;
-
-						float tileWidth = map.getTileWidth();
-						float tileHeight = map.getTileHeight();
-
-						float posX = (x * tileWidth + _location.x) * scaleX;
-						float posY = (y * tileHeight + _location.y) * scaleY;
-
-						float srcX = (tileSet.getMargin() + (tileSet
-								.getTileWidth() + tileSet.getSpacing())
-								* tileSetCol);
-						float srcY = (tileSet.getMargin() + (tileSet
-								.getTileHeight() + tileSet.getSpacing())
-								* tileSetRow);
-						float srcWidth = srcX + tileWidth;
-						float srcHeight = srcY + tileHeight;
-
-						float xOff = srcX * batch.getInvTexWidth()
-								+ texture.xOff();
-						float widthRatio = srcWidth * batch.getInvTexWidth();
-						float yOff = srcY * batch.getInvTexHeight()
-								+ texture.yOff();
-						float heightRatio = srcHeight * batch.getInvTexHeight();
-
-						boolean flipX = mapTile.isFlippedHorizontally();
-						boolean flipY = mapTile.isFlippedVertically();
-						boolean flipZ = mapTile.isFlippedDiagonally();
-
-						if (flipZ) {
-							flipX = !flipX;
-							flipY = !flipY;
-						}
-
-						if (flipX) {
-							float temp = xOff;
-							xOff = widthRatio;
-							widthRatio = temp;
-						}
-
-						if (flipY) {
-							float temp = yOff;
-							yOff = heightRatio;
-							heightRatio = temp;
-						}
-
-						float uvCorrectionX = (0.2f / tileSet.getImage()
-								.getWidth());
-						float uvCorrectionY = (0.2f / tileSet.getImage()
-								.getHeight());
-
-						if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
-
-							float originX = tileWidth / 2;
-							float originY = tileHeight / 2;
-							final float worldOriginX = posX + tileWidth / 2;
-							final float worldOriginY = posY + tileHeight / 2;
-							float fx = -originX;
-							float fy = -originY;
-							float fx2 = tileWidth - originX;
-							float fy2 = tileHeight - originY;
-
-							if (scaleX != 1 || scaleY != 1) {
-								fx *= scaleX;
-								fy *= scaleY;
-								fx2 *= scaleX;
-								fy2 *= scaleY;
-							}
-
-							final float p1x = fx;
-							final float p1y = fy;
-							final float p2x = fx;
-							final float p2y = fy2;
-							final float p3x = fx2;
-							final float p3y = fy2;
-							final float p4x = fx2;
-							final float p4y = fy;
-
-							float x1;
-							float y1;
-							float x2;
-							float y2;
-							float x3;
-							float y3;
-							float x4;
-							float y4;
-
-							if (_rotation != 0) {
-								final float cos = MathUtils.cosDeg(_rotation);
-								final float sin = MathUtils.sinDeg(_rotation);
-
-								x1 = cos * p1x - sin * p1y;
-								y1 = sin * p1x + cos * p1y;
-
-								x2 = cos * p2x - sin * p2y;
-								y2 = sin * p2x + cos * p2y;
-
-								x3 = cos * p3x - sin * p3y;
-								y3 = sin * p3x + cos * p3y;
-
-								x4 = x1 + (x3 - x2);
-								y4 = y3 - (y2 - y1);
-							} else {
-								x1 = p1x;
-								y1 = p1y;
-
-								x2 = p2x;
-								y2 = p2y;
-
-								x3 = p3x;
-								y3 = p3y;
-
-								x4 = p4x;
-								y4 = p4y;
-							}
-
-							x1 += worldOriginX;
-							y1 += worldOriginY;
-							x2 += worldOriginX;
-							y2 += worldOriginY;
-							x3 += worldOriginX;
-							y3 += worldOriginY;
-							x4 += worldOriginX;
-							y4 += worldOriginY;
-
-							if (flipZ) {
-								x2 += tileWidth;
-								y2 += tileHeight;
-								x4 += tileWidth;
-								y4 += tileHeight;
-							}
-
-							batch.glVertex2f(x1, y1);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-							batch.glVertex2f(x2, y2);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(x3, y3);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(x4, y4);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
-									+ uvCorrectionY);
-						} else {
-							batch.glVertex2f(posX, posY);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX, yOff
-									+ uvCorrectionY);
-
-							batch.glVertex2f(flipZ ? posX + tileWidth : posX,
-									flipZ ? posY : posY + tileHeight);
-							batch.glColor4f();
-							batch.glTexCoord2f(xOff + uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(posX + tileWidth, posY
-									+ tileHeight);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX,
-									heightRatio - uvCorrectionY);
-
-							batch.glVertex2f(flipZ ? posX : posX + tileWidth,
-									flipZ ? posY + tileHeight : posY);
-							batch.glColor4f();
-							batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
-									+ uvCorrectionY);
-						}
-
+						addTileVertices(batch, texture, tileSet, tileLayer, tileID,
+								x, y, _location.x, _location.y);
 					}
 				}
 			} finally {
@@ -362,4 +189,187 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 
 	}
 
+	@Override
+	protected void addTileVertices(LTextureBatch batch, LTexture texture, TMXTileSet tileSet,
+			TMXTileLayer tileLayer, int tileID, int x, int y, float offsetX, float offsetY) {
+		int numColsPerRow = tileSet.getImage().getWidth()
+				/ tileSet.getTileWidth();
+
+		int tileSetCol = tileID % numColsPerRow;
+		int tileSetRow = tileID / numColsPerRow;
+
+		float tileWidth = map.getTileWidth();
+		float tileHeight = map.getTileHeight();
+
+		float posX = (x * tileWidth + offsetX) * scaleX;
+		float posY = (y * tileHeight + offsetY) * scaleY;
+
+		float srcX = (tileSet.getMargin() + (tileSet
+				.getTileWidth() + tileSet.getSpacing())
+				* tileSetCol);
+		float srcY = (tileSet.getMargin() + (tileSet
+				.getTileHeight() + tileSet.getSpacing())
+				* tileSetRow);
+		float srcWidth = srcX + tileWidth;
+		float srcHeight = srcY + tileHeight;
+
+		float xOff = srcX * batch.getInvTexWidth()
+				+ texture.xOff();
+		float widthRatio = srcWidth * batch.getInvTexWidth();
+		float yOff = srcY * batch.getInvTexHeight()
+				+ texture.yOff();
+		float heightRatio = srcHeight * batch.getInvTexHeight();
+
+		boolean flipX = tileLayer.isTileFlippedHorizontally(x, y);
+		boolean flipY = tileLayer.isTileFlippedVertically(x, y);
+		boolean flipZ = tileLayer.isTileFlippedDiagonally(x, y);
+
+		if (flipZ) {
+			flipX = !flipX;
+			flipY = !flipY;
+		}
+
+		if (flipX) {
+			float temp = xOff;
+			xOff = widthRatio;
+			widthRatio = temp;
+		}
+
+		if (flipY) {
+			float temp = yOff;
+			yOff = heightRatio;
+			heightRatio = temp;
+		}
+
+		float uvCorrectionX = (0.2f / tileSet.getImage()
+				.getWidth());
+		float uvCorrectionY = (0.2f / tileSet.getImage()
+				.getHeight());
+
+		if (_rotation != 0f || scaleX != 1f || scaleY != 1f) {
+
+			float originX = tileWidth / 2;
+			float originY = tileHeight / 2;
+			final float worldOriginX = posX + tileWidth / 2;
+			final float worldOriginY = posY + tileHeight / 2;
+			float fx = -originX;
+			float fy = -originY;
+			float fx2 = tileWidth - originX;
+			float fy2 = tileHeight - originY;
+
+			if (scaleX != 1 || scaleY != 1) {
+				fx *= scaleX;
+				fy *= scaleY;
+				fx2 *= scaleX;
+				fy2 *= scaleY;
+			}
+
+			final float p1x = fx;
+			final float p1y = fy;
+			final float p2x = fx;
+			final float p2y = fy2;
+			final float p3x = fx2;
+			final float p3y = fy2;
+			final float p4x = fx2;
+			final float p4y = fy;
+
+			float x1;
+			float y1;
+			float x2;
+			float y2;
+			float x3;
+			float y3;
+			float x4;
+			float y4;
+
+			if (_rotation != 0) {
+				final float cos = MathUtils.cosDeg(_rotation);
+				final float sin = MathUtils.sinDeg(_rotation);
+
+				x1 = cos * p1x - sin * p1y;
+				y1 = sin * p1x + cos * p1y;
+
+				x2 = cos * p2x - sin * p2y;
+				y2 = sin * p2x + cos * p2y;
+
+				x3 = cos * p3x - sin * p3y;
+				y3 = sin * p3x + cos * p3y;
+
+				x4 = x1 + (x3 - x2);
+				y4 = y3 - (y2 - y1);
+			} else {
+				x1 = p1x;
+				y1 = p1y;
+
+				x2 = p2x;
+				y2 = p2y;
+
+				x3 = p3x;
+				y3 = p3y;
+
+				x4 = p4x;
+				y4 = p4y;
+			}
+
+			x1 += worldOriginX;
+			y1 += worldOriginY;
+			x2 += worldOriginX;
+			y2 += worldOriginY;
+			x3 += worldOriginX;
+			y3 += worldOriginY;
+			x4 += worldOriginX;
+			y4 += worldOriginY;
+
+			if (flipZ) {
+				x2 += tileWidth;
+				y2 += tileHeight;
+				x4 += tileWidth;
+				y4 += tileHeight;
+			}
+
+			batch.glVertex2f(x1, y1);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+			batch.glVertex2f(x2, y2);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(x3, y3);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(x4, y4);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
+					+ uvCorrectionY);
+		} else {
+			batch.glVertex2f(posX, posY);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX, yOff
+					+ uvCorrectionY);
+
+			batch.glVertex2f(flipZ ? posX + tileWidth : posX,
+					flipZ ? posY : posY + tileHeight);
+			batch.glColor4f();
+			batch.glTexCoord2f(xOff + uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(posX + tileWidth, posY
+					+ tileHeight);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX,
+					heightRatio - uvCorrectionY);
+
+			batch.glVertex2f(flipZ ? posX : posX + tileWidth,
+					flipZ ? posY + tileHeight : posY);
+			batch.glColor4f();
+			batch.glTexCoord2f(widthRatio - uvCorrectionX, yOff
+					+ uvCorrectionY);
+		}
+	}
+
 }
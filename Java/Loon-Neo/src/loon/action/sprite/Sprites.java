@@ -35,6 +35,7 @@ import loon.geom.RectBox;
 import loon.opengl.GLEx;
 import loon.utils.CollectionUtils;
 import loon.utils.IArray;
+import loon.utils.IntArray;
 import loon.utils.LayerSorter;
 import loon.utils.MathUtils;
 import loon.utils.StringUtils;
@@ -88,6 +89,12 @@ public class Sprites implements IArray, Visible, LRelease {
 
 	private final String _sprites_name;
 
+	private SpritesIndex _spatialIndex;
+
+	private boolean _spatialDirty = true;
+
+	private final IntArray _spatialResult = new IntArray();
+
 	public Sprites(Screen screen, int w, int h) {
 		this(null, screen, w, h);
 	}
@@ -201,6 +208,7 @@ public class Sprites implements IArray, Visible, LRelease {
 		if (this._closed) {
 			return;
 		}
+		this._spatialDirty = true;
 		if (this._size <= 1) {
 			return;
 		}
@@ -250,6 +258,19 @@ public class Sprites implements IArray, Visible, LRelease {
 		if (_closed) {
 			return null;
 		}
+		if (validateSpatialIndex()) {
+			final IntArray result = _spatialIndex.query(x, y, 0, 0, _spatialResult);
+			for (int i = result.length - 1; i >= 0; i--) {
+				ISprite child = _sprites[result.get(i)];
+				if (child != null) {
+					RectBox rect = child.getCollisionBox();
+					if (rect != null && rect.contains(x, y)) {
+						return child;
+					}
+				}
+			}
+			return null;
+		}
 		ISprite[] snapshot = _sprites;
 		for (int i = snapshot.length - 1; i >= 0; i--) {
 			ISprite child = snapshot[i];
@@ -736,13 +757,39 @@ public class Sprites implements IArray, Visible, LRelease {
 	 * @return
 	 */
 	public TArray<ISprite> contains(float x, float y, float w, float h) {
-		TArray<ISprite> sprites = new TArray<ISprite>();
+		return contains(x, y, w, h, new TArray<ISprite>());
+	}
+
+	/**
+	 * 返回指定位置内的所有精灵,结果存入指定集合(会先清空)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param sprites
+	 * @return
+	 */
+	public TArray<ISprite> contains(float x, float y, float w, float h, TArray<ISprite> sprites) {
+		sprites.clear();
 		if (_closed) {
 			return sprites;
 		}
 		if (_sprites == null) {
 			return sprites;
 		}
+		if (validateSpatialIndex()) {
+			final IntArray result = _spatialIndex.query(x, y, w, h, _spatialResult);
+			for (int i = 0; i < result.length; i++) {
+				ISprite sp = _sprites[result.get(i)];
+				if (sp != null) {
+					if (sp.inContains(x, y, w, h)) {
+						sprites.add(sp);
+					}
+				}
+			}
+			return sprites;
+		}
 		for (int i = 0; i < _size; i++) {
 			ISprite sp = _sprites[i];
 			if (sp != null) {
@@ -765,6 +812,18 @@ public class Sprites implements IArray, Visible, LRelease {
 		return contains(x, y, 1f, 1f);
 	}
 
+	/**
+	 * 返回包含指定位置的所有精灵,结果存入指定集合(会先清空)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param sprites
+	 * @return
+	 */
+	public TArray<ISprite> contains(float x, float y, TArray<ISprite> sprites) {
+		return contains(x, y, 1f, 1f, sprites);
+	}
+
 	/**
 	 * 返回包含指定精灵位置的所有精灵
 	 * 
@@ -788,13 +847,39 @@ public class Sprites implements IArray, Visible, LRelease {
 	 * @return
 	 */
 	public TArray<ISprite> intersects(float x, float y, float w, float h) {
-		TArray<ISprite> sprites = new TArray<ISprite>();
+		return intersects(x, y, w, h, new TArray<ISprite>());
+	}
+
+	/**
+	 * 返回指定位置内的所有精灵,结果存入指定集合(会先清空)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param sprites
+	 * @return
+	 */
+	public TArray<ISprite> intersects(float x, float y, float w, float h, TArray<ISprite> sprites) {
+		sprites.clear();
 		if (_closed) {
 			return sprites;
 		}
 		if (_sprites == null) {
 			return sprites;
 		}
+		if (validateSpatialIndex()) {
+			final IntArray result = _spatialIndex.query(x, y, w, h, _spatialResult);
+			for (int i = 0; i < result.length; i++) {
+				ISprite sp = _sprites[result.get(i)];
+				if (sp != null) {
+					if (sp.getCollisionBox().intersects(x, y, w, h)) {
+						sprites.add(sp);
+					}
+				}
+			}
+			return sprites;
+		}
 		for (int i = 0; i < _size; i++) {
 			ISprite sp = _sprites[i];
 			if (sp != null) {
@@ -817,6 +902,18 @@ public class Sprites implements IArray, Visible, LRelease {
 		return intersects(x, y, 1f, 1f);
 	}
 
+	/**
+	 * 返回与指定位置相交的所有精灵,结果存入指定集合(会先清空)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param sprites
+	 * @return
+	 */
+	public TArray<ISprite> intersects(float x, float y, TArray<ISprite> sprites) {
+		return intersects(x, y, 1f, 1f, sprites);
+	}
+
 	/**
 	 * 返回与指定精灵位置相交的所有精灵
 	 * 
@@ -852,6 +949,7 @@ public class Sprites implements IArray, Visible, LRelease {
 		if (size > 0) {
 			System.arraycopy(this._sprites, index + 1, this._sprites, index, size);
 		}
+		_spatialDirty = true;
 		this._sprites[--this._size] = null;
 		if (size == 0) {
 			_sprites = new ISprite[0];
@@ -897,6 +995,7 @@ public class Sprites implements IArray, Visible, LRelease {
 					ActionControl.get().removeAllActions((ActionBind) spr);
 				}
 				removed = true;
+				_spatialDirty = true;
 				_size--;
 				_sprites[i - 1] = _sprites[_size];
 				_sprites[_size] = null;
@@ -937,6 +1036,7 @@ public class Sprites implements IArray, Visible, LRelease {
 					ActionControl.get().removeAllActions((ActionBind) spr);
 				}
 				removed = true;
+				_spatialDirty = true;
 				_size--;
 				_sprites[i - 1] = _sprites[_size];
 				_sprites[_size] = null;
@@ -973,6 +1073,7 @@ public class Sprites implements IArray, Visible, LRelease {
 				}
 			}
 		}
+		_spatialDirty = true;
 		int numMoved = this._size - endIndex;
 		System.arraycopy(this._sprites, endIndex, this._sprites, startIndex, numMoved);
 		int newSize = this._size - (endIndex - startIndex);
@@ -1030,6 +1131,7 @@ public class Sprites implements IArray, Visible, LRelease {
 			_sprites[i] = null;
 		}
 		_size = 0;
+		_spatialDirty = true;
 	}
 
 	/**
@@ -1055,6 +1157,7 @@ public class Sprites implements IArray, Visible, LRelease {
 				}
 			}
 		}
+		refreshSpatialIndex();
 	}
 
 	/**
@@ -1071,8 +1174,11 @@ public class Sprites implements IArray, Visible, LRelease {
 		float spriteWidth;
 		float spriteHeight;
 
-		for (int i = 0; i < this._size; i++) {
-			ISprite spr = this._sprites[i];
+		final boolean indexed = validateSpatialIndex();
+		final IntArray visibles = indexed ? queryVisible(0, 0, maxX - minX, maxY - minY) : null;
+		final int count = indexed ? visibles.length : this._size;
+		for (int j = 0; j < count; j++) {
+			ISprite spr = this._sprites[indexed ? visibles.get(j) : j];
 			if (spr != null && spr.isVisible()) {
 				spriteX = minX + spr.getX();
 				spriteY = minY + spr.getY();
@@ -1153,8 +1259,11 @@ public class Sprites implements IArray, Visible, LRelease {
 		if (offset) {
 			g.translate(minX, minY);
 		}
-		for (int i = 0; i < this._size; i++) {
-			ISprite spr = this._sprites[i];
+		final boolean indexed = validateSpatialIndex();
+		final IntArray visibles = indexed ? queryVisible(minX, minY, maxX - minX, maxY - minY) : null;
+		final int count = indexed ? visibles.length : this._size;
+		for (int j = 0; j < count; j++) {
+			ISprite spr = this._sprites[indexed ? visibles.get(j) : j];
 			if (spr != null && spr.isVisible()) {
 				int layerX = spr.x();
 				int layerY = spr.y();
@@ -1174,6 +1283,90 @@ public class Sprites implements IArray, Visible, LRelease {
 		}
 	}
 
+	/**
+	 * 启用或关闭空间索引,启用后点与矩形查询以及渲染时的视窗裁剪只检查索引返回的候选精灵,适合精灵数量很多的场景.
+	 * 
+	 * 精灵坐标在每次update后增量刷新,若在update之外移动了精灵并需要立即查询,可调用refreshSpatialIndex.
+	 * 
+	 * @param enabled
+	 * @return
+	 */
+	public Sprites setSpatialIndex(boolean enabled) {
+		if (enabled) {
+			if (_spatialIndex == null) {
+				_spatialIndex = new SpritesIndex();
+				_spatialDirty = true;
+			}
+		} else if (_spatialIndex != null) {
+			_spatialIndex.close();
+			_spatialIndex = null;
+		}
+		return this;
+	}
+
+	/**
+	 * 以指定格子大小启用空间索引
+	 * 
+	 * @param cellSize
+	 * @return
+	 */
+	public Sprites setSpatialIndex(float cellSize) {
+		if (_spatialIndex != null) {
+			_spatialIndex.close();
+		}
+		_spatialIndex = new SpritesIndex(cellSize);
+		_spatialDirty = true;
+		return this;
+	}
+
+	public boolean isSpatialIndex() {
+		return _spatialIndex != null;
+	}
+
+	public SpritesIndex getSpatialIndex() {
+		return _spatialIndex;
+	}
+
+	/**
+	 * 刷新空间索引中的精灵坐标
+	 * 
+	 * @return
+	 */
+	public Sprites refreshSpatialIndex() {
+		if (_spatialIndex == null || _closed) {
+			return this;
+		}
+		if (_spatialDirty) {
+			validateSpatialIndex();
+			return this;
+		}
+		for (int i = 0; i < _size; i++) {
+			if (!_spatialIndex.refresh(i, _sprites[i])) {
+				_spatialDirty = true;
+				validateSpatialIndex();
+				break;
+			}
+		}
+		return this;
+	}
+
+	private boolean validateSpatialIndex() {
+		if (_spatialIndex == null || _sprites == null) {
+			return false;
+		}
+		if (_spatialDirty) {
+			_spatialIndex.rebuild(_sprites, _size);
+			_spatialDirty = false;
+		}
+		return true;
+	}
+
+	private IntArray queryVisible(float x, float y, float w, float h) {
+		// 精灵可能在update之后移动过(比如在其它精灵的update或事件中),裁剪前先刷新移动过的精灵
+		refreshSpatialIndex();
+		return _spatialIndex.query(x, y, w, h, _spatialResult);
+	}
+
 	public float getX() {
 		return viewX;
 	}
@@ -1562,6 +1755,10 @@ public class Sprites implements IArray, Visible, LRelease {
 			}
 		}
 		clear();
+		if (_spatialIndex != null) {
+			_spatialIndex.close();
+			_spatialIndex = null;
+		}
 		this._closed = true;
 		this._sprites = null;
 		this._resizeListener = null;
@@ -0,0 +1,384 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.sprite;
+
+import loon.LRelease;
+import loon.geom.RectBox;
+import loon.utils.IntArray;
+import loon.utils.LongMap;
+import loon.utils.MathUtils;
+
+/**
+ * Sprites使用的空间索引(稀疏网格),以精灵在Sprites中的索引作为数据,精灵移动时只有所占格子改变才会重新登记,
+ * 查询结果按精灵在Sprites中的顺序返回.登记的范围同时包含绘制区域与碰撞区域,渲染裁剪与碰撞查询共用一份索引.
+ */
+public class SpritesIndex implements LRelease {
+
+	/**
+	 * 单个精灵占用的格子超过此数时不再登记到网格,而是放入每次查询都会返回的大物体列表
+	 */
+	private final static int MAX_CELLS = 64;
+
+	private static class Entry {
+
+		ISprite sprite;
+
+		int order;
+
+		float x, y, w, h;
+
+		int cl, ct, cr, cb;
+
+		boolean large;
+
+		int stamp;
+
+	}
+
+	private static class Cell {
+
+		Entry[] items = new Entry[4];
+
+		int count;
+
+		void add(Entry e) {
+			if (count == items.length) {
+				Entry[] newItems = new Entry[count * 2];
+				System.arraycopy(items, 0, newItems, 0, count);
+				items = newItems;
+			}
+			items[count++] = e;
+		}
+
+		void remove(Entry e) {
+			for (int i = 0; i < count; i++) {
+				if (items[i] == e) {
+					items[i] = items[--count];
+					items[count] = null;
+					return;
+				}
+			}
+		}
+	}
+
+	private final float cellSize;
+
+	private final LongMap<Cell> cells = new LongMap<Cell>(256);
+
+	private Entry[] entries = new Entry[0];
+
+	private int size;
+
+	private final IntArray larges = new IntArray();
+
+	private int stamp;
+
+	private int lastQueryCount;
+
+	private int relocateCount;
+
+	public SpritesIndex() {
+		this(128f);
+	}
+
+	public SpritesIndex(float cellSize) {
+		this.cellSize = MathUtils.max(1f, cellSize);
+	}
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	private int toCell(float v) {
+		return MathUtils.floor(v / cellSize);
+	}
+
+	/**
+	 * 以当前精灵数组重建索引(精灵增删或排序后调用)
+	 *
+	 * @param sprites
+	 * @param count
+	 */
+	public void rebuild(ISprite[] sprites, int count) {
+		for (int i = 0, n = cells.capacity(); i < n; i++) {
+			Cell cell = cells.getValueAt(i);
+			if (cell != null) {
+				for (int j = 0; j < cell.count; j++) {
+					cell.items[j] = null;
+				}
+				cell.count = 0;
+			}
+		}
+		larges.clear();
+		if (entries.length < count) {
+			Entry[] newEntries = new Entry[count];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			entries = newEntries;
+		}
+		for (int i = count; i < size; i++) {
+			if (entries[i] != null) {
+				entries[i].sprite = null;
+			}
+		}
+		size = count;
+		for (int i = 0; i < count; i++) {
+			Entry e = entries[i];
+			if (e == null) {
+				entries[i] = e = new Entry();
+			}
+			e.sprite = sprites[i];
+			e.order = i;
+			if (e.sprite != null) {
+				read(e);
+				insert(e);
+			}
+		}
+		if (cells.size() > MathUtils.max(256, count * 4)) {
+			cells.clear();
+			for (int i = 0; i < count; i++) {
+				if (entries[i].sprite != null && !entries[i].large) {
+					insert(entries[i]);
+				}
+			}
+		}
+	}
+
+	private float boundX, boundY, boundWidth, boundHeight;
+
+	/**
+	 * 计算精灵的登记范围:绘制区域(坐标与大小,与Sprites渲染时的裁剪一致)与碰撞区域(与Sprites中查询时的判断一致)的并集
+	 * 
+	 * @param spr
+	 */
+	private void bounds(ISprite spr) {
+		final float x = spr.getX();
+		final float y = spr.getY();
+		final float w = spr.getWidth();
+		final float h = spr.getHeight();
+		float left = MathUtils.min(x, spr.x());
+		float top = MathUtils.min(y, spr.y());
+		float right = MathUtils.max(x, spr.x()) + w;
+		float bottom = MathUtils.max(y, spr.y()) + h;
+		final RectBox box = spr.getCollisionBox();
+		if (box != null) {
+			left = MathUtils.min(left, box.getX());
+			top = MathUtils.min(top, box.getY());
+			right = MathUtils.max(right, box.getX() + box.getWidth());
+			bottom = MathUtils.max(bottom, box.getY() + box.getHeight());
+		}
+		boundX = left;
+		boundY = top;
+		boundWidth = right - left;
+		boundHeight = bottom - top;
+	}
+
+	private void read(Entry e) {
+		bounds(e.sprite);
+		e.x = boundX;
+		e.y = boundY;
+		e.w = boundWidth;
+		e.h = boundHeight;
+		e.cl = toCell(e.x);
+		e.ct = toCell(e.y);
+		e.cr = toCell(e.x + e.w + 1);
+		e.cb = toCell(e.y + e.h + 1);
+	}
+
+	private void insert(Entry e) {
+		final long area = (long) (e.cr - e.cl + 1) * (e.cb - e.ct + 1);
+		e.large = area > MAX_CELLS || area < 0;
+		if (e.large) {
+			larges.add(e.order);
+			return;
+		}
+		for (int cy = e.ct; cy <= e.cb; cy++) {
+			for (int cx = e.cl; cx <= e.cr; cx++) {
+				final long key = LongMap.pack(cx, cy);
+				Cell cell = cells.get(key);
+				if (cell == null) {
+					cell = new Cell();
+					cells.put(key, cell);
+				}
+				cell.add(e);
+			}
+		}
+	}
+
+	private void erase(Entry e) {
+		if (e.large) {
+			larges.removeValue(e.order);
+			return;
+		}
+		for (int cy = e.ct; cy <= e.cb; cy++) {
+			for (int cx = e.cl; cx <= e.cr; cx++) {
+				Cell cell = cells.get(cx, cy);
+				if (cell != null) {
+					cell.remove(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 刷新指定位置精灵的坐标,返回false表示索引与精灵数组不一致,需要重建
+	 *
+	 * @param index
+	 * @param spr
+	 * @return
+	 */
+	public boolean refresh(int index, ISprite spr) {
+		if (index >= size) {
+			return false;
+		}
+		final Entry e = entries[index];
+		if (e.sprite != spr) {
+			return false;
+		}
+		if (spr == null) {
+			return true;
+		}
+		bounds(spr);
+		if (e.x == boundX && e.y == boundY && e.w == boundWidth && e.h == boundHeight) {
+			return true;
+		}
+		final int cl = e.cl, ct = e.ct, cr = e.cr, cb = e.cb;
+		final boolean large = e.large;
+		read(e);
+		if (cl != e.cl || ct != e.ct || cr != e.cr || cb != e.cb) {
+			final int ncl = e.cl, nct = e.ct, ncr = e.cr, ncb = e.cb;
+			e.cl = cl;
+			e.ct = ct;
+			e.cr = cr;
+			e.cb = cb;
+			e.large = large;
+			erase(e);
+			e.cl = ncl;
+			e.ct = nct;
+			e.cr = ncr;
+			e.cb = ncb;
+			insert(e);
+			relocateCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * 查询与指定区域相交(包含边缘接触)的精灵,结果为精灵在Sprites中的索引,按升序排列
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param result
+	 * @return
+	 */
+	public IntArray query(float x, float y, float w, float h, IntArray result) {
+		result.clear();
+		if (++stamp == Integer.MAX_VALUE) {
+			for (int i = 0; i < size; i++) {
+				entries[i].stamp = 0;
+			}
+			stamp = 1;
+		}
+		final float right = x + w;
+		final float bottom = y + h;
+		final int cl = toCell(x), ct = toCell(y), cr = toCell(right), cb = toCell(bottom);
+		final long area = (long) (cr - cl + 1) * (cb - ct + 1);
+		if (area > cells.size() || area < 0) {
+			// 查询范围大于已登记的格子数时,直接遍历全部格子
+			for (int i = 0, n = cells.capacity(); i < n; i++) {
+				final Cell cell = cells.getValueAt(i);
+				if (cell != null) {
+					collect(cell, x, y, right, bottom, result);
+				}
+			}
+		} else {
+			for (int cy = ct; cy <= cb; cy++) {
+				for (int cx = cl; cx <= cr; cx++) {
+					final Cell cell = cells.get(cx, cy);
+					if (cell != null) {
+						collect(cell, x, y, right, bottom, result);
+					}
+				}
+			}
+		}
+		for (int i = 0; i < larges.length; i++) {
+			final Entry e = entries[larges.get(i)];
+			if (e.stamp != stamp && e.x <= right && e.x + e.w + 1 >= x && e.y <= bottom && e.y + e.h + 1 >= y) {
+				e.stamp = stamp;
+				result.add(e.order);
+			}
+		}
+		result.sort();
+		lastQueryCount = result.length;
+		return result;
+	}
+
+	private void collect(Cell cell, float left, float top, float right, float bottom, IntArray result) {
+		final Entry[] items = cell.items;
+		for (int i = 0, n = cell.count; i < n; i++) {
+			final Entry e = items[i];
+			if (e.stamp != stamp) {
+				e.stamp = stamp;
+				if (e.x <= right && e.x + e.w + 1 >= left && e.y <= bottom && e.y + e.h + 1 >= top) {
+					result.add(e.order);
+				}
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCellCount() {
+		return cells.size();
+	}
+
+	public int getLastQueryCount() {
+		return lastQueryCount;
+	}
+
+	/**
+	 * 因精灵移动而更换格子的累计次数
+	 *
+	 * @return
+	 */
+	public int getRelocateCount() {
+		return relocateCount;
+	}
+
+	public void clear() {
+		cells.clear();
+		larges.clear();
+		for (int i = 0; i < size; i++) {
+			entries[i].sprite = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+		entries = new Entry[0];
+	}
+
+}
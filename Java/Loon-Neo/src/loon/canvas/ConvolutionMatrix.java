@@ -20,6 +20,10 @@
  */
 package loon.canvas;
 
+import loon.Asyn.ParallelTask;
+import loon.LSystem;
+import loon.utils.MathUtils;
+
 public class ConvolutionMatrix {
 
 	public static final int SIZE = 3;
@@ -48,60 +52,95 @@ public class ConvolutionMatrix {
 		}
 	}
 
-	public static Pixmap computeConvolution3x3(Pixmap src, ConvolutionMatrix matrix) {
-		int width = src.getWidth();
-		int height = src.getHeight();
-		Pixmap canvas = Pixmap.createImage(width, height);
-
-		int A, R, G, B;
-		int sumR, sumG, sumB;
-		int[][] pixels = new int[SIZE][SIZE];
-
-		for (int y = 0; y < height - 2; ++y) {
-			for (int x = 0; x < width - 2; ++x) {
+	/**
+	 * 以当前矩阵卷积像素数组(width * height),结果写入dst(不可与src相同).
+	 * 
+	 * 矩阵除以factor后转为12位小数的定点整数,逐像素只做整数运算,边缘像素取最近的有效像素,透明度保持中心像素的值.
+	 * 像素数量较多且平台支持多线程时按行拆分并行处理.
+	 * 
+	 * @param src
+	 * @param dst
+	 * @param width
+	 * @param height
+	 */
+	public void convolve(final int[] src, final int[] dst, final int width, final int height) {
+		final int size = matrix.length;
+		final int[] weights = new int[size * size];
+		final float scale = (factor == 0 ? 1f : 1f / factor) * (1 << FIXED_BITS);
+		for (int ky = 0; ky < size; ky++) {
+			for (int kx = 0; kx < size; kx++) {
+				// matrix[x][y]
+				weights[ky * size + kx] = MathUtils.round(matrix[kx][ky] * scale);
+			}
+		}
+		final int fixedOffset = MathUtils.round(offset * (1 << FIXED_BITS));
+		final int bands = PixmapKernel.getBandCount(width, height);
+		if (bands <= 1) {
+			convolveRows(src, dst, width, height, weights, size, fixedOffset, 0, height);
+			return;
+		}
+		final int rows = (height + bands - 1) / bands;
+		LSystem.invokeParallel(bands, new ParallelTask() {
+
+			@Override
+			public void run(int index) {
+				final int start = index * rows;
+				convolveRows(src, dst, width, height, weights, size, fixedOffset, start,
+						MathUtils.min(height, start + rows));
+			}
+		});
+	}
 
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						pixels[i][j] = src.getPixel(x + i, y + j);
+	private final static int FIXED_BITS = 12;
+
+	private static void convolveRows(int[] src, int[] dst, int width, int height, int[] weights, int size,
+			int offset, int from, int to) {
+		final int half = size >> 1;
+		final int maxX = width - 1;
+		final int maxY = height - 1;
+		for (int y = from; y < to; y++) {
+			final boolean insideY = y >= half && y + half <= maxY;
+			final int line = y * width;
+			for (int x = 0; x < width; x++) {
+				int sr = offset, sg = offset, sb = offset;
+				int k = 0;
+				if (insideY && x >= half && x + half <= maxX) {
+					for (int row = line - half * width + x - half, ky = 0; ky < size; ky++, row += width) {
+						for (int kx = 0; kx < size; kx++) {
+							final int c = src[row + kx];
+							final int w = weights[k++];
+							sr += ((c >> 16) & 0xFF) * w;
+							sg += ((c >> 8) & 0xFF) * w;
+							sb += (c & 0xFF) * w;
+						}
 					}
-				}
-
-				A = LColor.alpha(pixels[1][1]);
-
-				sumR = sumG = sumB = 0;
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						sumR += (LColor.red(pixels[i][j]) * matrix.matrix[i][j]);
-						sumG += (LColor.green(pixels[i][j]) * matrix.matrix[i][j]);
-						sumB += (LColor.blue(pixels[i][j]) * matrix.matrix[i][j]);
+				} else {
+					for (int ky = 0; ky < size; ky++) {
+						int py = y + ky - half;
+						py = py < 0 ? 0 : (py > maxY ? maxY : py);
+						final int row = py * width;
+						for (int kx = 0; kx < size; kx++) {
+							int px = x + kx - half;
+							px = px < 0 ? 0 : (px > maxX ? maxX : px);
+							final int c = src[row + px];
+							final int w = weights[k++];
+							sr += ((c >> 16) & 0xFF) * w;
+							sg += ((c >> 8) & 0xFF) * w;
+							sb += (c & 0xFF) * w;
+						}
 					}
 				}
-
-				R = (int) (sumR / matrix.factor + matrix.offset);
-				if (R < 0) {
-					R = 0;
-				} else if (R > 255) {
-					R = 255;
-				}
-
-				G = (int) (sumG / matrix.factor + matrix.offset);
-				if (G < 0) {
-					G = 0;
-				} else if (G > 255) {
-					G = 255;
-				}
-
-				B = (int) (sumB / matrix.factor + matrix.offset);
-				if (B < 0) {
-					B = 0;
-				} else if (B > 255) {
-					B = 255;
-				}
-
-				canvas.setRGB(LColor.argb(A, R, G, B), x + 1, y + 1);
+				dst[line + x] = (src[line + x] & 0xFF000000) | (PixmapKernel.clamp(sr >> FIXED_BITS) << 16)
+						| (PixmapKernel.clamp(sg >> FIXED_BITS) << 8) | PixmapKernel.clamp(sb >> FIXED_BITS);
 			}
 		}
+	}
+
+	public static Pixmap computeConvolution3x3(Pixmap src, ConvolutionMatrix matrix) {
+		int width = src.getWidth();
+		int height = src.getHeight();
+		Pixmap canvas = Pixmap.createImage(width, height);
+		matrix.convolve(src.getData(), canvas.getData(), width, height);
 
 		src.close();
 		src = null;
@@ -113,56 +152,9 @@ public class ConvolutionMatrix {
 		int width = src.getWidth();
 		int height = src.getHeight();
 		Canvas canvas = Image.createCanvas(width, height);
-
-		int A, R, G, B;
-		int sumR, sumG, sumB;
-		int[][] pixels = new int[SIZE][SIZE];
-
-		for (int y = 0; y < height - 2; ++y) {
-			for (int x = 0; x < width - 2; ++x) {
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						pixels[i][j] = src.getPixel(x + i, y + j);
-					}
-				}
-
-				A = LColor.alpha(pixels[1][1]);
-
-				sumR = sumG = sumB = 0;
-
-				for (int i = 0; i < SIZE; ++i) {
-					for (int j = 0; j < SIZE; ++j) {
-						sumR += (LColor.red(pixels[i][j]) * matrix.matrix[i][j]);
-						sumG += (LColor.green(pixels[i][j]) * matrix.matrix[i][j]);
-						sumB += (LColor.blue(pixels[i][j]) * matrix.matrix[i][j]);
-					}
-				}
-
-				R = (int) (sumR / matrix.factor + matrix.offset);
-				if (R < 0) {
-					R = 0;
-				} else if (R > 255) {
-					R = 255;
-				}
-
-				G = (int) (sumG / matrix.factor + matrix.offset);
-				if (G < 0) {
-					G = 0;
-				} else if (G > 255) {
-					G = 255;
-				}
-
-				B = (int) (sumB / matrix.factor + matrix.offset);
-				if (B < 0) {
-					B = 0;
-				} else if (B > 255) {
-					B = 255;
-				}
-
-				canvas.image.setPixel(LColor.argb(A, R, G, B), x + 1, y + 1);
-			}
-		}
+		int[] pixels = new int[width * height];
+		matrix.convolve(src.getPixels(), pixels, width, height);
+		canvas.image.setPixels(pixels, width, height);
 
 		src.close();
 		src = null;
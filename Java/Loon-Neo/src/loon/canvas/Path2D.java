@@ -638,6 +638,68 @@ public class Path2D implements Path {
 		return _data.toArray();
 	}
 
+	/**
+	 * 把路径的所有轮廓送入扫描线填充器,曲线按弯曲程度分段(而不是把控制点当作顶点)
+	 *
+	 * @param rasterizer
+	 * @param offsetX
+	 * @param offsetY
+	 */
+	void rasterize(PixmapRasterizer rasterizer, float offsetX, float offsetY) {
+		final int size = _data.size();
+		if (_commands.size == 0) {
+			// 由update直接设置的顶点数据,没有命令
+			if (size >= 6) {
+				rasterizer.moveTo(_data.get(0) + offsetX, _data.get(1) + offsetY);
+				for (int i = 2; i < size - 1; i += 2) {
+					rasterizer.lineTo(_data.get(i) + offsetX, _data.get(i + 1) + offsetY);
+				}
+			}
+			return;
+		}
+		int idx = 0;
+		for (int i = 0; i < _commands.size; i++) {
+			final PathCommand cmd = _commands.get(i);
+			switch (cmd) {
+			case MoveTo:
+				if (idx + 2 > size) {
+					return;
+				}
+				rasterizer.moveTo(_data.get(idx) + offsetX, _data.get(idx + 1) + offsetY);
+				idx += 2;
+				break;
+			case LineTo:
+				if (idx + 2 > size) {
+					return;
+				}
+				rasterizer.lineTo(_data.get(idx) + offsetX, _data.get(idx + 1) + offsetY);
+				idx += 2;
+				break;
+			case CurveTo:
+				if (idx + 4 > size) {
+					return;
+				}
+				rasterizer.quadTo(_data.get(idx) + offsetX, _data.get(idx + 1) + offsetY, _data.get(idx + 2) + offsetX,
+						_data.get(idx + 3) + offsetY);
+				idx += 4;
+				break;
+			case CubicCurveTo:
+				if (idx + 6 > size) {
+					return;
+				}
+				rasterizer.cubicTo(_data.get(idx) + offsetX, _data.get(idx + 1) + offsetY, _data.get(idx + 2) + offsetX,
+						_data.get(idx + 3) + offsetY, _data.get(idx + 4) + offsetX, _data.get(idx + 5) + offsetY);
+				idx += 6;
+				break;
+			case Closed:
+				rasterizer.closePath();
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
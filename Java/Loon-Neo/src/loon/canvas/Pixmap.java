@@ -210,6 +210,12 @@ public class Pixmap extends Limit implements LRelease {
 
 	private RectI clip;
 
+	private boolean _antialias;
+
+	private PixmapRasterizer _rasterizer;
+
+	private Pixmap _spanPixmap;
+
 	public Pixmap(int w, int h) {
 		this(w, h, true);
 	}
@@ -295,6 +301,37 @@ public class Pixmap extends Limit implements LRelease {
 		return clearDraw(_baseColor);
 	}
 
+	/**
+	 * 以指定内核处理全部像素(透明像素不处理),像素较多且平台支持多线程时按行拆分并行处理
+	 * 
+	 * @param kernel
+	 * @return
+	 */
+	public Pixmap apply(PixmapKernel kernel) {
+		if (_isClosed || kernel == null) {
+			return this;
+		}
+		kernel.apply(_drawPixels, _width, _height, _transparent);
+		_dirty = true;
+		return this;
+	}
+
+	/**
+	 * 以指定矩阵卷积全部像素
+	 * 
+	 * @param matrix
+	 * @return
+	 */
+	public Pixmap convolve(ConvolutionMatrix matrix) {
+		if (_isClosed || matrix == null) {
+			return this;
+		}
+		final int[] src = CollectionUtils.copyOf(_drawPixels);
+		matrix.convolve(src, _drawPixels, _width, _height);
+		_dirty = true;
+		return this;
+	}
+
 	/**
 	 * 过滤指定颜色为目标颜色
 	 * 
@@ -303,11 +340,11 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap filter(int src, int dst) {
-		for (int i = 0; i < _length; i++) {
-			if (_drawPixels[i] == src) {
-				_drawPixels[i] = dst;
-			}
+		if (_isClosed) {
+			return this;
 		}
+		// 等于目标颜色的像素不需要处理
+		PixmapKernel.replace(src, dst).apply(_drawPixels, _width, _height, dst);
 		_dirty = true;
 		return this;
 	}
@@ -350,23 +387,7 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap greyScale(float mix) {
-		mix = MathUtils.min(MathUtils.max(mix, 0f), 1f);
-		for (int i = 0; i < _length; i++) {
-			int color = _drawPixels[i];
-			if (color != LColor.TRANSPARENT) {
-				int[] rgba = LColor.getRGBAs(color);
-				int r = rgba[0];
-				int g = rgba[1];
-				int b = rgba[2];
-				float a = rgba[3] / 255f;
-				float v = LColor.getLuminanceRGB(r, g, b);
-				_drawPixels[i] = LColor.argb(a, v * mix + r * (1 - mix), v * mix + g * (1 - mix),
-						v * mix + b * (1 - mix));
-			} else {
-				_drawPixels[i] = _transparent;
-			}
-		}
-		return this;
+		return apply(PixmapKernel.greyScale(mix));
 	}
 
 	/**
@@ -385,22 +406,7 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap threshold(int threshold) {
-		threshold = (threshold | 127);
-		for (int i = 0; i < _length; i++) {
-			int color = _drawPixels[i];
-			if (color != LColor.TRANSPARENT) {
-				int[] rgba = LColor.getRGBAs(color);
-				int r = rgba[0];
-				int g = rgba[1];
-				int b = rgba[2];
-				float a = rgba[3] / 255f;
-				float v = LColor.getLuminanceRGB(r, g, b) > threshold ? 255f : 0f;
-				_drawPixels[i] = LColor.argb(a, v, v, v);
-			} else {
-				_drawPixels[i] = _transparent;
-			}
-		}
-		return this;
+		return apply(PixmapKernel.threshold(threshold));
 	}
 
 	/**
@@ -410,22 +416,7 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap invert(float mix) {
-		mix = MathUtils.min(MathUtils.max(mix, 0f), 1f);
-		for (int i = 0; i < _length; i++) {
-			int color = _drawPixels[i];
-			if (color != LColor.TRANSPARENT) {
-				int[] rgba = LColor.getRGBAs(color);
-				int r = rgba[0];
-				int g = rgba[1];
-				int b = rgba[2];
-				float a = rgba[3] / 255f;
-				_drawPixels[i] = LColor.argb(a, (255 - r) * mix + r * (1 - mix), (255 - g) * mix + g * (1 - mix),
-						(255 - b) * mix + b * (1 - mix));
-			} else {
-				_drawPixels[i] = _transparent;
-			}
-		}
-		return this;
+		return apply(PixmapKernel.invert(mix));
 	}
 
 	/**
@@ -435,24 +426,7 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap sepia(float mix) {
-		mix = MathUtils.min(MathUtils.max(mix, 0f), 1f);
-		for (int i = 0; i < _length; i++) {
-			int color = _drawPixels[i];
-			if (color != LColor.TRANSPARENT) {
-				int[] rgba = LColor.getRGBAs(color);
-				float r = rgba[0] / 255f;
-				float g = rgba[1] / 255f;
-				float b = rgba[2] / 255f;
-				float a = rgba[3] / 255f;
-				float nr = (0.393f * r + 0.769f * g + 0.189f * b) * mix + r * (1f - mix);
-				float ng = (0.349f * r + 0.686f * g + 0.168f * b) * mix + g * (1f - mix);
-				float nb = (0.272f * r + 0.534f * g + 0.131f * b) * mix + b * (1f - mix);
-				_drawPixels[i] = LColor.argb(a, nr, ng, nb);
-			} else {
-				_drawPixels[i] = _transparent;
-			}
-		}
-		return this;
+		return apply(PixmapKernel.sepia(mix));
 	}
 
 	/**
@@ -465,21 +439,7 @@ public class Pixmap extends Limit implements LRelease {
 		if (pixel == null) {
 			return this;
 		}
-		final LColor newColor = new LColor();
-		for (int i = 0; i < _length; i++) {
-			int color = _drawPixels[i];
-			if (color != LColor.TRANSPARENT) {
-				int[] rgba = LColor.getRGBAs(color);
-				int r = rgba[0];
-				int g = rgba[1];
-				int b = rgba[2];
-				int a = rgba[3];
-				_drawPixels[i] = newColor.setColor(r, g, b, a).mulSelf(pixel).getARGB();
-			} else {
-				_drawPixels[i] = _transparent;
-			}
-		}
-		return this;
+		return apply(PixmapKernel.multiply(pixel.getARGB()));
 	}
 
 	/**
@@ -1039,22 +999,15 @@ public class Pixmap extends Limit implements LRelease {
 		if (shape == null) {
 			return this;
 		}
-		final float[] points = shape.getPoints();
-		int size = points.length;
-		int len = size / 2;
-		final int[] xps = new int[len];
-		final int[] yps = new int[len];
-		for (int i = 0, j = 0; i < size; i += 2, j++) {
-			xps[j] = (int) (points[i] + x1);
-			yps[j] = (int) (points[i + 1] + y1);
+		if (_isClosed) {
+			return this;
 		}
-		RectI bounds = RectI.getIntersection(setBoundingBox(temp_rect, xps, yps, len), clip, temp_rect);
-		for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
-			for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
-				if (contains(xps, yps, len, bounds, x, y)) {
-					drawPoint(x, y, pixmap.getData(x, y));
-				}
-			}
+		_spanPixmap = pixmap;
+		try {
+			beginFill(false).addPolygon(shape.getPoints(), x1, y1);
+			endFill();
+		} finally {
+			_spanPixmap = null;
 		}
 		return this;
 	}
@@ -1063,23 +1016,11 @@ public class Pixmap extends Limit implements LRelease {
 		if (shape == null) {
 			return this;
 		}
-		final float[] points = shape.getPoints();
-		int size = points.length;
-		int len = size / 2;
-		final int[] xps = new int[len];
-		final int[] yps = new int[len];
-		for (int i = 0, j = 0; i < size; i += 2, j++) {
-			xps[j] = (int) (points[i] + x1);
-			yps[j] = (int) (points[i + 1] + y1);
-		}
-		RectI bounds = RectI.getIntersection(setBoundingBox(temp_rect, xps, yps, len), clip, temp_rect);
-		for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
-			for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
-				if (contains(xps, yps, len, bounds, x, y)) {
-					drawPoint(x, y);
-				}
-			}
+		if (_isClosed) {
+			return this;
 		}
+		beginFill(false).addPolygon(shape.getPoints(), x1, y1);
+		endFill();
 		return this;
 	}
 
@@ -1201,7 +1142,8 @@ public class Pixmap extends Limit implements LRelease {
 		if (t == null) {
 			return this;
 		}
-		return fillTriangle(t.xpoints[0], t.ypoints[0], t.xpoints[1], t.ypoints[1], t.xpoints[2], t.ypoints[2]);
+		return fillTriangle(x + t.xpoints[0], y + t.ypoints[0], x + t.xpoints[1], y + t.ypoints[1], x + t.xpoints[2],
+				y + t.ypoints[2]);
 	}
 
 	/**
@@ -1219,15 +1161,11 @@ public class Pixmap extends Limit implements LRelease {
 		if (_isClosed) {
 			return this;
 		}
-		int[] xpos = new int[3];
-		int[] ypos = new int[3];
-		xpos[0] = (int) x1;
-		xpos[1] = (int) x2;
-		xpos[2] = (int) x3;
-		ypos[0] = (int) y1;
-		ypos[1] = (int) y2;
-		ypos[2] = (int) y3;
-		fillPolygon(xpos, ypos, 3);
+		final PixmapRasterizer rasterizer = beginFill(false);
+		rasterizer.moveTo(x1 + _translateX, y1 + _translateY);
+		rasterizer.lineTo(x2 + _translateX, y2 + _translateY);
+		rasterizer.lineTo(x3 + _translateX, y3 + _translateY);
+		endFill();
 		return this;
 	}
 
@@ -1542,6 +1480,16 @@ public class Pixmap extends Limit implements LRelease {
 	 */
 	public Pixmap drawCurve(float x1, float y1, float cx1, float cy1, float cx2, float cy2, float x2, float y2,
 			int segments, float width) {
+		if (_isClosed) {
+			return this;
+		}
+		// 有宽度或抗锯齿时,每段作为带圆形连接点的粗线一次填充
+		final boolean stroke = width > 1f || _antialias;
+		final float halfWidth = MathUtils.max(width, 1f) / 2f;
+		final PixmapRasterizer rasterizer = stroke ? beginFill(true) : null;
+		if (stroke) {
+			rasterizer.addEllipse(x1 + _translateX, y1 + _translateY, halfWidth, halfWidth);
+		}
 
 		final float subdivstep = 1f / segments;
 		final float subdiv_stepa = subdivstep * subdivstep;
@@ -1578,10 +1526,22 @@ public class Pixmap extends Limit implements LRelease {
 			dfy += ddfy;
 			ddfx += dddfx;
 			ddfy += dddfy;
-			drawLine((int) fxold, (int) fyold, (int) fx, (int) fy);
+			if (stroke) {
+				rasterizer.strokeLine(fxold + _translateX, fyold + _translateY, fx + _translateX, fy + _translateY,
+						halfWidth);
+				rasterizer.addEllipse(fx + _translateX, fy + _translateY, halfWidth, halfWidth);
+			} else {
+				drawLine((int) fxold, (int) fyold, (int) fx, (int) fy);
+			}
 		}
 
-		drawLine((int) fx, (int) fy, (int) x2, (int) y2);
+		if (stroke) {
+			rasterizer.strokeLine(fx + _translateX, fy + _translateY, x2 + _translateX, y2 + _translateY, halfWidth);
+			rasterizer.addEllipse(x2 + _translateX, y2 + _translateY, halfWidth, halfWidth);
+			endFill();
+		} else {
+			drawLine((int) fx, (int) fy, (int) x2, (int) y2);
+		}
 		return this;
 	}
 
@@ -1651,24 +1611,11 @@ public class Pixmap extends Limit implements LRelease {
 			fillRect(x, y, width, height);
 			return this;
 		}
-		int mr = MathUtils.min(width, height) / 2;
-		if (radius > mr) {
-			radius = mr;
-		}
-		int d = radius * 2;
-		int w = width - d;
-		int h = height - d;
-		if (w > 0 && h > 0) {
-			fillRect(x + radius, y, w, radius);
-			fillRect(x, y + radius, radius, h);
-			fillRect(x + width - radius, y + radius, radius, h);
-			fillRect(x + radius, y + height - radius, w, radius);
-			fillRect(x + radius, y + radius, w, h);
-		}
-		fillArc(x + width - d, y + height - d, d, d, 0, 90);
-		fillArc(x, y + height - d, d, d, 90, 180);
-		fillArc(x + width - d, y, d, d, 270, 360);
-		fillArc(x, y, d, d, 180, 270);
+		if (_isClosed) {
+			return this;
+		}
+		beginFill(false).addRoundRect(x + _translateX, y + _translateY, width, height, radius, radius);
+		endFill();
 		return this;
 	}
 
@@ -1686,17 +1633,9 @@ public class Pixmap extends Limit implements LRelease {
 		if (_isClosed) {
 			return this;
 		}
-		int w = width - arcWidth;
-		int h = height - arcHeight;
-		if (w > 0 && h > 0) {
-			fillRect(x + arcWidth / 2, y, w, height);
-			fillRect(x, y + arcHeight / 2 - 1, arcWidth / 2, h);
-			fillRect(x + width - arcWidth / 2, y + arcHeight / 2 - 1, arcWidth / 2, h);
-		}
-		fillArc(x + 1, y, arcWidth - 1, arcHeight - 1, 90, 90);
-		fillArc(x + width - arcWidth - 1, y, arcWidth - 1, arcHeight - 1, 0, 90);
-		fillArc(x + 1, y + height + -arcHeight, arcWidth - 1, arcHeight - 1, 180, 90);
-		fillArc(x + width - arcWidth - 1, y + height + -arcHeight, arcWidth - 1, arcHeight - 1, 270, 90);
+		beginFill(false).addRoundRect(x + _translateX, y + _translateY, width, height, arcWidth / 2f,
+				arcHeight / 2f);
+		endFill();
 		return this;
 	}
 
@@ -1938,6 +1877,20 @@ public class Pixmap extends Limit implements LRelease {
 		}
 		int maxX = MathUtils.min(x + width - 1 + _translateX, clip.x + clip.width - 1);
 		int maxY = MathUtils.min(y + height - 1 + _translateY, clip.y + clip.height - 1);
+		if (_baseAlpha == 1f && !xorMode) {
+			// 逐行整段写入
+			final int minX = MathUtils.max(MathUtils.max(x + _translateX, clip.x), 0);
+			maxX = MathUtils.min(maxX, _width - 1);
+			maxY = MathUtils.min(maxY, _height - 1);
+			for (int i = MathUtils.max(MathUtils.max(y + _translateY, clip.y), 0); i <= maxY; i++) {
+				final int offset = i * _width;
+				for (int j = offset + minX, end = offset + maxX; j <= end; j++) {
+					_drawPixels[j] = color;
+				}
+				_dirty = true;
+			}
+			return this;
+		}
 		for (int i = MathUtils.max(y + _translateY, clip.y); i <= maxY; i++) {
 			for (int j = MathUtils.max(x + _translateX, clip.x); j <= maxX; j++) {
 				drawPoint(j, i, color);
@@ -2010,14 +1963,10 @@ public class Pixmap extends Limit implements LRelease {
 		if (_isClosed) {
 			return this;
 		}
-		drawCircle(x, y, width, height, true, new CircleUpdate() {
-			public void newPoint(int xLeft, int yTop, int xRight, int yBottom) {
-				drawLineImpl(xLeft, xRight, yTop);
-				if (yTop != yBottom) {
-					drawLineImpl(xLeft, xRight, yBottom);
-				}
-			}
-		});
+		final float rx = width / 2f;
+		final float ry = height / 2f;
+		beginFill(false).addEllipse(x + _translateX + rx, y + _translateY + ry, rx, ry);
+		endFill();
 		return this;
 	}
 
@@ -2125,21 +2074,11 @@ public class Pixmap extends Limit implements LRelease {
 		}
 		final int startAngle = arcAngle > 0 ? start
 				: (start + arcAngle < 0 ? start + arcAngle + 360 : start + arcAngle);
-		final int centerX = x + _translateX + width / 2;
-		final int centerY = y + _translateY + height / 2;
-		final int xPoints[] = new int[7];
-		final int yPoints[] = new int[7];
-		final int nPoints = getBoundingShape(xPoints, yPoints, startAngle, MathUtils.abs(arcAngle), centerX, centerY,
-				x + _translateX - 1, y + _translateY - 1, width + 2, height + 2);
-		final RectI bounds = setBoundingBox(temp_rect, xPoints, yPoints, nPoints);
-		this.drawCircle(x, y, width, height, true, new CircleUpdate() {
-			public void newPoint(int xLeft, int yTop, int xRight, int yBottom) {
-				drawArcImpl(xPoints, yPoints, nPoints, bounds, xLeft, xRight, yTop);
-				if (yTop != yBottom) {
-					drawArcImpl(xPoints, yPoints, nPoints, bounds, xLeft, xRight, yBottom);
-				}
-			}
-		});
+		final float rx = width / 2f;
+		final float ry = height / 2f;
+		beginFill(false).addPie(x + _translateX + rx, y + _translateY + ry, rx, ry, startAngle,
+				MathUtils.abs(arcAngle));
+		endFill();
 		return this;
 	}
 
@@ -2229,7 +2168,12 @@ public class Pixmap extends Limit implements LRelease {
 	 * @return
 	 */
 	public Pixmap fill(Path2D path) {
-		return fillPolygon(path.getPointiX(), path.getPointiY(), path.size() / 2);
+		if (_isClosed || path == null) {
+			return this;
+		}
+		path.rasterize(beginFill(false), _translateX, _translateY);
+		endFill();
+		return this;
 	}
 
 	/**
@@ -2240,35 +2184,143 @@ public class Pixmap extends Limit implements LRelease {
 	 * @param nPoints
 	 */
 	public Pixmap fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
-		int[] xPointsCopy;
-		if (_translateX == 0) {
-			xPointsCopy = xPoints;
-		} else {
-			xPointsCopy = CollectionUtils.copyOf(xPoints);
-			for (int i = 0; i < nPoints; i++) {
-				xPointsCopy[i] += _translateX;
+		if (_isClosed) {
+			return this;
+		}
+		beginFill(false).addPolygon(xPoints, yPoints, nPoints, _translateX, _translateY);
+		endFill();
+		return this;
+	}
+
+	/**
+	 * 绘制并填充一个多边形
+	 * 
+	 * @param xPoints
+	 * @param yPoints
+	 * @param nPoints
+	 */
+	public Pixmap fillPolygon(float[] xPoints, float[] yPoints, int nPoints) {
+		if (_isClosed) {
+			return this;
+		}
+		beginFill(false).addPolygon(xPoints, yPoints, nPoints, _translateX, _translateY);
+		endFill();
+		return this;
+	}
+
+	/**
+	 * 设定填充图形时是否抗锯齿(边缘像素按覆盖率与原有像素混合)
+	 * 
+	 * @param antialias
+	 * @return
+	 */
+	public Pixmap setAntialias(boolean antialias) {
+		this._antialias = antialias;
+		return this;
+	}
+
+	public boolean isAntialias() {
+		return _antialias;
+	}
+
+	private PixmapRasterizer beginFill(boolean nonZero) {
+		if (_rasterizer == null) {
+			_rasterizer = new PixmapRasterizer();
+		}
+		final int minX = MathUtils.max(clip.x, 0);
+		final int minY = MathUtils.max(clip.y, 0);
+		final int maxX = MathUtils.min(clip.x + clip.width, _width);
+		final int maxY = MathUtils.min(clip.y + clip.height, _height);
+		return _rasterizer.begin(_antialias, nonZero, minX, minY, maxX - minX, maxY - minY);
+	}
+
+	private void endFill() {
+		_rasterizer.render(this);
+	}
+
+	/**
+	 * 以当前颜色填充一行中的[x1, x2),由PixmapRasterizer调用
+	 * 
+	 * @param y
+	 * @param x1
+	 * @param x2
+	 */
+	void fillSpan(int y, int x1, int x2) {
+		if (_spanPixmap != null) {
+			for (int x = x1; x < x2; x++) {
+				drawPoint(x, y, _spanPixmap.getData(x, y));
 			}
+			return;
 		}
-		int[] yPointsCopy;
-		if (_translateY == 0) {
-			yPointsCopy = yPoints;
+		final int[] pixels = _drawPixels;
+		final int offset = y * _width;
+		if (_composite == -1 && !xorMode) {
+			final int color = _baseColor;
+			for (int i = offset + x1, end = offset + x2; i < end; i++) {
+				pixels[i] = color;
+			}
 		} else {
-			yPointsCopy = CollectionUtils.copyOf(yPoints);
-			for (int i = 0; i < nPoints; i++) {
-				yPointsCopy[i] += _translateY;
+			for (int i = offset + x1, end = offset + x2; i < end; i++) {
+				drawPoint(pixels, i);
 			}
 		}
-		RectI bounds = RectI.getIntersection(setBoundingBox(temp_rect, xPointsCopy, yPointsCopy, nPoints), clip,
-				temp_rect);
-		for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
-			for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
-				if (contains(xPointsCopy, yPointsCopy, nPoints, bounds, x, y)) {
-					drawPoint(x, y);
+		_dirty = true;
+	}
+
+	/**
+	 * 以覆盖率(0到255)混合当前颜色到指定像素,由PixmapRasterizer调用
+	 * 
+	 * @param y
+	 * @param x
+	 * @param coverage
+	 */
+	void blendSpanPixel(int y, int x, int coverage) {
+		final int index = y * _width + x;
+		final int pixel = _drawPixels[index];
+		int color = _baseColor;
+		if (_spanPixmap != null) {
+			color = _spanPixmap.getData(x, y);
+			if (_baseAlpha != 1f) {
+				color = ((int) (0xFF * MathUtils.clamp(_baseAlpha, 0, 1)) << 24) | (color & 0xFFFFFF);
+			}
+		}
+		if (xorMode) {
+			// 异或模式无法混合,覆盖过半的像素按原方式写入
+			if (coverage >= 128) {
+				if (_spanPixmap != null) {
+					drawPoint(x, y, color);
+				} else {
+					drawPoint(_drawPixels, index);
 				}
 			}
+			return;
 		}
-		return this;
+		if ((_composite == SRC_IN && pixel == _transparent) || (_composite == SRC_OUT && pixel != _transparent)) {
+			return;
+		}
+		_drawPixels[index] = blendOver(pixel, color, coverage);
+		_dirty = true;
+	}
 
+	/**
+	 * 把src按透明度乘以coverage后混合到dst之上(非预乘的ARGB)
+	 * 
+	 * @param dst
+	 * @param src
+	 * @param coverage
+	 * @return
+	 */
+	private static int blendOver(int dst, int src, int coverage) {
+		final int sa = PixmapKernel.mul255(src >>> 24, coverage);
+		if (sa == 0) {
+			return dst;
+		}
+		final int da = PixmapKernel.mul255(dst >>> 24, 255 - sa);
+		final int a = sa + da;
+		final int r = (((src >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * da) / a;
+		final int g = (((src >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * da) / a;
+		final int b = ((src & 0xFF) * sa + (dst & 0xFF) * da) / a;
+		return (a << 24) | (r << 16) | (g << 8) | b;
 	}
 
 	private void drawLineImpl(int x1, int x2, int y) {
@@ -2426,16 +2478,6 @@ public class Pixmap extends Limit implements LRelease {
 		}
 	}
 
-	private void drawArcImpl(int xPoints[], int yPoints[], int nPoints, RectI bounds, int xLeft, int xRight, int y) {
-		if (y >= clip.y && y < clip.y + clip.height) {
-			for (int x = MathUtils.max(xLeft, clip.x); x <= xRight; x++) {
-				if (contains(xPoints, yPoints, nPoints, bounds, x, y)) {
-					drawPoint(x, y);
-				}
-			}
-		}
-	}
-
 	private interface CircleUpdate {
 		public void newPoint(int xLeft, int yTop, int xRight, int yBottom);
 	}
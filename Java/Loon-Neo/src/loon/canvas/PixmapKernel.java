@@ -0,0 +1,295 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import loon.Asyn.ParallelTask;
+import loon.LSystem;
+import loon.utils.MathUtils;
+
+/**
+ * 逐像素处理Pixmap的内核,filter只使用整数位运算处理一个ARGB像素,不产生任何对象.
+ *
+ * 像素数量不少于PARALLEL_THRESHOLD且平台支持多线程时,图像按行拆分为多个区段,通过LSystem.invokeParallel同时处理,
+ * 所以filter必须可以在多个线程中同时调用(不修改内核自身的状态).
+ *
+ * <pre>
+ * pixmap.apply(PixmapKernel.sepia(1f));
+ * pixmap.apply(new PixmapKernel() {
+ * 	public int filter(int argb) {
+ * 		return argb ^ 0x00FFFFFF;
+ * 	}
+ * });
+ * </pre>
+ */
+public abstract class PixmapKernel {
+
+	/**
+	 * 少于此像素数量时不拆分处理
+	 */
+	public final static int PARALLEL_THRESHOLD = 256 * 256;
+
+	/**
+	 * 每个区段的最少行数
+	 */
+	private final static int MIN_BAND_ROWS = 16;
+
+	/**
+	 * 处理一个像素
+	 *
+	 * @param argb
+	 * @return
+	 */
+	public abstract int filter(int argb);
+
+	/**
+	 * 处理像素数组中的一段
+	 *
+	 * @param pixels
+	 * @param from
+	 * @param to
+	 * @param skip
+	 *            等于此值的像素不处理(通常为透明色)
+	 */
+	protected void filter(int[] pixels, int from, int to, int skip) {
+		for (int i = from; i < to; i++) {
+			final int color = pixels[i];
+			if (color != skip) {
+				pixels[i] = filter(color);
+			}
+		}
+	}
+
+	/**
+	 * 以当前内核处理像素数组(width * height)
+	 *
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param skip
+	 *            等于此值的像素不处理(通常为透明色)
+	 */
+	public void apply(final int[] pixels, final int width, final int height, final int skip) {
+		final int bands = getBandCount(width, height);
+		if (bands <= 1) {
+			filter(pixels, 0, width * height, skip);
+			return;
+		}
+		final int rows = (height + bands - 1) / bands;
+		LSystem.invokeParallel(bands, new ParallelTask() {
+
+			@Override
+			public void run(int index) {
+				final int start = index * rows;
+				final int end = MathUtils.min(height, start + rows);
+				filter(pixels, start * width, end * width, skip);
+			}
+		});
+	}
+
+	/**
+	 * 按图像大小与可以并行的线程数量计算区段数量
+	 *
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static int getBandCount(int width, int height) {
+		if (width * height < PARALLEL_THRESHOLD) {
+			return 1;
+		}
+		final int parallelism = LSystem.getParallelism();
+		if (parallelism <= 1) {
+			return 1;
+		}
+		// 区段数量多于线程数量,使较快完成的线程可以继续领取
+		return MathUtils.max(1, MathUtils.min(parallelism * 4, height / MIN_BAND_ROWS));
+	}
+
+	static int clamp(int v) {
+		return v < 0 ? 0 : (v > 255 ? 255 : v);
+	}
+
+	/**
+	 * 把0到1的混合比例转为0到256的整数
+	 *
+	 * @param mix
+	 * @return
+	 */
+	static int toMix(float mix) {
+		return (int) (MathUtils.min(MathUtils.max(mix, 0f), 1f) * 256f + 0.5f);
+	}
+
+	/**
+	 * 以整数计算亮度(0.2126,0.7152,0.0722)
+	 *
+	 * @param r
+	 * @param g
+	 * @param b
+	 * @return
+	 */
+	static int luminance(int r, int g, int b) {
+		return (54 * r + 183 * g + 19 * b) >> 8;
+	}
+
+	/**
+	 * 灰化
+	 *
+	 * @param mix
+	 *            0到1,原色与灰色的混合比例
+	 * @return
+	 */
+	public static PixmapKernel greyScale(float mix) {
+		final int m = toMix(mix);
+		final int n = 256 - m;
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				final int r = (argb >> 16) & 0xFF;
+				final int g = (argb >> 8) & 0xFF;
+				final int b = argb & 0xFF;
+				final int v = luminance(r, g, b) * m;
+				return (argb & 0xFF000000) | (((v + r * n) >> 8) << 16) | (((v + g * n) >> 8) << 8)
+						| ((v + b * n) >> 8);
+			}
+		};
+	}
+
+	/**
+	 * 亮度大于阀值的像素变为白色,其余变为黑色
+	 *
+	 * @param threshold
+	 *            0到255
+	 * @return
+	 */
+	public static PixmapKernel threshold(final int threshold) {
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				final int v = luminance((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF) > threshold ? 0xFFFFFF
+						: 0;
+				return (argb & 0xFF000000) | v;
+			}
+		};
+	}
+
+	/**
+	 * 反色
+	 *
+	 * @param mix
+	 *            0到1,原色与反色的混合比例
+	 * @return
+	 */
+	public static PixmapKernel invert(float mix) {
+		final int m = toMix(mix);
+		final int n = 256 - m;
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				final int r = (argb >> 16) & 0xFF;
+				final int g = (argb >> 8) & 0xFF;
+				final int b = argb & 0xFF;
+				return (argb & 0xFF000000) | ((((255 - r) * m + r * n) >> 8) << 16)
+						| ((((255 - g) * m + g * n) >> 8) << 8) | (((255 - b) * m + b * n) >> 8);
+			}
+		};
+	}
+
+	/**
+	 * 墨化(以0.393,0.769,0.189等系数乘以256后的整数计算)
+	 *
+	 * @param mix
+	 *            0到1,原色与墨色的混合比例
+	 * @return
+	 */
+	public static PixmapKernel sepia(float mix) {
+		final int m = toMix(mix);
+		final int n = 256 - m;
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				final int r = (argb >> 16) & 0xFF;
+				final int g = (argb >> 8) & 0xFF;
+				final int b = argb & 0xFF;
+				final int nr = MathUtils.min(255, (101 * r + 197 * g + 48 * b) >> 8);
+				final int ng = MathUtils.min(255, (89 * r + 176 * g + 43 * b) >> 8);
+				final int nb = MathUtils.min(255, (70 * r + 137 * g + 34 * b) >> 8);
+				return (argb & 0xFF000000) | (((nr * m + r * n) >> 8) << 16) | (((ng * m + g * n) >> 8) << 8)
+						| ((nb * m + b * n) >> 8);
+			}
+		};
+	}
+
+	/**
+	 * 每个通道(包括透明度)与指定颜色相乘
+	 *
+	 * @param color
+	 *            ARGB
+	 * @return
+	 */
+	public static PixmapKernel multiply(int color) {
+		final int ma = color >>> 24;
+		final int mr = (color >> 16) & 0xFF;
+		final int mg = (color >> 8) & 0xFF;
+		final int mb = color & 0xFF;
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				return (mul255(argb >>> 24, ma) << 24) | (mul255((argb >> 16) & 0xFF, mr) << 16)
+						| (mul255((argb >> 8) & 0xFF, mg) << 8) | mul255(argb & 0xFF, mb);
+			}
+		};
+	}
+
+	/**
+	 * 以四舍五入计算a * b / 255
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	static int mul255(int a, int b) {
+		final int v = a * b + 128;
+		return (v + (v >> 8)) >> 8;
+	}
+
+	/**
+	 * 把指定颜色替换为目标颜色
+	 *
+	 * @param src
+	 * @param dst
+	 * @return
+	 */
+	public static PixmapKernel replace(final int src, final int dst) {
+		return new PixmapKernel() {
+
+			@Override
+			public int filter(int argb) {
+				return argb == src ? dst : argb;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,627 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import loon.utils.MathUtils;
+
+/**
+ * Pixmap使用的扫描线填充器(活动边表方式),所有填充(多边形,Shape,Path2D,椭圆,扇形,圆角矩形,粗线)都先转为边,
+ * 再逐行求出与扫描线的交点,以行为单位写入像素.
+ *
+ * 边的x坐标以16.16定点数逐行累加,不在每行重复计算交点.采样点为像素中心,
+ * 开启抗锯齿时每个像素行分为4条子扫描线,水平方向按交点的小数部分计算覆盖率,合并后得到每个像素的覆盖率(0到255).
+ *
+ * 填充器可以重复使用,begin后添加图形,render时写入Pixmap,过程中不产生对象.坐标范围为正负32767.
+ */
+final class PixmapRasterizer {
+
+	private final static int FIXED_SHIFT = 16;
+
+	private final static int FIXED_ONE = 1 << FIXED_SHIFT;
+
+	private final static int FIXED_HALF = FIXED_ONE >> 1;
+
+	private final static int FIXED_MASK = FIXED_ONE - 1;
+
+	/**
+	 * 抗锯齿时每个像素行的子扫描线数量(2的SUB_SHIFT次方)
+	 */
+	private final static int SUB_SHIFT = 2;
+
+	private final static int SUB_SAMPLES = 1 << SUB_SHIFT;
+
+	/**
+	 * 曲线与圆弧转为直线时允许的最大误差(像素)
+	 */
+	private final static float TOLERANCE = 0.25f;
+
+	private final static float MAX_COORD = 32767f;
+
+	private final static double TWO_PI = Math.PI * 2d;
+
+	private final static double HALF_PI = Math.PI / 2d;
+
+	private int[] edgeX = new int[64];
+
+	private int[] edgeDx = new int[64];
+
+	private int[] edgeStart = new int[64];
+
+	private int[] edgeEnd = new int[64];
+
+	private int[] edgeDir = new int[64];
+
+	private int[] edgeNext = new int[64];
+
+	private int edgeCount;
+
+	private int[] rowHead = new int[64];
+
+	private int[] active = new int[64];
+
+	private int[] cover = new int[0];
+
+	private int[] delta = new int[0];
+
+	private boolean antialias;
+
+	private boolean nonZero;
+
+	private int scale;
+
+	private int clipX, clipY, clipRight, clipBottom;
+
+	private int rowTop, rowBottom;
+
+	private int minRow, maxRow;
+
+	private float startX, startY, lastX, lastY;
+
+	private boolean hasContour;
+
+	/**
+	 * 开始一次填充
+	 *
+	 * @param aa
+	 *            是否抗锯齿
+	 * @param nz
+	 *            true时以非零环绕规则填充,否则以奇偶规则填充
+	 * @param x
+	 *            裁剪区域
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	PixmapRasterizer begin(boolean aa, boolean nz, int x, int y, int width, int height) {
+		this.antialias = aa;
+		this.nonZero = nz;
+		this.scale = aa ? SUB_SAMPLES : 1;
+		this.clipX = x;
+		this.clipY = y;
+		this.clipRight = x + MathUtils.max(0, width);
+		this.clipBottom = y + MathUtils.max(0, height);
+		this.rowTop = clipY * scale;
+		this.rowBottom = clipBottom * scale;
+		this.minRow = Integer.MAX_VALUE;
+		this.maxRow = Integer.MIN_VALUE;
+		this.edgeCount = 0;
+		this.hasContour = false;
+		return this;
+	}
+
+	void moveTo(float x, float y) {
+		closePath();
+		startX = lastX = x;
+		startY = lastY = y;
+		hasContour = true;
+	}
+
+	void lineTo(float x, float y) {
+		if (!hasContour) {
+			moveTo(x, y);
+			return;
+		}
+		addEdge(lastX, lastY, x, y);
+		lastX = x;
+		lastY = y;
+	}
+
+	/**
+	 * 闭合当前轮廓,之后的lineTo从轮廓起点继续
+	 */
+	void closePath() {
+		if (hasContour) {
+			addEdge(lastX, lastY, startX, startY);
+			lastX = startX;
+			lastY = startY;
+		}
+	}
+
+	/**
+	 * 二次贝塞尔曲线,按控制点的弯曲程度决定分段数量
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param x
+	 * @param y
+	 */
+	void quadTo(float cx, float cy, float x, float y) {
+		final float x0 = lastX, y0 = lastY;
+		final float dd = MathUtils.abs(x0 - 2 * cx + x) + MathUtils.abs(y0 - 2 * cy + y);
+		final int segments = MathUtils.clamp(MathUtils.ceil(MathUtils.sqrt(dd / (4f * TOLERANCE))), 1, 100);
+		for (int i = 1; i < segments; i++) {
+			final float t = (float) i / segments;
+			final float u = 1f - t;
+			lineTo(u * u * x0 + 2 * u * t * cx + t * t * x, u * u * y0 + 2 * u * t * cy + t * t * y);
+		}
+		lineTo(x, y);
+	}
+
+	/**
+	 * 三次贝塞尔曲线,按控制点的弯曲程度决定分段数量
+	 *
+	 * @param cx1
+	 * @param cy1
+	 * @param cx2
+	 * @param cy2
+	 * @param x
+	 * @param y
+	 */
+	void cubicTo(float cx1, float cy1, float cx2, float cy2, float x, float y) {
+		final float x0 = lastX, y0 = lastY;
+		final float dd = MathUtils.max(MathUtils.abs(x0 - 2 * cx1 + cx2) + MathUtils.abs(y0 - 2 * cy1 + cy2),
+				MathUtils.abs(cx1 - 2 * cx2 + x) + MathUtils.abs(cy1 - 2 * cy2 + y));
+		final int segments = MathUtils.clamp(MathUtils.ceil(MathUtils.sqrt(dd * 3f / (4f * TOLERANCE))), 1, 100);
+		for (int i = 1; i < segments; i++) {
+			final float t = (float) i / segments;
+			final float u = 1f - t;
+			final float a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t * t * t;
+			lineTo(a * x0 + b * cx1 + c * cx2 + d * x, a * y0 + b * cy1 + c * cy2 + d * y);
+		}
+		lineTo(x, y);
+	}
+
+	void addPolygon(float[] xs, float[] ys, int count, float offsetX, float offsetY) {
+		if (count < 3) {
+			return;
+		}
+		moveTo(xs[0] + offsetX, ys[0] + offsetY);
+		for (int i = 1; i < count; i++) {
+			lineTo(xs[i] + offsetX, ys[i] + offsetY);
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	void addPolygon(int[] xs, int[] ys, int count, float offsetX, float offsetY) {
+		if (count < 3) {
+			return;
+		}
+		moveTo(xs[0] + offsetX, ys[0] + offsetY);
+		for (int i = 1; i < count; i++) {
+			lineTo(xs[i] + offsetX, ys[i] + offsetY);
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	/**
+	 * 以(x,y)交替保存的顶点数组
+	 *
+	 * @param points
+	 * @param offsetX
+	 * @param offsetY
+	 */
+	void addPolygon(float[] points, float offsetX, float offsetY) {
+		if (points.length < 6) {
+			return;
+		}
+		moveTo(points[0] + offsetX, points[1] + offsetY);
+		for (int i = 2; i < points.length - 1; i += 2) {
+			lineTo(points[i] + offsetX, points[i + 1] + offsetY);
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	/**
+	 * 按半径计算圆弧的分段数量(一整圆)
+	 *
+	 * @param radius
+	 * @return
+	 */
+	private static int getArcSegments(float radius) {
+		return MathUtils.clamp(MathUtils.ceil(MathUtils.PI * MathUtils.sqrt(radius / (2f * TOLERANCE))), 8, 720);
+	}
+
+	/**
+	 * 椭圆,轮廓方向固定(y轴向下时为顺时针),与strokeLine一致
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param rx
+	 * @param ry
+	 */
+	void addEllipse(float cx, float cy, float rx, float ry) {
+		if (rx <= 0 || ry <= 0) {
+			return;
+		}
+		final int segments = getArcSegments(MathUtils.max(rx, ry));
+		final float stepCos = (float) Math.cos(TWO_PI / segments);
+		final float stepSin = (float) Math.sin(TWO_PI / segments);
+		// 以旋转递推求出各点,不使用查表的sin与cos(大半径时误差过大)
+		float c = 1f, s = 0f;
+		moveTo(cx + rx, cy);
+		for (int i = 1; i < segments; i++) {
+			final float t = c * stepCos - s * stepSin;
+			s = s * stepCos + c * stepSin;
+			c = t;
+			lineTo(cx + c * rx, cy + s * ry);
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	/**
+	 * 扇形,角度以度为单位,0度为右方,逆时针(向上)增加,与fillArc一致
+	 *
+	 * @param cx
+	 * @param cy
+	 * @param rx
+	 * @param ry
+	 * @param startAngle
+	 * @param arcAngle
+	 */
+	void addPie(float cx, float cy, float rx, float ry, float startAngle, float arcAngle) {
+		if (rx <= 0 || ry <= 0 || arcAngle == 0) {
+			return;
+		}
+		if (MathUtils.abs(arcAngle) >= 360f) {
+			addEllipse(cx, cy, rx, ry);
+			return;
+		}
+		final double start = startAngle * Math.PI / 180d;
+		final int segments = MathUtils.max(2,
+				MathUtils.ceil(getArcSegments(MathUtils.max(rx, ry)) * MathUtils.abs(arcAngle) / 360f));
+		final double step = arcAngle * Math.PI / 180d / segments;
+		final float stepCos = (float) Math.cos(step);
+		final float stepSin = (float) Math.sin(step);
+		float c = (float) Math.cos(start), s = (float) Math.sin(start);
+		moveTo(cx, cy);
+		lineTo(cx + c * rx, cy - s * ry);
+		for (int i = 1; i <= segments; i++) {
+			final float t = c * stepCos - s * stepSin;
+			s = s * stepCos + c * stepSin;
+			c = t;
+			lineTo(cx + c * rx, cy - s * ry);
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	/**
+	 * 圆角矩形
+	 *
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param rx
+	 *            圆角的水平半径
+	 * @param ry
+	 *            圆角的垂直半径
+	 */
+	void addRoundRect(float x, float y, float width, float height, float rx, float ry) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		rx = MathUtils.clamp(rx, 0f, width / 2f);
+		ry = MathUtils.clamp(ry, 0f, height / 2f);
+		if (rx == 0 || ry == 0) {
+			moveTo(x, y);
+			lineTo(x + width, y);
+			lineTo(x + width, y + height);
+			lineTo(x, y + height);
+			closePath();
+			hasContour = false;
+			return;
+		}
+		final int segments = MathUtils.max(2, getArcSegments(MathUtils.max(rx, ry)) / 4);
+		final float stepCos = (float) Math.cos(HALF_PI / segments);
+		final float stepSin = (float) Math.sin(HALF_PI / segments);
+		final float right = x + width - rx;
+		final float bottom = y + height - ry;
+		final float left = x + rx;
+		final float top = y + ry;
+		// 从右上角开始顺时针(y轴向下)依次连接四个圆角
+		float c = 0f, s = -1f;
+		moveTo(right, y);
+		for (int corner = 0; corner < 4; corner++) {
+			final float ox = (corner == 0 || corner == 1) ? right : left;
+			final float oy = (corner == 1 || corner == 2) ? bottom : top;
+			for (int i = 0; i <= segments; i++) {
+				lineTo(ox + c * rx, oy + s * ry);
+				if (i < segments) {
+					final float t = c * stepCos - s * stepSin;
+					s = s * stepCos + c * stepSin;
+					c = t;
+				}
+			}
+		}
+		closePath();
+		hasContour = false;
+	}
+
+	/**
+	 * 一段指定宽度的线段(不含端点),轮廓方向与addEllipse相同,以非零规则填充时可以与圆形端点组合为粗线
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param halfWidth
+	 */
+	void strokeLine(float x1, float y1, float x2, float y2, float halfWidth) {
+		final float dx = x2 - x1;
+		final float dy = y2 - y1;
+		final float len = MathUtils.sqrt(dx * dx + dy * dy);
+		if (len == 0) {
+			return;
+		}
+		final float nx = -dy / len * halfWidth;
+		final float ny = dx / len * halfWidth;
+		moveTo(x1 - nx, y1 - ny);
+		lineTo(x2 - nx, y2 - ny);
+		lineTo(x2 + nx, y2 + ny);
+		lineTo(x1 + nx, y1 + ny);
+		closePath();
+		hasContour = false;
+	}
+
+	private void addEdge(float x0, float y0, float x1, float y1) {
+		if (y0 == y1) {
+			return;
+		}
+		int dir = 1;
+		if (y0 > y1) {
+			float t = x0;
+			x0 = x1;
+			x1 = t;
+			t = y0;
+			y0 = y1;
+			y1 = t;
+			dir = -1;
+		}
+		final float sy0 = y0 * scale;
+		final float sy1 = y1 * scale;
+		// 边覆盖的采样行为[first, end),采样点在行的中心
+		int first = MathUtils.ceil(sy0 - 0.5f);
+		final int end = MathUtils.min(MathUtils.ceil(sy1 - 0.5f), rowBottom);
+		if (first < rowTop) {
+			first = rowTop;
+		}
+		if (first >= end) {
+			return;
+		}
+		final float slope = (x1 - x0) / (sy1 - sy0);
+		final float x = MathUtils.clamp(x0 + (first + 0.5f - sy0) * slope, -MAX_COORD, MAX_COORD);
+		if (edgeCount == edgeX.length) {
+			growEdges();
+		}
+		final int e = edgeCount++;
+		edgeX[e] = (int) (x * FIXED_ONE);
+		edgeDx[e] = (int) (MathUtils.clamp(slope, -MAX_COORD, MAX_COORD) * FIXED_ONE);
+		edgeStart[e] = first;
+		edgeEnd[e] = end;
+		edgeDir[e] = dir;
+		if (first < minRow) {
+			minRow = first;
+		}
+		if (end > maxRow) {
+			maxRow = end;
+		}
+	}
+
+	private void growEdges() {
+		final int size = edgeX.length * 2;
+		edgeX = copyOf(edgeX, size);
+		edgeDx = copyOf(edgeDx, size);
+		edgeStart = copyOf(edgeStart, size);
+		edgeEnd = copyOf(edgeEnd, size);
+		edgeDir = copyOf(edgeDir, size);
+		edgeNext = new int[size];
+	}
+
+	private static int[] copyOf(int[] src, int size) {
+		final int[] dst = new int[size];
+		System.arraycopy(src, 0, dst, 0, MathUtils.min(src.length, size));
+		return dst;
+	}
+
+	/**
+	 * 把已经添加的图形写入Pixmap
+	 *
+	 * @param pixmap
+	 */
+	void render(Pixmap pixmap) {
+		closePath();
+		hasContour = false;
+		if (edgeCount == 0 || clipX >= clipRight || minRow >= maxRow) {
+			return;
+		}
+		// 边表,按起始行分组
+		final int rows = maxRow - minRow;
+		if (rowHead.length < rows) {
+			rowHead = new int[MathUtils.max(rows, rowHead.length * 2)];
+		}
+		for (int i = 0; i < rows; i++) {
+			rowHead[i] = -1;
+		}
+		if (edgeNext.length < edgeCount) {
+			edgeNext = new int[edgeX.length];
+		}
+		for (int e = edgeCount - 1; e >= 0; e--) {
+			final int row = edgeStart[e] - minRow;
+			edgeNext[e] = rowHead[row];
+			rowHead[row] = e;
+		}
+		if (active.length < edgeCount) {
+			active = new int[edgeX.length];
+		}
+		if (antialias) {
+			final int size = clipRight - clipX + 2;
+			if (cover.length < size) {
+				cover = new int[size];
+				delta = new int[size];
+			}
+		}
+		int activeCount = 0;
+		int pixelRow = minRow >> SUB_SHIFT;
+		int coverMin = Integer.MAX_VALUE, coverMax = -1;
+		for (int row = minRow; row < maxRow; row++) {
+			if (antialias && (row >> SUB_SHIFT) != pixelRow) {
+				if (coverMax >= 0) {
+					flushCoverage(pixmap, pixelRow, coverMin, coverMax);
+					coverMin = Integer.MAX_VALUE;
+					coverMax = -1;
+				}
+				pixelRow = row >> SUB_SHIFT;
+			}
+			// 移除已结束的边,加入由此行开始的边
+			int n = 0;
+			for (int i = 0; i < activeCount; i++) {
+				final int e = active[i];
+				if (edgeEnd[e] > row) {
+					active[n++] = e;
+				}
+			}
+			activeCount = n;
+			for (int e = rowHead[row - minRow]; e != -1; e = edgeNext[e]) {
+				active[activeCount++] = e;
+			}
+			if (activeCount == 0) {
+				continue;
+			}
+			// 按x插入排序,相邻两行的顺序通常不变,几乎不需要移动
+			for (int i = 1; i < activeCount; i++) {
+				final int e = active[i];
+				final int x = edgeX[e];
+				int j = i - 1;
+				while (j >= 0 && edgeX[active[j]] > x) {
+					active[j + 1] = active[j];
+					j--;
+				}
+				active[j + 1] = e;
+			}
+			// 按填充规则求出区段
+			int winding = 0;
+			int spanStart = 0;
+			for (int i = 0; i < activeCount; i++) {
+				final int e = active[i];
+				final boolean inside = winding != 0;
+				winding = nonZero ? winding + edgeDir[e] : winding ^ 1;
+				if (!inside && winding != 0) {
+					spanStart = edgeX[e];
+				} else if (inside && winding == 0) {
+					final int spanEnd = edgeX[e];
+					if (antialias) {
+						final int x1 = MathUtils.max(spanStart, clipX << FIXED_SHIFT);
+						final int x2 = MathUtils.min(spanEnd, clipRight << FIXED_SHIFT);
+						if (x1 < x2) {
+							final int il = x1 >> FIXED_SHIFT;
+							final int ir = x2 >> FIXED_SHIFT;
+							accumulate(x1, x2, il - clipX, ir - clipX);
+							if (il < coverMin) {
+								coverMin = il;
+							}
+							if (ir > coverMax) {
+								coverMax = ir;
+							}
+						}
+					} else {
+						// 像素中心位于区段内时填充
+						final int x1 = MathUtils.max((spanStart - FIXED_HALF + FIXED_MASK) >> FIXED_SHIFT, clipX);
+						final int x2 = MathUtils.min((spanEnd - FIXED_HALF + FIXED_MASK) >> FIXED_SHIFT, clipRight);
+						if (x1 < x2) {
+							pixmap.fillSpan(row, x1, x2);
+						}
+					}
+				}
+				edgeX[e] += edgeDx[e];
+			}
+		}
+		if (antialias && coverMax >= 0) {
+			flushCoverage(pixmap, pixelRow, coverMin, coverMax);
+		}
+		edgeCount = 0;
+	}
+
+	/**
+	 * 累加一条子扫描线上[x1, x2)的覆盖率,完整覆盖的像素以差分方式记录,每个区段只修改三个位置
+	 */
+	private void accumulate(int x1, int x2, int il, int ir) {
+		if (il == ir) {
+			cover[il] += (x2 - x1) >> 8;
+			return;
+		}
+		cover[il] += (FIXED_ONE - (x1 & FIXED_MASK)) >> 8;
+		delta[il + 1] += 256;
+		delta[ir] -= 256;
+		cover[ir] += (x2 & FIXED_MASK) >> 8;
+	}
+
+	/**
+	 * 把一个像素行的覆盖率写入Pixmap,完全覆盖的连续像素整段写入,其余按覆盖率混合
+	 */
+	private void flushCoverage(Pixmap pixmap, int y, int min, int max) {
+		int run = 0;
+		int fullStart = -1;
+		for (int x = min; x <= max; x++) {
+			final int i = x - clipX;
+			run += delta[i];
+			final int c = run + cover[i];
+			delta[i] = 0;
+			cover[i] = 0;
+			if (x >= clipRight) {
+				continue;
+			}
+			final int alpha = MathUtils.min(255, (c * 255) >> (8 + SUB_SHIFT));
+			if (alpha == 255) {
+				if (fullStart < 0) {
+					fullStart = x;
+				}
+				continue;
+			}
+			if (fullStart >= 0) {
+				pixmap.fillSpan(y, fullStart, x);
+				fullStart = -1;
+			}
+			if (alpha > 0) {
+				pixmap.blendSpanPixel(y, x, alpha);
+			}
+		}
+		if (fullStart >= 0) {
+			pixmap.fillSpan(y, fullStart, MathUtils.min(max + 1, clipRight));
+		}
+	}
+
+}
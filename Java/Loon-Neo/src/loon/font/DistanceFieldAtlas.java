@@ -0,0 +1,464 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.font;
+
+import loon.LSysException;
+import loon.canvas.Pixmap;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 距离场字形图集,以多层货架方式把字形距离场排列到像素数组中,高度不足时按2的幂扩大(直到maxHeight),扩大到maxHeight后添加新的一页.
+ *
+ * 页数达到上限(maxPages)时,清空最久未使用的一页以放入新字形(被清空的字形在下次使用时重新生成).每页记录修改过的区域,绘制时只需要上传该区域.
+ *
+ * 字形的偏移与前进宽度都以基准字号(baseSize)的像素保存,所以同一图集可以按任意字号绘制.只使用int数组,可以脱离图形环境使用.
+ */
+public class DistanceFieldAtlas {
+
+	/**
+	 * 图集中的单个字形
+	 */
+	public final static class Glyph {
+
+		public final char ch;
+
+		/**
+		 * 所在的页(没有像素的字形为-1)
+		 */
+		public int page = -1;
+
+		/**
+		 * 在页中的位置与大小(像素)
+		 */
+		public int x, y, width, height;
+
+		/**
+		 * 相对画笔位置的左上角偏移(基准字号像素)
+		 */
+		public float xoffset, yoffset;
+
+		/**
+		 * 画笔前进宽度(基准字号像素)
+		 */
+		public float advance;
+
+		Glyph(char ch) {
+			this.ch = ch;
+		}
+	}
+
+	/**
+	 * 图集中的一页
+	 */
+	public final static class Page {
+
+		private int height;
+
+		private int[] pixels;
+
+		private int[] shelfY = new int[16];
+
+		private int[] shelfHeight = new int[16];
+
+		private int[] shelfX = new int[16];
+
+		private int shelfCount;
+
+		private int nextY;
+
+		private int lastUse;
+
+		private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+		Page(int width, int height) {
+			this.height = height;
+			this.pixels = new int[width * height];
+			clearDirty();
+		}
+
+		void markDirty(int x, int y, int w, int h) {
+			dirtyMinX = MathUtils.min(dirtyMinX, x);
+			dirtyMinY = MathUtils.min(dirtyMinY, y);
+			dirtyMaxX = MathUtils.max(dirtyMaxX, x + w);
+			dirtyMaxY = MathUtils.max(dirtyMaxY, y + h);
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * 已经使用的高度
+		 *
+		 * @return
+		 */
+		public int getUsedHeight() {
+			return nextY;
+		}
+
+		public int[] getPixels() {
+			return pixels;
+		}
+
+		public boolean isDirty() {
+			return dirtyMaxX > dirtyMinX && dirtyMaxY > dirtyMinY;
+		}
+
+		public int getDirtyX() {
+			return dirtyMinX;
+		}
+
+		public int getDirtyY() {
+			return dirtyMinY;
+		}
+
+		public int getDirtyWidth() {
+			return isDirty() ? dirtyMaxX - dirtyMinX : 0;
+		}
+
+		public int getDirtyHeight() {
+			return isDirty() ? dirtyMaxY - dirtyMinY : 0;
+		}
+
+		/**
+		 * 清除修改区域(修改的像素已经上传后调用)
+		 */
+		public void clearDirty() {
+			dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+			dirtyMaxX = dirtyMaxY = Integer.MIN_VALUE;
+		}
+	}
+
+	private final static int PADDING = 1;
+
+	private final IntMap<Glyph> _glyphs = new IntMap<Glyph>(128);
+
+	private final TArray<Page> _pages = new TArray<Page>(4);
+
+	private final int _width;
+
+	private final int _initHeight;
+
+	private final int _maxHeight;
+
+	private int _maxPages;
+
+	private int _stamp;
+
+	private int _evictCount;
+
+	public DistanceFieldAtlas(int width, int height, int maxHeight) {
+		this(width, height, maxHeight, 0);
+	}
+
+	/**
+	 * 构建距离场字形图集
+	 *
+	 * @param width
+	 *            每页的宽度
+	 * @param height
+	 *            每页的初始高度
+	 * @param maxHeight
+	 *            每页的最大高度
+	 * @param maxPages
+	 *            最多的页数(小于等于0时不限制)
+	 */
+	public DistanceFieldAtlas(int width, int height, int maxHeight, int maxPages) {
+		if (width <= 0 || height <= 0) {
+			throw new LSysException("Invalid atlas size: " + width + "x" + height);
+		}
+		this._width = width;
+		this._initHeight = height;
+		this._maxHeight = MathUtils.max(height, maxHeight);
+		this._maxPages = maxPages;
+		this._pages.add(new Page(width, height));
+	}
+
+	/**
+	 * 开始新一次使用(比如绘制一段文字),之后取得的字形所在的页在本次使用中不会被清空
+	 */
+	public void nextStamp() {
+		_stamp++;
+	}
+
+	/**
+	 * 添加一个字形
+	 *
+	 * @param ch
+	 * @param field
+	 *            距离场像素(可以为null,只保存尺寸信息,比如空格)
+	 * @param w
+	 * @param h
+	 * @param xoffset
+	 * @param yoffset
+	 * @param advance
+	 * @return
+	 */
+	public Glyph add(char ch, int[] field, int w, int h, float xoffset, float yoffset, float advance) {
+		Glyph g = _glyphs.get(ch);
+		if (g == null) {
+			g = new Glyph(ch);
+			_glyphs.put(ch, g);
+		}
+		g.xoffset = xoffset;
+		g.yoffset = yoffset;
+		g.advance = advance;
+		if (field == null || w <= 0 || h <= 0) {
+			g.page = -1;
+			g.width = g.height = 0;
+			return g;
+		}
+		final Page page = allocate(g, w, h);
+		for (int y = 0; y < h; y++) {
+			System.arraycopy(field, y * w, page.pixels, (g.y + y) * _width + g.x, w);
+		}
+		page.markDirty(g.x, g.y, w, h);
+		page.lastUse = _stamp;
+		return g;
+	}
+
+	private Page allocate(Glyph g, int w, int h) {
+		final int cellWidth = w + PADDING;
+		final int cellHeight = h + PADDING;
+		if (cellWidth > _width || cellHeight > _maxHeight) {
+			throw new LSysException(
+					"Glyph is larger than the atlas: " + w + "x" + h + " > " + _width + "x" + _maxHeight);
+		}
+		for (int i = 0; i < _pages.size; i++) {
+			final Page page = _pages.get(i);
+			if (place(page, g, cellWidth, cellHeight)) {
+				g.page = i;
+				return page;
+			}
+		}
+		int index = _pages.size;
+		if (_maxPages > 0 && _pages.size >= _maxPages) {
+			final int oldest = findOldestPage();
+			if (oldest != -1) {
+				evict(oldest);
+				index = oldest;
+			}
+		}
+		if (index == _pages.size) {
+			_pages.add(new Page(_width, _initHeight));
+		}
+		final Page page = _pages.get(index);
+		place(page, g, cellWidth, cellHeight);
+		g.page = index;
+		return page;
+	}
+
+	private boolean place(Page page, Glyph g, int cellWidth, int cellHeight) {
+		int best = -1;
+		for (int i = 0; i < page.shelfCount; i++) {
+			final int sh = page.shelfHeight[i];
+			if (sh >= cellHeight && sh - cellHeight <= (cellHeight >> 2) + 2 && page.shelfX[i] + cellWidth <= _width) {
+				if (best == -1 || sh < page.shelfHeight[best]) {
+					best = i;
+				}
+			}
+		}
+		if (best == -1) {
+			if (page.nextY + cellHeight > _maxHeight) {
+				return false;
+			}
+			while (page.nextY + cellHeight > page.height) {
+				grow(page);
+			}
+			if (page.shelfCount == page.shelfY.length) {
+				final int size = page.shelfCount * 2;
+				page.shelfY = copyOf(page.shelfY, size);
+				page.shelfHeight = copyOf(page.shelfHeight, size);
+				page.shelfX = copyOf(page.shelfX, size);
+			}
+			best = page.shelfCount++;
+			page.shelfY[best] = page.nextY;
+			page.shelfHeight[best] = cellHeight;
+			page.shelfX[best] = 0;
+			page.nextY += cellHeight;
+		}
+		g.x = page.shelfX[best];
+		g.y = page.shelfY[best];
+		g.width = cellWidth - PADDING;
+		g.height = cellHeight - PADDING;
+		page.shelfX[best] += cellWidth;
+		return true;
+	}
+
+	private void grow(Page page) {
+		final int newHeight = MathUtils.min(_maxHeight, page.height * 2);
+		final int[] pixels = new int[_width * newHeight];
+		System.arraycopy(page.pixels, 0, pixels, 0, page.pixels.length);
+		page.pixels = pixels;
+		page.height = newHeight;
+	}
+
+	private int findOldestPage() {
+		int oldest = -1;
+		for (int i = 0; i < _pages.size; i++) {
+			final Page page = _pages.get(i);
+			if (page.lastUse != _stamp && (oldest == -1 || page.lastUse < _pages.get(oldest).lastUse)) {
+				oldest = i;
+			}
+		}
+		return oldest;
+	}
+
+	/**
+	 * 清空一页,页中的字形从图集中移除
+	 *
+	 * @param index
+	 */
+	private void evict(int index) {
+		final int[] keys = _glyphs.keys();
+		for (int i = 0; i < keys.length; i++) {
+			final Glyph g = _glyphs.get(keys[i]);
+			if (g != null && g.page == index) {
+				_glyphs.remove(keys[i]);
+			}
+		}
+		final Page page = _pages.get(index);
+		final int[] pixels = page.pixels;
+		for (int i = 0, size = page.nextY * _width; i < size; i++) {
+			pixels[i] = 0;
+		}
+		page.markDirty(0, 0, _width, page.nextY);
+		page.shelfCount = 0;
+		page.nextY = 0;
+		_evictCount++;
+	}
+
+	private static int[] copyOf(int[] src, int size) {
+		int[] dst = new int[size];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+
+	/**
+	 * 取得字形,并记录其所在的页在本次使用中被使用
+	 *
+	 * @param ch
+	 * @return
+	 */
+	public Glyph getGlyph(char ch) {
+		final Glyph g = _glyphs.get(ch);
+		if (g != null && g.page != -1) {
+			_pages.get(g.page).lastUse = _stamp;
+		}
+		return g;
+	}
+
+	public boolean contains(char ch) {
+		return _glyphs.containsKey(ch);
+	}
+
+	public int getGlyphCount() {
+		return _glyphs.size;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * 第一页的高度
+	 *
+	 * @return
+	 */
+	public int getHeight() {
+		return _pages.get(0).height;
+	}
+
+	public int getMaxHeight() {
+		return _maxHeight;
+	}
+
+	public int getPageCount() {
+		return _pages.size;
+	}
+
+	public Page getPage(int index) {
+		return _pages.get(index);
+	}
+
+	public int getMaxPages() {
+		return _maxPages;
+	}
+
+	/**
+	 * 设置最多的页数(小于等于0时不限制),已有的页不会减少
+	 *
+	 * @param maxPages
+	 */
+	public void setMaxPages(int maxPages) {
+		this._maxPages = maxPages;
+	}
+
+	/**
+	 * 累计因页数上限而清空的页数
+	 *
+	 * @return
+	 */
+	public int getEvictCount() {
+		return _evictCount;
+	}
+
+	/**
+	 * 图集像素占用的字节数
+	 *
+	 * @return
+	 */
+	public int getMemorySize() {
+		int size = 0;
+		for (int i = 0; i < _pages.size; i++) {
+			size += _width * _pages.get(i).height * 4;
+		}
+		return size;
+	}
+
+	/**
+	 * 是否有页存在未上传的修改
+	 *
+	 * @return
+	 */
+	public boolean isDirty() {
+		for (int i = 0; i < _pages.size; i++) {
+			if (_pages.get(i).isDirty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 以指定页的当前像素生成Pixmap(共享像素数组)
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Pixmap toPixmap(int index) {
+		final Page page = _pages.get(index);
+		return new Pixmap(page.pixels, _width, page.height, true);
+	}
+
+}
@@ -0,0 +1,628 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.font;
+
+import loon.Graphics;
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTextureBatch;
+import loon.canvas.Canvas;
+import loon.canvas.LColor;
+import loon.font.DistanceFieldAtlas.Glyph;
+import loon.font.Font.Style;
+import loon.geom.Affine2f;
+import loon.geom.Matrix4;
+import loon.geom.PointI;
+import loon.opengl.BlendState;
+import loon.opengl.DistanceFieldSource;
+import loon.opengl.GL20;
+import loon.opengl.GLEx;
+import loon.utils.CharUtils;
+import loon.utils.MathUtils;
+import loon.utils.Scale;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * 以有向距离场(SDF)绘制系统字体的IFont实现.
+ *
+ * 载入时以系统字体在baseSize * upscale字号下逐个渲染字形,由DistanceFieldGenerator转为baseSize大小的距离场并排列到同一张图集中,
+ * 绘制时使用DistanceFieldSource着色器,所以一张图集可以用于任意字号,缩放与旋转后的文字依然清晰.图集写满后自动添加新页(超过页数上限时清空最久未使用的页),
+ * 新增字形时只上传图集中修改过的区域.
+ *
+ * <pre>
+ * DistanceFieldFont font = new DistanceFieldFont(LFont.getFont(20), "0123456789");
+ * font.setSize(48);
+ * font.drawString(g, "1024", 10, 10, LColor.white);
+ * </pre>
+ */
+public class DistanceFieldFont implements IFont {
+
+	/**
+	 * 默认的距离场基准字号
+	 */
+	public final static int DEFAULT_BASE_SIZE = 32;
+
+	/**
+	 * 默认的距离场扩散范围(基准字号像素)
+	 */
+	public final static int DEFAULT_SPREAD = 4;
+
+	/**
+	 * 默认的渲染放大倍数
+	 */
+	public final static int DEFAULT_UPSCALE = 4;
+
+	/**
+	 * 默认的图集页数上限(每页最大512x2048)
+	 */
+	public final static int DEFAULT_MAX_PAGES = 4;
+
+	private final static int ATLAS_WIDTH = 512;
+
+	private final PointI _offset = new PointI();
+
+	private final Matrix4 _matrix = new Matrix4();
+
+	private final Affine2f _identity = new Affine2f();
+
+	private final String _fontName;
+
+	private final Style _style;
+
+	private final int _baseSize;
+
+	private final int _spread;
+
+	private final int _upscale;
+
+	private final DistanceFieldGenerator _generator;
+
+	private final DistanceFieldAtlas _atlas;
+
+	private final DistanceFieldSource _source = new DistanceFieldSource();
+
+	private String _chars;
+
+	private LFont _renderFont;
+
+	private Canvas _canvas;
+
+	private final TArray<LTexture> _textures = new TArray<LTexture>(2);
+
+	private final TArray<LTextureBatch> _batches = new TArray<LTextureBatch>(2);
+
+	private byte[] _uploadBytes;
+
+	private int _size;
+
+	private float _lineHeight, _ascent;
+
+	private long _buildTime;
+
+	private boolean _initChars, _isClose;
+
+	public DistanceFieldFont(LFont font, String chars) {
+		this(font.getFontName(), font.getStyle(), font.getSize(), chars);
+	}
+
+	public DistanceFieldFont(String fontName, int style, int size, String chars) {
+		this(fontName, toStyle(style), size, chars, DEFAULT_BASE_SIZE, DEFAULT_SPREAD, DEFAULT_UPSCALE);
+	}
+
+	/**
+	 * 构建距离场字体
+	 *
+	 * @param fontName
+	 *            系统字体名
+	 * @param style
+	 * @param size
+	 *            绘制字号(可以通过setSize随时修改)
+	 * @param chars
+	 *            载入时生成的字符(之外的字符在首次使用时生成)
+	 * @param baseSize
+	 *            距离场基准字号
+	 * @param spread
+	 *            距离场扩散范围
+	 * @param upscale
+	 *            渲染放大倍数
+	 */
+	public DistanceFieldFont(String fontName, Style style, int size, String chars, int baseSize, int spread,
+			int upscale) {
+		this._fontName = fontName;
+		this._style = style;
+		this._size = size;
+		this._chars = chars == null ? LSystem.EMPTY : chars;
+		this._baseSize = baseSize;
+		this._spread = spread;
+		this._upscale = upscale;
+		this._generator = new DistanceFieldGenerator(spread, upscale);
+		this._atlas = new DistanceFieldAtlas(ATLAS_WIDTH, 64, ATLAS_WIDTH * 4, DEFAULT_MAX_PAGES);
+	}
+
+	private static Style toStyle(int style) {
+		switch (style) {
+		case 1:
+			return Style.BOLD;
+		case 2:
+			return Style.ITALIC;
+		case 3:
+			return Style.BOLD_ITALIC;
+		default:
+			return Style.PLAIN;
+		}
+	}
+
+	private void make() {
+		if (_initChars || _isClose) {
+			return;
+		}
+		final long start = TimeUtils.millis();
+		_renderFont = LFont.getFont(_fontName, _style, _baseSize * _upscale);
+		_lineHeight = (float) _renderFont.getHeight() / _upscale;
+		_ascent = _renderFont.getAscent() / _upscale;
+		_initChars = true;
+		addGlyph(' ');
+		for (int i = 0, size = _chars.length(); i < size; i++) {
+			addGlyph(_chars.charAt(i));
+		}
+		_buildTime = TimeUtils.millis() - start;
+	}
+
+	private Glyph getGlyph(char ch) {
+		make();
+		Glyph g = _atlas.getGlyph(ch);
+		if (g == null) {
+			g = addGlyph(ch);
+		}
+		return g;
+	}
+
+	/**
+	 * 放大渲染一个字符并生成距离场
+	 *
+	 * @param ch
+	 * @return
+	 */
+	private Glyph addGlyph(char ch) {
+		Glyph g = _atlas.getGlyph(ch);
+		if (g != null) {
+			return g;
+		}
+		final TextLayout layout = _renderFont.getLayoutText(String.valueOf(ch));
+		final int charWidth = layout.charWidth(ch);
+		final float advance = (float) MathUtils.max(0, charWidth) / _upscale;
+		if (charWidth <= 0 || CharUtils.isWhitespace(ch)) {
+			return _atlas.add(ch, null, 0, 0, 0, 0, advance);
+		}
+		final int pad = _spread * _upscale;
+		final int width = charWidth + pad * 2;
+		final int height = MathUtils.max(1, layout.getHeight()) + pad * 2;
+		if (_canvas == null || _canvas.width < width || _canvas.height < height) {
+			if (_canvas != null) {
+				_canvas.close();
+			}
+			_canvas = LSystem.base().graphics().createCanvas(MathUtils.max(width, _baseSize * _upscale * 2),
+					MathUtils.max(height, _baseSize * _upscale * 2));
+			_canvas.setColor(LColor.white);
+			_canvas.setFont(_renderFont);
+		}
+		_canvas.clear();
+		_canvas.fillText(layout, pad, pad);
+		final int[] pixels = _canvas.image.getPixels(0, 0, width, height);
+		final int[] field = _generator.generate(pixels, width, height);
+		return _atlas.add(ch, field, _generator.getOutputSize(width), _generator.getOutputSize(height), -_spread,
+				-_spread, advance);
+	}
+
+	/**
+	 * 上传图集各页修改过的区域,页的高度超过纹理时重新创建该页的纹理
+	 */
+	private void updateTextures() {
+		for (int i = 0, size = _atlas.getPageCount(); i < size; i++) {
+			final DistanceFieldAtlas.Page page = _atlas.getPage(i);
+			LTexture texture = i < _textures.size ? _textures.get(i) : null;
+			if (texture == null || texture.getHeight() < page.getHeight()) {
+				if (texture != null) {
+					texture.close(true);
+				}
+				texture = createPageTexture(page.getHeight());
+				upload(texture, page, 0, 0, _atlas.getWidth(), page.getHeight());
+				if (i < _textures.size) {
+					_textures.set(i, texture);
+					_batches.get(i).setTexture(texture);
+				} else {
+					final LTextureBatch batch = new LTextureBatch(texture, _source);
+					batch.setBlendState(BlendState.AlphaBlend);
+					_textures.add(texture);
+					_batches.add(batch);
+				}
+			} else if (page.isDirty()) {
+				upload(texture, page, page.getDirtyX(), page.getDirtyY(), page.getDirtyWidth(), page.getDirtyHeight());
+			}
+			page.clearDirty();
+		}
+	}
+
+	private LTexture createPageTexture(int height) {
+		final Graphics gfx = LSystem.base().graphics();
+		final int width = _atlas.getWidth();
+		final int id = gfx.createTexture(LTexture.Format.LINEAR);
+		gfx.gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, width, height, 0, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, null);
+		return new LTexture(gfx, id, LTexture.Format.LINEAR, width, height, Scale.ONE, width, height);
+	}
+
+	/**
+	 * 以glTexSubImage2D上传页中的指定区域(距离场保存在alpha通道)
+	 */
+	private void upload(LTexture texture, DistanceFieldAtlas.Page page, int x, int y, int w, int h) {
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		final int length = w * h * 4;
+		if (_uploadBytes == null || _uploadBytes.length < length) {
+			_uploadBytes = new byte[length];
+		}
+		final byte[] bytes = _uploadBytes;
+		final int[] pixels = page.getPixels();
+		final int stride = _atlas.getWidth();
+		int idx = 0;
+		for (int row = y, bottom = y + h; row < bottom; row++) {
+			for (int i = row * stride + x, end = i + w; i < end; i++) {
+				final int pixel = pixels[i];
+				bytes[idx++] = (byte) (pixel >> 16);
+				bytes[idx++] = (byte) (pixel >> 8);
+				bytes[idx++] = (byte) pixel;
+				bytes[idx++] = (byte) (pixel >>> 24);
+			}
+		}
+		final GL20 gl = LSystem.base().graphics().gl;
+		gl.bufs.setByteBuffer(bytes, 0, length);
+		texture.bind();
+		gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, x, y, w, h, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE,
+				gl.bufs.byteBuffer);
+	}
+
+	/**
+	 * 预先生成指定字符的距离场
+	 *
+	 * @param chars
+	 */
+	public void addChars(String chars) {
+		if (StringUtils.isEmpty(chars)) {
+			return;
+		}
+		make();
+		for (int i = 0, size = chars.length(); i < size; i++) {
+			getGlyph(chars.charAt(i));
+		}
+	}
+
+	private float getFontScale() {
+		return (float) _size / _baseSize;
+	}
+
+	@Override
+	public void drawString(GLEx g, String text, float x, float y) {
+		drawString(g, text, x, y, LColor.white);
+	}
+
+	@Override
+	public void drawString(GLEx g, String text, float x, float y, LColor c) {
+		drawString(g, text, x, y, 1f, 1f, 0, 0, 0, c);
+	}
+
+	@Override
+	public void drawString(GLEx g, String text, float x, float y, float rotation, LColor c) {
+		drawString(g, text, x, y, 1f, 1f, 0, 0, rotation, c);
+	}
+
+	@Override
+	public void drawString(GLEx gl, String text, float x, float y, float sx, float sy, float ax, float ay,
+			float rotation, LColor c) {
+		if (_isClose || StringUtils.isEmpty(text)) {
+			return;
+		}
+		make();
+		final boolean anchor = ax != 0 || ay != 0;
+		final boolean scale = sx != 1f || sy != 1f;
+		final boolean angle = rotation != 0;
+		final boolean update = scale || angle || anchor;
+		try {
+			if (gl != null && update) {
+				gl.saveTx();
+				Affine2f xf = gl.tx();
+				if (angle) {
+					float centerX = x + this.stringWidth(text) / 2;
+					float centerY = y + this.stringHeight(text) / 2;
+					xf.translate(centerX, centerY);
+					xf.preRotate(rotation);
+					xf.translate(-centerX, -centerY);
+				}
+				if (scale) {
+					float centerX = x + this.stringWidth(text) / 2;
+					float centerY = y + this.stringHeight(text) / 2;
+					xf.translate(centerX, centerY);
+					xf.preScale(sx, sy);
+					xf.translate(-centerX, -centerY);
+				}
+				if (anchor) {
+					xf.translate(ax, ay);
+				}
+			}
+			draw(gl == null ? _identity : gl.tx(), text, x + _offset.x, y + _offset.y, c);
+		} finally {
+			if (gl != null && update) {
+				gl.restoreTx();
+			}
+		}
+	}
+
+	private void draw(Affine2f xf, String text, float x, float y, LColor c) {
+		final float fontScale = getFontScale();
+		// 本次绘制用到的页不会在生成后面的字形时被清空
+		_atlas.nextStamp();
+		for (int i = 0, size = text.length(); i < size; i++) {
+			getGlyph(text.charAt(i));
+		}
+		int minPage = Integer.MAX_VALUE, maxPage = -1;
+		for (int i = 0, size = text.length(); i < size; i++) {
+			final Glyph g = _atlas.getGlyph(text.charAt(i));
+			if (g != null && g.page != -1) {
+				minPage = MathUtils.min(minPage, g.page);
+				maxPage = MathUtils.max(maxPage, g.page);
+			}
+		}
+		updateTextures();
+		if (maxPage == -1) {
+			return;
+		}
+		_matrix.set(LSystem.base().graphics().getViewMatrix()).thisCombine(xf);
+		_source.setSmoothing(DistanceFieldSource.getSmoothing(_spread, fontScale * xf.uniformScale()));
+		// 字形通常都在同一页中,分布在多页时每页提交一次
+		for (int page = minPage; page <= maxPage; page++) {
+			drawPage(_batches.get(page), page, text, x, y, fontScale, c);
+		}
+	}
+
+	private void drawPage(LTextureBatch batch, int page, String text, float x, float y, float fontScale, LColor c) {
+		float oldColor = 0f;
+		boolean begin = false;
+		float penX = 0;
+		float penY = 0;
+		for (int i = 0, size = text.length(); i < size; i++) {
+			final char ch = text.charAt(i);
+			if (ch == '\n') {
+				penX = 0;
+				penY += _lineHeight * fontScale;
+				continue;
+			}
+			final Glyph g = _atlas.getGlyph(ch);
+			if (g.page == page && g.width > 0) {
+				if (!begin) {
+					batch.setBatchMatrix(_matrix);
+					batch.begin();
+					oldColor = batch.getFloatColor();
+					batch.setColor(c == null ? LColor.white : c);
+					begin = true;
+				}
+				batch.draw(null, x + penX + g.xoffset * fontScale, y + penY + g.yoffset * fontScale,
+						g.width * fontScale, g.height * fontScale, g.x, g.y, g.x + g.width, g.y + g.height);
+			}
+			penX += g.advance * fontScale;
+		}
+		if (begin) {
+			batch.setColor(oldColor);
+			batch.end();
+		}
+	}
+
+	@Override
+	public int charWidth(char c) {
+		if (_isClose || c == '\n') {
+			return 0;
+		}
+		return MathUtils.ceil(getGlyph(c).advance * getFontScale());
+	}
+
+	@Override
+	public int stringWidth(String text) {
+		if (_isClose || StringUtils.isEmpty(text)) {
+			return 0;
+		}
+		float width = 0;
+		float maxWidth = 0;
+		for (int i = 0, size = text.length(); i < size; i++) {
+			final char ch = text.charAt(i);
+			if (ch == '\n') {
+				maxWidth = MathUtils.max(maxWidth, width);
+				width = 0;
+				continue;
+			}
+			width += getGlyph(ch).advance;
+		}
+		return MathUtils.ceil(MathUtils.max(maxWidth, width) * getFontScale());
+	}
+
+	@Override
+	public int stringHeight(String text) {
+		if (_isClose || StringUtils.isEmpty(text)) {
+			return 0;
+		}
+		make();
+		int lines = 1;
+		for (int i = 0, size = text.length(); i < size; i++) {
+			if (text.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		return MathUtils.ceil(lines * _lineHeight * getFontScale());
+	}
+
+	@Override
+	public int getHeight() {
+		make();
+		return MathUtils.ceil(_lineHeight * getFontScale());
+	}
+
+	@Override
+	public void setAssent(float assent) {
+
+	}
+
+	@Override
+	public String getFontName() {
+		return _fontName;
+	}
+
+	@Override
+	public float getAscent() {
+		make();
+		return _ascent * getFontScale();
+	}
+
+	/**
+	 * 设置绘制字号(不需要重新生成图集)
+	 */
+	@Override
+	public void setSize(int size) {
+		this._size = size;
+	}
+
+	@Override
+	public int getSize() {
+		return _size;
+	}
+
+	@Override
+	public PointI getOffset() {
+		return _offset;
+	}
+
+	@Override
+	public void setOffset(PointI val) {
+		_offset.set(val.x, val.y);
+	}
+
+	@Override
+	public void setOffsetX(int x) {
+		_offset.x = x;
+	}
+
+	@Override
+	public void setOffsetY(int y) {
+		_offset.y = y;
+	}
+
+	@Override
+	public String confineLength(String s, int width) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			length += charWidth(s.charAt(i));
+			if (length >= width) {
+				int pLength = stringWidth("...");
+				while (length + pLength >= width && i >= 0) {
+					length -= charWidth(s.charAt(i));
+					i--;
+				}
+				s = s.substring(0, ++i) + "...";
+				break;
+			}
+		}
+		return s;
+	}
+
+	public int getBaseSize() {
+		return _baseSize;
+	}
+
+	public int getSpread() {
+		return _spread;
+	}
+
+	public int getUpscale() {
+		return _upscale;
+	}
+
+	public DistanceFieldAtlas getAtlas() {
+		return _atlas;
+	}
+
+	/**
+	 * 图集第一页的纹理
+	 *
+	 * @return
+	 */
+	public LTexture getTexture() {
+		return getTexture(0);
+	}
+
+	public LTexture getTexture(int page) {
+		make();
+		updateTextures();
+		return page < _textures.size ? _textures.get(page) : null;
+	}
+
+	/**
+	 * 载入时生成距离场图集的耗时(毫秒)
+	 *
+	 * @return
+	 */
+	public long getBuildTime() {
+		return _buildTime;
+	}
+
+	/**
+	 * 距离场图集占用的字节数
+	 *
+	 * @return
+	 */
+	public int getMemorySize() {
+		return _atlas.getMemorySize();
+	}
+
+	public boolean isClosed() {
+		return _isClose;
+	}
+
+	@Override
+	public void close() {
+		if (_isClose) {
+			return;
+		}
+		for (int i = 0; i < _batches.size; i++) {
+			_batches.get(i).close();
+		}
+		_batches.clear();
+		for (int i = 0; i < _textures.size; i++) {
+			_textures.get(i).close(true);
+		}
+		_textures.clear();
+		if (_canvas != null) {
+			_canvas.close();
+			_canvas = null;
+		}
+		_isClose = true;
+	}
+
+}
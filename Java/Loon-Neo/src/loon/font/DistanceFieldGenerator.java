@@ -0,0 +1,239 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.font;
+
+import loon.LSysException;
+import loon.utils.MathUtils;
+
+/**
+ * 有向距离场生成器,把放大渲染的字形(ARGB像素,以透明度区分内外)转为缩小后的距离场像素.
+ *
+ * 内外两侧的距离都以精确欧氏距离变换(按行,列两次一维变换,线性时间)求出,再按upscale把每个区块的距离平均后编码到透明度:
+ * 0.5为字形边缘,大于0.5在字形内部,到边缘spread个输出像素时为1或0.只使用int与float数组,不依赖图形环境.
+ */
+public class DistanceFieldGenerator {
+
+	private final static float INF = 1e20f;
+
+	private int _spread;
+
+	private int _upscale;
+
+	private int _threshold = 128;
+
+	private float[] _outside, _inside, _f, _d, _z;
+
+	private int[] _v;
+
+	/**
+	 * 构建距离场生成器
+	 *
+	 * @param spread
+	 *            输出像素中,从边缘到距离场取值饱和的距离
+	 * @param upscale
+	 *            输入像素与输出像素的比例
+	 */
+	public DistanceFieldGenerator(int spread, int upscale) {
+		if (spread < 1 || upscale < 1) {
+			throw new LSysException("spread and upscale must be positive !");
+		}
+		this._spread = spread;
+		this._upscale = upscale;
+	}
+
+	public int getSpread() {
+		return _spread;
+	}
+
+	public int getUpscale() {
+		return _upscale;
+	}
+
+	public int getThreshold() {
+		return _threshold;
+	}
+
+	/**
+	 * 透明度不小于此值的输入像素视为字形内部
+	 *
+	 * @param threshold
+	 */
+	public void setThreshold(int threshold) {
+		this._threshold = MathUtils.clamp(threshold, 1, 255);
+	}
+
+	/**
+	 * 按输入尺寸计算输出尺寸
+	 *
+	 * @param size
+	 * @return
+	 */
+	public int getOutputSize(int size) {
+		return (size + _upscale - 1) / _upscale;
+	}
+
+	/**
+	 * 生成距离场,返回getOutputSize(width) * getOutputSize(height)个白色ARGB像素,距离保存在透明度中
+	 *
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public int[] generate(int[] pixels, int width, int height) {
+		final int outWidth = getOutputSize(width);
+		final int outHeight = getOutputSize(height);
+		final int[] result = new int[outWidth * outHeight];
+		generate(pixels, width, height, result, 0, outWidth);
+		return result;
+	}
+
+	/**
+	 * 生成距离场并写入目标数组中的指定位置
+	 *
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param dst
+	 * @param offset
+	 *            目标中的起始索引
+	 * @param stride
+	 *            目标一行的像素数
+	 */
+	public void generate(int[] pixels, int width, int height, int[] dst, int offset, int stride) {
+		final int size = width * height;
+		ensureCapacity(size, MathUtils.max(width, height));
+		final float[] outside = _outside;
+		final float[] inside = _inside;
+		for (int i = 0; i < size; i++) {
+			if ((pixels[i] >>> 24) >= _threshold) {
+				outside[i] = 0;
+				inside[i] = INF;
+			} else {
+				outside[i] = INF;
+				inside[i] = 0;
+			}
+		}
+		transform(outside, width, height);
+		transform(inside, width, height);
+		final int outWidth = getOutputSize(width);
+		final int outHeight = getOutputSize(height);
+		final float scale = 1f / (2f * _spread * _upscale);
+		for (int oy = 0; oy < outHeight; oy++) {
+			final int y0 = oy * _upscale;
+			final int y1 = MathUtils.min(height, y0 + _upscale);
+			for (int ox = 0; ox < outWidth; ox++) {
+				final int x0 = ox * _upscale;
+				final int x1 = MathUtils.min(width, x0 + _upscale);
+				float sum = 0;
+				for (int y = y0; y < y1; y++) {
+					for (int x = x0, idx = y * width + x0; x < x1; x++, idx++) {
+						// 像素中心到边缘的距离比到最近另一侧像素中心少半个像素
+						if (outside[idx] > 0) {
+							sum += (float) Math.sqrt(outside[idx]) - 0.5f;
+						} else {
+							sum -= (float) Math.sqrt(inside[idx]) - 0.5f;
+						}
+					}
+				}
+				final float distance = sum / ((y1 - y0) * (x1 - x0));
+				final float value = MathUtils.clamp(0.5f - distance * scale, 0f, 1f);
+				dst[offset + oy * stride + ox] = ((int) (value * 255f + 0.5f) << 24) | 0x00FFFFFF;
+			}
+		}
+	}
+
+	private void ensureCapacity(int size, int length) {
+		if (_outside == null || _outside.length < size) {
+			_outside = new float[size];
+			_inside = new float[size];
+		}
+		if (_f == null || _f.length < length) {
+			_f = new float[length];
+			_d = new float[length];
+			_z = new float[length + 1];
+			_v = new int[length];
+		}
+	}
+
+	/**
+	 * 二维平方距离变换:先逐列,再逐行执行一维变换
+	 *
+	 * @param grid
+	 * @param width
+	 * @param height
+	 */
+	private void transform(float[] grid, int width, int height) {
+		final float[] f = _f;
+		final float[] d = _d;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				f[y] = grid[y * width + x];
+			}
+			transform(f, d, height);
+			for (int y = 0; y < height; y++) {
+				grid[y * width + x] = d[y];
+			}
+		}
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+			System.arraycopy(grid, row, f, 0, width);
+			transform(f, d, width);
+			System.arraycopy(d, 0, grid, row, width);
+		}
+	}
+
+	/**
+	 * 一维平方距离变换(以抛物线下包络求每个位置到最近种子的平方距离)
+	 *
+	 * @param f
+	 * @param d
+	 * @param n
+	 */
+	private void transform(float[] f, float[] d, int n) {
+		final int[] v = _v;
+		final float[] z = _z;
+		int k = 0;
+		v[0] = 0;
+		z[0] = -INF;
+		z[1] = INF;
+		for (int q = 1; q < n; q++) {
+			float s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+			while (s <= z[k]) {
+				k--;
+				s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+			}
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k + 1] = INF;
+		}
+		k = 0;
+		for (int q = 0; q < n; q++) {
+			while (z[k + 1] < q) {
+				k++;
+			}
+			final int dq = q - v[k];
+			d[q] = dq * dq + f[v[k]];
+		}
+	}
+
+}
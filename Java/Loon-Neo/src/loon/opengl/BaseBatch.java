@@ -30,6 +30,14 @@ public abstract class BaseBatch extends LTextureBind {
 
 	private boolean _shader_ditry = true;
 
+	private LTextureAtlas _atlas;
+
+	private LTextureAtlas.Entry _atlas_entry;
+
+	protected int submitCount;
+
+	private int atlasQuadCount;
+
 	public void setShaderSource(ShaderSource source) {
 		if (source == null) {
 			return;
@@ -53,6 +61,65 @@ public abstract class BaseBatch extends LTextureBind {
 		return this._shader_ditry;
 	}
 
+	/**
+	 * 设置运行时纹理合并器(为null时关闭),开启后小纹理会被合并到共享纹理页中渲染,以减少纹理切换导致的提交次数
+	 * 
+	 * @param atlas
+	 */
+	public void setTextureAtlas(LTextureAtlas atlas) {
+		this._atlas = atlas;
+		this._atlas_entry = null;
+	}
+
+	public LTextureAtlas getTextureAtlas() {
+		return this._atlas;
+	}
+
+	/**
+	 * 累计提交(drawcall)次数
+	 * 
+	 * @return
+	 */
+	public int getSubmitCount() {
+		return submitCount;
+	}
+
+	/**
+	 * 经由纹理合并器转为纹理页渲染的累计次数
+	 * 
+	 * @return
+	 */
+	public int getAtlasQuadCount() {
+		return atlasQuadCount;
+	}
+
+	public void resetStats() {
+		submitCount = 0;
+		atlasQuadCount = 0;
+		textureSwitchCount = 0;
+	}
+
+	private void useTexture(LTexture tex) {
+		_atlas_entry = _atlas == null ? null : _atlas.find(tex);
+		if (_atlas_entry == null) {
+			setTexture(tex);
+		} else {
+			setTexture(_atlas_entry.getPageTexture());
+		}
+	}
+
+	private void addTextureQuad(int tint, Affine2f xf, float left, float top, float right, float bottom, float sl,
+			float st, float sr, float sb) {
+		final LTextureAtlas.Entry entry = _atlas_entry;
+		if (entry != null) {
+			_atlas_entry = null;
+			atlasQuadCount++;
+			addQuad(tint, xf, left, top, right, bottom, entry.u(sl), entry.v(st), entry.u(sr), entry.v(sb));
+		} else {
+			addQuad(tint, xf, left, top, right, bottom, sl, st, sr, sb);
+		}
+	}
+
 	public void addQuad(LTexture tex, int tint, Affine2f xf, float x, float y, float w, float h) {
 		if (tex == null || tex.isClosed()) {
 			return;
@@ -64,20 +131,20 @@ public abstract class BaseBatch extends LTextureBind {
 			return;
 		}
 
-		setTexture(tex);
+		useTexture(tex);
 
 		if (tex.getParent() == null) {
 			float u2 = tex.getFormat().repeatX ? w / tex.width() : tex.widthRatio();
 			float uv = tex.getFormat().repeatY ? h / tex.height() : tex.heightRatio();
-			addQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), u2, uv);
+			addTextureQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), u2, uv);
 		} else {
 			LTexture forefather = LTexture.firstFather(tex);
 			float u2 = tex.getFormat().repeatX ? w / forefather.width() : tex.widthRatio();
 			float uv = tex.getFormat().repeatY ? h / forefather.height() : tex.heightRatio();
 			if ((w < forefather.width() || h < forefather.height()) && !tex.isScale()) {
-				addQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), u2, uv);
+				addTextureQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), u2, uv);
 			} else {
-				addQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), forefather.widthRatio(),
+				addTextureQuad(tint, xf, x, y, x + w, y + h, tex.xOff(), tex.yOff(), forefather.widthRatio(),
 						forefather.heightRatio());
 			}
 		}
@@ -95,7 +162,7 @@ public abstract class BaseBatch extends LTextureBind {
 			return;
 		}
 		
-		setTexture(tex);
+		useTexture(tex);
 		if (tex.getParent() == null) {
 			float displayWidth = tex.width();
 			float displayHeight = tex.height();
@@ -103,7 +170,7 @@ public abstract class BaseBatch extends LTextureBind {
 			float yOff = ((sy / displayHeight) * tex.heightRatio()) + tex.yOff();
 			float widthRatio = ((sw / displayWidth) * tex.widthRatio()) + xOff;
 			float heightRatio = ((sh / displayHeight) * tex.heightRatio()) + yOff;
-			addQuad(tint, xf, dx, dy, dx + dw, dy + dh, xOff, yOff, widthRatio, heightRatio);
+			addTextureQuad(tint, xf, dx, dy, dx + dw, dy + dh, xOff, yOff, widthRatio, heightRatio);
 		} else {
 			LTexture forefather = LTexture.firstFather(tex);
 			float displayWidth = forefather.width();
@@ -112,7 +179,7 @@ public abstract class BaseBatch extends LTextureBind {
 			float yOff = ((sy / displayHeight) * forefather.heightRatio()) + forefather.yOff() + tex.yOff();
 			float widthRatio = ((sw / displayWidth) * forefather.widthRatio()) + xOff;
 			float heightRatio = ((sh / displayHeight) * forefather.heightRatio()) + yOff;
-			addQuad(tint, xf, dx, dy, dx + dw, dy + dh, xOff, yOff, widthRatio, heightRatio);
+			addTextureQuad(tint, xf, dx, dy, dx + dw, dy + dh, xOff, yOff, widthRatio, heightRatio);
 		}
 	}
 
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LSystem;
+import loon.utils.MathUtils;
+
+/**
+ * 有向距离场(SDF)纹理使用的着色器,纹理透明度保存到字形边缘的距离(0.5为边缘),片段着色器按当前缩放比例平滑边缘,
+ * 因此同一张距离场纹理放大,缩小与旋转后依然清晰.
+ *
+ * <pre>
+ * DistanceFieldSource source = new DistanceFieldSource();
+ * LTextureBatch batch = new LTextureBatch(texture, source);
+ * source.setSmoothing(DistanceFieldSource.getSmoothing(spread, scale));
+ * </pre>
+ */
+public class DistanceFieldSource extends ShaderSource {
+
+	public final static String SMOOTHING_UNIFORM = "u_smoothing";
+
+	public static String getFragmentShader() {
+		ShaderCmd cmd = ShaderCmd.getCmd("distance_field_fragment");
+		if (cmd.isCache()) {
+			return cmd.getShader();
+		} else {
+			cmd.putVarying("LOWP vec4", "v_color");
+			cmd.putVaryingVec2("v_texCoords");
+			cmd.putUniform("sampler2D", "u_texture");
+			cmd.putUniform("float", SMOOTHING_UNIFORM);
+			cmd.putMainLowpCmd("  float distance = texture2D(u_texture, v_texCoords).a;\n"
+					+ "  float alpha = smoothstep(0.5 - " + SMOOTHING_UNIFORM + ", 0.5 + " + SMOOTHING_UNIFORM
+					+ ", distance);\n" + "  gl_FragColor = vec4(v_color.rgb, v_color.a * alpha);");
+			return cmd.getShader();
+		}
+	}
+
+	/**
+	 * 按距离场扩散范围与当前绘制比例,计算约1个屏幕像素宽度的平滑范围
+	 *
+	 * @param spread
+	 *            距离场纹理中从边缘到透明度0(或1)的像素数
+	 * @param scale
+	 *            屏幕像素与距离场纹理像素的比例
+	 * @return
+	 */
+	public static float getSmoothing(float spread, float scale) {
+		if (spread <= 0 || scale <= 0) {
+			return 0.5f;
+		}
+		return MathUtils.clamp(0.25f / (spread * scale), 0.001f, 0.5f);
+	}
+
+	private float smoothing = 0.0625f;
+
+	public DistanceFieldSource() {
+		super(LSystem.getGLExVertexShader(), getFragmentShader());
+	}
+
+	public float getSmoothing() {
+		return smoothing;
+	}
+
+	/**
+	 * 设置边缘平滑范围,在LTextureBatch.begin时传入着色器
+	 *
+	 * @param smoothing
+	 */
+	public void setSmoothing(float smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	@Override
+	public void setupShader(ShaderProgram program) {
+		program.setUniformf(SMOOTHING_UNIFORM, smoothing);
+	}
+
+}
@@ -20,6 +20,453 @@
  */
 package loon.opengl;
 
-public class GLDrawCommand {
+import loon.LTexture;
+import loon.utils.GLUtils;
+import loon.utils.MathUtils;
+
+/**
+ * GLEx延迟渲染模式使用的绘制命令缓冲.
+ * 
+ * 它本身是一个只记录不提交的Batch,GLEx开启延迟模式后所有纹理与填色四边形都写入此处:顶点先按当时的矩阵变换为屏幕坐标,
+ * 与纹理坐标一起保存在float数组中,色彩,图层,混合模式,着色器与纹理则保存为int数组.
+ * 回放时按(图层,重叠层级,混合模式,着色器,纹理)稳定排序后提交,相同状态的命令合并为一次提交.
+ * 
+ * 重叠层级以屏幕网格计算:一个命令的层级不低于之前与它覆盖同一网格单元的任何命令,若之前的命令状态不同则至少高一级,
+ * 所以互相重叠的命令依旧保持原有的先后关系,只有互不重叠的命令会被重新排列.
+ */
+public class GLDrawCommand extends BaseBatch {
+
+	// 每个命令4个顶点,每个顶点x,y,u,v
+	private final static int STRIDE = 16;
+
+	private final static int CELL_SIZE = 64;
+
+	private final static int MIXED_STATE = -1;
+
+	private float[] _vertices;
+
+	private int[] _tints, _layers, _blends, _shaders, _textures, _levels;
+
+	private long[] _keys;
+
+	private int[] _order, _sortTemp;
+
+	private LTexture[] _commandTextures;
+
+	private int _size;
+
+	// 本次记录中出现的纹理与着色器
+	private LTexture[] _textureList = new LTexture[16];
+
+	private int _textureCount;
+
+	private int _lastTextureIndex = -1;
+
+	private ShaderSource[] _shaderList = new ShaderSource[4];
+
+	private int _shaderCount;
+
+	private LTexture _currentTexture;
+
+	private int _layer, _blend;
+
+	private ShaderSource _shader;
+
+	private int[] _cellLevels, _cellStates;
+
+	private int _commandCount;
+
+	private int _stateChangeCount;
+
+	private int _blendSwitchCount;
+
+	private int _shaderSwitchCount;
+
+	public GLDrawCommand(GL20 gl) {
+		this(gl, 256);
+	}
+
+	public GLDrawCommand(GL20 gl, int capacity) {
+		super(gl);
+		allocate(MathUtils.max(capacity, 16));
+	}
+
+	@Override
+	public void init() {
+
+	}
+
+	private void allocate(int capacity) {
+		final int size = _size;
+		_vertices = copyOf(_vertices, capacity * STRIDE, size * STRIDE);
+		_tints = copyOf(_tints, capacity, size);
+		_layers = copyOf(_layers, capacity, size);
+		_blends = copyOf(_blends, capacity, size);
+		_shaders = copyOf(_shaders, capacity, size);
+		_textures = copyOf(_textures, capacity, size);
+		_levels = new int[capacity];
+		_keys = new long[capacity];
+		_order = new int[capacity];
+		_sortTemp = new int[capacity];
+		final LTexture[] textures = new LTexture[capacity];
+		if (_commandTextures != null) {
+			System.arraycopy(_commandTextures, 0, textures, 0, size);
+		}
+		_commandTextures = textures;
+	}
+
+	private static float[] copyOf(float[] src, int capacity, int size) {
+		final float[] dst = new float[capacity];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, size);
+		}
+		return dst;
+	}
+
+	private static int[] copyOf(int[] src, int capacity, int size) {
+		final int[] dst = new int[capacity];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, size);
+		}
+		return dst;
+	}
+
+	/**
+	 * 设置之后记录的命令所属的图层,混合模式与着色器
+	 * 
+	 * @param layer
+	 * @param blend
+	 * @param shader
+	 */
+	public void setState(int layer, int blend, ShaderSource shader) {
+		this._layer = layer;
+		this._blend = blend;
+		this._shader = shader;
+	}
+
+	/**
+	 * 只记录纹理,不会因纹理切换而提交
+	 */
+	@Override
+	public void setTexture(LTexture texture) {
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		this._currentTexture = texture;
+	}
+
+	@Override
+	public void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3, float sy3,
+			float x4, float y4, float sx4, float sy4) {
+		if (_currentTexture == null) {
+			return;
+		}
+		if (_size == _tints.length) {
+			allocate(_size * 2);
+		}
+		final int idx = _size++;
+		final float[] v = _vertices;
+		int i = idx * STRIDE;
+		v[i++] = m00 * x1 + m10 * y1 + tx;
+		v[i++] = m01 * x1 + m11 * y1 + ty;
+		v[i++] = sx1;
+		v[i++] = sy1;
+		v[i++] = m00 * x2 + m10 * y2 + tx;
+		v[i++] = m01 * x2 + m11 * y2 + ty;
+		v[i++] = sx2;
+		v[i++] = sy2;
+		v[i++] = m00 * x3 + m10 * y3 + tx;
+		v[i++] = m01 * x3 + m11 * y3 + ty;
+		v[i++] = sx3;
+		v[i++] = sy3;
+		v[i++] = m00 * x4 + m10 * y4 + tx;
+		v[i++] = m01 * x4 + m11 * y4 + ty;
+		v[i++] = sx4;
+		v[i] = sy4;
+		_tints[idx] = tint;
+		_layers[idx] = _layer;
+		_blends[idx] = _blend;
+		_shaders[idx] = indexOfShader(_shader);
+		_textures[idx] = indexOfTexture(_currentTexture);
+		_commandTextures[idx] = _currentTexture;
+	}
+
+	private int indexOfTexture(LTexture texture) {
+		if (_lastTextureIndex != -1 && _textureList[_lastTextureIndex] == texture) {
+			return _lastTextureIndex;
+		}
+		for (int i = 0; i < _textureCount; i++) {
+			if (_textureList[i] == texture) {
+				return _lastTextureIndex = i;
+			}
+		}
+		if (_textureCount == _textureList.length) {
+			final LTexture[] list = new LTexture[_textureCount * 2];
+			System.arraycopy(_textureList, 0, list, 0, _textureCount);
+			_textureList = list;
+		}
+		_textureList[_textureCount] = texture;
+		return _lastTextureIndex = _textureCount++;
+	}
+
+	private int indexOfShader(ShaderSource shader) {
+		for (int i = 0; i < _shaderCount; i++) {
+			if (_shaderList[i] == shader) {
+				return i;
+			}
+		}
+		if (_shaderCount == _shaderList.length) {
+			final ShaderSource[] list = new ShaderSource[_shaderCount * 2];
+			System.arraycopy(_shaderList, 0, list, 0, _shaderCount);
+			_shaderList = list;
+		}
+		_shaderList[_shaderCount] = shader;
+		return _shaderCount++;
+	}
+
+	/**
+	 * 当前记录的命令数
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * 按状态排序所有已记录的命令并提交到指定Batch,然后清空命令缓冲
+	 * 
+	 * @param batch
+	 * @param width
+	 *            渲染目标宽度(用于计算重叠网格与切换着色器时重新begin)
+	 * @param height
+	 * @param flip
+	 */
+	public void replay(BaseBatch batch, float width, float height, boolean flip) {
+		final int size = _size;
+		if (size == 0) {
+			return;
+		}
+		computeLevels(width, height);
+		sort();
+		final GL20 gl = batch.gl;
+		final ShaderSource oldShader = batch.getShaderSource();
+		final int oldBlend = GLUtils.getBlendMode();
+		final float[] v = _vertices;
+		int lastState = MIXED_STATE;
+		int lastBlend = oldBlend;
+		ShaderSource lastShader = oldShader;
+		for (int n = 0; n < size; n++) {
+			final int idx = _order[n];
+			final int state = stateOf(idx);
+			if (state != lastState) {
+				_stateChangeCount++;
+				lastState = state;
+				final int blend = _blends[idx];
+				if (blend != lastBlend) {
+					batch.flush();
+					GLUtils.setBlendMode(gl, blend);
+					lastBlend = blend;
+					_blendSwitchCount++;
+				}
+				final ShaderSource shader = _shaderList[_shaders[idx]];
+				if (shader != null && shader != lastShader) {
+					switchShader(batch, shader, width, height, flip);
+					lastShader = shader;
+				}
+			}
+			batch.setTexture(_commandTextures[idx]);
+			int i = idx * STRIDE;
+			batch.addQuad(_tints[idx], 1f, 0f, 0f, 1f, 0f, 0f, v[i], v[i + 1], v[i + 2], v[i + 3], v[i + 4], v[i + 5],
+					v[i + 6], v[i + 7], v[i + 8], v[i + 9], v[i + 10], v[i + 11], v[i + 12], v[i + 13], v[i + 14],
+					v[i + 15]);
+		}
+		if (oldShader != null && lastShader != oldShader) {
+			switchShader(batch, oldShader, width, height, flip);
+		}
+		if (lastBlend != oldBlend) {
+			batch.flush();
+			GLUtils.setBlendMode(gl, oldBlend);
+		}
+		_commandCount += size;
+		clear();
+	}
+
+	private void switchShader(BaseBatch batch, ShaderSource shader, float width, float height, boolean flip) {
+		batch.end();
+		batch.setShaderSource(shader);
+		batch.begin(width, height, flip);
+		_shaderSwitchCount++;
+	}
+
+	/**
+	 * 混合,着色器与纹理组合成的状态值(不为负),超出位数的索引会合并,合并后的命令保持原有顺序,不影响正确性
+	 */
+	private int stateOf(int idx) {
+		return ((_blends[idx] & 0x1F) << 24) | (MathUtils.min(_shaders[idx], 0xFF) << 16)
+				| MathUtils.min(_textures[idx], 0xFFFF);
+	}
+
+	/**
+	 * 计算每个命令的重叠层级
+	 */
+	private void computeLevels(float width, float height) {
+		final int gw = MathUtils.max(1, MathUtils.ceil(width / CELL_SIZE));
+		final int gh = MathUtils.max(1, MathUtils.ceil(height / CELL_SIZE));
+		final int cells = gw * gh;
+		if (_cellLevels == null || _cellLevels.length < cells) {
+			_cellLevels = new int[cells];
+			_cellStates = new int[cells];
+		}
+		final int[] cellLevels = _cellLevels;
+		final int[] cellStates = _cellStates;
+		for (int i = 0; i < cells; i++) {
+			cellLevels[i] = -1;
+		}
+		final float[] v = _vertices;
+		for (int idx = 0; idx < _size; idx++) {
+			final int i = idx * STRIDE;
+			final float minX = MathUtils.min(MathUtils.min(v[i], v[i + 4]), MathUtils.min(v[i + 8], v[i + 12]));
+			final float maxX = MathUtils.max(MathUtils.max(v[i], v[i + 4]), MathUtils.max(v[i + 8], v[i + 12]));
+			final float minY = MathUtils.min(MathUtils.min(v[i + 1], v[i + 5]), MathUtils.min(v[i + 9], v[i + 13]));
+			final float maxY = MathUtils.max(MathUtils.max(v[i + 1], v[i + 5]), MathUtils.max(v[i + 9], v[i + 13]));
+			// 超出画面的部分归入边缘单元,只会让判断更保守
+			final int cx0 = cellOf(minX, gw);
+			final int cx1 = cellOf(maxX, gw);
+			final int cy0 = cellOf(minY, gh);
+			final int cy1 = cellOf(maxY, gh);
+			final int state = stateOf(idx);
+			int level = 0;
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0, c = cy * gw + cx0; cx <= cx1; cx++, c++) {
+					final int cellLevel = cellLevels[c];
+					if (cellLevel >= 0) {
+						final int need = cellStates[c] == state ? cellLevel : cellLevel + 1;
+						if (need > level) {
+							level = need;
+						}
+					}
+				}
+			}
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0, c = cy * gw + cx0; cx <= cx1; cx++, c++) {
+					if (level > cellLevels[c]) {
+						cellLevels[c] = level;
+						cellStates[c] = state;
+					} else if (level == cellLevels[c] && cellStates[c] != state) {
+						cellStates[c] = MIXED_STATE;
+					}
+				}
+			}
+			_levels[idx] = level;
+		}
+	}
+
+	private static int cellOf(float pos, int count) {
+		return MathUtils.clamp((int) (pos / CELL_SIZE), 0, count - 1);
+	}
+
+	/**
+	 * 以(图层,层级,状态)生成排序键,再按键做稳定的归并排序
+	 */
+	private void sort() {
+		final int size = _size;
+		for (int idx = 0; idx < size; idx++) {
+			final long layer = MathUtils.clamp(_layers[idx], -32768, 32767) + 32768;
+			final long level = MathUtils.min(_levels[idx], 0xFFFF);
+			_keys[idx] = (layer << 45) | (level << 29) | stateOf(idx);
+			_order[idx] = idx;
+		}
+		int[] src = _order;
+		int[] dst = _sortTemp;
+		final long[] keys = _keys;
+		for (int width = 1; width < size; width <<= 1) {
+			for (int lo = 0; lo < size; lo += width << 1) {
+				final int mid = MathUtils.min(lo + width, size);
+				final int hi = MathUtils.min(lo + (width << 1), size);
+				int a = lo, b = mid, k = lo;
+				while (a < mid && b < hi) {
+					// 相等时取左侧,保证稳定
+					if (keys[src[b]] < keys[src[a]]) {
+						dst[k++] = src[b++];
+					} else {
+						dst[k++] = src[a++];
+					}
+				}
+				while (a < mid) {
+					dst[k++] = src[a++];
+				}
+				while (b < hi) {
+					dst[k++] = src[b++];
+				}
+			}
+			final int[] tmp = src;
+			src = dst;
+			dst = tmp;
+		}
+		_order = src;
+		_sortTemp = dst;
+	}
+
+	/**
+	 * 丢弃已记录的命令
+	 */
+	public void clear() {
+		for (int i = 0; i < _size; i++) {
+			_commandTextures[i] = null;
+		}
+		for (int i = 0; i < _textureCount; i++) {
+			_textureList[i] = null;
+		}
+		for (int i = 0; i < _shaderCount; i++) {
+			_shaderList[i] = null;
+		}
+		_size = 0;
+		_textureCount = 0;
+		_shaderCount = 0;
+		_lastTextureIndex = -1;
+		_currentTexture = null;
+	}
+
+	/**
+	 * 累计回放的命令数
+	 * 
+	 * @return
+	 */
+	public int getCommandCount() {
+		return _commandCount;
+	}
+
+	/**
+	 * 累计回放时的状态(纹理,混合,着色器任一)切换次数
+	 * 
+	 * @return
+	 */
+	public int getStateChangeCount() {
+		return _stateChangeCount;
+	}
+
+	public int getBlendSwitchCount() {
+		return _blendSwitchCount;
+	}
+
+	public int getShaderSwitchCount() {
+		return _shaderSwitchCount;
+	}
+
+	@Override
+	public void resetStats() {
+		super.resetStats();
+		_commandCount = 0;
+		_stateChangeCount = 0;
+		_blendSwitchCount = 0;
+		_shaderSwitchCount = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
 
 }
@@ -72,21 +72,154 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		boolean alltextures = false;
 		IFont font = null;
 		LTexture patternTex = null;
+	}
+
+	/*
+	 * 画笔状态栈,每个参数一个数组(按层级索引),预先分配并按需倍增,save与restore时只复制数值,不再创建对象
+	 */
+	private static class BrushStack {
+
+		int[] baseColors, fillColors, pixSkips, blends;
+
+		float[] lineWidths, baseAlphas;
+
+		boolean[] alltextures;
+
+		IFont[] fonts;
+
+		LTexture[] patternTexs;
+
+		int size;
+
+		int growCount;
+
+		BrushStack(int capacity) {
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			final int[] oldBaseColors = baseColors, oldFillColors = fillColors, oldPixSkips = pixSkips,
+					oldBlends = blends;
+			final float[] oldLineWidths = lineWidths, oldBaseAlphas = baseAlphas;
+			final boolean[] oldAlltextures = alltextures;
+			final IFont[] oldFonts = fonts;
+			final LTexture[] oldPatternTexs = patternTexs;
+			baseColors = new int[capacity];
+			fillColors = new int[capacity];
+			pixSkips = new int[capacity];
+			blends = new int[capacity];
+			lineWidths = new float[capacity];
+			baseAlphas = new float[capacity];
+			alltextures = new boolean[capacity];
+			fonts = new IFont[capacity];
+			patternTexs = new LTexture[capacity];
+			if (oldBaseColors != null) {
+				System.arraycopy(oldBaseColors, 0, baseColors, 0, size);
+				System.arraycopy(oldFillColors, 0, fillColors, 0, size);
+				System.arraycopy(oldPixSkips, 0, pixSkips, 0, size);
+				System.arraycopy(oldBlends, 0, blends, 0, size);
+				System.arraycopy(oldLineWidths, 0, lineWidths, 0, size);
+				System.arraycopy(oldBaseAlphas, 0, baseAlphas, 0, size);
+				System.arraycopy(oldAlltextures, 0, alltextures, 0, size);
+				System.arraycopy(oldFonts, 0, fonts, 0, size);
+				System.arraycopy(oldPatternTexs, 0, patternTexs, 0, size);
+				growCount++;
+			}
+		}
+
+		void push(BrushSave brush) {
+			if (size == baseColors.length) {
+				allocate(size * 2);
+			}
+			final int idx = size++;
+			baseColors[idx] = brush.baseColor;
+			fillColors[idx] = brush.fillColor;
+			pixSkips[idx] = brush.pixSkip;
+			blends[idx] = brush.blend;
+			lineWidths[idx] = brush.lineWidth;
+			baseAlphas[idx] = brush.baseAlpha;
+			alltextures[idx] = brush.alltextures;
+			fonts[idx] = brush.font;
+			patternTexs[idx] = brush.patternTex;
+		}
+
+		/**
+		 * 把指定层级的参数写回画笔(线宽与混合模式需要同步到GL,由调用者处理)
+		 */
+		void load(int idx, BrushSave brush) {
+			brush.baseColor = baseColors[idx];
+			brush.fillColor = fillColors[idx];
+			brush.pixSkip = pixSkips[idx];
+			brush.baseAlpha = baseAlphas[idx];
+			brush.alltextures = alltextures[idx];
+			brush.font = fonts[idx];
+			brush.patternTex = patternTexs[idx];
+		}
+
+		/**
+		 * 丢弃count及以上的层级
+		 */
+		void truncate(int count) {
+			for (int i = count; i < size; i++) {
+				fonts[i] = null;
+				patternTexs[i] = null;
+			}
+			size = count;
+		}
 
-		BrushSave cpy() {
-			BrushSave save = new BrushSave();
-			save.baseColor = this.baseColor;
-			save.fillColor = this.fillColor;
-			save.pixSkip = this.pixSkip;
-			save.lineWidth = this.lineWidth;
-			save.alltextures = this.alltextures;
-			save.font = this.font;
-			save.patternTex = this.patternTex;
-			save.blend = this.blend;
-			return save;
+		int capacity() {
+			return baseColors.length;
 		}
 	}
 
+	/*
+	 * 矩阵状态栈,所有层级的m00,m01,m10,m11,tx,ty连续保存在一个float数组中,预先分配并按需倍增
+	 */
+	private static class AffineStack {
+
+		float[] values;
+
+		int size;
+
+		int growCount;
+
+		AffineStack(int capacity) {
+			values = new float[capacity * 6];
+		}
+
+		void push(Affine2f aff) {
+			if ((size + 1) * 6 > values.length) {
+				float[] newValues = new float[values.length * 2];
+				System.arraycopy(values, 0, newValues, 0, size * 6);
+				values = newValues;
+				growCount++;
+			}
+			final int idx = size++ * 6;
+			values[idx] = aff.m00;
+			values[idx + 1] = aff.m01;
+			values[idx + 2] = aff.m10;
+			values[idx + 3] = aff.m11;
+			values[idx + 4] = aff.tx;
+			values[idx + 5] = aff.ty;
+		}
+
+		void load(int level, Affine2f aff) {
+			final int idx = level * 6;
+			aff.setTransform(values[idx], values[idx + 1], values[idx + 2], values[idx + 3], values[idx + 4],
+					values[idx + 5]);
+		}
+
+		void truncate(int count) {
+			size = count;
+		}
+
+		int capacity() {
+			return values.length / 6;
+		}
+	}
+
+	private final static int DEFAULT_STATE_DEPTH = 16;
+
 	public static enum Direction {
 		TRANS_NONE, TRANS_MIRROR, TRANS_FLIP, TRANS_MF;
 	}
@@ -103,9 +236,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 
 	private final Array<LTextureImage> frameBuffers = new Array<LTextureImage>();
 
-	private final Array<Affine2f> affineStack = new Array<Affine2f>();
+	// 已保存的矩阵与画笔层级,当前状态不在栈中,始终保存在lastTrans与lastBrush里
+	private final AffineStack affineStack = new AffineStack(DEFAULT_STATE_DEPTH);
 
-	private final Array<BrushSave> brushStack = new Array<BrushSave>();
+	private final BrushStack brushStack = new BrushStack(DEFAULT_STATE_DEPTH);
 
 	private final TArray<RectBox> scissors = new TArray<RectBox>();
 
@@ -123,12 +257,25 @@ public class GLEx extends PixmapFImpl implements LRelease {
 
 	private BaseBatch batch;
 
-	private Affine2f lastTrans;
+	private final Affine2f lastTrans = new Affine2f();
 
-	private BrushSave lastBrush;
+	private final BrushSave lastBrush = new BrushSave();
 
 	private LTextureImage lastFrameBuffer;
 
+	// 延迟渲染模式下记录绘制命令的缓冲,在end,flush或裁剪变化时排序提交
+	private GLDrawCommand drawCommands;
+
+	private boolean deferred;
+
+	private int drawLayer;
+
+	private int blendSwitchCount;
+
+	private int lastSubmitCount, lastStateCount, lastCommandCount;
+
+	private int frameDrawCalls, frameStateChanges, frameCommands;
+
 	private float triangleValue = 0.5235988f;
 
 	private float scaleX = 1f, scaleY = 1f;
@@ -152,15 +299,12 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		this.gfx = gfx;
 		this.target = target;
 		this.batch = def;
-		this.affineStack.add(lastTrans = new Affine2f());
 		this.colorTex = gfx.finalColorTex();
 		this.scale(scaleX = target.xscale(), scaleY = target.yscale());
-		this.lastBrush = new BrushSave();
 		this.lastBrush.font = LSystem.getSystemGameFont();
 		this.lastBrush.alltextures = alltex;
 		this.lastBrush.pixSkip = LSystem.isHTML5() ? def_skip_html5 : def_skip;
 		this.lastBrush.blend = LSystem.MODE_NORMAL;
-		this.brushStack.add(lastBrush);
 		this.saveToFrameBufferTexture = saveFrameBuffer;
 		this.update();
 	}
@@ -251,7 +395,12 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			return this;
 		}
 		stopFrameBuffer();
+		submitDeferred();
 		batch.end();
+		LTextureAtlas atlas = batch.getTextureAtlas();
+		if (atlas != null) {
+			atlas.update();
+		}
 		return this;
 	}
 
@@ -267,6 +416,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (batch == null) {
 			return this;
 		}
+		submitDeferred();
 		batch.flush();
 		return this;
 	}
@@ -275,6 +425,149 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		return batch;
 	}
 
+	/**
+	 * 为当前Batch开启运行时纹理合并,小纹理会在首次使用后合并到共享纹理页中,减少纹理切换造成的提交次数
+	 * 
+	 * @param atlas
+	 * @return
+	 */
+	public GLEx setTextureAtlas(LTextureAtlas atlas) {
+		if (batch != null) {
+			batch.setTextureAtlas(atlas);
+		}
+		if (drawCommands != null) {
+			drawCommands.setTextureAtlas(atlas);
+		}
+		return this;
+	}
+
+	public LTextureAtlas getTextureAtlas() {
+		if (batch != null) {
+			return batch.getTextureAtlas();
+		}
+		return null;
+	}
+
+	/**
+	 * 开启或关闭延迟渲染模式.开启后纹理与填色四边形不再立即提交,而是记录为绘制命令,在end,flush或裁剪区域变化时
+	 * 按(图层,混合模式,着色器,纹理)排序后一次提交,互相重叠的命令依旧保持绘制顺序,以此减少状态切换与提交次数.
+	 * 
+	 * PS:图形(GLRenderer)与独立Batch的字体渲染不经过命令缓冲.
+	 * 
+	 * @param d
+	 * @return
+	 */
+	public GLEx setDeferred(boolean d) {
+		if (isClosed) {
+			return this;
+		}
+		if (this.deferred == d) {
+			return this;
+		}
+		if (!d) {
+			submitDeferred();
+		} else if (drawCommands == null && batch != null) {
+			drawCommands = new GLDrawCommand(batch.gl);
+			drawCommands.setTextureAtlas(batch.getTextureAtlas());
+		}
+		this.deferred = d;
+		return this;
+	}
+
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * 设置延迟渲染模式下之后绘制内容所在的图层,图层小的先渲染(默认为0,非延迟模式下无效)
+	 * 
+	 * @param layer
+	 * @return
+	 */
+	public GLEx setDrawLayer(int layer) {
+		this.drawLayer = layer;
+		return this;
+	}
+
+	public int getDrawLayer() {
+		return drawLayer;
+	}
+
+	/**
+	 * 返回接收四边形的Batch,延迟模式下为命令缓冲
+	 * 
+	 * @return
+	 */
+	private BaseBatch quadBatch() {
+		if (deferred && drawCommands != null) {
+			drawCommands.setState(drawLayer, lastBrush.blend, batch.getShaderSource());
+			return drawCommands;
+		}
+		return batch;
+	}
+
+	/**
+	 * 排序并提交延迟模式下已记录的绘制命令
+	 */
+	private void submitDeferred() {
+		if (drawCommands != null && drawCommands.size() > 0) {
+			drawCommands.replay(batch, target.width(), target.height(), target.flip());
+		}
+	}
+
+	/**
+	 * 统计上一次调用以来的提交与状态切换次数,由Display每帧调用一次
+	 * 
+	 * @return
+	 */
+	public GLEx updateFrameStats() {
+		if (batch == null) {
+			return this;
+		}
+		int submits = batch.getSubmitCount();
+		int states = batch.getTextureSwitchCount() + blendSwitchCount;
+		int commands = 0;
+		if (drawCommands != null) {
+			states += drawCommands.getBlendSwitchCount() + drawCommands.getShaderSwitchCount();
+			commands = drawCommands.getCommandCount();
+		}
+		// 统计被外部重置时从0开始计算
+		frameDrawCalls = submits >= lastSubmitCount ? submits - lastSubmitCount : submits;
+		frameStateChanges = states >= lastStateCount ? states - lastStateCount : states;
+		frameCommands = commands >= lastCommandCount ? commands - lastCommandCount : commands;
+		lastSubmitCount = submits;
+		lastStateCount = states;
+		lastCommandCount = commands;
+		return this;
+	}
+
+	/**
+	 * 上一帧的提交(drawcall)次数
+	 * 
+	 * @return
+	 */
+	public int getFrameDrawCalls() {
+		return frameDrawCalls;
+	}
+
+	/**
+	 * 上一帧的纹理,混合模式与着色器切换次数
+	 * 
+	 * @return
+	 */
+	public int getFrameStateChanges() {
+		return frameStateChanges;
+	}
+
+	/**
+	 * 上一帧延迟模式下提交的绘制命令数
+	 * 
+	 * @return
+	 */
+	public int getFrameCommands() {
+		return frameCommands;
+	}
+
 	/**
 	 * 将当然GLEx缓存到一个单独的LTextureImage中去(用于获得指定范围内的texture)
 	 * 
@@ -359,6 +652,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		}
 		BaseBatch oldBatch = batch;
 		save();
+		submitDeferred();
 		batch.end();
 		batch = beginBatch(b);
 		return oldBatch;
@@ -369,6 +663,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			return null;
 		}
 		if (oldBatch != null) {
+			submitDeferred();
 			batch.end();
 			batch = beginBatch(oldBatch);
 			restore();
@@ -415,6 +710,9 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
+		if (!deferred && mode != GLUtils.getBlendMode()) {
+			blendSwitchCount++;
+		}
 		lastBrush.blend = mode;
 		GLUtils.setBlendMode(batch.gl, mode);
 		return this;
@@ -432,9 +730,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		if (lastBrush != null) {
-			brushStack.add(lastBrush = lastBrush.cpy());
-		}
+		brushStack.push(lastBrush);
 		return this;
 	}
 
@@ -442,7 +738,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		brushStack.clear();
+		brushStack.truncate(0);
 		return this;
 	}
 
@@ -450,11 +746,9 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastBrush = brushStack.get(idx);
-		if (lastBrush != null) {
-			this.setFont(lastBrush.font);
-			this.setLineWidth(lastBrush.lineWidth);
-			this.setBlendMode(lastBrush.blend);
+		if (idx > -1 && idx < brushStack.size) {
+			loadBrush(idx);
+			brushStack.truncate(idx);
 		}
 		return this;
 	}
@@ -463,15 +757,20 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastBrush = brushStack.previousPop();
-		if (lastBrush != null) {
-			this.setFont(lastBrush.font);
-			this.setLineWidth(lastBrush.lineWidth);
-			this.setBlendMode(lastBrush.blend);
+		if (brushStack.size > 0) {
+			loadBrush(brushStack.size - 1);
+			brushStack.truncate(brushStack.size - 1);
 		}
 		return this;
 	}
 
+	private void loadBrush(int idx) {
+		brushStack.load(idx, lastBrush);
+		this.setFont(lastBrush.font);
+		this.setLineWidth(brushStack.lineWidths[idx]);
+		this.setBlendMode(brushStack.blends[idx]);
+	}
+
 	public GLEx restoreBrushDef() {
 		this.lastBrush.baseAlpha = 1f;
 		this.lastBrush.baseColor = LColor.DEF_COLOR;
@@ -482,7 +781,9 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		this.setFont(LSystem.getSystemGameFont());
 		this.setLineWidth(1f);
 		this.setBlendMode(LSystem.MODE_NORMAL);
-		brushStack.pop();
+		if (brushStack.size > 0) {
+			brushStack.truncate(brushStack.size - 1);
+		}
 		return this;
 	}
 
@@ -492,11 +793,15 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		return this;
 	}
 
+	/**
+	 * 保存当前状态,并返回此状态所在的层级(用于restoreToCount)
+	 * 
+	 * @return
+	 */
 	public int saveCount() {
 		save();
-		int size = affineStack.size();
-		int idx = size > 0 ? size - 1 : 0;
-		return idx;
+		final int size = affineStack.size;
+		return size > 0 ? size - 1 : 0;
 	}
 
 	public GLEx restore() {
@@ -505,13 +810,46 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		return this;
 	}
 
+	/**
+	 * 恢复到saveCount返回的层级保存的状态,并丢弃此层级及之后保存的状态
+	 * 
+	 * @param idx
+	 * @return
+	 */
 	public GLEx restoreToCount(int idx) {
-		idx = MathUtils.clamp(idx, 0, affineStack.size() - 1);
+		idx = MathUtils.clamp(idx, 0, affineStack.size - 1);
 		this.restoreTx(idx);
 		this.restoreBrush(idx);
 		return this;
 	}
 
+	/**
+	 * 当前已保存的状态层数
+	 * 
+	 * @return
+	 */
+	public int getSaveDepth() {
+		return affineStack.size;
+	}
+
+	/**
+	 * 状态栈当前可以容纳的层数(超过时倍增)
+	 * 
+	 * @return
+	 */
+	public int getStateStackCapacity() {
+		return affineStack.capacity();
+	}
+
+	/**
+	 * 矩阵与画笔状态栈扩容(重新分配数组)的总次数,层级稳定后应不再增加
+	 * 
+	 * @return
+	 */
+	public int getStateStackGrowCount() {
+		return affineStack.growCount + brushStack.growCount;
+	}
+
 	public GLEx enableFrameBuffer() {
 		this.saveToFrameBufferTexture = true;
 		return this;
@@ -621,9 +959,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		if (lastTrans != null) {
-			affineStack.add(lastTrans = lastTrans.cpy());
-		}
+		affineStack.push(lastTrans);
 		return this;
 	}
 
@@ -631,7 +967,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		affineStack.clear();
+		affineStack.truncate(0);
 		return this;
 	}
 
@@ -639,7 +975,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastTrans = affineStack.get(idx);
+		if (idx > -1 && idx < affineStack.size) {
+			affineStack.load(idx, lastTrans);
+			affineStack.truncate(idx);
+		}
 		return this;
 	}
 
@@ -647,7 +986,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastTrans = affineStack.previousPop();
+		if (affineStack.size > 0) {
+			affineStack.load(affineStack.size - 1, lastTrans);
+			affineStack.truncate(affineStack.size - 1);
+		}
 		return this;
 	}
 
@@ -655,9 +997,11 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastTrans = new Affine2f();
+		lastTrans.idt();
 		scale(scaleX, scaleY);
-		affineStack.pop();
+		if (affineStack.size > 0) {
+			affineStack.truncate(affineStack.size - 1);
+		}
 		return this;
 	}
 
@@ -680,6 +1024,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		int y = (int) (y1 * LSystem.getScaleHeight());
 		int width = (int) (w1 * LSystem.getScaleWidth());
 		int height = (int) (h1 * LSystem.getScaleHeight());
+		submitDeferred();
 		batch.flush();
 		RectBox r = pushScissorState(x, target.flip() ? target.height() - y - height : y, width, height);
 		batch.gl.glScissor(r.x(), r.y(), r.width(), r.height());
@@ -697,6 +1042,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
+		submitDeferred();
 		batch.flush();
 		RectBox r = popScissorState();
 		if (r == null) {
@@ -810,7 +1156,9 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (isClosed) {
 			return this;
 		}
-		lastTrans = aff;
+		if (aff != null) {
+			lastTrans.set(aff);
+		}
 		return this;
 	}
 
@@ -1312,7 +1660,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (color != null) {
 			argb = color.getARGB(alpha());
 		}
-		texture.addToBatch(batch, argb, tx(), x, y, w, h);
+		texture.addToBatch(quadBatch(), argb, tx(), x, y, w, h);
 		return this;
 	}
 
@@ -1353,7 +1701,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			xf.translate(-w1, -h1);
 			Affine2f.multiply(tx(), xf, xf);
 		}
-		texture.addToBatch(batch, this.lastBrush.baseColor, xf, x, y, w, h);
+		texture.addToBatch(quadBatch(), this.lastBrush.baseColor, xf, x, y, w, h);
 		return this;
 	}
 
@@ -1414,7 +1762,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			}
 			Affine2f.multiply(tx(), xf, xf);
 		}
-		texture.addToBatch(batch, argb, xf, x, y, w, h);
+		texture.addToBatch(quadBatch(), argb, xf, x, y, w, h);
 		return this;
 	}
 
@@ -1439,7 +1787,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			xf.translate(-w1, -h1);
 			Affine2f.multiply(tx(), xf, xf);
 		}
-		texture.addToBatch(batch, argb, xf, x, y, w, h);
+		texture.addToBatch(quadBatch(), argb, xf, x, y, w, h);
 		return this;
 	}
 
@@ -1450,7 +1798,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (texture == null) {
 			return this;
 		}
-		texture.addToBatch(batch, this.lastBrush.baseColor, tx(), x, y, w, h);
+		texture.addToBatch(quadBatch(), this.lastBrush.baseColor, tx(), x, y, w, h);
 		return this;
 	}
 
@@ -1461,7 +1809,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (texture == null) {
 			return this;
 		}
-		texture.addToBatch(batch, this.lastBrush.baseColor, tx(), dx, dy, sw, sh, sx, sy, sw, sh);
+		texture.addToBatch(quadBatch(), this.lastBrush.baseColor, tx(), dx, dy, sw, sh, sx, sy, sw, sh);
 		return this;
 	}
 
@@ -1472,7 +1820,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (texture == null) {
 			return this;
 		}
-		texture.addToBatch(batch, this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
+		texture.addToBatch(quadBatch(), this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
 		return this;
 	}
 
@@ -1485,14 +1833,14 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			return this;
 		}
 		if (LColor.white.equals(color)) {
-			texture.addToBatch(batch, this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
+			texture.addToBatch(quadBatch(), this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
 			return this;
 		}
 		int argb = this.lastBrush.baseColor;
 		if (color != null) {
 			argb = color.getARGB(alpha());
 		}
-		texture.addToBatch(batch, argb, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
+		texture.addToBatch(quadBatch(), argb, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
 		return this;
 	}
 
@@ -1505,7 +1853,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			return this;
 		}
 		if (rotation == 0) {
-			texture.addToBatch(batch, this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
+			texture.addToBatch(quadBatch(), this.lastBrush.baseColor, tx(), dx, dy, dw, dh, sx, sy, sw, sh);
 			return this;
 		}
 		Affine2f xf = tx();
@@ -1518,7 +1866,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 			xf.translate(-w1, -h1);
 			Affine2f.multiply(tx(), xf, xf);
 		}
-		texture.addToBatch(batch, this.lastBrush.baseColor, xf, dx, dy, dw, dh, sx, sy, sw, sh);
+		texture.addToBatch(quadBatch(), this.lastBrush.baseColor, xf, dx, dy, dw, dh, sx, sy, sw, sh);
 		return this;
 	}
 
@@ -1759,7 +2107,7 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		if (color != null) {
 			argb = color.getARGB(alpha());
 		}
-		texture.addToBatch(batch, argb, xf, x, y, width, height, srcX, srcY, srcWidth, srcHeight);
+		texture.addToBatch(quadBatch(), argb, xf, x, y, width, height, srcX, srcY, srcWidth, srcHeight);
 		return this;
 	}
 
@@ -1816,9 +2164,9 @@ public class GLEx extends PixmapFImpl implements LRelease {
 		xf.setTranslation(x0 + wy, y0 - wx);
 		Affine2f.multiply(tx(), xf, xf);
 		if (this.lastBrush.patternTex != null) {
-			batch.addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, xf, 0, 0, length, width);
+			quadBatch().addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, xf, 0, 0, length, width);
 		} else {
-			batch.addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor), xf, 0, 0,
+			quadBatch().addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor), xf, 0, 0,
 					length, width);
 		}
 		return this;
@@ -3880,10 +4228,10 @@ public class GLEx extends PixmapFImpl implements LRelease {
 	@Override
 	protected void fillRectNative(float x, float y, float width, float height) {
 		if (this.lastBrush.patternTex != null) {
-			batch.addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, tx(), x, y, width, height);
+			quadBatch().addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, tx(), x, y, width, height);
 		} else {
-			batch.addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor), tx(), x, y,
-					width, height);
+			quadBatch().addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor), tx(),
+					x, y, width, height);
 		}
 	}
 
@@ -3896,11 +4244,11 @@ public class GLEx extends PixmapFImpl implements LRelease {
 	protected void drawPointNative(float x, float y, int skip) {
 		if (!inside(x, y)) {
 			if (this.lastBrush.patternTex != null) {
-				batch.addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, lastTrans, x, y,
+				quadBatch().addQuad(this.lastBrush.patternTex, this.lastBrush.baseColor, lastTrans, x, y,
 						skip + this.lastBrush.lineWidth, skip + this.lastBrush.lineWidth);
 			} else {
-				batch.addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor), lastTrans,
-						x, y, skip + this.lastBrush.lineWidth, skip + this.lastBrush.lineWidth);
+				quadBatch().addQuad(colorTex, LColor.combine(this.lastBrush.fillColor, this.lastBrush.baseColor),
+						lastTrans, x, y, skip + this.lastBrush.lineWidth, skip + this.lastBrush.lineWidth);
 			}
 		}
 	}
@@ -0,0 +1,515 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.canvas.Canvas;
+import loon.canvas.LColor;
+import loon.font.LFont;
+import loon.font.TextLayout;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * LSTRFont使用的动态字形图集,同一字体(名称,样式,大小)的LSTRFont共享同一组图集页.
+ *
+ * 字符只在首次绘制时渲染到图集页中(按行分层排列),一页写满时创建新页,页数达到上限时回收最久未使用的一页,
+ * 不会因为出现新字符而重建整张纹理.写入过新字符的页在下次绘制前统一上传一次纹理.
+ */
+public final class LSTRAtlas implements LRelease {
+
+	private final static ObjectMap<String, LSTRAtlas> _atlases = new ObjectMap<String, LSTRAtlas>();
+
+	/**
+	 * 字形之间的间隔像素,避免线性过滤时采样到相邻字形
+	 */
+	private final static int PADDING = 1;
+
+	/**
+	 * 获得(或创建)指定字体的共享图集,使用完毕后需要调用release
+	 *
+	 * @param font
+	 * @param pageWidth
+	 * @param pageHeight
+	 * @param maxPages
+	 * @return
+	 */
+	public synchronized static LSTRAtlas acquire(LFont font, int pageWidth, int pageHeight, int maxPages) {
+		final String key = toKey(font);
+		LSTRAtlas atlas = _atlases.get(key);
+		if (atlas == null || atlas._closed) {
+			atlas = new LSTRAtlas(key, font, pageWidth, pageHeight, maxPages);
+			_atlases.put(key, atlas);
+		}
+		atlas._refCount++;
+		return atlas;
+	}
+
+	/**
+	 * 释放一次对图集的引用,没有任何引用时关闭图集
+	 *
+	 * @param atlas
+	 */
+	public synchronized static void release(LSTRAtlas atlas) {
+		if (atlas == null || atlas._closed) {
+			return;
+		}
+		if (--atlas._refCount <= 0) {
+			_atlases.remove(atlas._key);
+			atlas.close();
+		}
+	}
+
+	public synchronized static void freeStatic() {
+		for (LSTRAtlas atlas : _atlases.values()) {
+			if (atlas != null) {
+				atlas.close();
+			}
+		}
+		_atlases.clear();
+	}
+
+	private final static String toKey(LFont font) {
+		return font.getFontName() + "_" + font.getStyle() + "_" + font.getSize();
+	}
+
+	/**
+	 * 单个字符的尺寸与所在图集页中的位置
+	 */
+	public final static class Glyph {
+
+		public final char ch;
+
+		public final int width;
+
+		public final int height;
+
+		int page = -1;
+
+		int x;
+
+		int y;
+
+		Glyph(char ch, int width, int height) {
+			this.ch = ch;
+			this.width = width;
+			this.height = height;
+		}
+
+		public int getPage() {
+			return page;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public boolean isResident() {
+			return page != -1;
+		}
+	}
+
+	/**
+	 * 图集页,以多层货架方式分配空间:每层高度固定,从左向右排列
+	 */
+	private final static class Page {
+
+		final int index;
+
+		final Canvas canvas;
+
+		final TArray<Glyph> glyphs = new TArray<Glyph>();
+
+		int[] shelfY = new int[8];
+
+		int[] shelfHeight = new int[8];
+
+		int[] shelfX = new int[8];
+
+		int shelfCount;
+
+		int nextY;
+
+		int generation;
+
+		long lastUse;
+
+		boolean dirty;
+
+		LTexture texture;
+
+		Page(int index, Canvas canvas) {
+			this.index = index;
+			this.canvas = canvas;
+		}
+
+		boolean allocate(Glyph g, int w, int h, int pageWidth, int pageHeight) {
+			int best = -1;
+			for (int i = 0; i < shelfCount; i++) {
+				final int sh = shelfHeight[i];
+				// 只使用高度相近的层,避免矮字形占用高层造成浪费
+				if (sh >= h && sh - h <= (h >> 2) + 2 && shelfX[i] + w <= pageWidth) {
+					if (best == -1 || sh < shelfHeight[best]) {
+						best = i;
+					}
+				}
+			}
+			if (best == -1) {
+				if (nextY + h > pageHeight || w > pageWidth) {
+					return false;
+				}
+				if (shelfCount == shelfY.length) {
+					final int size = shelfCount * 2;
+					shelfY = copyOf(shelfY, size);
+					shelfHeight = copyOf(shelfHeight, size);
+					shelfX = copyOf(shelfX, size);
+				}
+				best = shelfCount++;
+				shelfY[best] = nextY;
+				shelfHeight[best] = h;
+				shelfX[best] = 0;
+				nextY += h;
+			}
+			g.page = index;
+			g.x = shelfX[best];
+			g.y = shelfY[best];
+			shelfX[best] += w;
+			glyphs.add(g);
+			return true;
+		}
+
+		void reset() {
+			for (int i = 0; i < glyphs.size; i++) {
+				glyphs.get(i).page = -1;
+			}
+			glyphs.clear();
+			shelfCount = 0;
+			nextY = 0;
+			generation++;
+			canvas.clear();
+			dirty = true;
+		}
+
+		private static int[] copyOf(int[] src, int size) {
+			int[] dst = new int[size];
+			System.arraycopy(src, 0, dst, 0, src.length);
+			return dst;
+		}
+	}
+
+	private final String _key;
+
+	private final LFont _font;
+
+	private final int _pageWidth;
+
+	private final int _pageHeight;
+
+	private final int _maxPages;
+
+	private final IntMap<Glyph> _glyphs = new IntMap<Glyph>(256);
+
+	private final TArray<Page> _pages = new TArray<Page>();
+
+	private final boolean _clipFont;
+
+	private int _refCount;
+
+	private long _clock;
+
+	private long _stamp;
+
+	private int _maxGlyphHeight;
+
+	private int _dirtyCount;
+
+	private int _glyphHits, _glyphMisses, _pageEvictions, _uploads;
+
+	private boolean _closed;
+
+	private LSTRAtlas(String key, LFont font, int pageWidth, int pageHeight, int maxPages) {
+		this._key = key;
+		this._font = font;
+		this._pageWidth = MathUtils.max(pageWidth, font.getSize() * 2);
+		this._pageHeight = MathUtils.max(pageHeight, font.getSize() * 2);
+		this._maxPages = MathUtils.max(1, maxPages);
+		this._clipFont = LSystem.isTrueFontClip();
+		this._maxGlyphHeight = font.getHeight();
+	}
+
+	/**
+	 * 获得字符尺寸(只测量,不会渲染到图集)
+	 *
+	 * @param ch
+	 * @return
+	 */
+	public synchronized Glyph getGlyph(char ch) {
+		Glyph g = _glyphs.get(ch);
+		if (g == null) {
+			g = measure(ch);
+			_glyphs.put(ch, g);
+		}
+		return g;
+	}
+
+	private Glyph measure(char ch) {
+		final TextLayout layout = _font.getLayoutText(String.valueOf(ch));
+		int charwidth = layout.charWidth(ch);
+		if (charwidth <= 0) {
+			charwidth = 1;
+		}
+		int charheight = layout.getHeight();
+		if (charheight <= 0) {
+			charheight = _font.getSize();
+		}
+		if (_clipFont) {
+			if (StringUtils.isAlphabetLower(ch)) {
+				if (charwidth % 2 != 0) {
+					charwidth += 1;
+				}
+				if (charheight % 2 != 0) {
+					charheight += 1;
+				}
+			}
+		} else {
+			if (ch == 'i' && charheight > 24) {
+				charheight -= 4;
+			}
+		}
+		if (charheight > _maxGlyphHeight) {
+			_maxGlyphHeight = charheight;
+		}
+		return new Glyph(ch, charwidth, charheight);
+	}
+
+	/**
+	 * 开始一次新的绘制,之后载入的字形所在页在本次绘制结束前不会被回收(页数不足时除外)
+	 */
+	public synchronized void mark() {
+		_stamp = ++_clock;
+	}
+
+	/**
+	 * 获得已经渲染到图集中的字符,不存在时渲染到可用的图集页
+	 *
+	 * @param ch
+	 * @return
+	 */
+	public synchronized Glyph load(char ch) {
+		if (_closed) {
+			return null;
+		}
+		final Glyph g = getGlyph(ch);
+		if (g.page != -1) {
+			_glyphHits++;
+			_pages.get(g.page).lastUse = ++_clock;
+			return g;
+		}
+		_glyphMisses++;
+		final int w = g.width + PADDING;
+		final int h = g.height + PADDING;
+		Page page = null;
+		for (int i = _pages.size - 1; i > -1; i--) {
+			Page p = _pages.get(i);
+			if (p.allocate(g, w, h, _pageWidth, _pageHeight)) {
+				page = p;
+				break;
+			}
+		}
+		if (page == null) {
+			if (_pages.size < _maxPages) {
+				page = newPage();
+			} else {
+				page = recycle();
+			}
+			if (!page.allocate(g, w, h, _pageWidth, _pageHeight)) {
+				return null;
+			}
+		}
+		page.canvas.fillText(_font.getLayoutText(String.valueOf(ch)), g.x, g.y);
+		page.lastUse = ++_clock;
+		if (!page.dirty) {
+			page.dirty = true;
+			_dirtyCount++;
+		}
+		return g;
+	}
+
+	private Page newPage() {
+		Canvas canvas = LSystem.base().graphics().createCanvas(_pageWidth, _pageHeight);
+		canvas.setColor(LColor.white);
+		canvas.setFont(_font);
+		Page page = new Page(_pages.size, canvas);
+		_pages.add(page);
+		return page;
+	}
+
+	/**
+	 * 回收最久未使用的图集页,尽量不回收当前绘制中已经使用过的页
+	 *
+	 * @return
+	 */
+	private Page recycle() {
+		Page oldest = null;
+		Page oldestIdle = null;
+		for (int i = 0; i < _pages.size; i++) {
+			Page p = _pages.get(i);
+			if (oldest == null || p.lastUse < oldest.lastUse) {
+				oldest = p;
+			}
+			if (p.lastUse < _stamp && (oldestIdle == null || p.lastUse < oldestIdle.lastUse)) {
+				oldestIdle = p;
+			}
+		}
+		Page page = oldestIdle != null ? oldestIdle : oldest;
+		if (!page.dirty) {
+			_dirtyCount++;
+		}
+		page.reset();
+		_pageEvictions++;
+		return page;
+	}
+
+	/**
+	 * 上传所有写入过新字符的图集页,需要在渲染线程中调用
+	 */
+	public synchronized void flush() {
+		if (_dirtyCount == 0 || _closed) {
+			return;
+		}
+		for (int i = 0; i < _pages.size; i++) {
+			Page p = _pages.get(i);
+			if (p.dirty) {
+				if (p.texture == null || p.texture.isClosed()) {
+					p.texture = p.canvas.image.createTexture(LTexture.Format.LINEAR);
+				} else {
+					p.texture.update(p.canvas.image, false);
+				}
+				p.dirty = false;
+				_uploads++;
+			}
+		}
+		_dirtyCount = 0;
+	}
+
+	/**
+	 * 获得指定页的纹理(需要先调用flush)
+	 *
+	 * @param index
+	 * @return
+	 */
+	public LTexture getTexture(int index) {
+		if (index < 0 || index >= _pages.size) {
+			return null;
+		}
+		return _pages.get(index).texture;
+	}
+
+	/**
+	 * 获得指定页的版本,页被回收后版本改变,以此判断缓存的顶点数据是否依然有效
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getGeneration(int index) {
+		if (index < 0 || index >= _pages.size) {
+			return -1;
+		}
+		return _pages.get(index).generation;
+	}
+
+	public LFont getFont() {
+		return _font;
+	}
+
+	public int getPageCount() {
+		return _pages.size;
+	}
+
+	public int getMaxPages() {
+		return _maxPages;
+	}
+
+	public int getPageWidth() {
+		return _pageWidth;
+	}
+
+	public int getPageHeight() {
+		return _pageHeight;
+	}
+
+	public int getMaxGlyphHeight() {
+		return _maxGlyphHeight;
+	}
+
+	public int getGlyphHits() {
+		return _glyphHits;
+	}
+
+	public int getGlyphMisses() {
+		return _glyphMisses;
+	}
+
+	public int getPageEvictions() {
+		return _pageEvictions;
+	}
+
+	public int getUploads() {
+		return _uploads;
+	}
+
+	public void resetStats() {
+		_glyphHits = _glyphMisses = _pageEvictions = _uploads = 0;
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (_closed) {
+			return;
+		}
+		for (int i = 0; i < _pages.size; i++) {
+			Page p = _pages.get(i);
+			if (p.texture != null) {
+				p.texture.close(true);
+				p.texture = null;
+			}
+			p.canvas.close();
+		}
+		_pages.clear();
+		_glyphs.clear();
+		_dirtyCount = 0;
+		_closed = true;
+	}
+
+}
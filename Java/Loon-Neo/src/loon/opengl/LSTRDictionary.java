@@ -306,7 +306,10 @@ public final class LSTRDictionary implements LRelease {
 			return _lastDict = cacheDict;
 		}
 		if (cacheList.size() > CACHE_SIZE) {
-			clearStringLazy();
+			// 只清除字符串与字体的对应关系,字体本身由图集与排版缓存按LRU管理,不整体关闭
+			synchronized (cacheList) {
+				cacheList.clear();
+			}
 		}
 		// 查询字体缓存
 		LFont cFont = searchCacheFont(message);
@@ -334,11 +337,11 @@ public final class LSTRDictionary implements LRelease {
 					}
 				}
 				int newSize = charas.size;
-				// 如果旧有大小，不等于新的纹理字符大小，重新扩展LSTRFont纹理字符
+				// 如果旧有大小，不等于新的纹理字符大小，扩展LSTRFont字符(字符在绘制时才载入图集,不必重建字体)
 				if (oldSize != newSize) {
-					if (pDict.font != null) {
-						pDict.font.close();
-						pDict.font = null;
+					if (pDict.font != null && !pDict.font.isClosed()) {
+						pDict.font.addChars(message);
+						return (_lastDict = pDict);
 					}
 					if (tmpBuffer == null) {
 						tmpBuffer = new StrBuilder(newSize);
@@ -25,25 +25,27 @@ import loon.LSystem;
 import loon.LTexture;
 import loon.LTextureBatch;
 import loon.LTextureBatch.Cache;
-import loon.canvas.Canvas;
 import loon.canvas.LColor;
-import loon.event.Updateable;
 import loon.font.IFont;
 import loon.font.LFont;
 import loon.font.TextLayout;
 import loon.geom.Affine2f;
 import loon.geom.PointI;
-import loon.geom.RectF;
+import loon.opengl.LSTRAtlas.Glyph;
 import loon.utils.CharArray;
+import loon.utils.FloatArray;
 import loon.utils.GLUtils;
-import loon.utils.IntMap;
-import loon.utils.LIterator;
 import loon.utils.MathUtils;
-import loon.utils.OrderedSet;
-import loon.utils.StrBuilder;
+import loon.utils.ObjectMap;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
 
+/**
+ * 以系统字体渲染文字的IFont实现.
+ *
+ * 字符不再预先全部渲染到一张纹理,而是在首次绘制时载入同字体共享的LSTRAtlas动态图集;
+ * 已经排版过的字符串顶点数据保存在有上限的LRU缓存中,超出上限时每次只淘汰最久未使用的一项.
+ */
 public class LSTRFont implements IFont, LRelease {
 
 	/*
@@ -64,222 +66,101 @@ public class LSTRFont implements IFont, LRelease {
 		return new LSTRFont(LFont.getFont(size), LSTRDictionary.getAddedString(), true);
 	}
 
-	private class CharRect extends RectF {
+	/**
+	 * 默认缓存的字符串排版数量
+	 */
+	public final static int DEFAULT_LAYOUT_CACHE_SIZE = LSystem.DEFAULT_MAX_CACHE_SIZE * 4;
 
-		public Character name;
+	/**
+	 * 一个字符串排版后的顶点缓存(每个用到的图集页一份),同时是LRU链表的节点
+	 */
+	private final static class Layout {
 
-		public LColor color;
+		String text;
 
-	}
+		Layout prev, next;
 
-	private static class IntObject {
+		int count;
 
-		public int width;
+		int[] pages;
 
-		public int height;
+		int[] generations;
 
-		public int storedX;
+		Cache[] caches;
 
-		public int storedY;
+		Layout(String text, int size) {
+			this.text = text;
+			this.pages = new int[size];
+			this.generations = new int[size];
+			this.caches = new Cache[size];
+		}
+
+		void add(int page, int generation, Cache cache) {
+			pages[count] = page;
+			generations[count] = generation;
+			caches[count] = cache;
+			count++;
+		}
+
+		boolean isValid(LSTRAtlas atlas) {
+			for (int i = 0; i < count; i++) {
+				if (atlas.getGeneration(pages[i]) != generations[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
 
+		void close() {
+			for (int i = 0; i < count; i++) {
+				if (caches[i] != null) {
+					caches[i].close();
+					caches[i] = null;
+				}
+			}
+			count = 0;
+		}
 	}
 
-	private static class UpdateStringFont implements Updateable {
+	/**
+	 * startChar与stopChar之间每个字符占用的数据:字符,x,y,是否有颜色,r,g,b,a
+	 */
+	private final static int CHAR_STRIDE = 8;
 
-		private LSTRFont strfont;
+	private final PointI _offset = new PointI();
 
-		public UpdateStringFont(LSTRFont strf) {
-			this.strfont = strf;
-		}
+	private final CharArray _chars;
 
-		@Override
-		public void action(Object a) {
-			if (strfont._isClose) {
-				return;
-			}
-			strfont.fontSize = strfont.font.getSize();
-			strfont.ascent = strfont.font.getAscent();
-			if (strfont.additionalChars != null && strfont.additionalChars.length > strfont.totalCharSet) {
-				strfont.textureWidth *= 2;
-			}
-			if (strfont.textureWidth > strfont._maxTextureWidth || strfont.textureHeight > strfont._maxTextureHeight) {
-				strfont._outBounds = true;
-			}
-			Canvas canvas = LSystem.base().graphics().createCanvas(strfont.textureWidth, strfont.textureHeight);
-			canvas.setColor(LColor.white);
-			canvas.setFont(strfont.font);
-			int rowHeight = 0;
-			int positionX = 0;
-			int positionY = 0;
-			int customCharsLength = (strfont.additionalChars != null) ? strfont.additionalChars.length : 0;
-			strfont.totalCharSet = customCharsLength == 0 ? strfont.totalCharSet : 0;
-			StrBuilder sbr = new StrBuilder(strfont.totalCharSet);
-			final boolean clipFont = LSystem.isTrueFontClip();
-			final OrderedSet<Character> outchached = new OrderedSet<Character>();
-			// 本地字体怎么都不如ttf或者fnt字体清晰准确,差异太大，只能尽量保证显示效果……
-			for (int i = 0, size = strfont.totalCharSet + customCharsLength; i < size; i++) {
-
-				boolean outchar = false;
-
-				char ch = (i < strfont.totalCharSet) ? (char) i : strfont.additionalChars[i - strfont.totalCharSet];
-
-				TextLayout layout = strfont.font.getLayoutText(String.valueOf(ch));
-
-				int charwidth = layout.charWidth(ch);
-
-				if (charwidth <= 0) {
-					charwidth = 1;
-				}
+	private final int _maxTextureWidth;
 
-				int charheight = (int) layout.getHeight();
-				if (charheight <= 0) {
-					charheight = strfont.fontSize;
-				}
-				IntObject newIntObject = new IntObject();
+	private final int _maxTextureHeight;
 
-				if (clipFont) {
-					if (StringUtils.isAlphabetLower(ch)) {
-						if (charwidth % 2 != 0) {
-							charwidth += 1;
-						}
-						if (charheight % 2 != 0) {
-							charheight += 1;
-						}
-					}
-				} else {
-					if (ch == 'i' && charheight > 24) {
-						charheight -= 4;
-					}
-				}
+	private final ObjectMap<String, Layout> _layouts = new ObjectMap<String, Layout>();
 
-				newIntObject.width = charwidth;
-				newIntObject.height = charheight;
-
-				if (clipFont) {
-					// 发现部分环境字体如果整体渲染到canvas的话，会导致纹理切的不整齐(实际上就是间距和从系统获取的不符合),
-					// 保险起见一个个字体粘贴……
-					if (positionY <= strfont.textureHeight - newIntObject.height
-							&& positionX <= strfont.textureWidth - newIntObject.width) {
-						canvas.fillText(layout, positionX, positionY);
-					} else {
-						outchached.add(ch);
-						strfont._outBounds = true;
-						outchar = true;
-					}
-					if (positionX + newIntObject.width >= strfont.textureWidth) {
-						positionX = 0;
-						positionY += rowHeight;
-						rowHeight = 0;
-					}
-				} else {
-					boolean checkplusA = positionY + newIntObject.height <= strfont.textureHeight;
-					boolean checkplusB = positionX + newIntObject.width <= strfont.textureWidth;
-
-					// 一次渲染一整行本地字体到纹理，这样对系统开销最小，不过某些平台切的不整齐(实际上就是间距和从系统获取的不符合)
-					// 若显示有问题，请设定clipFont = true
-					if (!checkplusB) {
-						layout = strfont.font.getLayoutText(sbr.toString());
-						if (checkplusA) {
-							canvas.fillText(layout, 0, positionY);
-						} else {
-							outchached.add(ch);
-							strfont._outBounds = true;
-							outchar = true;
-							if (sbr.length() > 0) {
-								for (int n = 0; n < sbr.length(); n++) {
-									char temp = sbr.charAt(n);
-									strfont._chars.removeValue(temp);
-									outchached.add(temp);
-								}
-							}
-						}
-						sbr.delete(0, sbr.length());
-						positionX = 0;
-						positionY += rowHeight;
-						rowHeight = 0;
-					}
-					if (checkplusA) {
-						sbr.append(ch);
-					} else {
-						outchached.add(ch);
-						strfont._outBounds = true;
-						outchar = true;
-					}
-				}
+	private final TArray<LTextureBatch> _batches = new TArray<LTextureBatch>();
 
-				newIntObject.storedX = positionX;
-				newIntObject.storedY = positionY;
+	private final FloatArray _charQueue = new FloatArray(128);
 
-				if (newIntObject.height > strfont.fontHeight) {
-					strfont.fontHeight = newIntObject.height;
-				}
+	private final boolean[] _pageUsed;
 
-				if (newIntObject.height > rowHeight) {
-					rowHeight = newIntObject.height;
-				}
-				positionX += newIntObject.width;
-				if (i < strfont.totalCharSet) {
-					strfont.charArray[i] = newIntObject;
-				} else {
-					strfont.customChars.put(ch, newIntObject);
-				}
+	private final boolean[] _charPageUsed;
 
-				if (!outchar) {
-					strfont._chars.add(ch);
-				}
-			}
-			if (sbr.length() > 0) {
-				TextLayout layout = strfont.font.getLayoutText(sbr.toString());
-				if (positionY <= strfont.textureHeight - strfont.fontSize) {
-					canvas.fillText(layout, 0, positionY);
-				} else {
-					for (int i = 0; i < sbr.length(); i++) {
-						outchached.add(sbr.charAt(i));
-					}
-					strfont._outBounds = true;
-				}
-				sbr = null;
-			}
-			LTextureBatch tmpbatch = strfont.fontBatch;
-			strfont.fontBatch = new LTextureBatch(strfont.texture = canvas.toTexture());
-			strfont.fontBatch.setBlendState(BlendState.AlphaBlend);
-			if (tmpbatch != null) {
-				tmpbatch.close();
-			}
-			// 若字符串超过当前纹理大小,则创建新纹理保存
-			if (strfont._outBounds) {
-				StrBuilder temp = new StrBuilder(outchached.size());
-				for (LIterator<Character> it = outchached.iterator(); it.hasNext();) {
-					temp.append(it.next());
-				}
-				strfont._childFont = new LSTRFont(strfont.font, temp.toString(), strfont.isasyn, strfont.textureWidth,
-						strfont.textureHeight, strfont._maxTextureWidth, strfont._maxTextureHeight);
-			}
-			if (positionX > strfont.textureWidth || positionY > strfont.textureHeight) {
-				strfont._outBounds = true;
-			}
-			strfont._initChars = true;
-			strfont.isDrawing = false;
-		}
+	private final int[] _charCacheGenerations;
 
-	}
+	private final LSTRAtlas _atlas;
 
-	private final PointI _offset = new PointI();
+	private Layout _head, _tail;
 
-	private final CharArray _chars;
+	private int _layoutCacheSize = DEFAULT_LAYOUT_CACHE_SIZE;
 
-	private final int _maxTextureWidth;
+	private int _layoutHits, _layoutMisses, _layoutEvictions;
 
-	private final int _maxTextureHeight;
+	private boolean _charCached = false;
 
 	private boolean _isClose = false;
 
-	private boolean _outBounds = false;
-
 	private boolean _displayLazy = false;
 
-	private LSTRFont _childFont = null;
-
 	private int _initDraw = -1;
 
 	private int _drawLimit = 0;
@@ -292,62 +173,20 @@ public class LSTRFont implements IFont, LRelease {
 
 	private char newLineFlag = '\n';
 
-	private LTexture texture;
-
-	private boolean useCache, isDrawing, isasyn;
+	private boolean useCache, isasyn;
 
 	private float offsetX = 1, offsetY = 1;
 
-	private IntMap<Cache> displays;
-
-	private int totalCharSet = 256;
-
-	private IntMap<IntObject> customChars = new IntMap<IntObject>();
-
-	private IntObject[] charArray = new IntObject[totalCharSet];
-
 	private LColor[] colors = null;
 
 	private String text;
 
 	private LFont font;
 
-	private IntObject intObject;
-
-	private Cache display;
-
 	private float ascent;
 
-	private int charCurrent;
-
-	private int totalWidth = 0, totalHeight = 0;
-
 	private int fontSize = 0;
 
-	private int fontHeight = 0;
-
-	private LTextureBatch fontBatch;
-
-	private boolean _initChars = false;
-
-	private char[] additionalChars = null;
-
-	private TArray<CharRect> _childChars;
-
-	private void putChildChars(Character ch, float x, float y, float w, float h, LColor c) {
-		if (_childChars == null) {
-			_childChars = new TArray<CharRect>();
-		}
-		CharRect obj = new CharRect();
-		obj.name = ch;
-		obj.x = x;
-		obj.y = y;
-		obj.width = w;
-		obj.height = h;
-		obj.color = c;
-		_childChars.add(obj);
-	}
-
 	public LSTRFont(LFont font) {
 		this(font, (char[]) null, true);
 	}
@@ -386,63 +225,70 @@ public class LSTRFont implements IFont, LRelease {
 
 	public LSTRFont(LFont font, char[] charMessage, boolean asyn, int tw, int th, int maxWidth, int maxHeight) {
 		CharSequence chs = " " + StringUtils.unificationChars(charMessage);
+		this.text = chs.toString();
 		this._chars = new CharArray(chs.length());
+		for (int i = 0; i < chs.length(); i++) {
+			_chars.add(chs.charAt(i));
+		}
 		this._maxTextureWidth = maxWidth;
 		this._maxTextureHeight = maxHeight;
 		this._displayLazy = true;
 		this.textureWidth = tw;
 		this.textureHeight = th;
-		this.displays = new IntMap<Cache>(totalCharSet);
+		if (_chars.size() > 256) {
+			textureWidth = MathUtils.min(textureWidth * 2, MathUtils.max(tw, maxWidth));
+		}
 		this.useCache = true;
 		this.font = font;
 		this.isasyn = asyn;
 		this.fontSize = font.getSize();
-		this.fontHeight = font.getHeight();
 		this.ascent = font.getAscent();
-		int customCharsLength = (additionalChars != null) ? additionalChars.length : 0;
-		this.totalCharSet = customCharsLength == 0 ? totalCharSet : 0;
-		if (chs != null && chs.length() > 0) {
-			StrBuilder tmp = new StrBuilder(chs);
-			this.text = tmp.toString();
-			this.additionalChars = text.toCharArray();
-			if (additionalChars != null && additionalChars.length > totalCharSet) {
-				textureWidth *= 2;
-			}
-			this.make(asyn);
-		}
-		if (StringUtils.isEmpty(text.trim())) {
-			_isClose = true;
-		}
+		// 图集页数上限,默认等于旧有单张最大纹理可以容纳的页数
+		final int pagesX = MathUtils.max(maxWidth, textureWidth) / textureWidth;
+		final int pagesY = MathUtils.max(maxHeight, textureHeight) / textureHeight;
+		final int maxPages = MathUtils.max(4, pagesX * pagesY);
+		this._atlas = LSTRAtlas.acquire(font, textureWidth, textureHeight, maxPages);
+		this._pageUsed = new boolean[_atlas.getMaxPages()];
+		this._charPageUsed = new boolean[_atlas.getMaxPages()];
+		this._charCacheGenerations = new int[_atlas.getMaxPages()];
 		this._drawLimit = 0;
 	}
 
-	private void make() {
-		make(isasyn);
+	/**
+	 * 追加可用字符(字符在首次绘制时才会渲染到图集中,所以不会重建纹理)
+	 *
+	 * @param chars
+	 * @return
+	 */
+	public LSTRFont addChars(CharSequence chars) {
+		if (chars == null) {
+			return this;
+		}
+		for (int i = 0, size = chars.length(); i < size; i++) {
+			char ch = chars.charAt(i);
+			if (!_chars.contains(ch)) {
+				_chars.add(ch);
+			}
+		}
+		text = _chars.getString();
+		return this;
 	}
 
-	private synchronized void make(boolean asyn) {
+	/**
+	 * 获得图集第一页的纹理(图集为多页时,其它页请通过getAtlas获得)
+	 *
+	 * @return
+	 */
+	public LTexture getTexture() {
 		if (_isClose) {
-			return;
-		}
-		if (_initChars) {
-			return;
-		}
-		if (isDrawing) {
-			return;
-		}
-		isDrawing = true;
-		//updateX = 0;
-		//updateY = LSystem.isHTML5() ? 1f : 0;
-		Updateable update = new UpdateStringFont(this);
-		if (asyn) {
-			LSystem.unload(update);
-		} else {
-			update.action(null);
+			return null;
 		}
+		_atlas.flush();
+		return _atlas.getTexture(0);
 	}
 
-	public LTexture getTexture() {
-		return texture;
+	public LSTRAtlas getAtlas() {
+		return _atlas;
 	}
 
 	@Override
@@ -479,212 +325,227 @@ public class LSTRFont implements IFont, LRelease {
 		if (StringUtils.isEmpty(chars)) {
 			return false;
 		}
-		make();
-		if (processing()) {
-			return false;
-		}
 		if (_displayLazy) {
 			if (_initDraw < _drawLimit) {
 				_initDraw++;
 				return false;
 			}
 		}
-		if (texture.isClosed()) {
-			return false;
-		}
 		return true;
 	}
 
+	/**
+	 * 载入字符串中的全部字符到图集并上传有变化的图集页,返回用到的页是否标记在_pageUsed中
+	 *
+	 * @param chars
+	 * @param startIndex
+	 * @param endIndex
+	 * @return
+	 */
+	private boolean loadGlyphs(String chars, int startIndex, int endIndex) {
+		clearPageUsed();
+		_atlas.mark();
+		boolean loaded = false;
+		for (int i = startIndex; i < endIndex; i++) {
+			char ch = chars.charAt(i);
+			if (ch == newLineFlag) {
+				continue;
+			}
+			Glyph g = _atlas.load(ch);
+			if (g != null) {
+				loaded = true;
+			}
+		}
+		_atlas.flush();
+		// 载入过程中可能回收了图集页,所以统一在载入完成后记录字符所在的页
+		for (int i = startIndex; i < endIndex; i++) {
+			char ch = chars.charAt(i);
+			if (ch == newLineFlag) {
+				continue;
+			}
+			Glyph g = _atlas.getGlyph(ch);
+			if (g.isResident()) {
+				_pageUsed[g.getPage()] = true;
+			}
+		}
+		return loaded;
+	}
+
+	private void clearPageUsed() {
+		for (int i = 0; i < _pageUsed.length; i++) {
+			_pageUsed[i] = false;
+		}
+	}
+
+	private LTextureBatch getBatch(int page) {
+		LTexture texture = _atlas.getTexture(page);
+		if (texture == null) {
+			return null;
+		}
+		while (_batches.size <= page) {
+			_batches.add(null);
+		}
+		LTextureBatch batch = _batches.get(page);
+		if (batch == null || batch.isClosed() || batch.toTexture() != texture) {
+			if (batch != null) {
+				batch.close();
+			}
+			batch = new LTextureBatch(texture);
+			batch.setBlendState(BlendState.AlphaBlend);
+			_batches.set(page, batch);
+		}
+		return batch;
+	}
+
+	private int countPageUsed() {
+		int count = 0;
+		for (int i = 0; i < _pageUsed.length; i++) {
+			if (_pageUsed[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	private void drawString(float mx, float my, float sx, float sy, float ax, float ay, float rotation, String chars,
 			LColor c, int startIndex, int endIndex) {
 		if (!cehckRunning(chars)) {
 			return;
 		}
-		if (displays.size > LSystem.DEFAULT_MAX_CACHE_SIZE) {
-			synchronized (displays) {
-				for (Cache cache : displays.values()) {
-					if (cache != null) {
-						cache.close();
-						cache = null;
-					}
-				}
-			}
-			displays.clear();
-		}
-
 		final float x = mx + _offset.x;
 		final float y = my + _offset.y;
-		this.intObject = null;
-		this.charCurrent = 0;
-		this.totalWidth = 0;
-		this.totalHeight = 0;
+		if (c == null) {
+			c = LColor.white;
+		}
 		if (rotation != 0 && (ax == 0 && ay == 0)) {
 			TextLayout layout = font.getLayoutText(chars);
 			ax = layout.bounds.width / 2;
 			ay = layout.bounds.height;
 		}
 		if (useCache) {
-			display = displays.get(chars);
-			if (display == null) {
-				clearChildString();
-				fontBatch.begin();
-				float old = fontBatch.getFloatColor();
-				fontBatch.setColor(c);
-				for (int i = startIndex; i < endIndex; i++) {
-					char ch = chars.charAt(i);
-					charCurrent = ch;
-					if (charCurrent < totalCharSet) {
-						intObject = charArray[charCurrent];
-
-					} else {
-						intObject = customChars.get(charCurrent);
-					}
-					if (charCurrent == newLineFlag) {
-						totalHeight += fontSize;
-						totalWidth = 0;
-					}
-					if (intObject != null) {
-						if (!checkOutBounds() || containsChar(ch)) {
-							fontBatch.drawQuad(totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-									(totalHeight + intObject.height) - offsetY, intObject.storedX, intObject.storedY,
-									intObject.storedX + intObject.width - offsetX,
-									intObject.storedY + intObject.height - offsetY);
-						} else if (checkOutBounds()) {
-							putChildChars(ch, totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-									(totalHeight + intObject.height) - offsetY, null);
-						}
-						totalWidth += intObject.width;
+			Layout display = _layouts.get(chars);
+			if (display != null && display.isValid(_atlas)) {
+				_layoutHits++;
+				moveToHead(display);
+				_atlas.flush();
+				for (int i = 0; i < display.count; i++) {
+					LTextureBatch batch = getBatch(display.pages[i]);
+					if (batch != null) {
+						batch.postCache(display.caches[i], c, x, y, sx, sy, ax, ay, rotation);
 					}
 				}
-				fontBatch.setBlendState(BlendState.AlphaBlend);
-				fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
-				fontBatch.setColor(old);
-				displays.put(chars, display = fontBatch.newCache());
-			} else if (display != null && fontBatch != null && fontBatch.toTexture() != null) {
-				fontBatch.postCache(display, c, x, y, sx, sy, ax, ay, rotation);
+				return;
 			}
-		} else {
-			clearChildString();
-			fontBatch.begin();
-			float old = fontBatch.getFloatColor();
-			fontBatch.setColor(c);
-
+			_layoutMisses++;
+			if (display != null) {
+				removeLayout(display);
+			}
+		}
+		if (!loadGlyphs(chars, startIndex, endIndex)) {
+			return;
+		}
+		final Layout display = useCache ? new Layout(chars, countPageUsed()) : null;
+		for (int page = 0; page < _pageUsed.length; page++) {
+			if (!_pageUsed[page]) {
+				continue;
+			}
+			LTextureBatch batch = getBatch(page);
+			if (batch == null) {
+				continue;
+			}
+			batch.begin();
+			float old = batch.getFloatColor();
+			batch.setColor(c);
+			int totalWidth = 0;
+			int totalHeight = 0;
 			for (int i = startIndex; i < endIndex; i++) {
 				char ch = chars.charAt(i);
-				charCurrent = ch;
-				if (charCurrent < totalCharSet) {
-					intObject = charArray[charCurrent];
-				} else {
-					intObject = customChars.get(charCurrent);
-				}
-				if (charCurrent == newLineFlag) {
+				if (ch == newLineFlag) {
 					totalHeight += fontSize;
 					totalWidth = 0;
+					continue;
 				}
-				if (intObject != null) {
-					if (!checkOutBounds() || containsChar(ch)) {
-						fontBatch.drawQuad(totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-								(totalHeight + intObject.height) - offsetY, intObject.storedX, intObject.storedY,
-								intObject.storedX + intObject.width - offsetX,
-								intObject.storedY + intObject.height - offsetY);
-					} else if (checkOutBounds()) {
-						putChildChars(ch, totalWidth, totalHeight, (totalWidth + intObject.width) - offsetX,
-								(totalHeight + intObject.height) - offsetY, null);
-					}
-					totalWidth += intObject.width;
+				Glyph g = _atlas.getGlyph(ch);
+				if (g.getPage() == page) {
+					batch.drawQuad(totalWidth, totalHeight, (totalWidth + g.width) - offsetX,
+							(totalHeight + g.height) - offsetY, g.getX(), g.getY(), g.getX() + g.width - offsetX,
+							g.getY() + g.height - offsetY);
 				}
+				totalWidth += g.width;
+			}
+			batch.setBlendState(BlendState.AlphaBlend);
+			batch.commit(x, y, sx, sy, ax, ay, rotation);
+			batch.setColor(old);
+			if (display != null) {
+				display.add(page, _atlas.getGeneration(page), batch.newCache());
 			}
-			fontBatch.setColor(old);
-			fontBatch.setBlendState(BlendState.AlphaBlend);
-			fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
 		}
-		if (checkOutBounds() && _childChars != null) {
-			_childFont._drawChildString(_childChars, mx, my, sx, sy, ax, ay, rotation, chars, c, startIndex, endIndex);
+		if (display != null) {
+			putLayout(display);
 		}
 	}
 
-	private void _drawChildString(TArray<CharRect> child, float mx, float my, float sx, float sy, float ax, float ay,
-			float rotation, String chars, LColor c, int startIndex, int endIndex) {
-		if (child == null) {
-			return;
+	private void putLayout(Layout layout) {
+		_layouts.put(layout.text, layout);
+		layout.prev = null;
+		layout.next = _head;
+		if (_head != null) {
+			_head.prev = layout;
 		}
-		if (!cehckRunning(chars)) {
+		_head = layout;
+		if (_tail == null) {
+			_tail = layout;
+		}
+		// 超出上限时只淘汰最久未使用的排版,不整体清空
+		while (_layouts.size > _layoutCacheSize && _tail != null) {
+			removeLayout(_tail);
+			_layoutEvictions++;
+		}
+	}
+
+	private void moveToHead(Layout layout) {
+		if (layout == _head) {
 			return;
 		}
-		if (displays.size > LSystem.DEFAULT_MAX_CACHE_SIZE) {
-			synchronized (displays) {
-				for (Cache cache : displays.values()) {
-					if (cache != null) {
-						cache.close();
-						cache = null;
-					}
-				}
-			}
-			displays.clear();
+		unlink(layout);
+		layout.next = _head;
+		if (_head != null) {
+			_head.prev = layout;
 		}
-		final float x = mx + _offset.x;
-		final float y = my + _offset.y;
-		this.intObject = null;
-		this.charCurrent = 0;
-		this.totalWidth = 0;
-		this.totalHeight = 0;
-		if (rotation != 0 && (ax == 0 && ay == 0)) {
-			TextLayout layout = font.getLayoutText(chars);
-			ax = layout.bounds.width / 2;
-			ay = layout.bounds.height;
+		_head = layout;
+		if (_tail == null) {
+			_tail = layout;
 		}
-		if (useCache) {
-			display = displays.get(chars);
-			if (display == null) {
-				fontBatch.begin();
-				float old = fontBatch.getFloatColor();
-				fontBatch.setColor(c);
-				for (int i = 0; i < child.size; i++) {
-					CharRect rect = child.get(i);
-					if (rect != null) {
-						char ch = rect.name;
-						intObject = customChars.get(ch);
-						if (intObject != null && containsChar(ch)) {
-							fontBatch.drawQuad(rect.x, rect.y, rect.width, rect.height, intObject.storedX,
-									intObject.storedY, intObject.storedX + intObject.width - offsetX,
-									intObject.storedY + intObject.height - offsetY);
-						} else if (checkOutBounds()) {
-							putChildChars(ch, rect.x, rect.y, rect.width, rect.height, null);
-						}
-					}
-				}
-				fontBatch.setBlendState(BlendState.AlphaBlend);
-				fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
-				fontBatch.setColor(old);
-				displays.put(chars, display = fontBatch.newCache());
-			} else if (display != null && fontBatch != null && fontBatch.toTexture() != null) {
-				fontBatch.postCache(display, c, x, y, sx, sy, ax, ay, rotation);
-			}
+	}
+
+	private void unlink(Layout layout) {
+		if (layout.prev != null) {
+			layout.prev.next = layout.next;
 		} else {
-			fontBatch.begin();
-			float old = fontBatch.getFloatColor();
-			fontBatch.setColor(c);
-			for (int i = 0; i < child.size; i++) {
-				CharRect rect = child.get(i);
-				if (rect != null) {
-					char ch = rect.name;
-					intObject = customChars.get(ch);
-					if (intObject != null && containsChar(ch)) {
-						fontBatch.drawQuad(rect.x, rect.y, rect.width, rect.height, intObject.storedX,
-								intObject.storedY, intObject.storedX + intObject.width - offsetX,
-								intObject.storedY + intObject.height - offsetY);
-					} else if (checkOutBounds()) {
-						putChildChars(ch, rect.x, rect.y, rect.width, rect.height, null);
-					}
-				}
-			}
-			fontBatch.setColor(old);
-			fontBatch.setBlendState(BlendState.AlphaBlend);
-			fontBatch.commit(x, y, sx, sy, ax, ay, rotation);
+			_head = layout.next;
+		}
+		if (layout.next != null) {
+			layout.next.prev = layout.prev;
+		} else {
+			_tail = layout.prev;
 		}
-		if (checkOutBounds() && _childChars != null) {
-			_childFont._drawChildString(_childChars, mx, my, sx, sy, ax, ay, rotation, chars, c, startIndex, endIndex);
+		layout.prev = layout.next = null;
+	}
+
+	private void removeLayout(Layout layout) {
+		unlink(layout);
+		_layouts.remove(layout.text);
+		layout.close();
+	}
+
+	/**
+	 * 清空字符串排版缓存
+	 */
+	public void clearLayoutCache() {
+		while (_tail != null) {
+			removeLayout(_tail);
 		}
+		_layouts.clear();
 	}
 
 	@Override
@@ -724,14 +585,14 @@ public class LSTRFont implements IFont, LRelease {
 		if (!cehckRunning(chars)) {
 			return;
 		}
+		if (!loadGlyphs(chars, startIndex, endIndex)) {
+			return;
+		}
 		final float x = mx + _offset.x;
 		final float y = my + _offset.y;
-		this.intObject = null;
-		this.charCurrent = 0;
-		this.totalWidth = 0;
-		this.totalHeight = 0;
+		int totalWidth = 0;
+		int totalHeight = 0;
 		int old = gl.color();
-		boolean childDraw = false;
 		final boolean anchor = ax != 0 || ay != 0;
 		final boolean scale = sx != 1f || sy != 1f;
 		final boolean angle = rotation != 0;
@@ -763,29 +624,21 @@ public class LSTRFont implements IFont, LRelease {
 			}
 			for (int i = startIndex; i < endIndex; i++) {
 				char ch = chars.charAt(i);
-				charCurrent = ch;
-				if (charCurrent < totalCharSet) {
-					intObject = charArray[charCurrent];
-				} else {
-					intObject = customChars.get(charCurrent);
-				}
-				if (charCurrent == newLineFlag) {
+				if (ch == newLineFlag) {
 					totalHeight += fontSize;
 					totalWidth = 0;
+					continue;
 				}
-				if (intObject != null) {
-					if (!checkOutBounds() || containsChar(ch)) {
-						gl.draw(texture, x + totalWidth, y + totalHeight, intObject.width * sx, intObject.height * sy,
-								StringUtils.isChinese((char) charCurrent) ? intObject.storedX - updateX
-										: intObject.storedX,
-								intObject.storedY, intObject.width, intObject.height - updateY, c);
-					} else if (checkOutBounds()) {
-						putChildChars(ch, x + totalWidth, y + totalHeight, intObject.width * sx, intObject.height * sy,
-								null);
-						childDraw = true;
+				Glyph g = _atlas.getGlyph(ch);
+				if (g.isResident()) {
+					LTexture texture = _atlas.getTexture(g.getPage());
+					if (texture != null) {
+						gl.draw(texture, x + totalWidth, y + totalHeight, g.width * sx, g.height * sy,
+								StringUtils.isChinese(ch) ? g.getX() - updateX : g.getX(), g.getY(), g.width,
+								g.height - updateY, c);
 					}
-					totalWidth += intObject.width;
 				}
+				totalWidth += g.width;
 			}
 		} finally {
 			gl.setBlendMode(blend);
@@ -794,83 +647,6 @@ public class LSTRFont implements IFont, LRelease {
 				gl.restoreTx();
 			}
 		}
-		if (childDraw && _childChars != null) {
-			_childFont._drawChildString(_childChars, gl, mx, my, sx, sy, ax, ay, rotation, chars, c, startIndex,
-					endIndex);
-			_childChars.clear();
-		}
-	}
-
-	private void _drawChildString(TArray<CharRect> child, GLEx gl, float mx, float my, float sx, float sy, float ax,
-			float ay, float rotation, String chars, LColor c, int startIndex, int endIndex) {
-		if (!cehckRunning(chars)) {
-			return;
-		}
-		final float x = mx + _offset.x;
-		final float y = my + _offset.y;
-		this.intObject = null;
-		this.charCurrent = 0;
-		this.totalWidth = 0;
-		this.totalHeight = 0;
-		int old = gl.color();
-		boolean childDraw = false;
-		final boolean anchor = ax != 0 || ay != 0;
-		final boolean scale = sx != 1f || sy != 1f;
-		final boolean angle = rotation != 0;
-		final boolean update = scale || angle || anchor;
-		final int blend = gl.getBlendMode();
-		try {
-			gl.setBlendMode(LSystem.MODE_NORMAL);
-			gl.setTint(c);
-			if (update) {
-				gl.saveTx();
-				Affine2f xf = gl.tx();
-				if (angle) {
-					float centerX = x + this.getWidth(chars) / 2;
-					float centerY = y + this.getHeight(chars) / 2;
-					xf.translate(centerX, centerY);
-					xf.preRotate(rotation);
-					xf.translate(-centerX, -centerY);
-				}
-				if (scale) {
-					float centerX = x + this.getWidth(chars) / 2;
-					float centerY = y + this.getHeight(chars) / 2;
-					xf.translate(centerX, centerY);
-					xf.preScale(sx, sy);
-					xf.translate(-centerX, -centerY);
-				}
-				if (anchor) {
-					xf.translate(ax, ay);
-				}
-			}
-			for (int i = 0; i < child.size; i++) {
-				CharRect rect = child.get(i);
-				if (rect != null) {
-					char ch = rect.name;
-					intObject = customChars.get(ch);
-					if (intObject != null && containsChar(ch)) {
-						gl.draw(texture, rect.x, rect.y, rect.width, rect.height,
-								StringUtils.isChinese((char) charCurrent) ? intObject.storedX - updateX
-										: intObject.storedX,
-								intObject.storedY, intObject.width, intObject.height - updateY, c);
-					} else if (checkOutBounds()) {
-						putChildChars(ch, rect.x, rect.y, rect.width, rect.height, null);
-						childDraw = true;
-					}
-				}
-			}
-		} finally {
-			gl.setBlendMode(blend);
-			gl.setTint(old);
-			if (update) {
-				gl.restoreTx();
-			}
-		}
-		if (childDraw && _childChars != null) {
-			_childFont._drawChildString(_childChars, gl, mx, my, sx, sy, ax, ay, rotation, chars, c, startIndex,
-					endIndex);
-			_childChars.clear();
-		}
 	}
 
 	public String getChars() {
@@ -889,59 +665,42 @@ public class LSTRFont implements IFont, LRelease {
 		if (_isClose) {
 			return false;
 		}
-		make();
-		if (processing()) {
-			return false;
-		}
 		if (_displayLazy) {
 			if (_initDraw < _drawLimit) {
 				_initDraw++;
 				return false;
 			}
 		}
-		if (texture.isClosed()) {
-			return false;
-		}
 		return true;
 	}
 
+	/**
+	 * 添加一个字符到startChar与stopChar之间,字符在stopChar时统一载入图集并按页提交
+	 *
+	 * @param c
+	 * @param x
+	 * @param y
+	 * @param color
+	 */
 	public void addChar(char c, float x, float y, LColor color) {
 		if (!checkCharRunning()) {
 			return;
 		}
-		if (!checkOutBounds() || containsChar(c)) {
-			this.charCurrent = c;
-			if (charCurrent < totalCharSet) {
-				intObject = charArray[charCurrent];
-			} else {
-				intObject = customChars.get(charCurrent);
-			}
-			if (intObject != null) {
-				if (color != null) {
-					setImageColor(color);
-				}
-				fontBatch.setBlendState(BlendState.AlphaBlend);
-				if (c == newLineFlag) {
-					fontBatch.draw(colors, x, y + fontSize, intObject.width - offsetX, intObject.height - offsetY,
-							intObject.storedX, intObject.storedY, intObject.storedX + intObject.width - offsetX,
-							intObject.storedY + intObject.height - offsetY);
-				} else {
-					fontBatch.draw(colors, x, y, intObject.width - offsetX, intObject.height - offsetY,
-							intObject.storedX, intObject.storedY, intObject.storedX + intObject.width - offsetX,
-							intObject.storedY + intObject.height - offsetY);
-				}
-				if (colors != null) {
-					colors = null;
-				}
-			}
-		} else if (checkOutBounds()) {
-			putChildChars(c, x, y, intObject.width, intObject.height, color);
-		}
-	}
-
-	private void clearChildString() {
-		if (checkOutBounds() && _childChars != null) {
-			_childChars.clear();
+		_charQueue.add(c);
+		_charQueue.add(x);
+		_charQueue.add(c == newLineFlag ? y + fontSize : y);
+		if (color != null) {
+			_charQueue.add(1f);
+			_charQueue.add(color.r);
+			_charQueue.add(color.g);
+			_charQueue.add(color.b);
+			_charQueue.add(color.a);
+		} else {
+			_charQueue.add(0f);
+			_charQueue.add(1f);
+			_charQueue.add(1f);
+			_charQueue.add(1f);
+			_charQueue.add(1f);
 		}
 	}
 
@@ -949,8 +708,7 @@ public class LSTRFont implements IFont, LRelease {
 		if (!checkCharRunning()) {
 			return;
 		}
-		clearChildString();
-		fontBatch.begin();
+		_charQueue.clear();
 	}
 
 	public void stopChar() {
@@ -961,34 +719,59 @@ public class LSTRFont implements IFont, LRelease {
 		if (g != null) {
 			int old = GLUtils.getBlendMode();
 			GLUtils.setBlendMode(g, LSystem.MODE_NORMAL);
-			fontBatch.end();
+			submitChars();
 			GLUtils.setBlendMode(g, old);
 		}
-		postChildString();
 	}
 
-	private void postChildString() {
-		if (checkOutBounds() && _childChars != null) {
-			int len = _childChars.size;
-			if (len > 0) {
-				_childFont.startChar();
-				for (int i = 0; i < len; i++) {
-					CharRect rect = _childChars.get(i);
-					_childFont.addChar(rect.name, rect.x, rect.y, rect.color);
+	/**
+	 * 载入队列中的字符并以每个图集页一次的方式提交
+	 */
+	private void submitChars() {
+		final float[] items = _charQueue.items;
+		final int length = _charQueue.length;
+		for (int i = 0; i < _charPageUsed.length; i++) {
+			_charPageUsed[i] = false;
+		}
+		_atlas.mark();
+		for (int i = 0; i < length; i += CHAR_STRIDE) {
+			_atlas.load((char) items[i]);
+		}
+		_atlas.flush();
+		for (int i = 0; i < length; i += CHAR_STRIDE) {
+			Glyph g = _atlas.getGlyph((char) items[i]);
+			if (g.isResident()) {
+				_charPageUsed[g.getPage()] = true;
+			}
+		}
+		for (int page = 0; page < _charPageUsed.length; page++) {
+			if (!_charPageUsed[page]) {
+				continue;
+			}
+			LTextureBatch batch = getBatch(page);
+			if (batch == null) {
+				continue;
+			}
+			batch.begin();
+			batch.setBlendState(BlendState.AlphaBlend);
+			for (int i = 0; i < length; i += CHAR_STRIDE) {
+				Glyph g = _atlas.getGlyph((char) items[i]);
+				if (g.getPage() != page) {
+					continue;
+				}
+				if (items[i + 3] != 0f) {
+					setImageColor(items[i + 4], items[i + 5], items[i + 6], items[i + 7]);
+				}
+				batch.draw(colors, items[i + 1], items[i + 2], g.width - offsetX, g.height - offsetY, g.getX(),
+						g.getY(), g.getX() + g.width - offsetX, g.getY() + g.height - offsetY);
+				if (colors != null) {
+					colors = null;
 				}
-				_childFont.stopChar();
 			}
+			batch.end();
 		}
 	}
 
-	private boolean checkOutBounds() {
-		return _outBounds && _childFont != null;
-	}
-
-	private boolean processing() {
-		return fontBatch == null || isDrawing;
-	}
-
 	public void postCharCache() {
 		if (!checkCharRunning()) {
 			return;
@@ -997,22 +780,70 @@ public class LSTRFont implements IFont, LRelease {
 		if (g != null) {
 			int old = GLUtils.getBlendMode();
 			GLUtils.setBlendMode(g, LSystem.MODE_NORMAL);
-			fontBatch.postLastCache();
+			if (isCharCacheValid()) {
+				for (int page = 0; page < _charPageUsed.length; page++) {
+					if (_charPageUsed[page]) {
+						LTextureBatch batch = getBatch(page);
+						if (batch != null) {
+							batch.postLastCache();
+						}
+					}
+				}
+			} else {
+				// 缓存的字符所在图集页已被回收,以保存的字符队列重新提交
+				submitChars();
+				saveCharCache();
+			}
 			GLUtils.setBlendMode(g, old);
 		}
-		postChildString();
+	}
+
+	private boolean isCharCacheValid() {
+		if (!_charCached) {
+			return false;
+		}
+		for (int page = 0; page < _charPageUsed.length; page++) {
+			if (_charPageUsed[page] && _atlas.getGeneration(page) != _charCacheGenerations[page]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public Cache saveCharCache() {
 		if (!checkCharRunning()) {
 			return null;
 		}
-		fontBatch.disposeLastCache();
-		return fontBatch.newCache();
+		Cache first = null;
+		for (int page = 0; page < _batches.size; page++) {
+			LTextureBatch batch = _batches.get(page);
+			if (batch == null) {
+				continue;
+			}
+			batch.disposeLastCache();
+			if (page < _charPageUsed.length && _charPageUsed[page]) {
+				Cache cache = batch.newCache();
+				_charCacheGenerations[page] = _atlas.getGeneration(page);
+				if (first == null) {
+					first = cache;
+				}
+			}
+		}
+		_charCached = true;
+		return first;
 	}
 
+	/**
+	 * 获得图集第一页对应的LTextureBatch
+	 *
+	 * @return
+	 */
 	public LTextureBatch getFontBatch() {
-		return fontBatch;
+		if (_isClose) {
+			return null;
+		}
+		_atlas.flush();
+		return getBatch(0);
 	}
 
 	private void setImageColor(float r, float g, float b, float a) {
@@ -1022,13 +853,6 @@ public class LSTRFont implements IFont, LRelease {
 		setColor(Painter.BOTTOM_RIGHT, r, g, b, a);
 	}
 
-	private void setImageColor(LColor c) {
-		if (c == null) {
-			return;
-		}
-		setImageColor(c.r, c.g, c.b, c.a);
-	}
-
 	private void setColor(int corner, float r, float g, float b, float a) {
 		if (colors == null) {
 			colors = new LColor[] { new LColor(1, 1, 1, 1f), new LColor(1, 1, 1, 1f), new LColor(1, 1, 1, 1f),
@@ -1063,57 +887,26 @@ public class LSTRFont implements IFont, LRelease {
 		if (_isClose) {
 			return 0;
 		}
-		make();
 		if (c == '\n') {
 			return 0;
 		}
-		if (processing()) {
-			return font.charWidth(c);
-		}
-		if (texture.isClosed()) {
-			return 0;
-		}
-		if (c < totalCharSet) {
-			intObject = charArray[c];
-		} else {
-			intObject = customChars.get((int) c);
-		}
-		if (intObject != null) {
-			return intObject.width;
-		}
-		return font.charWidth(c);
+		return _atlas.getGlyph(c).width;
 	}
 
 	public int getWidth(String s) {
 		if (_isClose) {
 			return 0;
 		}
-		make();
-		if (processing()) {
-			return font.stringWidth(s);
-		}
-		if (texture.isClosed()) {
-			return 0;
-		}
 		int totalWidth = 0;
-		IntObject intObject = null;
-		int currentChar = 0;
-		char[] charList = s.toCharArray();
 		int maxWidth = 0;
-		for (int i = 0; i < charList.length; i++) {
-			currentChar = charList[i];
-			if (currentChar < totalCharSet) {
-				intObject = charArray[currentChar];
-			} else {
-				intObject = customChars.get(currentChar);
-			}
-			if (intObject != null) {
-				if (currentChar == newLineFlag) {
-					maxWidth = MathUtils.max(maxWidth, totalWidth);
-					totalWidth = 0;
-				}
-				totalWidth += intObject.width;
+		for (int i = 0, size = s.length(); i < size; i++) {
+			char currentChar = s.charAt(i);
+			if (currentChar == newLineFlag) {
+				maxWidth = MathUtils.max(maxWidth, totalWidth);
+				totalWidth = 0;
+				continue;
 			}
+			totalWidth += _atlas.getGlyph(currentChar).width;
 		}
 		return MathUtils.max(maxWidth, totalWidth);
 	}
@@ -1122,40 +915,25 @@ public class LSTRFont implements IFont, LRelease {
 		if (_isClose) {
 			return 0;
 		}
-		make();
-		if (processing()) {
-			return font.stringHeight(s);
-		}
-		if (texture.isClosed()) {
-			return 0;
-		}
-		int currentChar = 0;
-		char[] charList = s.toCharArray();
 		int lines = 0;
 		int height = 0;
 		int maxHeight = 0;
-		for (int i = 0; i < charList.length; i++) {
-			currentChar = charList[i];
-			if (currentChar < totalCharSet) {
-				intObject = charArray[currentChar];
-			} else {
-				intObject = customChars.get(currentChar);
-			}
-			if (intObject != null) {
-				maxHeight = MathUtils.max(maxHeight, intObject.height);
-				height = maxHeight;
-			}
+		for (int i = 0, size = s.length(); i < size; i++) {
+			char currentChar = s.charAt(i);
 			if (currentChar == newLineFlag) {
 				lines++;
 				height = 0;
+				continue;
 			}
+			maxHeight = MathUtils.max(maxHeight, _atlas.getGlyph(currentChar).height);
+			height = maxHeight;
 		}
 		return lines * getLineHeight() + height;
 	}
 
 	@Override
 	public int getHeight() {
-		return fontHeight;
+		return _atlas.getMaxGlyphHeight();
 	}
 
 	@Override
@@ -1164,7 +942,7 @@ public class LSTRFont implements IFont, LRelease {
 	}
 
 	public int getLineHeight() {
-		return fontHeight;
+		return _atlas.getMaxGlyphHeight();
 	}
 
 	@Override
@@ -1177,7 +955,7 @@ public class LSTRFont implements IFont, LRelease {
 	}
 
 	public int getTotalCharSet() {
-		return totalCharSet;
+		return _chars.size();
 	}
 
 	public boolean isUseCache() {
@@ -1186,9 +964,48 @@ public class LSTRFont implements IFont, LRelease {
 
 	public void setUseCache(boolean useCache) {
 		this.useCache = useCache;
-		if (checkOutBounds()) {
-			_childFont.setUseCache(useCache);
+		if (!useCache) {
+			clearLayoutCache();
+		}
+	}
+
+	/**
+	 * 字符串排版缓存的最大数量
+	 *
+	 * @return
+	 */
+	public int getLayoutCacheSize() {
+		return _layoutCacheSize;
+	}
+
+	public LSTRFont setLayoutCacheSize(int size) {
+		this._layoutCacheSize = MathUtils.max(1, size);
+		while (_layouts.size > _layoutCacheSize && _tail != null) {
+			removeLayout(_tail);
+			_layoutEvictions++;
 		}
+		return this;
+	}
+
+	public int getLayoutCount() {
+		return _layouts.size;
+	}
+
+	public int getLayoutHits() {
+		return _layoutHits;
+	}
+
+	public int getLayoutMisses() {
+		return _layoutMisses;
+	}
+
+	public int getLayoutEvictions() {
+		return _layoutEvictions;
+	}
+
+	public void resetStats() {
+		_layoutHits = _layoutMisses = _layoutEvictions = 0;
+		_atlas.resetStats();
 	}
 
 	public char getNewLineFlag() {
@@ -1196,6 +1013,9 @@ public class LSTRFont implements IFont, LRelease {
 	}
 
 	public void setNewLineFlag(char newLineFlag) {
+		if (this.newLineFlag != newLineFlag) {
+			clearLayoutCache();
+		}
 		this.newLineFlag = newLineFlag;
 	}
 
@@ -1204,6 +1024,9 @@ public class LSTRFont implements IFont, LRelease {
 	}
 
 	public void setOffsetX(float offsetX) {
+		if (this.offsetX != offsetX) {
+			clearLayoutCache();
+		}
 		this.offsetX = offsetX;
 	}
 
@@ -1212,6 +1035,9 @@ public class LSTRFont implements IFont, LRelease {
 	}
 
 	public void setOffsetY(float offsetY) {
+		if (this.offsetY != offsetY) {
+			clearLayoutCache();
+		}
 		this.offsetY = offsetY;
 	}
 
@@ -1315,8 +1141,13 @@ public class LSTRFont implements IFont, LRelease {
 		return _maxTextureHeight;
 	}
 
+	/**
+	 * 字符是否已经超出一张图集页
+	 *
+	 * @return
+	 */
 	public boolean isOutBounds() {
-		return _outBounds;
+		return _atlas.getPageCount() > 1;
 	}
 
 	public boolean isDisplayLazy() {
@@ -1327,41 +1158,26 @@ public class LSTRFont implements IFont, LRelease {
 		this._displayLazy = displayLazy;
 		return this;
 	}
-	
+
 	@Override
 	public synchronized void close() {
 		if (_isClose) {
 			return;
 		}
-		for (Cache c : displays.values()) {
-			if (c != null) {
-				c.close();
+		clearLayoutCache();
+		for (int i = 0; i < _batches.size; i++) {
+			LTextureBatch batch = _batches.get(i);
+			if (batch != null) {
+				batch.close();
 			}
 		}
-		displays.clear();
-		displays = null;
-		if (fontBatch != null) {
-			fontBatch.close();
-			fontBatch = null;
-		}
-		if (texture != null) {
-			texture.close(true);
-			texture = null;
-		}
-		if (customChars != null) {
-			customChars.clear();
-			customChars = null;
-		}
-		charArray = null;
-		isDrawing = false;
+		_batches.clear();
+		_charQueue.clear();
+		_charCached = false;
 		_displayLazy = false;
-		_initChars = false;
 		_initDraw = -1;
 		_isClose = true;
-		if (checkOutBounds()) {
-			_childFont.close();
-			_childFont = null;
-		}
+		LSTRAtlas.release(_atlas);
 	}
 
 }
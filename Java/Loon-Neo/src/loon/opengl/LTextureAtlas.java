@@ -0,0 +1,495 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.canvas.Canvas;
+import loon.canvas.Image;
+import loon.geom.RectI;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * 运行时纹理合并器,小纹理首次被BaseBatch使用时登记,在帧结束时(GLEx.end)以LTexturePack合并到共享的纹理页中,
+ * 之后对它的渲染会被转为对纹理页的渲染(纹理坐标自动换算),从而让大量小纹理的渲染可以合并为一次提交.长时间未使用的纹理会被移出纹理页.
+ *
+ * 注意:只有从文件加载(拥有source),且未设置重复(repeat)的纹理才会合并,运行时绘制生成的纹理(帧缓存,画布等)内容随时可能改变,不参与合并.
+ */
+public class LTextureAtlas implements LRelease {
+
+	/**
+	 * 纹理在纹理页中的位置,以线性换算把原纹理的纹理坐标转为纹理页的纹理坐标
+	 */
+	public static class Entry {
+
+		private final LTexture texture;
+
+		private final String name;
+
+		private Image image;
+
+		private Page page;
+
+		private float offsetU, scaleU, offsetV, scaleV;
+
+		private int lastFrame;
+
+		private boolean refused;
+
+		private boolean oversize;
+
+		Entry(LTexture texture, String name) {
+			this.texture = texture;
+			this.name = name;
+		}
+
+		public LTexture getTexture() {
+			return texture;
+		}
+
+		public LTexture getPageTexture() {
+			return page == null ? null : page.pack.getTexture();
+		}
+
+		public float u(float u) {
+			return offsetU + u * scaleU;
+		}
+
+		public float v(float v) {
+			return offsetV + v * scaleV;
+		}
+
+		public boolean isPacked() {
+			return page != null;
+		}
+
+	}
+
+	private static class Page {
+
+		LTexturePack pack;
+
+		final TArray<Entry> entries = new TArray<Entry>();
+
+		int area;
+
+		boolean dirty;
+
+		boolean rebuild;
+
+		boolean full;
+
+	}
+
+	/**
+	 * 纹理页中每张小图四周留出的透明像素,避免线性过滤时采样到相邻图片
+	 */
+	private final static int PADDING = 1;
+
+	/**
+	 * 纹理页按面积估算的最大填充率,超过时使用新的纹理页(装箱无法达到百分之百的利用率)
+	 */
+	private final static float FILL_RATE = 0.7f;
+
+	private final IntMap<Entry> entries = new IntMap<Entry>();
+
+	private final TArray<Entry> entryList = new TArray<Entry>();
+
+	private final TArray<Entry> pendings = new TArray<Entry>();
+
+	private final TArray<Page> pages = new TArray<Page>();
+
+	private int pageSize;
+
+	private int maxTextureSize;
+
+	private int maxPages;
+
+	private int evictFrames;
+
+	private int frame;
+
+	private int nameCount;
+
+	private int packCount;
+
+	private int evictCount;
+
+	private boolean closed;
+
+	public LTextureAtlas() {
+		this(1024, 128, 4);
+	}
+
+	/**
+	 *
+	 * @param pageSize
+	 *            纹理页的边长
+	 * @param maxTextureSize
+	 *            参与合并的纹理最大边长
+	 * @param maxPages
+	 *            纹理页的最大数量
+	 */
+	public LTextureAtlas(int pageSize, int maxTextureSize, int maxPages) {
+		this.pageSize = MathUtils.max(64, pageSize);
+		this.maxTextureSize = MathUtils.min(MathUtils.max(1, maxTextureSize), this.pageSize - PADDING * 2);
+		this.maxPages = MathUtils.max(1, maxPages);
+		this.evictFrames = 600;
+	}
+
+	/**
+	 * 查询纹理在纹理页中的位置,返回null时应直接使用原纹理渲染.未登记的纹理会在此登记,在下次update后才会合并到纹理页中
+	 *
+	 * @param tex
+	 * @return
+	 */
+	public Entry find(LTexture tex) {
+		if (closed || tex == null) {
+			return null;
+		}
+		final LTexture root = LTexture.firstFather(tex);
+		Entry entry = entries.get(root.getID());
+		if (entry != null) {
+			if (entry.texture != root) {
+				return null;
+			}
+			entry.lastFrame = frame;
+			if (entry.page == null) {
+				return null;
+			}
+			final LTexture pageTexture = entry.page.pack.getTexture();
+			if (pageTexture == null || pageTexture.isClosed()) {
+				entry.page.rebuild = true;
+				return null;
+			}
+			return entry;
+		}
+		if (!isAtlasable(root)) {
+			return null;
+		}
+		entry = new Entry(root, "atlas" + (nameCount++));
+		entry.lastFrame = frame;
+		entries.put(root.getID(), entry);
+		entryList.add(entry);
+		pendings.add(entry);
+		return null;
+	}
+
+	/**
+	 * 判断纹理是否可以合并到纹理页中
+	 *
+	 * @param tex
+	 * @return
+	 */
+	public boolean isAtlasable(LTexture tex) {
+		if (tex == null || tex.isChild() || tex.isClosed() || !tex.isLoaded()) {
+			return false;
+		}
+		if (tex.width() > maxTextureSize || tex.height() > maxTextureSize || tex.width() < 1f || tex.height() < 1f) {
+			return false;
+		}
+		if (tex.getFormat().repeatX || tex.getFormat().repeatY) {
+			return false;
+		}
+		if (StringUtils.isEmpty(tex.getSource()) || tex.isDrawCanvas()) {
+			return false;
+		}
+		for (int i = 0; i < pages.size; i++) {
+			if (pages.get(i).pack.getTexture() == tex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 每帧结束时调用(此时Batch中不能有未提交的数据),合并新登记的纹理并移出长时间未使用的纹理
+	 */
+	public void update() {
+		if (closed) {
+			return;
+		}
+		frame++;
+		if (frame % 60 == 0) {
+			evict();
+		}
+		if (pendings.size > 0) {
+			for (int i = 0; i < pendings.size; i++) {
+				place(pendings.get(i));
+			}
+			pendings.clear();
+		}
+		for (int i = pages.size - 1; i >= 0; i--) {
+			final Page page = pages.get(i);
+			if (page.rebuild) {
+				rebuild(page);
+			} else if (page.dirty) {
+				pack(page);
+			}
+			if (page.entries.size == 0) {
+				closePage(page);
+				pages.removeIndex(i);
+			}
+		}
+	}
+
+	private void evict() {
+		boolean released = false;
+		for (int i = entryList.size - 1; i >= 0; i--) {
+			final Entry entry = entryList.get(i);
+			if (entry.texture.isClosed() || frame - entry.lastFrame > evictFrames) {
+				removeEntry(i);
+				released = true;
+				evictCount++;
+			}
+		}
+		if (released) {
+			// 有空间被释放,之前因纹理页已满而被拒绝的纹理可以再次尝试
+			for (int i = 0; i < entryList.size; i++) {
+				final Entry entry = entryList.get(i);
+				if (entry.refused && !entry.oversize) {
+					entry.refused = false;
+					pendings.add(entry);
+				}
+			}
+		}
+	}
+
+	private void removeEntry(int index) {
+		final Entry entry = entryList.removeIndex(index);
+		if (entries.get(entry.texture.getID()) == entry) {
+			entries.remove(entry.texture.getID());
+		}
+		pendings.removeValue(entry, true);
+		if (entry.page != null) {
+			entry.page.entries.removeValue(entry, true);
+			entry.page.area -= areaOf(entry);
+			entry.page.rebuild = true;
+			entry.page.full = false;
+			entry.page = null;
+		}
+		if (entry.image != null) {
+			entry.image.close();
+			entry.image = null;
+		}
+	}
+
+	private int areaOf(Entry entry) {
+		return (int) ((entry.image.width() + PADDING * 2) * (entry.image.height() + PADDING * 2));
+	}
+
+	private void place(Entry entry) {
+		if (entry.page != null || entry.oversize || entry.texture.isClosed()) {
+			return;
+		}
+		if (entry.image == null) {
+			final Image src = entry.texture.getImage();
+			if (src == null) {
+				entry.refused = true;
+				return;
+			}
+			// 纹理的显示大小与实际图片大小可能不同,以实际图片判断,单张图片放不进一个纹理页时不参与合并(始终直接渲染)
+			if (src.width() + PADDING * 2 > pageSize || src.height() + PADDING * 2 > pageSize) {
+				entry.oversize = true;
+				return;
+			}
+			final Canvas canvas = LSystem.base().graphics().createCanvas(src.width() + PADDING * 2,
+					src.height() + PADDING * 2);
+			canvas.draw(src, PADDING, PADDING);
+			entry.image = canvas.image;
+		}
+		final int area = areaOf(entry);
+		final int limit = (int) (pageSize * pageSize * FILL_RATE);
+		Page page = null;
+		for (int i = 0; i < pages.size; i++) {
+			final Page p = pages.get(i);
+			if (!p.full && p.area + area <= limit) {
+				page = p;
+				break;
+			}
+		}
+		if (page == null) {
+			if (pages.size >= maxPages) {
+				entry.refused = true;
+				return;
+			}
+			page = new Page();
+			page.pack = new LTexturePack();
+			pages.add(page);
+		}
+		page.pack.putImage(entry.name, entry.image);
+		page.entries.add(entry);
+		page.area += area;
+		page.dirty = true;
+		entry.page = page;
+	}
+
+	private void rebuild(Page page) {
+		// LTexturePack不支持真正删除图片,因此以仍在使用的图片重建纹理页(图片由Entry持有,不随旧的LTexturePack释放)
+		final LTexture old = page.pack.getTexture();
+		if (old != null && !old.isClosed()) {
+			old.close(true);
+		}
+		page.pack = new LTexturePack();
+		for (int i = 0; i < page.entries.size; i++) {
+			final Entry entry = page.entries.get(i);
+			page.pack.putImage(entry.name, entry.image);
+		}
+		page.rebuild = false;
+		page.dirty = page.entries.size > 0;
+		if (page.dirty) {
+			pack(page);
+		}
+	}
+
+	private void pack(Page page) {
+		final LTexture pageTexture = page.pack.pack();
+		page.dirty = false;
+		packCount++;
+		if (pageTexture == null) {
+			return;
+		}
+		if ((pageTexture.width() > pageSize || pageTexture.height() > pageSize) && page.entries.size > 1) {
+			// 按面积估算可以放下,实际装箱时放不下,LTexturePack会把纹理页扩大到pageSize以上.此时纹理页已满,
+			// 最后放入的图片移回待合并队列(下次update放入其它纹理页),剩余图片重建纹理页
+			final Entry last = page.entries.pop();
+			page.area -= areaOf(last);
+			page.full = true;
+			last.page = null;
+			pendings.add(last);
+			page.rebuild = true;
+			rebuild(page);
+			return;
+		}
+		final float invWidth = 1f / pageTexture.width();
+		final float invHeight = 1f / pageTexture.height();
+		for (int i = 0; i < page.entries.size; i++) {
+			final Entry entry = page.entries.get(i);
+			final RectI.Range bounds = page.pack.getEntry(entry.name).getBounds();
+			final LTexture tex = entry.texture;
+			final float u0 = (bounds.left + PADDING) * invWidth;
+			final float v0 = (bounds.top + PADDING) * invHeight;
+			final float u1 = (bounds.right - PADDING) * invWidth;
+			final float v1 = (bounds.bottom - PADDING) * invHeight;
+			entry.scaleU = (u1 - u0) / (tex.widthRatio() - tex.xOff());
+			entry.scaleV = (v1 - v0) / (tex.heightRatio() - tex.yOff());
+			entry.offsetU = u0 - tex.xOff() * entry.scaleU;
+			entry.offsetV = v0 - tex.yOff() * entry.scaleV;
+		}
+	}
+
+	private void closePage(Page page) {
+		final LTexture pageTexture = page.pack.getTexture();
+		if (pageTexture != null && !pageTexture.isClosed()) {
+			pageTexture.close(true);
+		}
+	}
+
+	/**
+	 * 连续多少帧未被使用的纹理会被移出纹理页
+	 *
+	 * @param frames
+	 * @return
+	 */
+	public LTextureAtlas setEvictFrames(int frames) {
+		this.evictFrames = MathUtils.max(1, frames);
+		return this;
+	}
+
+	public int getEvictFrames() {
+		return evictFrames;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getMaxTextureSize() {
+		return maxTextureSize;
+	}
+
+	public int getMaxPages() {
+		return maxPages;
+	}
+
+	public int getPageCount() {
+		return pages.size;
+	}
+
+	public LTexture getPageTexture(int index) {
+		return pages.get(index).pack.getTexture();
+	}
+
+	public int getEntryCount() {
+		return entryList.size;
+	}
+
+	/**
+	 * 纹理页重新合并的累计次数
+	 *
+	 * @return
+	 */
+	public int getPackCount() {
+		return packCount;
+	}
+
+	/**
+	 * 因长时间未使用或已关闭而移出纹理页的纹理累计数量
+	 *
+	 * @return
+	 */
+	public int getEvictCount() {
+		return evictCount;
+	}
+
+	public void clear() {
+		for (int i = 0; i < pages.size; i++) {
+			closePage(pages.get(i));
+		}
+		pages.clear();
+		for (int i = 0; i < entryList.size; i++) {
+			final Entry entry = entryList.get(i);
+			entry.page = null;
+			if (entry.image != null) {
+				entry.image.close();
+				entry.image = null;
+			}
+		}
+		entryList.clear();
+		entries.clear();
+		pendings.clear();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		clear();
+		closed = true;
+	}
+
+}
@@ -29,6 +29,16 @@ public class LTextureBind extends GLBase {
 	public final GL20 gl;
 	protected int curTexId = -1;
 	protected int lastTexId = -1;
+	protected int textureSwitchCount;
+
+	/**
+	 * 累计因纹理切换而强制提交的次数
+	 * 
+	 * @return
+	 */
+	public int getTextureSwitchCount() {
+		return this.textureSwitchCount;
+	}
 
 	public int getCurrentTextureID() {
 		return this.curTexId;
@@ -40,6 +50,7 @@ public class LTextureBind extends GLBase {
 			texture.loadTexture();
 		}
 		if (curTexId != -1 && curTexId != id) {
+			textureSwitchCount++;
 			flush();
 		}
 		this.lastTexId = this.curTexId;
@@ -49,6 +49,8 @@ public class Mesh implements LRelease {
 
 	private boolean autoBind = true;
 
+	private GL20 gl;
+
 	protected Mesh(VertexData vertices, IndexData indices, boolean isVertexArray) {
 		this.vertices = vertices;
 		this.indices = indices;
@@ -99,6 +101,22 @@ public class Mesh implements LRelease {
 		addManagedMesh(this);
 	}
 
+	/**
+	 * 以指定的GL20对象绘制的Mesh(顶点缓冲对象本身依旧以系统GL创建,因此要完全经由此对象时应使用VertexDataType.VertexArray)
+	 * 
+	 * @param gl
+	 * @param type
+	 * @param isStatic
+	 * @param maxVertices
+	 * @param maxIndices
+	 * @param attributes
+	 */
+	public Mesh(GL20 gl, VertexDataType type, boolean isStatic, int maxVertices, int maxIndices,
+			VertexAttribute... attributes) {
+		this(type, isStatic, maxVertices, maxIndices, attributes);
+		this.gl = gl;
+	}
+
 	public static Mesh create(boolean isStatic, final Mesh base, final Matrix4[] transformations) {
 		final VertexAttribute posAttr = base.getVertexAttribute(Usage.Position);
 		final int offset = posAttr.offset / 4;
@@ -333,7 +351,7 @@ public class Mesh implements LRelease {
 		if (autoBind) {
 			bind(shader);
 		}
-		final GL20 gl = LSystem.base().graphics().gl;
+		final GL20 gl = this.gl == null ? LSystem.base().graphics().gl : this.gl;
 		if (isVertexArray) {
 			if (indices.getNumIndices() > 0) {
 				ShortBuffer buffer = indices.getBuffer();
@@ -0,0 +1,397 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LSysException;
+import loon.LSystem;
+import loon.LTexture;
+import loon.canvas.LColor;
+import loon.geom.Affine2f;
+import loon.geom.Matrix4;
+import loon.opengl.VertexAttributes.Usage;
+import loon.utils.GLUtils;
+import loon.utils.MathUtils;
+
+/**
+ * 多纹理单元的Batch,最多同时绑定N张纹理到不同的纹理单元,并在每个顶点中写入纹理单元索引,由着色器选择采样器,
+ * 因此不同纹理的图像可以合并为一次提交,只有绑定的纹理超过N张时才会提交.
+ *
+ * 顶点数据的写入与提交判断只在CPU端进行,GL调用(包括着色器与Mesh的创建和绘制)全部经由构造时传入的GL20对象,可以用模拟的GL20进行检查.
+ *
+ * 使用方式: GLEx.pushBatch(new MultiTextureBatch(gl)) 或以此Batch构建GLEx.
+ */
+public class MultiTextureBatch extends BaseBatch {
+
+	/**
+	 * 每个顶点的数据长度(x,y,color,u,v,texIndex)
+	 */
+	public final static int VERTEX_SIZE = 6;
+
+	public final static int QUAD_SIZE = VERTEX_SIZE * 4;
+
+	private final static int MAX_QUADS = 8191;
+
+	private final Matrix4 viewMatrix;
+
+	private final LColor tmpColor = new LColor();
+
+	/**
+	 * 本次提交的顶点中是否有半透明(alpha小于0.98)的四边形
+	 */
+	private boolean translucent;
+
+	private final float[] vertices;
+
+	private final int maxQuads;
+
+	private final int[] unitIds;
+
+	private final int maxUnits;
+
+	private int unitCount;
+
+	private int currentUnit = -1;
+
+	private int idx = 0;
+
+	private ShaderProgram shader;
+
+	private Mesh mesh;
+
+	private boolean isLoaded;
+
+	private int savedCount;
+
+	private int lastSavedCount;
+
+	private int totalSavedCount;
+
+	public MultiTextureBatch(GL20 gl) {
+		this(gl, 4);
+	}
+
+	public MultiTextureBatch(GL20 gl, int units) {
+		this(gl, 1024, units);
+	}
+
+	public MultiTextureBatch(GL20 gl, int maxQuads, int units) {
+		super(gl);
+		this.maxQuads = MathUtils.clamp(maxQuads, 1, MAX_QUADS);
+		this.maxUnits = MathUtils.clamp(units, 1, 16);
+		this.unitIds = new int[maxUnits];
+		this.vertices = new float[this.maxQuads * QUAD_SIZE];
+		this._shader_source = new MultiTextureSource(maxUnits);
+		this.viewMatrix = new Matrix4();
+		this.init();
+	}
+
+	@Override
+	public void init() {
+		this.unitCount = 0;
+		this.currentUnit = -1;
+	}
+
+	private int findUnit(int id) {
+		for (int i = 0; i < unitCount; i++) {
+			if (unitIds[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 纹理已绑定到某个纹理单元时直接切换单元,否则占用新的纹理单元,纹理单元用尽时才会提交
+	 */
+	@Override
+	public void setTexture(final LTexture texture) {
+		final int id = texture.getID();
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		int unit = findUnit(id);
+		if (unit == -1) {
+			if (unitCount == maxUnits) {
+				textureSwitchCount++;
+				submit();
+			}
+			unit = unitCount;
+			unitIds[unitCount++] = id;
+		}
+		if (idx > 0 && curTexId != id) {
+			// 以前只要纹理改变就必须提交,此处省略了一次提交
+			savedCount++;
+			totalSavedCount++;
+		}
+		this.currentUnit = unit;
+		this.lastTexId = this.curTexId;
+		this.curTexId = id;
+	}
+
+	@Override
+	public void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3, float sy3,
+			float x4, float y4, float sx4, float sy4) {
+		if (currentUnit == -1) {
+			return;
+		}
+		if (idx == vertices.length) {
+			final int id = unitIds[currentUnit];
+			submit();
+			unitIds[0] = id;
+			unitCount = 1;
+			currentUnit = 0;
+		}
+		final float colorFloat = tmpColor.setColor(tint).toFloatBits();
+		if (tmpColor.a < 0.98f) {
+			translucent = true;
+		}
+		final float unit = currentUnit;
+		final float[] v = vertices;
+		int index = idx;
+
+		v[index++] = m00 * x1 + m10 * y1 + tx;
+		v[index++] = m01 * x1 + m11 * y1 + ty;
+		v[index++] = colorFloat;
+		v[index++] = sx1;
+		v[index++] = sy1;
+		v[index++] = unit;
+
+		v[index++] = m00 * x2 + m10 * y2 + tx;
+		v[index++] = m01 * x2 + m11 * y2 + ty;
+		v[index++] = colorFloat;
+		v[index++] = sx2;
+		v[index++] = sy2;
+		v[index++] = unit;
+
+		v[index++] = m00 * x4 + m10 * y4 + tx;
+		v[index++] = m01 * x4 + m11 * y4 + ty;
+		v[index++] = colorFloat;
+		v[index++] = sx4;
+		v[index++] = sy4;
+		v[index++] = unit;
+
+		v[index++] = m00 * x3 + m10 * y3 + tx;
+		v[index++] = m01 * x3 + m11 * y3 + ty;
+		v[index++] = colorFloat;
+		v[index++] = sx3;
+		v[index++] = sy3;
+		v[index++] = unit;
+
+		this.idx = index;
+	}
+
+	/**
+	 * 提交全部顶点数据,提交后释放所有纹理单元
+	 */
+	public void submit() {
+		if (idx == 0) {
+			unitCount = 0;
+			currentUnit = -1;
+			translucent = false;
+			return;
+		}
+		try {
+			submitCount++;
+			final int count = (idx / QUAD_SIZE) * 6;
+			for (int i = unitCount - 1; i > 0; i--) {
+				gl.glActiveTexture(GL20.GL_TEXTURE0 + i);
+				gl.glBindTexture(GL20.GL_TEXTURE_2D, unitIds[i]);
+			}
+			gl.glActiveTexture(GL20.GL_TEXTURE0);
+			GLUtils.bindTexture(gl, unitIds[0]);
+			int tmp = GLUtils.getBlendMode();
+			if (!translucent) {
+				GLUtils.setBlendMode(gl, LSystem.MODE_NORMAL);
+			} else {
+				GLUtils.setBlendMode(gl, LSystem.MODE_SPEED);
+			}
+			post(vertices, idx, count);
+			GLUtils.setBlendMode(gl, tmp);
+		} catch (Throwable ex) {
+			LSystem.error("Batch submit() error", ex);
+		} finally {
+			idx = 0;
+			unitCount = 0;
+			currentUnit = -1;
+			translucent = false;
+		}
+	}
+
+	/**
+	 * 实际向GPU提交顶点数据
+	 *
+	 * @param vertices
+	 * @param vertexIdx
+	 * @param count
+	 */
+	protected void post(float[] vertices, int vertexIdx, int count) {
+		if (shader == null) {
+			return;
+		}
+		if (mesh == null || mesh.isClosed()) {
+			mesh = new Mesh(gl, Mesh.VertexDataType.VertexArray, false, maxQuads * 4, maxQuads * 6,
+					new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+					new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+					new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"),
+					new VertexAttribute(Usage.Generic, 1, MultiTextureSource.TEXINDEX_ATTRIBUTE));
+			LSystem.resetIndices(maxQuads, mesh);
+		}
+		shader.glUseProgramBind();
+		mesh.setVertices(vertices, 0, vertexIdx);
+		mesh.getIndicesBuffer().position(0);
+		mesh.getIndicesBuffer().limit(count);
+		mesh.render(shader, GL20.GL_TRIANGLES, 0, count);
+		shader.glUseProgramUnBind();
+	}
+
+	private float ubufWidth = 0;
+
+	private float ubufHeight = 0;
+
+	private boolean uflip = true;
+
+	@Override
+	public void begin(float fbufWidth, float fbufHeight, boolean flip) {
+		if (this.ubufWidth != fbufWidth || this.ubufHeight != fbufHeight || this.uflip != flip) {
+			this.ubufWidth = fbufWidth;
+			this.ubufHeight = fbufHeight;
+			this.viewMatrix.setToOrtho2D(0, 0, ubufWidth, ubufHeight);
+			this.uflip = flip;
+			if (!flip) {
+				Affine2f a2f = new Affine2f();
+				float w = ubufWidth / 2;
+				float h = ubufHeight / 2;
+				a2f.translate(w, h);
+				a2f.scale(-1, 1);
+				a2f.translate(-w, -h);
+				a2f.translate(w, h);
+				a2f.rotate(MathUtils.PI);
+				a2f.translate(-w, -h);
+				this.viewMatrix.mul(a2f);
+			}
+		}
+		if (!isLoaded || isShaderDirty()) {
+			if (shader == null || isShaderDirty()) {
+				if (shader != null) {
+					shader.close();
+					shader = null;
+				}
+				shader = new ShaderProgram(gl, _shader_source.vertexShader(), _shader_source.fragmentShader());
+				if (!shader.isCompiled()) {
+					throw new LSysException("Error compiling shader: " + shader.getLog());
+				}
+				setShaderDirty(false);
+			}
+			isLoaded = true;
+		}
+		shader.begin();
+		shader.setUniformMatrix("u_projTrans", viewMatrix);
+		_shader_source.setupShader(shader);
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		submit();
+		if (shader != null) {
+			shader.end();
+		}
+	}
+
+	@Override
+	public void end() {
+		super.end();
+		lastSavedCount = savedCount;
+		savedCount = 0;
+	}
+
+	/**
+	 * 多纹理单元的着色器是本Batch顶点格式所必须的,只接受MultiTextureSource
+	 */
+	@Override
+	public void setShaderSource(ShaderSource source) {
+		if (source instanceof MultiTextureSource) {
+			super.setShaderSource(source);
+		}
+	}
+
+	public int getMaxUnits() {
+		return maxUnits;
+	}
+
+	/**
+	 * 当前占用的纹理单元数量
+	 *
+	 * @return
+	 */
+	public int getBoundUnitCount() {
+		return unitCount;
+	}
+
+	/**
+	 * 尚未提交的图像数量
+	 *
+	 * @return
+	 */
+	public int getQueuedQuadCount() {
+		return idx / QUAD_SIZE;
+	}
+
+	/**
+	 * 上一帧(begin到end之间)因多纹理单元而省略的提交次数
+	 *
+	 * @return
+	 */
+	public int getDrawCallsSaved() {
+		return lastSavedCount;
+	}
+
+	public int getTotalDrawCallsSaved() {
+		return totalSavedCount;
+	}
+
+	@Override
+	public void resetStats() {
+		super.resetStats();
+		totalSavedCount = 0;
+		lastSavedCount = 0;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		if (shader != null) {
+			shader.close();
+			shader = null;
+		}
+		if (mesh != null) {
+			mesh.close();
+			mesh = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "multi/" + maxUnits + "/" + vertices.length;
+	}
+
+}
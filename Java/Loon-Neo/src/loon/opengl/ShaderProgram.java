@@ -87,6 +87,8 @@ public class ShaderProgram implements LRelease {
 
 	private boolean invalidated;
 
+	private final GL20 gl;
+
 	private final int[] params = new int[2];
 
 	private final int[] length = new int[1];
@@ -100,15 +102,27 @@ public class ShaderProgram implements LRelease {
 	final IntBuffer intbuf;
 
 	public ShaderProgram(String vertexShader, String fragmentShader) {
+		this(LSystem.base().graphics().gl, vertexShader, fragmentShader);
+	}
+
+	/**
+	 * 以指定的GL20对象创建着色器,此着色器的编译,绑定与uniform设置等GL调用全部经由此对象
+	 * 
+	 * @param gl
+	 * @param vertexShader
+	 * @param fragmentShader
+	 */
+	public ShaderProgram(GL20 gl, String vertexShader, String fragmentShader) {
 		if (vertexShader == null) {
 			throw new LSysException("vertex shader must not be null");
 		}
 		if (fragmentShader == null) {
 			throw new LSysException("fragment shader must not be null");
 		}
+		this.gl = gl;
 		String glslVersion = "#version 100\n";
-		if (LSystem.base() != null && LSystem.base().graphics() != null) {
-			glslVersion = "#version " + LSystem.base().graphics().gl.getGlslVersion() + "\n";
+		if (gl != null) {
+			glslVersion = "#version " + gl.getGlslVersion() + "\n";
 		}
 		this.intbuf = LSystem.base().support().newIntBuffer(1);
 		this.vertexShaderSource = vertexShader;
@@ -137,7 +151,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	private int loadShader(int type, String source) {
-		GL20 gl = LSystem.base().graphics().gl;
 		IntBuffer intbuf = LSystem.base().support().newIntBuffer(1);
 
 		int shader = gl.glCreateShader(type);
@@ -159,13 +172,11 @@ public class ShaderProgram implements LRelease {
 	}
 
 	protected int createProgram() {
-		GL20 gl = LSystem.base().graphics().gl;
 		int program = gl.glCreateProgram();
 		return program != 0 ? program : -1;
 	}
 
 	private int linkProgram(int program) {
-		GL20 gl = LSystem.base().graphics().gl;
 		if (program == -1) {
 			return -1;
 		}
@@ -181,7 +192,7 @@ public class ShaderProgram implements LRelease {
 		gl.glGetProgramiv(program, GL20.GL_LINK_STATUS, intbuf);
 		int linked = intbuf.get(0);
 		if (linked == 0) {
-			log = LSystem.base().graphics().gl.glGetProgramInfoLog(program);
+			log = gl.glGetProgramInfoLog(program);
 			return -1;
 		}
 		return program;
@@ -189,7 +200,7 @@ public class ShaderProgram implements LRelease {
 
 	public String getLog() {
 		if (isCompiled) {
-			log = LSystem.base().graphics().gl.glGetProgramInfoLog(program);
+			log = gl.glGetProgramInfoLog(program);
 			return log;
 		} else {
 			return log;
@@ -201,7 +212,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	private int fetchAttributeLocation(String name) {
-		GL20 gl = LSystem.base().graphics().gl;
 		int location;
 		if ((location = attributes.get(name, -2)) == -2) {
 			location = gl.glGetAttribLocation(program, name);
@@ -215,7 +225,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public int findUniformLocation(String name) {
-		GL20 gl = LSystem.base().graphics().gl;
 		int location = -1;
 		if ((location = uniforms.get(name, -2)) == -2) {
 			location = gl.glGetUniformLocation(program, name);
@@ -224,7 +233,6 @@ public class ShaderProgram implements LRelease {
 	}
 	
 	public int fetchUniformLocation(String name, boolean pedantic) {
-		GL20 gl = LSystem.base().graphics().gl;
 		int location;
 		if ((location = uniforms.get(name, -2)) == -2) {
 			location = gl.glGetUniformLocation(program, name);
@@ -237,59 +245,50 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformi(String name, int value) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform1i(location, value);
 	}
 
 	public void setUniformi(int location, int value) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform1i(location, value);
 	}
 
 	public void setUniformi(String name, int value1, int value2) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform2i(location, value1, value2);
 	}
 
 	public void setUniformi(int location, int value1, int value2) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform2i(location, value1, value2);
 	}
 
 	public void setUniformi(String name, int value1, int value2, int value3) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform3i(location, value1, value2, value3);
 	}
 
 	public void setUniformi(int location, int value1, int value2, int value3) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform3i(location, value1, value2, value3);
 	}
 
 	public void setUniformi(String name, int value1, int value2, int value3, int value4) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform4i(location, value1, value2, value3, value4);
 	}
 
 	public void setUniformi(int location, int value1, int value2, int value3, int value4) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform4i(location, value1, value2, value3, value4);
 	}
 
 	public void setUniformf(String name, float value) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform1f(location, value);
@@ -304,98 +303,83 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformf(int location, float value) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform1f(location, value);
 	}
 
 	public void setUniformf(String name, float value1, float value2) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform2f(location, value1, value2);
 	}
 
 	public void setUniformf(int location, float value1, float value2) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform2f(location, value1, value2);
 	}
 
 	public void setUniformf(String name, float value1, float value2, float value3) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform3f(location, value1, value2, value3);
 	}
 
 	public void setUniformf(int location, float value1, float value2, float value3) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform3f(location, value1, value2, value3);
 	}
 
 	public void setUniformf(String name, float value1, float value2, float value3, float value4) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform4f(location, value1, value2, value3, value4);
 	}
 
 	public void setUniformf(int location, float value1, float value2, float value3, float value4) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform4f(location, value1, value2, value3, value4);
 	}
 
 	public void setUniform1fv(String name, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform1fv(location, length, values, offset);
 	}
 
 	public void setUniform1fv(int location, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform1fv(location, length, values, offset);
 	}
 
 	public void setUniform2fv(String name, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform2fv(location, length / 2, values, offset);
 	}
 
 	public void setUniform2fv(int location, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform2fv(location, length / 2, values, offset);
 	}
 
 	public void setUniform3fv(String name, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform3fv(location, length / 3, values, offset);
 	}
 
 	public void setUniform3fv(int location, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform3fv(location, length / 3, values, offset);
 	}
 
 	public void setUniform4fv(String name, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchUniformLocation(name);
 		gl.glUniform4fv(location, length / 4, values, offset);
 	}
 
 	public void setUniform4fv(int location, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniform4fv(location, length / 4, values, offset);
 	}
@@ -413,7 +397,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformMatrix(int location, Matrix4 matrix, boolean transpose) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniformMatrix4fv(location, 1, transpose, matrix.val, 0);
 	}
@@ -431,7 +414,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformMatrix(int location, Matrix3 matrix, boolean transpose) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniformMatrix3fv(location, 1, transpose, matrix.val, 0);
 	}
@@ -449,13 +431,11 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformMatrix(int location, Affine2f aff, boolean transpose) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniformMatrix3fv(location, 1, transpose, aff.getMartix3f(), 0);
 	}
 
 	public void setUniformMatrix3fv(String name, FloatBuffer buffer, int count, boolean transpose) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		buffer.position(0);
 		int location = fetchUniformLocation(name);
@@ -463,7 +443,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformMatrix4fv(String name, FloatBuffer buffer, int count, boolean transpose) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		buffer.position(0);
 		int location = fetchUniformLocation(name);
@@ -471,7 +450,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setUniformMatrix4fv(int location, float[] values, int offset, int length) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUniformMatrix4fv(location, length / 16, false, values, offset);
 	}
@@ -497,7 +475,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setVertexAttribute(String name, int size, int type, boolean normalize, int stride, Buffer buffer) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchAttributeLocation(name);
 		if (location == -1) {
@@ -507,13 +484,11 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setVertexAttribute(int location, int size, int type, boolean normalize, int stride, Buffer buffer) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glVertexAttribPointer(location, size, type, normalize, stride, buffer);
 	}
 
 	public void setVertexAttribute(String name, int size, int type, boolean normalize, int stride, int offset) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchAttributeLocation(name);
 		if (location == -1)
@@ -522,38 +497,32 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setVertexAttribute(int location, int size, int type, boolean normalize, int stride, int offset) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glVertexAttribPointer(location, size, type, normalize, stride, offset);
 	}
 
 	public void begin() {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glUseProgram(program);
 	}
 
 	public void glUseProgramBind() {
-		GL20 gl = LSystem.base().graphics().gl;
 		gl.glUseProgram(program);
 	}
 
 	public void glUseProgramUnBind() {
 		if (!LSystem.mainDrawRunning()) {
-			GL20 gl = LSystem.base().graphics().gl;
-			gl.glUseProgram(0);
+				gl.glUseProgram(0);
 		}
 	}
 
 	public void end() {
 		if (!LSystem.mainDrawRunning()) {
-			GL20 gl = LSystem.base().graphics().gl;
-			gl.glUseProgram(0);
+				gl.glUseProgram(0);
 		}
 	}
 
 	public void close() {
-		GL20 gl = LSystem.base().graphics().gl;
 		if (gl != null) {
 			if (!LSystem.mainDrawRunning()) {
 				gl.glUseProgram(0);
@@ -566,7 +535,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void disableVertexAttribute(String name) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchAttributeLocation(name);
 		if (location == -1) {
@@ -576,13 +544,11 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void disableVertexAttribute(int location) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glDisableVertexAttribArray(location);
 	}
 
 	public void enableVertexAttribute(String name) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		int location = fetchAttributeLocation(name);
 		if (location == -1) {
@@ -592,7 +558,6 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void enableVertexAttribute(int location) {
-		GL20 gl = LSystem.base().graphics().gl;
 		checkManaged();
 		gl.glEnableVertexAttribArray(location);
 	}
@@ -627,19 +592,16 @@ public class ShaderProgram implements LRelease {
 	}
 
 	public void setAttributef(String name, float value1, float value2, float value3, float value4) {
-		GL20 gl = LSystem.base().graphics().gl;
 		int location = fetchAttributeLocation(name);
 		gl.glVertexAttrib4f(location, value1, value2, value3, value4);
 	}
 
 	public void setAttributef(String name, LColor color) {
-		GL20 gl = LSystem.base().graphics().gl;
 		int location = fetchAttributeLocation(name);
 		gl.glVertexAttrib4f(location, color.r, color.g, color.b, color.a);
 	}
 
 	private void fetchAttributesAndUniforms() {
-		GL20 gl = LSystem.base().graphics().gl;
 
 		if (gl instanceof GLExt) {
 
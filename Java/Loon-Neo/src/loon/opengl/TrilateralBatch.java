@@ -83,6 +83,7 @@ public class TrilateralBatch extends BaseBatch {
 				maxSpritesInBatch = spritesInBatch;
 			}
 			int count = spritesInBatch * 6;
+			submitCount++;
 			bindTexture();
 			GL20 gl = LSystem.base().graphics().gl;
 			int tmp = GLUtils.getBlendMode();
@@ -44,6 +44,13 @@ public class VertexBufferObjectSubData implements VertexData {
 	protected boolean isDirty = false;
 	protected boolean isBound = false;
 
+	// 局部更新的脏区间(字节),只有局部更新时才以glBufferSubData上传此区间
+	protected boolean isFullDirty = false;
+	protected int dirtyStart = -1;
+	protected int dirtyEnd = -1;
+
+	protected int uploadBytes = 0;
+
 	public VertexBufferObjectSubData(boolean isStatic, int numVertices,
 			VertexAttribute... attributes) {
 		this.isStatic = isStatic;
@@ -86,20 +93,51 @@ public class VertexBufferObjectSubData implements VertexData {
 	@Override
 	public FloatBuffer getBuffer() {
 		isDirty = true;
+		isFullDirty = true;
 		return buffer;
 	}
 
 	private void bufferChanged() {
 		if (isBound) {
-			LSystem.base().graphics().gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, 0,
-					byteBuffer.limit(), byteBuffer);
-			isDirty = false;
+			upload(LSystem.base().graphics().gl);
 		}
 	}
 
+	private void upload(GL20 gl) {
+		final int limit = buffer.limit() * 4;
+		byteBuffer.limit(limit);
+		if (isFullDirty || dirtyStart < 0) {
+			gl.glBufferData(GL20.GL_ARRAY_BUFFER, limit, byteBuffer, usage);
+			uploadBytes += limit;
+		} else {
+			final int end = dirtyEnd < limit ? dirtyEnd : limit;
+			if (end > dirtyStart) {
+				final int pos = byteBuffer.position();
+				byteBuffer.position(dirtyStart);
+				gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, dirtyStart, end - dirtyStart, byteBuffer);
+				byteBuffer.position(pos);
+				uploadBytes += end - dirtyStart;
+			}
+		}
+		isDirty = false;
+		isFullDirty = false;
+		dirtyStart = -1;
+		dirtyEnd = -1;
+	}
+
+	/**
+	 * 累计上传到GPU的字节数
+	 * 
+	 * @return
+	 */
+	public int getUploadBytes() {
+		return uploadBytes;
+	}
+
 	@Override
 	public void setVertices(float[] vertices, int offset, int count) {
 		isDirty = true;
+		isFullDirty = true;
 		if (isDirect) {
 			LSystem.base().support().copy(vertices, byteBuffer, offset, count);
 			buffer.position(0);
@@ -119,6 +157,14 @@ public class VertexBufferObjectSubData implements VertexData {
 	public void updateVertices(int targetOffset, float[] vertices,
 			int sourceOffset, int count) {
 		isDirty = true;
+		final int start = targetOffset * 4;
+		final int end = (targetOffset + count) * 4;
+		if (dirtyStart < 0 || start < dirtyStart) {
+			dirtyStart = start;
+		}
+		if (end > dirtyEnd) {
+			dirtyEnd = end;
+		}
 		if (isDirect) {
 			final int pos = byteBuffer.position();
 			byteBuffer.position(targetOffset * 4);
@@ -141,10 +187,7 @@ public class VertexBufferObjectSubData implements VertexData {
 
 		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
 		if (isDirty) {
-			byteBuffer.limit(buffer.limit() * 4);
-			gl.glBufferData(GL20.GL_ARRAY_BUFFER, byteBuffer.limit(),
-					byteBuffer, usage);
-			isDirty = false;
+			upload(gl);
 		}
 
 		final int numAttributes = attributes.size();
@@ -204,6 +247,7 @@ public class VertexBufferObjectSubData implements VertexData {
 	public void invalidate() {
 		bufferHandle = createBufferObject();
 		isDirty = true;
+		isFullDirty = true;
 	}
 
 
@@ -0,0 +1,409 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.particle;
+
+import loon.Asyn.ParallelTask;
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTextureBatch;
+import loon.canvas.LColor;
+import loon.opengl.BlendState;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 以结构数组保存粒子的粒子系统,与SimpleParticleSystem用法相同(也可以直接添加SimpleConfigurableEmitter),适合数量极多的粒子.
+ * 
+ * 每个发射器的粒子位置,速度,颜色,生命与大小都保存在基本类型数组中(ParticleBuffer),SimpleConfigurableEmitter的粒子以循环批量更新,
+ * 其它发射器则借用一个SimpleParticle逐个调用updateParticle.绘制时不经过粒子对象,直接把四边形顶点写入纹理批处理的顶点数组,
+ * 粒子较多且平台支持多线程时,更新与顶点生成都会拆分为多个区段并行处理.
+ * 
+ * 粒子的图像,是否绘制为点与是否按方向旋转都以发射器的设置为准(不支持单个粒子设置不同的图像).
+ */
+public class ArrayParticleSystem extends SimpleParticleSystem {
+
+	/**
+	 * 粒子数量不少于此值时并行生成顶点
+	 */
+	private final static int PARALLEL_THRESHOLD = 8192;
+
+	private final static int MIN_BAND_PARTICLES = 2048;
+
+	private final ObjectMap<SimpleEmitter, ParticleBuffer> buffers = new ObjectMap<SimpleEmitter, ParticleBuffer>();
+
+	private final TArray<SimpleEmitter> completedEmitters = new TArray<SimpleEmitter>();
+
+	private final SimpleParticle staging;
+
+	private final SimpleParticle cursor;
+
+	private final VertexWriter writer = new VertexWriter();
+
+	private ParticleBuffer stagingBuffer;
+
+	private int particleCount;
+
+	public ArrayParticleSystem(LTexture defaultSprite) {
+		this(defaultSprite, 10000);
+	}
+
+	public ArrayParticleSystem(String defaultSpriteRef) {
+		this(defaultSpriteRef, 10000);
+	}
+
+	public ArrayParticleSystem(String defaultSpriteRef, int maxParticles) {
+		this(defaultSpriteRef, maxParticles, null);
+	}
+
+	public ArrayParticleSystem(String defaultSpriteRef, int maxParticles, LColor mask) {
+		super(defaultSpriteRef, maxParticles, mask);
+		this.staging = createParticle(this);
+		this.cursor = createParticle(this);
+	}
+
+	public ArrayParticleSystem(LTexture defaultSprite, int maxParticles) {
+		super(defaultSprite, maxParticles);
+		this.staging = createParticle(this);
+		this.cursor = createParticle(this);
+	}
+
+	@Override
+	public void addEmitter(SimpleEmitter emitter) {
+		emitters.add(emitter);
+		buffers.put(emitter, new ParticleBuffer(emitter, maxParticlesPerEmitter));
+	}
+
+	@Override
+	public void removeEmitter(SimpleEmitter emitter) {
+		emitters.remove(emitter);
+		removeBuffer(emitter);
+	}
+
+	private void removeBuffer(SimpleEmitter emitter) {
+		ParticleBuffer buffer = buffers.remove(emitter);
+		if (buffer != null && buffer == stagingBuffer) {
+			stagingBuffer = null;
+		}
+	}
+
+	/**
+	 * 把上一个发射的粒子写入所属的数组
+	 */
+	private void commitStaging() {
+		if (stagingBuffer != null) {
+			stagingBuffer.add(staging);
+			stagingBuffer = null;
+		}
+	}
+
+	@Override
+	public SimpleParticle getNewParticle(SimpleEmitter emitter, float life) {
+		commitStaging();
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer == null || buffer.isFull()) {
+			return dummy;
+		}
+		staging.init(emitter, life);
+		stagingBuffer = buffer;
+		return staging;
+	}
+
+	@Override
+	public SimpleParticleSystem release(SimpleParticle particle) {
+		// 生命结束的粒子在每次更新后统一移除
+		return this;
+	}
+
+	@Override
+	public SimpleParticleSystem releaseAll(SimpleEmitter emitter) {
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer != null) {
+			buffer.clear();
+			if (buffer == stagingBuffer) {
+				stagingBuffer = null;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public SimpleParticleSystem moveAll(SimpleEmitter emitter, float x, float y) {
+		commitStaging();
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer != null) {
+			buffer.move(x, y);
+		}
+		return this;
+	}
+
+	@Override
+	public void reset() {
+		stagingBuffer = null;
+		for (ParticleBuffer buffer : buffers.values()) {
+			buffer.clear();
+		}
+		particleCount = 0;
+		super.reset();
+	}
+
+	@Override
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	@Override
+	public void onUpdate(long delta) {
+		getSystemParticleImage();
+
+		completedEmitters.clear();
+		for (int i = 0; i < emitters.size; i++) {
+			SimpleEmitter emitter = emitters.get(i);
+			if (emitter.isEnabled()) {
+				emitter.update(this, delta);
+				commitStaging();
+				if (isRemoveCompletedEmitters() && emitter.completed()) {
+					completedEmitters.add(emitter);
+					removeBuffer(emitter);
+				}
+			}
+		}
+		emitters.removeAll(completedEmitters);
+
+		int count = 0;
+		for (int i = 0; i < emitters.size; i++) {
+			SimpleEmitter emitter = emitters.get(i);
+			if (!emitter.isEnabled()) {
+				continue;
+			}
+			ParticleBuffer buffer = buffers.get(emitter);
+			if (buffer == null || buffer.count == 0) {
+				continue;
+			}
+			count += buffer.count;
+			if (emitter instanceof SimpleConfigurableEmitter) {
+				((SimpleConfigurableEmitter) emitter).updateParticles(buffer, delta);
+			} else {
+				updateParticles(emitter, buffer, delta);
+			}
+			buffer.compact();
+		}
+		particleCount = count;
+	}
+
+	/**
+	 * 逐个更新一般发射器的粒子
+	 * 
+	 * @param emitter
+	 * @param buffer
+	 * @param delta
+	 */
+	private void updateParticles(SimpleEmitter emitter, ParticleBuffer buffer, long delta) {
+		final SimpleParticle p = cursor;
+		p.init(emitter, 0);
+		for (int i = 0, size = buffer.count; i < size; i++) {
+			buffer.load(i, p);
+			emitter.updateParticle(p, delta);
+			p.life -= delta;
+			if (p.life > 0) {
+				p.x += delta * p.velx;
+				p.y += delta * p.vely;
+			}
+			buffer.store(i, p);
+		}
+	}
+
+	@Override
+	public void repaint(GLEx g, float x, float y) {
+		final LTexture sprite = getSystemParticleImage();
+
+		for (int emitterIdx = 0; emitterIdx < emitters.size; emitterIdx++) {
+
+			SimpleEmitter emitter = emitters.get(emitterIdx);
+
+			if (!emitter.isEnabled()) {
+				continue;
+			}
+
+			ParticleBuffer buffer = buffers.get(emitter);
+			if (buffer == null || buffer.count == 0) {
+				continue;
+			}
+
+			final boolean points = emitter.usePoints(this);
+			LTexture image = points ? g.gfx().finalColorTex() : emitter.getImage();
+			if (image == null) {
+				image = sprite;
+			}
+			if (image == null) {
+				continue;
+			}
+
+			int mode = g.getBlendMode();
+
+			if (emitter.useAdditive()) {
+				g.setBlendMode(LSystem.MODE_ADD);
+			} else {
+				g.setBlendMode(getBlendingState());
+			}
+
+			image.glBegin();
+			LTextureBatch batch = image.getTextureBatch();
+			// 位置直接写入顶点,分段提交时也不受批处理偏移影响
+			batch.setLocation(0, 0);
+			batch.setBlendState(BlendState.Null);
+
+			writer.prepare(buffer, image, x, y, points, emitter.isOriented());
+			int first = 0;
+			while (first < buffer.count) {
+				final int quads = batch.reserveQuads(buffer.count - first);
+				if (quads <= 0) {
+					break;
+				}
+				writer.write(batch.getVertices(), batch.getVertexIndex(), first, quads);
+				batch.commitQuads(quads);
+				first += quads;
+			}
+			writer.buffer = null;
+
+			image.glEnd();
+
+			g.setBlendMode(mode);
+		}
+	}
+
+	/**
+	 * 把粒子转为四边形顶点(左上,左下,右下,右上,每个顶点x,y,color,u,v)
+	 */
+	private final static class VertexWriter implements ParallelTask {
+
+		ParticleBuffer buffer;
+
+		float[] vertices;
+
+		int vertexIndex, first, count, bandSize;
+
+		float offsetX, offsetY, u1, v1, u2, v2;
+
+		boolean points, oriented;
+
+		void prepare(ParticleBuffer buffer, LTexture image, float x, float y, boolean points, boolean oriented) {
+			this.buffer = buffer;
+			this.offsetX = x;
+			this.offsetY = y;
+			this.points = points;
+			this.oriented = oriented;
+			this.u1 = image.xOff();
+			this.v1 = image.yOff();
+			this.u2 = u1 + image.widthRatio();
+			this.v2 = v1 + image.heightRatio();
+		}
+
+		void write(float[] vertices, int vertexIndex, int first, int count) {
+			this.vertices = vertices;
+			this.vertexIndex = vertexIndex;
+			this.first = first;
+			this.count = count;
+			int bands = 1;
+			if (count >= PARALLEL_THRESHOLD) {
+				final int parallelism = LSystem.getParallelism();
+				if (parallelism > 1) {
+					bands = MathUtils.max(1, MathUtils.min(parallelism * 4, count / MIN_BAND_PARTICLES));
+				}
+			}
+			if (bands <= 1) {
+				write(0, count);
+			} else {
+				bandSize = (count + bands - 1) / bands;
+				LSystem.invokeParallel(bands, this);
+			}
+			this.vertices = null;
+		}
+
+		@Override
+		public void run(int index) {
+			final int start = index * bandSize;
+			write(start, MathUtils.min(count, start + bandSize));
+		}
+
+		private void write(int start, int end) {
+			final float[] verts = vertices;
+			final float[] xs = buffer.x, ys = buffer.y, sizes = buffer.size;
+			final float[] rs = buffer.r, gs = buffer.g, bs = buffer.b, as = buffer.a;
+			int idx = vertexIndex + start * 20;
+			for (int n = start; n < end; n++) {
+				final int i = first + n;
+				final float color = LColor.toFloatBits(clamp(rs[i]), clamp(gs[i]), clamp(bs[i]), clamp(as[i]));
+				final float cx = offsetX + xs[i];
+				final float cy = offsetY + ys[i];
+				final float half = points ? 0.5f : sizes[i] / 2;
+				float x1, y1, x2, y2, x3, y3, x4, y4;
+				if (oriented && !points) {
+					final float angle = MathUtils.atan2(ys[i], xs[i]);
+					final float cos = MathUtils.cos(angle) * half;
+					final float sin = MathUtils.sin(angle) * half;
+					x1 = cx - cos + sin;
+					y1 = cy - sin - cos;
+					x2 = cx - cos - sin;
+					y2 = cy - sin + cos;
+					x3 = cx + cos - sin;
+					y3 = cy + sin + cos;
+					x4 = cx + cos + sin;
+					y4 = cy + sin - cos;
+				} else {
+					x1 = x2 = cx - half;
+					x3 = x4 = cx + half;
+					y1 = y4 = cy - half;
+					y2 = y3 = cy + half;
+				}
+				verts[idx++] = x1;
+				verts[idx++] = y1;
+				verts[idx++] = color;
+				verts[idx++] = u1;
+				verts[idx++] = v1;
+
+				verts[idx++] = x2;
+				verts[idx++] = y2;
+				verts[idx++] = color;
+				verts[idx++] = u1;
+				verts[idx++] = v2;
+
+				verts[idx++] = x3;
+				verts[idx++] = y3;
+				verts[idx++] = color;
+				verts[idx++] = u2;
+				verts[idx++] = v2;
+
+				verts[idx++] = x4;
+				verts[idx++] = y4;
+				verts[idx++] = color;
+				verts[idx++] = u2;
+				verts[idx++] = v1;
+			}
+		}
+
+		private static float clamp(float v) {
+			return v < 0f ? 0f : (v > 1f ? 1f : v);
+		}
+	}
+
+}
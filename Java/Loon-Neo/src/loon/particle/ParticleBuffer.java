@@ -0,0 +1,155 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.particle;
+
+/**
+ * 以多个基本类型数组(结构数组)保存一个发射器的全部粒子,存活的粒子始终排列在0到count-1,粒子消亡时以最后一个粒子填补空位.
+ */
+final class ParticleBuffer {
+
+	final SimpleEmitter emitter;
+
+	final int capacity;
+
+	final float[] x, y, velx, vely;
+
+	final float[] r, g, b, a;
+
+	final float[] life, originalLife;
+
+	final float[] size, scaleY;
+
+	int count;
+
+	ParticleBuffer(SimpleEmitter emitter, int capacity) {
+		this.emitter = emitter;
+		this.capacity = capacity;
+		this.x = new float[capacity];
+		this.y = new float[capacity];
+		this.velx = new float[capacity];
+		this.vely = new float[capacity];
+		this.r = new float[capacity];
+		this.g = new float[capacity];
+		this.b = new float[capacity];
+		this.a = new float[capacity];
+		this.life = new float[capacity];
+		this.originalLife = new float[capacity];
+		this.size = new float[capacity];
+		this.scaleY = new float[capacity];
+	}
+
+	boolean isFull() {
+		return count >= capacity;
+	}
+
+	/**
+	 * 复制发射器初始化完成的粒子
+	 * 
+	 * @param p
+	 * @return
+	 */
+	boolean add(SimpleParticle p) {
+		if (count >= capacity || p.life <= 0) {
+			return false;
+		}
+		store(count++, p);
+		return true;
+	}
+
+	/**
+	 * 把指定粒子的数据读入p
+	 * 
+	 * @param idx
+	 * @param p
+	 */
+	void load(int idx, SimpleParticle p) {
+		p.x = x[idx];
+		p.y = y[idx];
+		p.velx = velx[idx];
+		p.vely = vely[idx];
+		p.setColor(r[idx], g[idx], b[idx], a[idx]);
+		p.life = life[idx];
+		p.originalLife = originalLife[idx];
+		p.size = size[idx];
+		p.scaleY = scaleY[idx];
+	}
+
+	/**
+	 * 把p的数据写入指定粒子
+	 * 
+	 * @param idx
+	 * @param p
+	 */
+	void store(int idx, SimpleParticle p) {
+		x[idx] = p.x;
+		y[idx] = p.y;
+		velx[idx] = p.velx;
+		vely[idx] = p.vely;
+		r[idx] = p.color.r;
+		g[idx] = p.color.g;
+		b[idx] = p.color.b;
+		a[idx] = p.color.a;
+		life[idx] = p.life;
+		originalLife[idx] = p.originalLife;
+		size[idx] = p.size;
+		scaleY[idx] = p.scaleY;
+	}
+
+	/**
+	 * 移除已经消亡的粒子
+	 */
+	void compact() {
+		int i = 0;
+		while (i < count) {
+			if (life[i] > 0) {
+				i++;
+				continue;
+			}
+			final int last = --count;
+			if (i != last) {
+				x[i] = x[last];
+				y[i] = y[last];
+				velx[i] = velx[last];
+				vely[i] = vely[last];
+				r[i] = r[last];
+				g[i] = g[last];
+				b[i] = b[last];
+				a[i] = a[last];
+				life[i] = life[last];
+				originalLife[i] = originalLife[last];
+				size[i] = size[last];
+				scaleY[i] = scaleY[last];
+			}
+		}
+	}
+
+	void move(float dx, float dy) {
+		for (int i = 0; i < count; i++) {
+			x[i] += dx;
+			y[i] += dy;
+		}
+	}
+
+	void clear() {
+		count = 0;
+	}
+
+}
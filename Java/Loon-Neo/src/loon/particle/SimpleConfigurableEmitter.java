@@ -20,6 +20,7 @@
  */
 package loon.particle;
 
+import loon.Asyn.ParallelTask;
 import loon.LTexture;
 import loon.LSystem;
 import loon.canvas.LColor;
@@ -356,6 +357,160 @@ public class SimpleConfigurableEmitter implements SimpleEmitter {
 		}
 	}
 
+	/**
+	 * 粒子数量不少于此值时按区段并行更新
+	 */
+	private final static int PARALLEL_THRESHOLD = 8192;
+
+	private final static int MIN_BAND_PARTICLES = 2048;
+
+	private ParticleUpdater updater;
+
+	/**
+	 * 批量更新一组粒子(效果与对每个粒子调用updateParticle后再按速度移动相同),粒子较多且平台支持多线程时并行处理
+	 * 
+	 * @param buffer
+	 * @param delta
+	 */
+	void updateParticles(ParticleBuffer buffer, long delta) {
+		final int count = buffer.count;
+		if (count == 0) {
+			return;
+		}
+		particleCount += count;
+		if (updater == null) {
+			updater = new ParticleUpdater();
+		}
+		updater.prepare(buffer, delta);
+		int bands = 1;
+		if (count >= PARALLEL_THRESHOLD) {
+			final int parallelism = LSystem.getParallelism();
+			if (parallelism > 1) {
+				bands = MathUtils.max(1, MathUtils.min(parallelism * 4, count / MIN_BAND_PARTICLES));
+			}
+		}
+		if (bands <= 1) {
+			updater.update(0, count);
+		} else {
+			updater.bandSize = (count + bands - 1) / bands;
+			LSystem.invokeParallel(bands, updater);
+		}
+		updater.buffer = null;
+	}
+
+	/**
+	 * 批量更新粒子的参数,每次更新前由发射器当前设置生成,多个区段共享
+	 */
+	private final class ParticleUpdater implements ParallelTask {
+
+		ParticleBuffer buffer;
+
+		float delta, adjustX, adjustY, windVelocity, gravityVelocity, growth;
+
+		float startA, endA;
+
+		boolean alphaActive, sizeActive, velocityActive, scaleActive;
+
+		float[] colorPos = new float[4], colorR = new float[4], colorG = new float[4], colorB = new float[4];
+
+		int colorCount, bandSize;
+
+		void prepare(ParticleBuffer buffer, long delta) {
+			this.buffer = buffer;
+			this.delta = delta;
+			this.adjustX = adjustx;
+			this.adjustY = adjusty;
+			this.windVelocity = windFactor.getValue(0) * 0.00005f * delta;
+			this.gravityVelocity = gravityFactor.getValue(0) * 0.00005f * delta;
+			this.growth = delta * growthFactor.getValue(0) * 0.001f;
+			this.startA = startAlpha.getValue(0) / 255.0f;
+			this.endA = endAlpha.getValue(0) / 255.0f;
+			this.alphaActive = alpha.isActive();
+			this.sizeActive = size.isActive();
+			this.velocityActive = velocity.isActive();
+			this.scaleActive = scaleY.isActive();
+			colorCount = colors.size;
+			if (colorPos.length < colorCount) {
+				colorPos = new float[colorCount];
+				colorR = new float[colorCount];
+				colorG = new float[colorCount];
+				colorB = new float[colorCount];
+			}
+			for (int i = 0; i < colorCount; i++) {
+				ColorRecord rec = colors.get(i);
+				colorPos[i] = rec.pos;
+				colorR[i] = rec.col.r;
+				colorG[i] = rec.col.g;
+				colorB[i] = rec.col.b;
+			}
+		}
+
+		@Override
+		public void run(int index) {
+			final int start = index * bandSize;
+			update(start, MathUtils.min(buffer.count, start + bandSize));
+		}
+
+		void update(int start, int end) {
+			final float[] xs = buffer.x, ys = buffer.y, vxs = buffer.velx, vys = buffer.vely;
+			final float[] rs = buffer.r, gs = buffer.g, bs = buffer.b, as = buffer.a;
+			final float[] lifes = buffer.life, originalLifes = buffer.originalLife;
+			final float[] sizes = buffer.size, scales = buffer.scaleY;
+			final float[] pos = colorPos;
+			for (int i = start; i < end; i++) {
+				xs[i] += adjustX;
+				ys[i] += adjustY;
+				vxs[i] += windVelocity;
+				vys[i] += gravityVelocity;
+
+				final float offset = lifes[i] / originalLifes[i];
+				final float inv = 1 - offset;
+				// 与updateParticle相同,多个区间都包含inv时使用最后一个
+				for (int c = colorCount - 2; c >= 0; c--) {
+					if ((inv >= pos[c]) && (inv <= pos[c + 1])) {
+						final float colOffset = 1 - (inv - pos[c]) / (pos[c + 1] - pos[c]);
+						final float colInv = 1 - colOffset;
+						rs[i] = (colorR[c] * colOffset) + (colorR[c + 1] * colInv);
+						gs[i] = (colorG[c] * colOffset) + (colorG[c + 1] * colInv);
+						bs[i] = (colorB[c] * colOffset) + (colorB[c + 1] * colInv);
+						if (alphaActive) {
+							as[i] = alpha.getValue(inv) / 255.0f;
+						} else {
+							as[i] = (startA * offset) + (endA * inv);
+						}
+						break;
+					}
+				}
+
+				if (sizeActive) {
+					sizes[i] = size.getValue(inv);
+				} else {
+					sizes[i] = MathUtils.max(0, sizes[i] + growth);
+				}
+
+				if (velocityActive) {
+					final float speed = velocity.getValue(inv);
+					final float current = MathUtils.sqrt((vxs[i] * vxs[i]) + (vys[i] * vys[i]));
+					if (current > 0) {
+						vxs[i] = vxs[i] * speed / current;
+						vys[i] = vys[i] * speed / current;
+					}
+				}
+
+				if (scaleActive) {
+					scales[i] = scaleY.getValue(inv);
+				}
+
+				final float life = lifes[i] - delta;
+				lifes[i] = life;
+				if (life > 0) {
+					xs[i] += delta * vxs[i];
+					ys[i] += delta * vys[i];
+				}
+			}
+		}
+	}
+
 	@Override
 	public boolean completed() {
 		if (engine == null) {
@@ -112,6 +112,10 @@ public class SimpleParticleSystem extends Entity {
 		removeCompletedEmitters = remove;
 	}
 
+	public boolean isRemoveCompletedEmitters() {
+		return removeCompletedEmitters;
+	}
+
 	public void setUsePoints(boolean usePoints) {
 		this.usePoints = usePoints;
 	}
@@ -246,6 +250,18 @@ public class SimpleParticleSystem extends Entity {
 
 	}
 
+	/**
+	 * 获得粒子系统的默认图像(需要时加载)
+	 * 
+	 * @return
+	 */
+	protected LTexture getSystemParticleImage() {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+		return sprite;
+	}
+
 	private void loadSystemParticleImage() {
 		try {
 			if (mask != null) {
@@ -266,7 +282,6 @@ public class SimpleParticleSystem extends Entity {
 		}
 
 		removeMe.clear();
-		TArray<SimpleEmitter> emitters = new TArray<SimpleEmitter>(this.emitters);
 		for (int i = 0; i < emitters.size; i++) {
 			SimpleEmitter emitter = emitters.get(i);
 			if (emitter.isEnabled()) {
@@ -279,7 +294,7 @@ public class SimpleParticleSystem extends Entity {
 				}
 			}
 		}
-		this.emitters.removeAll(removeMe);
+		emitters.removeAll(removeMe);
 
 		pCount = 0;
 
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils;
+
+/**
+ * BinaryHeap的基本类型版本,以int编号为元素,float为排序值,最小值优先,并支持直接修改已入堆元素的分数.
+ *
+ * 元素编号必须位于[0,capacity)之间,内部数组在多次使用间复用,不产生额外对象.
+ */
+public class IntBinaryHeap {
+
+	private int[] items;
+
+	private float[] scores;
+
+	private int[] indices;
+
+	private int size;
+
+	public IntBinaryHeap() {
+		this(16);
+	}
+
+	public IntBinaryHeap(int capacity) {
+		this.items = new int[capacity];
+		this.scores = new float[capacity];
+		this.indices = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			indices[i] = -1;
+		}
+	}
+
+	/**
+	 * 确保可容纳指定数量的元素编号
+	 *
+	 * @param capacity
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= indices.length) {
+			return;
+		}
+		int oldSize = indices.length;
+		int[] newIndices = new int[capacity];
+		System.arraycopy(indices, 0, newIndices, 0, oldSize);
+		for (int i = oldSize; i < capacity; i++) {
+			newIndices[i] = -1;
+		}
+		int[] newItems = new int[capacity];
+		System.arraycopy(items, 0, newItems, 0, size);
+		float[] newScores = new float[capacity];
+		System.arraycopy(scores, 0, newScores, 0, size);
+		this.indices = newIndices;
+		this.items = newItems;
+		this.scores = newScores;
+	}
+
+	public void push(int id, float score) {
+		if (id >= indices.length) {
+			ensureCapacity(MathUtils.max(id + 1, indices.length << 1));
+		}
+		int idx = indices[id];
+		if (idx != -1) {
+			update(id, score);
+			return;
+		}
+		items[size] = id;
+		scores[size] = score;
+		indices[id] = size;
+		sinkDown(size++);
+	}
+
+	/**
+	 * 修改已入堆元素的分数,若元素不在堆中则加入
+	 *
+	 * @param id
+	 * @param score
+	 */
+	public void update(int id, float score) {
+		int idx = id < indices.length ? indices[id] : -1;
+		if (idx == -1) {
+			push(id, score);
+			return;
+		}
+		float old = scores[idx];
+		scores[idx] = score;
+		if (score < old) {
+			sinkDown(idx);
+		} else {
+			bubbleUp(idx);
+		}
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < indices.length && indices[id] != -1;
+	}
+
+	public int peek() {
+		return size == 0 ? -1 : items[0];
+	}
+
+	public float peekScore() {
+		return size == 0 ? 0f : scores[0];
+	}
+
+	public int pop() {
+		if (size == 0) {
+			return -1;
+		}
+		int result = items[0];
+		indices[result] = -1;
+		if (--size > 0) {
+			items[0] = items[size];
+			scores[0] = scores[size];
+			indices[items[0]] = 0;
+			bubbleUp(0);
+		}
+		return result;
+	}
+
+	private void sinkDown(int n) {
+		final int element = items[n];
+		final float elemScore = scores[n];
+		for (; n > 0;) {
+			int parentN = ((n + 1) >> 1) - 1;
+			if (elemScore < scores[parentN]) {
+				items[n] = items[parentN];
+				scores[n] = scores[parentN];
+				indices[items[n]] = n;
+				n = parentN;
+			} else {
+				break;
+			}
+		}
+		items[n] = element;
+		scores[n] = elemScore;
+		indices[element] = n;
+	}
+
+	private void bubbleUp(int n) {
+		final int element = items[n];
+		final float elemScore = scores[n];
+		for (;;) {
+			int child2N = (n + 1) << 1;
+			int child1N = child2N - 1;
+			int swap = -1;
+			float swapScore = elemScore;
+			if (child1N < size && scores[child1N] < swapScore) {
+				swap = child1N;
+				swapScore = scores[child1N];
+			}
+			if (child2N < size && scores[child2N] < swapScore) {
+				swap = child2N;
+			}
+			if (swap == -1) {
+				break;
+			}
+			items[n] = items[swap];
+			scores[n] = scores[swap];
+			indices[items[n]] = n;
+			n = swap;
+		}
+		items[n] = element;
+		scores[n] = elemScore;
+		indices[element] = n;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			indices[items[i]] = -1;
+		}
+		size = 0;
+	}
+
+}
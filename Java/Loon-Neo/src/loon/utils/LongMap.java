@@ -0,0 +1,256 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils;
+
+/**
+ * 以long为键的开放寻址(线性探测)哈希表,键不装箱,删除时后移补位而不留墓碑,适合以两个int坐标打包为键的网格存储.
+ *
+ * 注意:本集合不接受null值.
+ */
+public class LongMap<T> implements IArray {
+
+	/**
+	 * 将两个int坐标打包为一个long键
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	public static int unpackX(long key) {
+		return (int) (key >> 32);
+	}
+
+	public static int unpackY(long key) {
+		return (int) key;
+	}
+
+	private final float loaderFactor;
+
+	private long[] keysTable;
+
+	private T[] valuesTable;
+
+	private int mask;
+
+	private int threshold;
+
+	private int size;
+
+	public LongMap() {
+		this(CollectionUtils.INITIAL_CAPACITY);
+	}
+
+	public LongMap(int capacity) {
+		this(capacity, 0.6f);
+	}
+
+	public LongMap(int capacity, float factor) {
+		this.loaderFactor = MathUtils.clamp(factor, 0.1f, 0.9f);
+		resize(MathUtils.nextPowerOfTwo(MathUtils.max(4, capacity)));
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int find(long key) {
+		for (int index = hash(key) & mask;; index = (index + 1) & mask) {
+			if (valuesTable[index] == null) {
+				return -1;
+			}
+			if (keysTable[index] == key) {
+				return index;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		return find(key) != -1;
+	}
+
+	public boolean containsKey(int x, int y) {
+		return find(pack(x, y)) != -1;
+	}
+
+	public T get(long key) {
+		final int index = find(key);
+		return index == -1 ? null : valuesTable[index];
+	}
+
+	public T get(int x, int y) {
+		return get(pack(x, y));
+	}
+
+	public T put(int x, int y, T value) {
+		return put(pack(x, y), value);
+	}
+
+	public T put(long key, T value) {
+		if (value == null) {
+			return remove(key);
+		}
+		int index = hash(key) & mask;
+		for (; valuesTable[index] != null; index = (index + 1) & mask) {
+			if (keysTable[index] == key) {
+				final T old = valuesTable[index];
+				valuesTable[index] = value;
+				return old;
+			}
+		}
+		keysTable[index] = key;
+		valuesTable[index] = value;
+		if (++size > threshold) {
+			resize(valuesTable.length << 1);
+		}
+		return null;
+	}
+
+	public T remove(int x, int y) {
+		return remove(pack(x, y));
+	}
+
+	public T remove(long key) {
+		int index = find(key);
+		if (index == -1) {
+			return null;
+		}
+		final T old = valuesTable[index];
+		// 后移补位,保证探测链不被打断
+		for (int next = (index + 1) & mask; valuesTable[next] != null; next = (next + 1) & mask) {
+			final int slot = hash(keysTable[next]) & mask;
+			if (((next - slot) & mask) >= ((next - index) & mask)) {
+				keysTable[index] = keysTable[next];
+				valuesTable[index] = valuesTable[next];
+				index = next;
+			}
+		}
+		keysTable[index] = 0;
+		valuesTable[index] = null;
+		size--;
+		return old;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void resize(int newCapacity) {
+		final long[] oldKeys = keysTable;
+		final T[] oldValues = valuesTable;
+		keysTable = new long[newCapacity];
+		valuesTable = (T[]) new Object[newCapacity];
+		mask = newCapacity - 1;
+		threshold = (int) (newCapacity * loaderFactor);
+		if (oldValues != null) {
+			for (int i = 0; i < oldValues.length; i++) {
+				final T value = oldValues[i];
+				if (value != null) {
+					int index = hash(oldKeys[i]) & mask;
+					for (; valuesTable[index] != null;) {
+						index = (index + 1) & mask;
+					}
+					keysTable[index] = oldKeys[i];
+					valuesTable[index] = value;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 返回内部表容量,配合getKeyAt与getValueAt可以无分配地遍历全部数据
+	 *
+	 * @return
+	 */
+	public int capacity() {
+		return valuesTable.length;
+	}
+
+	public long getKeyAt(int index) {
+		return keysTable[index];
+	}
+
+	public T getValueAt(int index) {
+		return valuesTable[index];
+	}
+
+	public long[] keys() {
+		final long[] keys = new long[size];
+		int found = 0;
+		for (int i = 0; i < valuesTable.length && found < size; i++) {
+			if (valuesTable[i] != null) {
+				keys[found++] = keysTable[i];
+			}
+		}
+		return keys;
+	}
+
+	public TArray<T> values() {
+		final TArray<T> values = new TArray<T>(size);
+		for (int i = 0; i < valuesTable.length; i++) {
+			if (valuesTable[i] != null) {
+				values.add(valuesTable[i]);
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		for (int i = 0; i < valuesTable.length; i++) {
+			keysTable[i] = 0;
+			valuesTable[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		final StrBuilder buffer = new StrBuilder(32);
+		buffer.append('{');
+		boolean first = true;
+		for (int i = 0; i < valuesTable.length; i++) {
+			if (valuesTable[i] != null) {
+				if (!first) {
+					buffer.append(',');
+				}
+				first = false;
+				buffer.append(keysTable[i]).append('=').append(valuesTable[i]);
+			}
+		}
+		buffer.append('}');
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.json;
+
+import java.io.InputStream;
+
+import loon.Json;
+import loon.LSysException;
+import loon.utils.FloatArray;
+import loon.utils.IntArray;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.json.JsonReader.Token;
+import loon.utils.reflect.ArrayReflection;
+import loon.utils.reflect.ClassReflection;
+import loon.utils.reflect.Field;
+import loon.utils.reflect.ReflectionException;
+
+/**
+ * 以JsonReader流式读取json并直接填充对象的字段(通过loon.utils.reflect),不生成JsonObject/JsonArray树.
+ *
+ * 支持基本类型及其包装类,String,枚举,数组,TArray,IntArray,FloatArray,ObjectMap(键为字符串),Json.Object与Json.Array,
+ * 以及由以上类型组成的对象(需要无参构造函数).static,transient与final的字段不会被填充,对象中没有的字段会被跳过.
+ *
+ * <pre>
+ * SpriteData data = new JsonBinder().fromJson(SpriteData.class, bytes);
+ * </pre>
+ */
+public class JsonBinder {
+
+	private final ObjectMap<Class<?>, ObjectMap<String, Field>> fieldsCache = new ObjectMap<Class<?>, ObjectMap<String, Field>>();
+
+	private boolean ignoreUnknownFields = true;
+
+	public <T> T fromJson(Class<T> type, byte[] bytes) {
+		return fromJson(type, new JsonReader(bytes));
+	}
+
+	public <T> T fromJson(Class<T> type, InputStream in) {
+		return fromJson(type, new JsonReader(in));
+	}
+
+	public <T> T fromJson(Class<T> type, String json) {
+		return fromJson(type, new JsonReader(json));
+	}
+
+	private <T> T fromJson(Class<T> type, JsonReader reader) {
+		try {
+			final T result = read(reader, type);
+			if (reader.peek() != Token.END_DOCUMENT) {
+				throw new JsonParserException(null, "Expected end of input, got " + reader.peek(),
+						reader.getLinePosition(), reader.getCharPosition(), reader.getCharOffset());
+			}
+			return result;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 从读取器的当前位置读取一个指定类型的数据
+	 *
+	 * @param reader
+	 * @param type
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T read(JsonReader reader, Class<T> type) {
+		return (T) readValue(reader, type, null, null);
+	}
+
+	/**
+	 * 从读取器的当前位置读取一个json对象,填充到已有的对象中
+	 *
+	 * @param reader
+	 * @param target
+	 * @return
+	 */
+	public <T> T readInto(JsonReader reader, T target) {
+		if (reader.peek() == Token.NULL) {
+			reader.nextNull();
+			return target;
+		}
+		readFields(reader, target);
+		return target;
+	}
+
+	public <T> T readInto(byte[] bytes, T target) {
+		final JsonReader reader = new JsonReader(bytes);
+		try {
+			return readInto(reader, target);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public boolean isIgnoreUnknownFields() {
+		return ignoreUnknownFields;
+	}
+
+	/**
+	 * 遇到对象中不存在的字段时跳过(默认),为false时抛出异常
+	 *
+	 * @param ignore
+	 * @return
+	 */
+	public JsonBinder setIgnoreUnknownFields(boolean ignore) {
+		this.ignoreUnknownFields = ignore;
+		return this;
+	}
+
+	private ObjectMap<String, Field> getFields(Class<?> type) {
+		ObjectMap<String, Field> fields = fieldsCache.get(type);
+		if (fields != null) {
+			return fields;
+		}
+		fields = new ObjectMap<String, Field>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			final Field[] declared = ClassReflection.getDeclaredFields(c);
+			for (int i = 0; i < declared.length; i++) {
+				final Field field = declared[i];
+				if (field.isStatic() || field.isTransient() || field.isFinal() || field.isSynthetic()) {
+					continue;
+				}
+				if (fields.containsKey(field.getName())) {
+					continue;
+				}
+				if (!field.isAccessible()) {
+					try {
+						field.setAccessible(true);
+					} catch (Throwable e) {
+						continue;
+					}
+				}
+				fields.put(field.getName(), field);
+			}
+		}
+		fieldsCache.put(type, fields);
+		return fields;
+	}
+
+	private void readFields(JsonReader reader, Object target) {
+		final ObjectMap<String, Field> fields = getFields(target.getClass());
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			final Field field = fields.get(name);
+			if (field == null) {
+				if (!ignoreUnknownFields) {
+					throw new JsonParserException(null,
+							"Field not found: " + name + ", for class: " + target.getClass().getName(),
+							reader.getLinePosition(), reader.getCharPosition(), reader.getCharOffset());
+				}
+				reader.skipValue();
+				continue;
+			}
+			try {
+				readField(reader, target, field);
+			} catch (ReflectionException e) {
+				throw new LSysException("Json bind exception: " + name + ", for class: " + target.getClass().getName(),
+						e);
+			}
+		}
+		reader.endObject();
+	}
+
+	private void readField(JsonReader reader, Object target, Field field) throws ReflectionException {
+		final Class<?> type = field.getType();
+		if (type.isPrimitive()) {
+			if (reader.peek() == Token.NULL) {
+				reader.nextNull();
+				return;
+			}
+			// 基本类型的字段直接写入,不产生装箱对象
+			if (type == int.class) {
+				field.setInt(target, reader.nextInt());
+			} else if (type == float.class) {
+				field.setFloat(target, reader.nextFloat());
+			} else if (type == boolean.class) {
+				field.setBoolean(target, reader.nextBoolean());
+			} else if (type == double.class) {
+				field.setDouble(target, reader.nextDouble());
+			} else if (type == long.class) {
+				field.setLong(target, reader.nextLong());
+			} else {
+				field.set(target, readValue(reader, type, null, null));
+			}
+			return;
+		}
+		final Object existing = field.get(target);
+		final Object value = readValue(reader, type, field, existing);
+		if (value != existing) {
+			field.set(target, value);
+		}
+	}
+
+	private Object readValue(JsonReader reader, Class<?> type, Field field, Object existing) {
+		final Token token = reader.peek();
+		if (token == Token.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		if (type == null || type == Object.class || type == Json.Object.class || type == Json.Array.class) {
+			return reader.readValue();
+		}
+		if (type == String.class) {
+			return reader.nextString();
+		}
+		if (type == int.class || type == Integer.class) {
+			return Integer.valueOf(reader.nextInt());
+		}
+		if (type == float.class || type == Float.class) {
+			return Float.valueOf(reader.nextFloat());
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return Boolean.valueOf(reader.nextBoolean());
+		}
+		if (type == double.class || type == Double.class) {
+			return Double.valueOf(reader.nextDouble());
+		}
+		if (type == long.class || type == Long.class) {
+			return Long.valueOf(reader.nextLong());
+		}
+		if (type == short.class || type == Short.class) {
+			return Short.valueOf((short) reader.nextInt());
+		}
+		if (type == byte.class || type == Byte.class) {
+			return Byte.valueOf((byte) reader.nextInt());
+		}
+		if (type == char.class || type == Character.class) {
+			final String value = reader.nextString();
+			return Character.valueOf(value.length() > 0 ? value.charAt(0) : (char) 0);
+		}
+		if (type.isEnum()) {
+			final String name = reader.nextString();
+			final Object[] constants = type.getEnumConstants();
+			for (int i = 0; i < constants.length; i++) {
+				if (((Enum<?>) constants[i]).name().equals(name)) {
+					return constants[i];
+				}
+			}
+			throw new JsonParserException(null, "Enum constant not found: " + name + ", for class: " + type.getName(),
+					reader.getLinePosition(), reader.getCharPosition(), reader.getCharOffset());
+		}
+		if (type.isArray()) {
+			return readArray(reader, type.getComponentType());
+		}
+		if (type == IntArray.class) {
+			final IntArray array = existing != null ? (IntArray) existing : new IntArray();
+			array.clear();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				array.add(reader.nextInt());
+			}
+			reader.endArray();
+			return array;
+		}
+		if (type == FloatArray.class) {
+			final FloatArray array = existing != null ? (FloatArray) existing : new FloatArray();
+			array.clear();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				array.add(reader.nextFloat());
+			}
+			reader.endArray();
+			return array;
+		}
+		if (type == TArray.class) {
+			@SuppressWarnings("unchecked")
+			final TArray<Object> array = existing != null ? (TArray<Object>) existing : new TArray<Object>();
+			array.clear();
+			final Class<?> elementType = field == null ? null : field.getElementType(0);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				array.add(readValue(reader, elementType, null, null));
+			}
+			reader.endArray();
+			return array;
+		}
+		if (ClassReflection.isAssignableFrom(ObjectMap.class, type)) {
+			@SuppressWarnings("unchecked")
+			final ObjectMap<String, Object> map = existing != null ? (ObjectMap<String, Object>) existing
+					: (ObjectMap<String, Object>) newInstance(type);
+			map.clear();
+			final Class<?> valueType = field == null ? null : field.getElementType(1);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				final String name = reader.nextName();
+				map.put(name, readValue(reader, valueType, null, null));
+			}
+			reader.endObject();
+			return map;
+		}
+		final Object object = existing != null ? existing : newInstance(type);
+		readFields(reader, object);
+		return object;
+	}
+
+	private Object readArray(JsonReader reader, Class<?> componentType) {
+		if (componentType == int.class) {
+			final IntArray array = new IntArray();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				array.add(reader.nextInt());
+			}
+			reader.endArray();
+			return array.toArray();
+		}
+		if (componentType == float.class) {
+			final FloatArray array = new FloatArray();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				array.add(reader.nextFloat());
+			}
+			reader.endArray();
+			return array.toArray();
+		}
+		final TArray<Object> values = new TArray<Object>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			values.add(readValue(reader, componentType, null, null));
+		}
+		reader.endArray();
+		final Object array = ArrayReflection.newInstance(componentType, values.size);
+		for (int i = 0; i < values.size; i++) {
+			ArrayReflection.set(array, i, values.get(i));
+		}
+		return array;
+	}
+
+	private static Object newInstance(Class<?> type) {
+		try {
+			return ClassReflection.newInstance(type);
+		} catch (ReflectionException e) {
+			throw new LSysException("Json bind exception: " + type.getName(), e);
+		}
+	}
+
+}
@@ -0,0 +1,874 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.utils.MathUtils;
+
+/**
+ * 流式(拉取式)的json读取器,直接读取UTF-8编码的byte数组或InputStream,边读边解码,不生成完整的JsonObject/JsonArray树.
+ *
+ * 数字以long或double读出,不产生装箱对象,不需要的数据可以用skipValue跳过(跳过时字符串也不会被解码).
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(bytes);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ * 	String name = reader.nextName();
+ * 	if ("width".equals(name)) {
+ * 		width = reader.nextInt();
+ * 	} else {
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.endObject();
+ * </pre>
+ */
+public class JsonReader implements LRelease {
+
+	/**
+	 * 读取器当前所在位置的数据类型
+	 */
+	public static enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT;
+	}
+
+	private final static int EMPTY_ARRAY = 1;
+
+	private final static int NONEMPTY_ARRAY = 2;
+
+	private final static int EMPTY_OBJECT = 3;
+
+	private final static int DANGLING_NAME = 4;
+
+	private final static int NONEMPTY_OBJECT = 5;
+
+	private final static int EMPTY_DOCUMENT = 6;
+
+	private final static int NONEMPTY_DOCUMENT = 7;
+
+	private final static int MAX_EXACT_DIGITS = 15;
+
+	private final static double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private InputStream in;
+
+	private byte[] buffer;
+
+	private int pos, limit;
+
+	private int bufferOffset;
+
+	private int linePos = 1, lineStart;
+
+	private int[] stack = new int[32];
+
+	private int depth;
+
+	private Token peeked;
+
+	private boolean peekedBoolean;
+
+	private boolean peekedInteger;
+
+	private long peekedLong;
+
+	private double peekedDouble;
+
+	private char[] chars = new char[64];
+
+	private char[] number = new char[32];
+
+	private int numberLength;
+
+	/**
+	 * 读取UTF-8编码的byte数组
+	 *
+	 * @param bytes
+	 */
+	public JsonReader(byte[] bytes) {
+		this(bytes, 0, bytes == null ? 0 : bytes.length);
+	}
+
+	public JsonReader(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			throw new JsonParserException(new Exception(), "The json is null !", 0, 0, 0);
+		}
+		this.buffer = bytes;
+		this.pos = offset;
+		this.limit = offset + length;
+		this.lineStart = offset;
+		this.bufferOffset = -offset;
+		this.stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * 读取UTF-8编码的InputStream(每次读取8KB)
+	 *
+	 * @param in
+	 */
+	public JsonReader(InputStream in) {
+		this(in, 8192);
+	}
+
+	public JsonReader(InputStream in, int bufferSize) {
+		if (in == null) {
+			throw new JsonParserException(new Exception(), "The json is null !", 0, 0, 0);
+		}
+		this.in = in;
+		this.buffer = new byte[MathUtils.max(64, bufferSize)];
+		this.stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * 读取字符串(会先转为UTF-8编码的byte数组)
+	 *
+	 * @param json
+	 */
+	public JsonReader(String json) {
+		this(toBytes(json));
+	}
+
+	private static byte[] toBytes(String json) {
+		if (json == null) {
+			return null;
+		}
+		try {
+			return json.getBytes(LSystem.ENCODING);
+		} catch (Exception e) {
+			return json.getBytes();
+		}
+	}
+
+	/**
+	 * 返回下一个数据的类型,不会移动读取位置
+	 *
+	 * @return
+	 */
+	public Token peek() {
+		if (peeked == null) {
+			peeked = doPeek();
+		}
+		return peeked;
+	}
+
+	/**
+	 * 当前数组或对象中是否还有数据
+	 *
+	 * @return
+	 */
+	public boolean hasNext() {
+		final Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginArray() {
+		expect(Token.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+		peeked = null;
+	}
+
+	public void endArray() {
+		expect(Token.END_ARRAY);
+		depth--;
+		peeked = null;
+	}
+
+	public void beginObject() {
+		expect(Token.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+		peeked = null;
+	}
+
+	public void endObject() {
+		expect(Token.END_OBJECT);
+		depth--;
+		peeked = null;
+	}
+
+	public String nextName() {
+		expect(Token.NAME);
+		peeked = null;
+		return readString();
+	}
+
+	/**
+	 * 读取字符串,数字与布尔值会被转为字符串
+	 *
+	 * @return
+	 */
+	public String nextString() {
+		final Token token = peek();
+		peeked = null;
+		switch (token) {
+		case STRING:
+			return readString();
+		case NUMBER:
+			return new String(number, 0, numberLength);
+		case BOOLEAN:
+			return String.valueOf(peekedBoolean);
+		case NULL:
+			return null;
+		default:
+			peeked = token;
+			throw syntaxError("Expected STRING, got " + token);
+		}
+	}
+
+	public boolean nextBoolean() {
+		final Token token = peek();
+		if (token == Token.BOOLEAN) {
+			peeked = null;
+			return peekedBoolean;
+		}
+		if (token == Token.STRING) {
+			return "true".equalsIgnoreCase(nextString());
+		}
+		throw syntaxError("Expected BOOLEAN, got " + token);
+	}
+
+	public void nextNull() {
+		expect(Token.NULL);
+		peeked = null;
+	}
+
+	public long nextLong() {
+		final Token token = peek();
+		if (token == Token.NUMBER) {
+			peeked = null;
+			if (peekedInteger) {
+				return peekedLong;
+			}
+			final long result = (long) peekedDouble;
+			if (result != peekedDouble) {
+				throw syntaxError("Expected a long but was " + peekedDouble);
+			}
+			return result;
+		}
+		if (token == Token.STRING) {
+			final String value = nextString();
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				throw new JsonParserException(e, "Malformed number: " + value, linePos, getCharPosition(), getCharOffset());
+			}
+		}
+		throw syntaxError("Expected NUMBER, got " + token);
+	}
+
+	public int nextInt() {
+		final long result = nextLong();
+		if (result != (int) result) {
+			throw syntaxError("Expected an int but was " + result);
+		}
+		return (int) result;
+	}
+
+	public double nextDouble() {
+		final Token token = peek();
+		if (token == Token.NUMBER) {
+			peeked = null;
+			return peekedInteger ? peekedLong : peekedDouble;
+		}
+		if (token == Token.STRING) {
+			final String value = nextString();
+			try {
+				return Double.parseDouble(value);
+			} catch (NumberFormatException e) {
+				throw new JsonParserException(e, "Malformed number: " + value, linePos, getCharPosition(), getCharOffset());
+			}
+		}
+		throw syntaxError("Expected NUMBER, got " + token);
+	}
+
+	public float nextFloat() {
+		return (float) nextDouble();
+	}
+
+	/**
+	 * 跳过下一个数据(包括其中全部的子数据),数据不会被解码或保存
+	 */
+	public void skipValue() {
+		int count = 0;
+		do {
+			final Token token = peek();
+			switch (token) {
+			case BEGIN_ARRAY:
+				beginArray();
+				count++;
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+				count++;
+				break;
+			case END_ARRAY:
+				endArray();
+				count--;
+				break;
+			case END_OBJECT:
+				endObject();
+				count--;
+				break;
+			case NAME:
+			case STRING:
+				peeked = null;
+				skipString();
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of input");
+			default:
+				peeked = null;
+				break;
+			}
+		} while (count != 0);
+	}
+
+	/**
+	 * 把下一个数据读取为JsonObject,JsonArray,String,Number,Boolean或null(与JsonParser的结果相同)
+	 *
+	 * @return
+	 */
+	public Object readValue() {
+		final Token token = peek();
+		switch (token) {
+		case BEGIN_ARRAY:
+			final JsonArray array = new JsonArray();
+			beginArray();
+			while (hasNext()) {
+				array.add(readValue());
+			}
+			endArray();
+			return array;
+		case BEGIN_OBJECT:
+			final JsonObject object = new JsonObject();
+			beginObject();
+			while (hasNext()) {
+				final String name = nextName();
+				object.put(name, readValue());
+			}
+			endObject();
+			return object;
+		case STRING:
+			return nextString();
+		case NUMBER:
+			peeked = null;
+			if (peekedInteger) {
+				if (peekedLong == (int) peekedLong) {
+					return Integer.valueOf((int) peekedLong);
+				}
+				return Long.valueOf(peekedLong);
+			}
+			return Double.valueOf(peekedDouble);
+		case BOOLEAN:
+			return Boolean.valueOf(nextBoolean());
+		case NULL:
+			nextNull();
+			return null;
+		default:
+			throw syntaxError("Expected JSON value, got " + token);
+		}
+	}
+
+	/**
+	 * 当前所在的数组与对象的层数
+	 *
+	 * @return
+	 */
+	public int getDepth() {
+		return depth - 1;
+	}
+
+	public int getLinePosition() {
+		return linePos;
+	}
+
+	public int getCharPosition() {
+		return MathUtils.max(1, pos - lineStart);
+	}
+
+	/**
+	 * 已读取的字节数量
+	 *
+	 * @return
+	 */
+	public int getCharOffset() {
+		return bufferOffset + pos;
+	}
+
+	private void expect(Token token) {
+		final Token current = peek();
+		if (current != token) {
+			throw syntaxError("Expected " + token + ", got " + current);
+		}
+	}
+
+	private void push(int scope) {
+		if (depth == stack.length) {
+			final int[] newStack = new int[depth * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+		stack[depth++] = scope;
+	}
+
+	private Token doPeek() {
+		final int scope = stack[depth - 1];
+		int c;
+		switch (scope) {
+		case EMPTY_ARRAY:
+			stack[depth - 1] = NONEMPTY_ARRAY;
+			break;
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']') {
+				return Token.END_ARRAY;
+			}
+			if (c != ',') {
+				throw syntaxError("Expected a comma or end of the array instead of " + describe(c));
+			}
+			break;
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			stack[depth - 1] = DANGLING_NAME;
+			if (scope == NONEMPTY_OBJECT) {
+				c = nextNonWhitespace();
+				if (c == '}') {
+					return Token.END_OBJECT;
+				}
+				if (c != ',') {
+					throw syntaxError("Expected a comma or end of the object instead of " + describe(c));
+				}
+			}
+			c = nextNonWhitespace();
+			if (c == '"') {
+				return Token.NAME;
+			}
+			if (c == '}' && scope == EMPTY_OBJECT) {
+				return Token.END_OBJECT;
+			}
+			throw syntaxError(scope == EMPTY_OBJECT ? "Expected STRING, got " + describe(c)
+					: "Trailing comma found in object");
+		case DANGLING_NAME:
+			stack[depth - 1] = NONEMPTY_OBJECT;
+			c = nextNonWhitespace();
+			if (c != ':') {
+				throw syntaxError("Expected COLON, got " + describe(c));
+			}
+			break;
+		case EMPTY_DOCUMENT:
+			stack[depth - 1] = NONEMPTY_DOCUMENT;
+			break;
+		case NONEMPTY_DOCUMENT:
+			c = nextNonWhitespace();
+			if (c == -1) {
+				return Token.END_DOCUMENT;
+			}
+			throw syntaxError("Expected end of input, got " + describe(c));
+		default:
+			throw syntaxError("JsonReader is closed");
+		}
+		c = nextNonWhitespace();
+		switch (c) {
+		case ']':
+			if (scope == EMPTY_ARRAY) {
+				return Token.END_ARRAY;
+			}
+			throw syntaxError("Trailing comma found in array");
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '"':
+			return Token.STRING;
+		case 't':
+			consumeKeyword("true");
+			peekedBoolean = true;
+			return Token.BOOLEAN;
+		case 'f':
+			consumeKeyword("false");
+			peekedBoolean = false;
+			return Token.BOOLEAN;
+		case 'n':
+			consumeKeyword("null");
+			return Token.NULL;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			consumeNumber(c);
+			return Token.NUMBER;
+		case -1:
+			throw syntaxError("Unexpected end of input");
+		case '+':
+		case '.':
+			throw syntaxError("Numbers may not start with '" + (char) c + "'");
+		default:
+			throw syntaxError("Unexpected character: " + describe(c));
+		}
+	}
+
+	private static String describe(int c) {
+		return c == -1 ? "EOF" : String.valueOf((char) c);
+	}
+
+	private void consumeKeyword(String keyword) {
+		for (int i = 1; i < keyword.length(); i++) {
+			if (read() != keyword.charAt(i)) {
+				throw syntaxError("Unexpected token, did you mean '" + keyword + "'?");
+			}
+		}
+		final int c = peekByte();
+		if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+			throw syntaxError("Unexpected token, did you mean '" + keyword + "'?");
+		}
+	}
+
+	/**
+	 * 解析数字,整数直接累加为long(超过18位时以Long.parseLong解析),小数在有效位数不超过15位且指数不超过22时直接以double计算(结果精确),其余情况交给Double.parseDouble
+	 *
+	 * @param first
+	 */
+	private void consumeNumber(int first) {
+		numberLength = 0;
+		boolean negative = first == '-';
+		int c = first;
+		if (negative) {
+			appendNumber(c);
+			c = read();
+			if (c < '0' || c > '9') {
+				throw syntaxError("Malformed number: " + new String(number, 0, numberLength));
+			}
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean overflow = false;
+		boolean integer = true;
+		if (c == '0') {
+			appendNumber(c);
+			final int next = peekByte();
+			if (next >= '0' && next <= '9') {
+				throw syntaxError("Malformed number: leading zero");
+			}
+		} else {
+			for (;;) {
+				appendNumber(c);
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+				} else {
+					exponent++;
+					overflow = true;
+				}
+				c = peekByte();
+				if (c < '0' || c > '9') {
+					break;
+				}
+				pos++;
+			}
+		}
+		c = peekByte();
+		if (c == '.') {
+			integer = false;
+			pos++;
+			appendNumber(c);
+			c = read();
+			if (c < '0' || c > '9') {
+				throw syntaxError("Malformed number: " + new String(number, 0, numberLength));
+			}
+			for (;;) {
+				appendNumber(c);
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+					exponent--;
+				} else {
+					overflow = true;
+				}
+				c = peekByte();
+				if (c < '0' || c > '9') {
+					break;
+				}
+				pos++;
+			}
+		}
+		c = peekByte();
+		if (c == 'e' || c == 'E') {
+			integer = false;
+			pos++;
+			appendNumber(c);
+			c = read();
+			boolean negativeExp = false;
+			if (c == '+' || c == '-') {
+				negativeExp = c == '-';
+				appendNumber(c);
+				c = read();
+			}
+			if (c < '0' || c > '9') {
+				throw syntaxError("Malformed number: " + new String(number, 0, numberLength));
+			}
+			int exp = 0;
+			for (;;) {
+				appendNumber(c);
+				if (exp < 100000) {
+					exp = exp * 10 + (c - '0');
+				}
+				c = peekByte();
+				if (c < '0' || c > '9') {
+					break;
+				}
+				pos++;
+			}
+			exponent += negativeExp ? -exp : exp;
+		}
+		if (integer && !overflow) {
+			peekedInteger = true;
+			peekedLong = negative ? -mantissa : mantissa;
+			return;
+		}
+		if (integer) {
+			// 超出18位的整数仍可能在long范围内,超出long范围时才作为double处理
+			try {
+				peekedLong = Long.parseLong(new String(number, 0, numberLength));
+				peekedInteger = true;
+				return;
+			} catch (NumberFormatException e) {
+			}
+		}
+		peekedInteger = false;
+		if (!overflow && digits <= MAX_EXACT_DIGITS && exponent >= -22 && exponent <= 22) {
+			double value = mantissa;
+			value = exponent < 0 ? value / POW10[-exponent] : value * POW10[exponent];
+			peekedDouble = negative ? -value : value;
+		} else {
+			peekedDouble = Double.parseDouble(new String(number, 0, numberLength));
+		}
+	}
+
+	private void appendNumber(int c) {
+		if (numberLength == number.length) {
+			final char[] newNumber = new char[numberLength * 2];
+			System.arraycopy(number, 0, newNumber, 0, numberLength);
+			number = newNumber;
+		}
+		number[numberLength++] = (char) c;
+	}
+
+	private String readString() {
+		int length = 0;
+		char[] dst = chars;
+		for (;;) {
+			int c = read();
+			if (c == '"') {
+				chars = dst;
+				return new String(dst, 0, length);
+			}
+			if (length + 2 > dst.length) {
+				final char[] newChars = new char[dst.length * 2];
+				System.arraycopy(dst, 0, newChars, 0, length);
+				dst = newChars;
+			}
+			if (c == '\\') {
+				dst[length++] = readEscape();
+			} else if (c < 0x80) {
+				if (c == -1) {
+					throw syntaxError("String was not terminated before end of input");
+				}
+				if (c < 32) {
+					throw syntaxError("Strings may not contain control characters: 0x" + Integer.toString(c, 16));
+				}
+				dst[length++] = (char) c;
+			} else if (c < 0xE0) {
+				dst[length++] = (char) (((c & 0x1F) << 6) | continuation());
+			} else if (c < 0xF0) {
+				final int b1 = continuation();
+				dst[length++] = (char) (((c & 0x0F) << 12) | (b1 << 6) | continuation());
+			} else {
+				final int b1 = continuation();
+				final int b2 = continuation();
+				final int code = ((c & 0x07) << 18) | (b1 << 12) | (b2 << 6) | continuation();
+				final int high = code - 0x10000;
+				dst[length++] = (char) (0xD800 | (high >> 10));
+				dst[length++] = (char) (0xDC00 | (high & 0x3FF));
+			}
+		}
+	}
+
+	private int continuation() {
+		final int c = read();
+		if ((c & 0xC0) != 0x80) {
+			throw syntaxError("Malformed UTF-8 string");
+		}
+		return c & 0x3F;
+	}
+
+	private char readEscape() {
+		final int escape = read();
+		switch (escape) {
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case '"':
+		case '/':
+		case '\\':
+			return (char) escape;
+		case 'u':
+			int result = 0;
+			for (int i = 0; i < 4; i++) {
+				final int c = read();
+				int v;
+				if (c >= '0' && c <= '9') {
+					v = c - '0';
+				} else if (c >= 'a' && c <= 'f') {
+					v = c - 'a' + 10;
+				} else if (c >= 'A' && c <= 'F') {
+					v = c - 'A' + 10;
+				} else {
+					throw syntaxError("Expected unicode hex escape character");
+				}
+				result = (result << 4) | v;
+			}
+			return (char) result;
+		case -1:
+			throw syntaxError("EOF encountered in the middle of a string escape");
+		default:
+			throw syntaxError("Invalid escape: \\" + (char) escape);
+		}
+	}
+
+	private void skipString() {
+		for (;;) {
+			final int c = read();
+			if (c == '"') {
+				return;
+			}
+			if (c == '\\') {
+				if (read() == -1) {
+					throw syntaxError("EOF encountered in the middle of a string escape");
+				}
+			} else if (c == -1) {
+				throw syntaxError("String was not terminated before end of input");
+			}
+		}
+	}
+
+	private int nextNonWhitespace() {
+		for (;;) {
+			if (pos == limit && !fill()) {
+				return -1;
+			}
+			final int c = buffer[pos++] & 0xFF;
+			switch (c) {
+			case '\n':
+				linePos++;
+				lineStart = pos;
+				break;
+			case ' ':
+			case '\t':
+			case '\r':
+				break;
+			default:
+				return c;
+			}
+		}
+	}
+
+	private int read() {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos++] & 0xFF;
+	}
+
+	private int peekByte() {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos] & 0xFF;
+	}
+
+	private boolean fill() {
+		if (in == null) {
+			return false;
+		}
+		try {
+			bufferOffset += limit;
+			lineStart -= limit;
+			pos = 0;
+			limit = 0;
+			int n;
+			while ((n = in.read(buffer, 0, buffer.length)) == 0) {
+			}
+			if (n < 0) {
+				return false;
+			}
+			limit = n;
+			return true;
+		} catch (IOException e) {
+			throw new JsonParserException(e, "Json read exception", linePos, getCharPosition(), getCharOffset());
+		}
+	}
+
+	private JsonParserException syntaxError(String message) {
+		final int charPos = getCharPosition();
+		return new JsonParserException(null, message + " on line " + linePos + ", char " + charPos, linePos, charPos,
+				getCharOffset());
+	}
+
+	@Override
+	public void close() {
+		peeked = null;
+		depth = 1;
+		stack[0] = 0;
+		if (in != null) {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+			in = null;
+		}
+		limit = pos;
+	}
+
+}
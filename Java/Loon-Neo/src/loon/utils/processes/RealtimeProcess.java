@@ -24,6 +24,7 @@ package loon.utils.processes;
 import loon.LRelease;
 import loon.LSystem;
 import loon.utils.LIterator;
+import loon.utils.MathUtils;
 import loon.utils.SortedList;
 import loon.utils.timer.LTimer;
 import loon.utils.timer.LTimerContext;
@@ -44,6 +45,8 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 
 	private SortedList<GameProcess> processesToFireWhenFinished;
 
+	RealtimeProcessManager.Entry entry;
+
 	private final static String getProcessName(){
 		return "Process" + (GLOBAL_ID++);
 	}
@@ -91,12 +94,57 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 		}
 	}
 
+	/**
+	 * 距离下次需要调用tick的时间(毫秒),0为每帧调用,小于0为在被唤醒前不需要调用.
+	 * RealtimeProcessManager据此安排调用,重写tick且需要每帧执行的子类应返回0
+	 * 
+	 * @return
+	 */
+	protected long getWakeDelay() {
+		if (isDead()) {
+			return 0;
+		}
+		if (!timer.isActive()) {
+			return -1;
+		}
+		// 计时器按速度系数累计时间,剩余的实际等待时间需要除以速度系数
+		final long remaining = timer.getDelay() - timer.getCurrentTick();
+		final float speed = timer.getSpeedFactor();
+		if (remaining <= 0 || speed <= 0) {
+			return 0;
+		}
+		return MathUtils.ceil(remaining / speed);
+	}
+
+	/**
+	 * 补足休眠期间没有调用tick而略过的时间
+	 * 
+	 * @param elapsed
+	 */
+	protected void skipTime(long elapsed) {
+		if (timer.isActive()) {
+			timer.addPercentage((long) (elapsed * timer.getSpeedFactor()));
+		}
+	}
+
+	/**
+	 * 计时状态即将改变时调用,使管理器在下一帧重新安排此进程
+	 */
+	protected final void wake() {
+		final RealtimeProcessManager.Entry e = entry;
+		if (e != null) {
+			e.manager.wake(e);
+		}
+	}
+
 	public RealtimeProcess sleep(long delay) {
+		wake();
 		timer.setDelay(delay);
 		return this;
 	}
 
 	public RealtimeProcess setDelay(long delay) {
+		wake();
 		timer.setDelay(delay);
 		return this;
 	}
@@ -109,17 +157,36 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 		return timer.getCurrentTick();
 	}
 
+	/**
+	 * 设置计时速度系数,大于1时进程更快被触发
+	 * 
+	 * @param factor
+	 * @return
+	 */
+	public RealtimeProcess setSpeedFactor(float factor) {
+		wake();
+		timer.setSpeedFactor(factor);
+		return this;
+	}
+
+	public float getSpeedFactor() {
+		return timer.getSpeedFactor();
+	}
+
 	public RealtimeProcess interrupt() {
+		wake();
 		timer.stop();
 		return this;
 	}
 
 	public RealtimeProcess stop() {
+		wake();
 		timer.stop();
 		return this;
 	}
 
 	public RealtimeProcess start() {
+		wake();
 		timer.start();
 		return this;
 	}
@@ -142,6 +209,9 @@ public abstract class RealtimeProcess implements GameProcess, LRelease {
 
 	@Override
 	public void kill() {
+		if (!this.isDead) {
+			wake();
+		}
 		this.isDead = true;
 	}
 
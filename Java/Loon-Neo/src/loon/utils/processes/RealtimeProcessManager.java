@@ -24,16 +24,49 @@ package loon.utils.processes;
 import loon.LRelease;
 import loon.LSystem;
 import loon.utils.IArray;
-import loon.utils.LIterator;
-import loon.utils.SortedList;
+import loon.utils.MathUtils;
 import loon.utils.TArray;
 import loon.utils.timer.LTimerContext;
 
+/**
+ * 游戏进程管理器,进程保存在分层时间轮中,每帧只访问到期的进程.
+ * 
+ * RealtimeProcess以其计时器的剩余时间登记到期时间,休眠期间不被调用,唤醒时补足略过的时间,
+ * 因此触发的帧与逐帧调用时相同;其它GameProcess每帧都会被调用.同一帧内到期的进程按加入顺序调用.
+ */
 public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRelease {
 
-	private static RealtimeProcessManager instance;
+	/**
+	 * 进程在管理器中的登记项
+	 */
+	static class Entry extends TimingWheel.Node {
+
+		final RealtimeProcessManager manager;
+
+		final GameProcess process;
+
+		final long seq;
 
-	private SortedList<GameProcess> processes;
+		RealtimeProcess timed;
+
+		long lastTime;
+
+		boolean due;
+
+		boolean parked;
+
+		boolean removed;
+
+		Entry before, after;
+
+		Entry(RealtimeProcessManager manager, GameProcess process, long seq) {
+			this.manager = manager;
+			this.process = process;
+			this.seq = seq;
+		}
+	}
+
+	private static RealtimeProcessManager instance;
 
 	public static void freeStatic() {
 		instance = null;
@@ -50,8 +83,26 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 		return instance;
 	}
 
+	private final TimingWheel wheel;
+
+	private Entry first, last;
+
+	private int size;
+
+	private long seq;
+
+	private long currentTime;
+
+	private long frameElapsed;
+
+	private Entry[] dueEntries = new Entry[32];
+
+	private Entry[] deadEntries = new Entry[8];
+
+	private int lastDueCount;
+
 	private RealtimeProcessManager() {
-		this.processes = new SortedList<GameProcess>();
+		this.wheel = new TimingWheel(0);
 	}
 
 	public static RealtimeProcessManager newProcess() {
@@ -60,66 +111,203 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	@Override
 	public void addProcess(GameProcess realtimeProcess) {
-		synchronized (this.processes) {
-			this.processes.add(realtimeProcess);
+		if (realtimeProcess == null) {
+			return;
+		}
+		synchronized (this) {
+			final Entry entry = new Entry(this, realtimeProcess, seq++);
+			if (realtimeProcess instanceof RealtimeProcess) {
+				final RealtimeProcess process = (RealtimeProcess) realtimeProcess;
+				if (process.entry == null || process.entry.removed) {
+					process.entry = entry;
+					entry.timed = process;
+				}
+			}
+			if (last == null) {
+				first = last = entry;
+			} else {
+				last.after = entry;
+				entry.before = last;
+				last = entry;
+			}
+			size++;
+			entry.lastTime = currentTime;
+			wheel.add(entry, currentTime);
 		}
 	}
 
 	@Override
 	public boolean containsProcess(GameProcess realtimeProcess) {
-		synchronized (this.processes) {
-			return this.processes.contains(realtimeProcess);
+		if (realtimeProcess instanceof RealtimeProcess) {
+			final Entry entry = ((RealtimeProcess) realtimeProcess).entry;
+			if (entry != null && entry.manager == this && !entry.removed) {
+				return true;
+			}
 		}
+		synchronized (this) {
+			for (Entry e = first; e != null; e = e.after) {
+				if (e.process == realtimeProcess) {
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 
 	@Override
 	public void tick(LTimerContext time) {
-		if (processes.size > 0) {
-			final SortedList<GameProcess> toBeUpdated;
-			synchronized (this.processes) {
-				toBeUpdated = new SortedList<GameProcess>(this.processes);
+		if (size == 0) {
+			return;
+		}
+		final long elapsed = MathUtils.max(0, time.timeSinceLastUpdate);
+		int count = 0;
+		synchronized (this) {
+			currentTime += elapsed;
+			frameElapsed = elapsed;
+			wheel.advance(currentTime);
+			for (TimingWheel.Node node; (node = wheel.pollExpired()) != null;) {
+				if (count == dueEntries.length) {
+					final Entry[] newEntries = new Entry[count * 2];
+					System.arraycopy(dueEntries, 0, newEntries, 0, count);
+					dueEntries = newEntries;
+				}
+				final Entry entry = (Entry) node;
+				entry.due = true;
+				dueEntries[count++] = entry;
+			}
+		}
+		final Entry[] due = dueEntries;
+		// 按加入顺序调用(到期列表基本有序,插入排序即可)
+		for (int i = 1; i < count; i++) {
+			final Entry entry = due[i];
+			int j = i - 1;
+			while (j >= 0 && due[j].seq > entry.seq) {
+				due[j + 1] = due[j];
+				j--;
+			}
+			due[j + 1] = entry;
+		}
+		int deadCount = 0;
+		for (int i = 0; i < count; i++) {
+			final Entry entry = due[i];
+			due[i] = null;
+			if (entry.removed) {
+				entry.due = false;
+				continue;
 			}
-			final SortedList<GameProcess> deadProcesses = new SortedList<GameProcess>();
+			final GameProcess process = entry.process;
 			try {
-				for (LIterator<GameProcess> it = toBeUpdated.listIterator(); it.hasNext();) {
-					GameProcess realtimeProcess = it.next();
-					if (realtimeProcess != null) {
-						synchronized (realtimeProcess) {
-							realtimeProcess.tick(time);
-							if (realtimeProcess.isDead()) {
-								deadProcesses.add(realtimeProcess);
-							}
-						}
+				if (entry.timed != null) {
+					final long skipped = currentTime - elapsed - entry.lastTime;
+					if (skipped > 0) {
+						entry.timed.skipTime(skipped);
 					}
 				}
-				if (deadProcesses.size > 0) {
-					for (LIterator<GameProcess> it = deadProcesses.listIterator(); it.hasNext();) {
-						GameProcess realtimeProcess = it.next();
-						if (realtimeProcess != null) {
-							synchronized (realtimeProcess) {
-								realtimeProcess.finish();
-							}
-						}
-					}
-					synchronized (this.processes) {
-						this.processes.removeAll(deadProcesses);
-					}
+				entry.lastTime = currentTime;
+				process.tick(time);
+			} catch (Throwable cause) {
+				LSystem.error("Process dispatch failure", cause);
+			}
+			entry.due = false;
+			if (process.isDead()) {
+				if (deadCount == deadEntries.length) {
+					final Entry[] newEntries = new Entry[deadCount * 2];
+					System.arraycopy(deadEntries, 0, newEntries, 0, deadCount);
+					deadEntries = newEntries;
 				}
+				deadEntries[deadCount++] = entry;
+			} else {
+				schedule(entry);
+			}
+		}
+		for (int i = 0; i < deadCount; i++) {
+			final Entry entry = deadEntries[i];
+			deadEntries[i] = null;
+			try {
+				entry.process.finish();
 			} catch (Throwable cause) {
 				LSystem.error("Process dispatch failure", cause);
 			}
+			synchronized (this) {
+				unregister(entry);
+			}
+		}
+		lastDueCount = count;
+	}
+
+	private synchronized void schedule(Entry entry) {
+		if (entry.removed) {
+			return;
+		}
+		if (entry.timed == null) {
+			entry.parked = false;
+			wheel.add(entry, currentTime);
+			return;
+		}
+		final long delay = entry.timed.getWakeDelay();
+		if (delay < 0) {
+			// 计时器未启动,直到被唤醒前都不需要调用
+			wheel.remove(entry);
+			entry.parked = true;
+		} else {
+			entry.parked = false;
+			wheel.add(entry, currentTime + delay);
+		}
+	}
+
+	/**
+	 * 进程状态改变时由RealtimeProcess调用,补足休眠期间略过的时间并在下一帧调用该进程
+	 * 
+	 * @param entry
+	 */
+	synchronized void wake(Entry entry) {
+		if (entry.removed || entry.manager != this) {
+			return;
+		}
+		final long base = entry.due ? currentTime - frameElapsed : currentTime;
+		if (!entry.parked && entry.timed != null && base > entry.lastTime) {
+			entry.timed.skipTime(base - entry.lastTime);
+		}
+		if (base > entry.lastTime) {
+			entry.lastTime = base;
+		}
+		entry.parked = false;
+		if (!entry.due) {
+			wheel.add(entry, currentTime);
+		}
+	}
+
+	private void unregister(Entry entry) {
+		if (entry.removed) {
+			return;
+		}
+		entry.removed = true;
+		wheel.remove(entry);
+		if (entry.before != null) {
+			entry.before.after = entry.after;
+		} else {
+			first = entry.after;
+		}
+		if (entry.after != null) {
+			entry.after.before = entry.before;
+		} else {
+			last = entry.before;
+		}
+		entry.before = null;
+		entry.after = null;
+		size--;
+		if (entry.timed != null && entry.timed.entry == entry) {
+			entry.timed.entry = null;
 		}
 	}
 
 	public TArray<GameProcess> find(String id) {
 		TArray<GameProcess> list = new TArray<GameProcess>();
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				for (LIterator<GameProcess> it = processes.listIterator(); it.hasNext();) {
-					GameProcess p = it.next();
-					if (p != null && (p.getId() == id || p.getId().equals(id))) {
-						list.add(p);
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null; e = e.after) {
+				GameProcess p = e.process;
+				if (p.getId() == id || p.getId().equals(id)) {
+					list.add(p);
 				}
 			}
 		}
@@ -128,13 +316,11 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	public TArray<GameProcess> find(GameProcessType pt) {
 		TArray<GameProcess> list = new TArray<GameProcess>();
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				for (LIterator<GameProcess> it = processes.listIterator(); it.hasNext();) {
-					GameProcess p = it.next();
-					if (p != null && p.getProcessType() == pt) {
-						list.add(p);
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null; e = e.after) {
+				GameProcess p = e.process;
+				if (p.getProcessType() == pt) {
+					list.add(p);
 				}
 			}
 		}
@@ -146,19 +332,16 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 		if (pt == null) {
 			return list;
 		}
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p != null) {
-						if (p.getProcessType() == pt) {
-							p.kill();
-							processes.remove(p);
-							list.add(p);
-						}
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null;) {
+				final Entry after = e.after;
+				GameProcess p = e.process;
+				if (p.getProcessType() == pt) {
+					p.kill();
+					unregister(e);
+					list.add(p);
 				}
+				e = after;
 			}
 		}
 		return list;
@@ -169,19 +352,16 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 		if (process == null) {
 			return list;
 		}
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p != null) {
-						if (process == p || process.getId() == p.getId() || process.getId().equals(p.getId())) {
-							p.kill();
-							processes.remove(p);
-							list.add(p);
-						}
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null;) {
+				final Entry after = e.after;
+				GameProcess p = e.process;
+				if (process == p || process.getId() == p.getId() || process.getId().equals(p.getId())) {
+					p.kill();
+					unregister(e);
+					list.add(p);
 				}
+				e = after;
 			}
 		}
 		return list;
@@ -189,19 +369,16 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	public TArray<GameProcess> delete(String id) {
 		TArray<GameProcess> list = new TArray<GameProcess>();
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p != null) {
-						if (p.getId() == id || p.getId().equals(id)) {
-							p.kill();
-							processes.remove(p);
-							list.add(p);
-						}
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null;) {
+				final Entry after = e.after;
+				GameProcess p = e.process;
+				if (p.getId() == id || p.getId().equals(id)) {
+					p.kill();
+					unregister(e);
+					list.add(p);
 				}
+				e = after;
 			}
 		}
 		return list;
@@ -209,19 +386,16 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	public TArray<GameProcess> deleteIndex(String id) {
 		TArray<GameProcess> list = new TArray<GameProcess>();
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(processes);
-				for (int i = 0; i < ps.size; i++) {
-					GameProcess p = ps.get(i);
-					if (p != null) {
-						if (p.getId() == id || p.getId().indexOf(id) != -1) {
-							p.kill();
-							processes.remove(p);
-							list.add(p);
-						}
-					}
+		synchronized (this) {
+			for (Entry e = first; e != null;) {
+				final Entry after = e.after;
+				GameProcess p = e.process;
+				if (p.getId() == id || p.getId().indexOf(id) != -1) {
+					p.kill();
+					unregister(e);
+					list.add(p);
 				}
+				e = after;
 			}
 		}
 		return list;
@@ -231,19 +405,44 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 		return !isEmpty();
 	}
 
+	/**
+	 * 上一次tick中被调用的进程数量(休眠中的进程不会被调用)
+	 * 
+	 * @return
+	 */
+	public int getLastDueCount() {
+		return lastDueCount;
+	}
+
+	/**
+	 * 管理器内部的时间(毫秒,tick累计的时间)
+	 * 
+	 * @return
+	 */
+	public long getCurrentTime() {
+		return currentTime;
+	}
+
 	@Override
 	public int size() {
-		return processes.size;
+		return size;
 	}
 
 	@Override
 	public void clear() {
-		processes.clear();
+		synchronized (this) {
+			for (Entry e = first; e != null;) {
+				final Entry after = e.after;
+				unregister(e);
+				e = after;
+			}
+			wheel.clear();
+		}
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return processes.size == 0;
+		return size == 0;
 	}
 
 	public void dispose() {
@@ -252,9 +451,12 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	@Override
 	public void close() {
-		if (processes != null && processes.size > 0) {
-			synchronized (this.processes) {
-				final TArray<GameProcess> ps = new TArray<GameProcess>(processes);
+		if (size > 0) {
+			synchronized (this) {
+				final TArray<GameProcess> ps = new TArray<GameProcess>(size);
+				for (Entry e = first; e != null; e = e.after) {
+					ps.add(e.process);
+				}
 				for (int i = 0; i < ps.size; i++) {
 					GameProcess p = ps.get(i);
 					if (p != null) {
@@ -263,9 +465,9 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						}
 					}
 				}
-				processes.clear();
+				clear();
 			}
 		}
 	}
 
-}
\ No newline at end of file
+}
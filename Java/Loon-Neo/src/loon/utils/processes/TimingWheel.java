@@ -0,0 +1,247 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.processes;
+
+/**
+ * 分层时间轮,以毫秒为刻度,共5层,每层64格(覆盖约12天,更远的到期时间先放在最高层,到时再重新放置).
+ *
+ * 节点使用侵入式双向链表保存,添加与删除都是O(1)且不产生新对象,推进时间时只会访问到期的格子,
+ * 到期的节点被移入到期列表,由使用者以pollExpired逐个取出.
+ */
+public class TimingWheel {
+
+	private final static int BITS = 6;
+
+	private final static int SLOTS = 1 << BITS;
+
+	private final static int MASK = SLOTS - 1;
+
+	private final static int LEVELS = 5;
+
+	private final static long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+	private final static int EXPIRED = LEVELS * SLOTS;
+
+	/**
+	 * 时间轮中的节点,同一节点同时只能位于一个格子中
+	 */
+	public static class Node {
+
+		Node prev, next;
+
+		long deadline;
+
+		int slot = -1;
+
+		public long getDeadline() {
+			return deadline;
+		}
+
+		public boolean isScheduled() {
+			return slot != -1;
+		}
+	}
+
+	private final Node[] heads = new Node[EXPIRED + 1];
+
+	private long next;
+
+	private int wheelCount;
+
+	private int expiredCount;
+
+	public TimingWheel() {
+		this(0);
+	}
+
+	public TimingWheel(long time) {
+		this.next = time + 1;
+	}
+
+	/**
+	 * 添加节点(已在时间轮中的节点会先被移除),到期时间不晚于当前时间的节点直接进入到期列表
+	 *
+	 * @param node
+	 * @param deadline
+	 */
+	public void add(Node node, long deadline) {
+		remove(node);
+		node.deadline = deadline;
+		place(node);
+	}
+
+	private void place(Node node) {
+		final long deadline = node.deadline;
+		long delta = deadline - next;
+		if (delta < 0) {
+			link(node, EXPIRED);
+			expiredCount++;
+			return;
+		}
+		long expires = deadline;
+		if (delta > MAX_DELTA) {
+			delta = MAX_DELTA;
+			expires = next + MAX_DELTA;
+		}
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+			level++;
+		}
+		link(node, level * SLOTS + (int) ((expires >> (BITS * level)) & MASK));
+		wheelCount++;
+	}
+
+	private void link(Node node, int slot) {
+		final Node head = heads[slot];
+		node.prev = null;
+		node.next = head;
+		if (head != null) {
+			head.prev = node;
+		}
+		heads[slot] = node;
+		node.slot = slot;
+	}
+
+	/**
+	 * 移除节点,不在时间轮中时无效果
+	 *
+	 * @param node
+	 * @return
+	 */
+	public boolean remove(Node node) {
+		final int slot = node.slot;
+		if (slot == -1) {
+			return false;
+		}
+		if (node.prev != null) {
+			node.prev.next = node.next;
+		} else {
+			heads[slot] = node.next;
+		}
+		if (node.next != null) {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.slot = -1;
+		if (slot == EXPIRED) {
+			expiredCount--;
+		} else {
+			wheelCount--;
+		}
+		return true;
+	}
+
+	private Node detach(int slot) {
+		final Node head = heads[slot];
+		heads[slot] = null;
+		for (Node n = head; n != null; n = n.next) {
+			n.slot = -1;
+			wheelCount--;
+		}
+		return head;
+	}
+
+	private void replace(Node head) {
+		for (Node n = head; n != null;) {
+			final Node following = n.next;
+			n.prev = null;
+			n.next = null;
+			place(n);
+			n = following;
+		}
+	}
+
+	/**
+	 * 推进时间到指定时刻(包含),期间到期的节点移入到期列表
+	 *
+	 * @param time
+	 */
+	public void advance(long time) {
+		while (next <= time) {
+			if (wheelCount == 0) {
+				// 时间轮已空,直接跳到目标时刻
+				next = time + 1;
+				return;
+			}
+			final int index = (int) (next & MASK);
+			if (index == 0) {
+				for (int level = 1; level < LEVELS; level++) {
+					final int cascade = (int) ((next >> (BITS * level)) & MASK);
+					replace(detach(level * SLOTS + cascade));
+					if (cascade != 0) {
+						break;
+					}
+				}
+			}
+			final Node head = detach(index);
+			next++;
+			// 超出时间轮范围的节点在此时重新放置,其余节点的到期时间已过,进入到期列表
+			replace(head);
+		}
+	}
+
+	/**
+	 * 取出一个到期节点,没有时返回null
+	 *
+	 * @return
+	 */
+	public Node pollExpired() {
+		final Node node = heads[EXPIRED];
+		if (node != null) {
+			remove(node);
+		}
+		return node;
+	}
+
+	/**
+	 * 当前时间(最后一次推进到的时刻)
+	 *
+	 * @return
+	 */
+	public long getTime() {
+		return next - 1;
+	}
+
+	public int size() {
+		return wheelCount + expiredCount;
+	}
+
+	public int getExpiredCount() {
+		return expiredCount;
+	}
+
+	public void clear() {
+		for (int i = 0; i < heads.length; i++) {
+			for (Node n = heads[i]; n != null;) {
+				final Node following = n.next;
+				n.prev = null;
+				n.next = null;
+				n.slot = -1;
+				n = following;
+			}
+			heads[i] = null;
+		}
+		wheelCount = 0;
+		expiredCount = 0;
+	}
+
+}
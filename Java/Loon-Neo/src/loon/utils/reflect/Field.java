@@ -167,4 +167,64 @@ public final class Field {
 		}
 	}
 
+	public void setInt(Object obj, int value) throws ReflectionException {
+		try {
+			field.setInt(obj, value);
+		} catch (IllegalArgumentException e) {
+			throw new ReflectionException("Argument not valid for field: "
+					+ getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ReflectionException("Illegal access to field: "
+					+ getName(), e);
+		}
+	}
+
+	public void setLong(Object obj, long value) throws ReflectionException {
+		try {
+			field.setLong(obj, value);
+		} catch (IllegalArgumentException e) {
+			throw new ReflectionException("Argument not valid for field: "
+					+ getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ReflectionException("Illegal access to field: "
+					+ getName(), e);
+		}
+	}
+
+	public void setFloat(Object obj, float value) throws ReflectionException {
+		try {
+			field.setFloat(obj, value);
+		} catch (IllegalArgumentException e) {
+			throw new ReflectionException("Argument not valid for field: "
+					+ getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ReflectionException("Illegal access to field: "
+					+ getName(), e);
+		}
+	}
+
+	public void setDouble(Object obj, double value) throws ReflectionException {
+		try {
+			field.setDouble(obj, value);
+		} catch (IllegalArgumentException e) {
+			throw new ReflectionException("Argument not valid for field: "
+					+ getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ReflectionException("Illegal access to field: "
+					+ getName(), e);
+		}
+	}
+
+	public void setBoolean(Object obj, boolean value) throws ReflectionException {
+		try {
+			field.setBoolean(obj, value);
+		} catch (IllegalArgumentException e) {
+			throw new ReflectionException("Argument not valid for field: "
+					+ getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ReflectionException("Illegal access to field: "
+					+ getName(), e);
+		}
+	}
+
 }
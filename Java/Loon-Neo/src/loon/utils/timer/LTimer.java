@@ -71,6 +71,32 @@ public class LTimer implements LRelease {
 			}
 		}
 
+		@Override
+		protected long getWakeDelay() {
+			if (isDead() || timer == null || timer._closed || timer._completed) {
+				return 0;
+			}
+			if (!timer._active) {
+				return -1;
+			}
+			final long remaining = timer._delay - timer._currentTick;
+			if (remaining <= 0 || timer._speedFactor <= 0) {
+				return 0;
+			}
+			return MathUtils.ceil(remaining / timer._speedFactor);
+		}
+
+		@Override
+		protected void skipTime(long elapsed) {
+			if (timer != null && timer._active && !timer._completed && !timer._closed) {
+				timer._currentTick += (elapsed * timer._speedFactor);
+			}
+		}
+
+		void refresh() {
+			wake();
+		}
+
 	}
 
 	private static LTimer _instance = null;
@@ -228,6 +254,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer reset(long newDelay, int newNumberOfRepeats, float newFactor, boolean newRepeats) {
+		refreshProcess();
 		this._delay = MathUtils.max(newDelay, 0);
 		this._maxNumberOfRepeats = MathUtils.max(newNumberOfRepeats, -1);
 		this._speedFactor = MathUtils.max(newFactor, LSystem.MIN_SECONE_SPEED_FIXED);
@@ -241,6 +268,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer setEquals(LTimer other) {
+		refreshProcess();
 		this._delay = MathUtils.max(other._delay, 0);
 		this._maxNumberOfRepeats = MathUtils.max(other._maxNumberOfRepeats, -1);
 		this._speedFactor = MathUtils.max(other._speedFactor, LSystem.MIN_SECONE_SPEED_FIXED);
@@ -254,11 +282,13 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer addPercentage(long elapsedTime) {
+		refreshProcess();
 		this._currentTick += elapsedTime;
 		return this;
 	}
 
 	public LTimer addPercentage(LTimerContext context) {
+		refreshProcess();
 		this._currentTick += context.timeSinceLastUpdate;
 		return this;
 	}
@@ -298,23 +328,27 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer start() {
+		refreshProcess();
 		this._active = true;
 		this.setCompleted(false);
 		return this;
 	}
 
 	public LTimer stop() {
+		refreshProcess();
 		this._active = false;
 		this.setCompleted(true);
 		return this;
 	}
 
 	public LTimer pause() {
+		refreshProcess();
 		this._active = false;
 		return this;
 	}
 
 	public LTimer unpause() {
+		refreshProcess();
 		this._active = true;
 		return this;
 	}
@@ -332,6 +366,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer setCurrentTick(long tick) {
+		refreshProcess();
 		this._currentTick = tick;
 		return this;
 	}
@@ -364,6 +399,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer clamp() {
+		refreshProcess();
 		if (this._currentTick > this._delay) {
 			_currentTick = _delay;
 		}
@@ -375,6 +411,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer setSpeedFactor(float factor) {
+		refreshProcess();
 		this._speedFactor = factor;
 		return this;
 	}
@@ -384,6 +421,7 @@ public class LTimer implements LRelease {
 	}
 
 	public LTimer setCompleted(boolean completed) {
+		refreshProcess();
 		this._completed = completed;
 		return this;
 	}
@@ -415,6 +453,15 @@ public class LTimer implements LRelease {
 		return this;
 	}
 
+	/**
+	 * 计时状态即将改变,通知已提交的进程重新安排调用时间
+	 */
+	private void refreshProcess() {
+		if (_process != null) {
+			_process.refresh();
+		}
+	}
+
 	public LTimer kill() {
 		if (_process != null) {
 			_process.kill();
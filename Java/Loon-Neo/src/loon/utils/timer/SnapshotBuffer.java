@@ -0,0 +1,98 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.timer;
+
+import loon.utils.MathUtils;
+
+/**
+ * 模拟结果的发布缓冲,模拟线程每执行完一步发布一个不再修改的快照,渲染时取得最近的两个快照,以LTimerContext.alpha在两者间插值.
+ *
+ * <pre>
+ * // 模拟线程(LSystemView.simulate)
+ * buffer.publish(new BallState(x, y));
+ * // 渲染线程
+ * if (buffer.acquire()) {
+ * 	float x = SnapshotBuffer.lerp(buffer.getPrevious().x, buffer.getCurrent().x, clock.alpha);
+ * }
+ * </pre>
+ */
+public class SnapshotBuffer<T> {
+
+	private T previous, current;
+
+	private long version;
+
+	private T readPrevious, readCurrent;
+
+	private long readVersion;
+
+	/**
+	 * 发布一个新的快照(发布后不应再修改该对象)
+	 *
+	 * @param snapshot
+	 */
+	public synchronized void publish(T snapshot) {
+		previous = current == null ? snapshot : current;
+		current = snapshot;
+		version++;
+	}
+
+	/**
+	 * 取得最近发布的两个快照供getPrevious与getCurrent读取,返回false表示尚未发布任何快照
+	 *
+	 * @return
+	 */
+	public synchronized boolean acquire() {
+		readPrevious = previous;
+		readCurrent = current;
+		readVersion = version;
+		return readCurrent != null;
+	}
+
+	public T getPrevious() {
+		return readPrevious;
+	}
+
+	public T getCurrent() {
+		return readCurrent;
+	}
+
+	/**
+	 * 最后一次acquire取得的快照版本(即已发布的快照数量)
+	 *
+	 * @return
+	 */
+	public long getVersion() {
+		return readVersion;
+	}
+
+	public synchronized void clear() {
+		previous = current = null;
+		readPrevious = readCurrent = null;
+		version = 0;
+		readVersion = 0;
+	}
+
+	public static float lerp(float previous, float current, float alpha) {
+		return MathUtils.lerp(previous, current, alpha);
+	}
+
+}
@@ -20,6 +20,9 @@
  */
 package loon.utils.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 import loon.BaseIO;
 import loon.LSysException;
 import loon.LSystem;
@@ -276,6 +279,35 @@ public class XMLParser {
 		return new XMLParser().parseText(context, l);
 	}
 
+	/**
+	 * 以事件方式解析指定文件,只通过XMLListener送出事件,不生成XMLDocument
+	 * 
+	 * @param file
+	 * @param l
+	 */
+	public static void stream(String file, XMLListener l) {
+		final byte[] bytes = BaseIO.loadBytes(file);
+		if (bytes != null) {
+			stream(new ByteArrayInputStream(bytes), l);
+		} else {
+			streamText(BaseIO.loadText(file), l);
+		}
+	}
+
+	/**
+	 * 以事件方式解析UTF-8编码的数据流,只通过XMLListener送出事件,不生成XMLDocument
+	 * 
+	 * @param in
+	 * @param l
+	 */
+	public static void stream(InputStream in, XMLListener l) {
+		new XMLStreamParser(l).parse(in);
+	}
+
+	public static void streamText(String context, XMLListener l) {
+		new XMLStreamParser(l).parseText(context);
+	}
+
 	public void dispose() {
 		if (stack != null) {
 			stack.clear();
@@ -0,0 +1,437 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import loon.LSysException;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 事件驱动(SAX方式)的XML解析,边读取边通过XMLListener送出事件,不生成XMLDocument树.
+ *
+ * 与XMLParser的区别:
+ *
+ * 1,addElement送出的XMLElement只包含属性,不包含子元素与文本,也不会被加入父元素,需要保留时由XMLListener自行处理.
+ *
+ * 2,较长的文本会分多次通过addData送出(每次不超过getDataChunkSize个字符),使用者可以边接收边解码(比如TMX的图块数据).
+ *
+ * 3,line参数为事件所在的行号.
+ *
+ * 读取InputStream时以UTF-8解码,使用固定大小的可重复使用的字符缓存.
+ */
+public class XMLStreamParser {
+
+	private final static int DEFAULT_DATA_CHUNK = 8192;
+
+	private final XMLListener listener;
+
+	private InputStream in;
+
+	private byte[] bytes;
+
+	private int bytePos, byteLimit;
+
+	private String text;
+
+	private int textPos;
+
+	private int peeked = -2;
+
+	private int line = 1;
+
+	private char[] buffer = new char[256];
+
+	private int length;
+
+	private final TArray<XMLElement> stack = new TArray<XMLElement>();
+
+	private int dataChunkSize = DEFAULT_DATA_CHUNK;
+
+	private int eventCount;
+
+	public XMLStreamParser(XMLListener listener) {
+		if (listener == null) {
+			throw new LSysException("XMLListener is null !");
+		}
+		this.listener = listener;
+	}
+
+	/**
+	 * 每次addData送出的最大字符数量
+	 *
+	 * @param size
+	 * @return
+	 */
+	public XMLStreamParser setDataChunkSize(int size) {
+		this.dataChunkSize = MathUtils.max(64, size);
+		return this;
+	}
+
+	public int getDataChunkSize() {
+		return dataChunkSize;
+	}
+
+	/**
+	 * 上一次解析送出的事件数量
+	 *
+	 * @return
+	 */
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * 解析UTF-8编码的数据流,结束后关闭数据流
+	 *
+	 * @param in
+	 */
+	public void parse(InputStream in) {
+		if (in == null) {
+			throw new LSysException("The xml stream is null !");
+		}
+		reset();
+		this.in = in;
+		this.bytes = new byte[8192];
+		try {
+			run();
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+			this.in = null;
+			this.bytes = null;
+		}
+	}
+
+	/**
+	 * 解析已经读入内存的文本
+	 *
+	 * @param context
+	 */
+	public void parseText(String context) {
+		if (context == null) {
+			throw new LSysException("The xml is null !");
+		}
+		reset();
+		this.text = context;
+		try {
+			run();
+		} finally {
+			this.text = null;
+		}
+	}
+
+	private void reset() {
+		stack.clear();
+		peeked = -2;
+		line = 1;
+		length = 0;
+		bytePos = byteLimit = 0;
+		textPos = 0;
+		eventCount = 0;
+	}
+
+	private void run() {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '<') {
+				flushData();
+				readMarkup();
+			} else {
+				append(c);
+				if (length >= dataChunkSize) {
+					flushData();
+				}
+			}
+		}
+		flushData();
+		if (stack.size > 0) {
+			throw new LSysException("Expected close of '" + stack.peek().getName() + "' at end of xml");
+		}
+	}
+
+	private void flushData() {
+		if (length == 0) {
+			return;
+		}
+		// 文档元素之外的文本(空白等)不送出,与XMLParser一致
+		if (stack.size > 0) {
+			listener.addData(line, new XMLData(new String(buffer, 0, length)));
+			eventCount++;
+		}
+		length = 0;
+	}
+
+	private void readMarkup() {
+		final int startLine = line;
+		int c = read();
+		if (c == '?') {
+			readUntil("?>");
+			final String p = new String(buffer, 0, length);
+			length = 0;
+			if (stack.size > 0) {
+				listener.addHeader(startLine, new XMLProcessing(p));
+				eventCount++;
+			}
+			return;
+		}
+		if (c == '!') {
+			c = read();
+			if (c == '-') {
+				if (read() != '-') {
+					throw new LSysException("Syntax Error: <!- on line " + startLine);
+				}
+				readUntil("-->");
+				final String comment = new String(buffer, 0, length);
+				length = 0;
+				if (stack.size > 0) {
+					listener.addComment(startLine, new XMLComment(comment));
+					eventCount++;
+				}
+			} else if (c == '[') {
+				// CDATA,内容作为普通文本送出
+				readUntil("[");
+				length = 0;
+				readUntil("]]>");
+				if (stack.size > 0 && length > 0) {
+					listener.addData(startLine, new XMLData(new String(buffer, 0, length)));
+					eventCount++;
+				}
+				length = 0;
+			} else {
+				// DOCTYPE等声明直接跳过
+				readTag(c);
+				length = 0;
+			}
+			return;
+		}
+		if (c == '/') {
+			readTag(read());
+			int end = length;
+			while (end > 0 && isWhitespace(buffer[end - 1])) {
+				end--;
+			}
+			final String name = new String(buffer, 0, end);
+			length = 0;
+			if (stack.size == 0 || !stack.peek().getName().equals(name)) {
+				throw new LSysException("Expected close of '" + (stack.size == 0 ? "" : stack.peek().getName())
+						+ "' instead of </" + name + "> on line " + startLine);
+			}
+			listener.endElement(line, stack.pop());
+			eventCount++;
+			return;
+		}
+		readTag(c);
+		boolean close = length > 0 && buffer[length - 1] == '/';
+		if (close) {
+			length--;
+		}
+		newElement(startLine, close);
+		length = 0;
+	}
+
+	private void readTag(int c) {
+		int quote = 0;
+		for (;;) {
+			if (c == -1) {
+				throw new LSysException("Tokenizer error: < without > at end of text");
+			}
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return;
+			}
+			append(c);
+			c = read();
+		}
+	}
+
+	private void readUntil(String end) {
+		final int size = end.length();
+		final char last = end.charAt(size - 1);
+		for (;;) {
+			final int c = read();
+			if (c == -1) {
+				throw new LSysException("Expected '" + end + "' before end of xml");
+			}
+			append(c);
+			if (c == last && length >= size) {
+				boolean match = true;
+				for (int i = 0; i < size; i++) {
+					if (buffer[length - size + i] != end.charAt(i)) {
+						match = false;
+						break;
+					}
+				}
+				if (match) {
+					length -= size;
+					return;
+				}
+			}
+		}
+	}
+
+	private void newElement(int startLine, boolean close) {
+		int pos = 0;
+		while (pos < length && !isWhitespace(buffer[pos])) {
+			pos++;
+		}
+		if (pos == 0) {
+			throw new LSysException("Syntax Error: empty tag on line " + startLine);
+		}
+		final XMLElement el = new XMLElement(new String(buffer, 0, pos));
+		for (;;) {
+			while (pos < length && isWhitespace(buffer[pos])) {
+				pos++;
+			}
+			if (pos >= length) {
+				break;
+			}
+			final int keyStart = pos;
+			while (pos < length && buffer[pos] != '=' && !isWhitespace(buffer[pos])) {
+				pos++;
+			}
+			final String key = new String(buffer, keyStart, pos - keyStart);
+			while (pos < length && isWhitespace(buffer[pos])) {
+				pos++;
+			}
+			String value = "";
+			if (pos < length && buffer[pos] == '=') {
+				pos++;
+				while (pos < length && isWhitespace(buffer[pos])) {
+					pos++;
+				}
+				if (pos < length && (buffer[pos] == '"' || buffer[pos] == '\'')) {
+					final char quote = buffer[pos++];
+					final int valueStart = pos;
+					while (pos < length && buffer[pos] != quote) {
+						pos++;
+					}
+					value = new String(buffer, valueStart, pos - valueStart);
+					pos++;
+				} else {
+					final int valueStart = pos;
+					while (pos < length && !isWhitespace(buffer[pos])) {
+						pos++;
+					}
+					value = new String(buffer, valueStart, pos - valueStart);
+				}
+			}
+			if (key.length() > 0) {
+				XMLAttribute a = el.addAttribute(key, value);
+				a.element = el;
+				listener.addAttribute(startLine, a);
+				eventCount++;
+			}
+		}
+		stack.add(el);
+		listener.addElement(startLine, el);
+		eventCount++;
+		if (close) {
+			listener.endElement(startLine, stack.pop());
+			eventCount++;
+		}
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	private void append(int c) {
+		if (length == buffer.length) {
+			final char[] newBuffer = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, newBuffer, 0, length);
+			buffer = newBuffer;
+		}
+		buffer[length++] = (char) c;
+	}
+
+	private int read() {
+		int c;
+		if (peeked != -2) {
+			c = peeked;
+			peeked = -2;
+		} else if (text != null) {
+			c = textPos < text.length() ? text.charAt(textPos++) : -1;
+		} else {
+			c = readUTF8();
+		}
+		if (c == '\n') {
+			line++;
+		}
+		return c;
+	}
+
+	private int readByte() {
+		if (bytePos == byteLimit) {
+			try {
+				int n;
+				while ((n = in.read(bytes, 0, bytes.length)) == 0) {
+				}
+				if (n < 0) {
+					return -1;
+				}
+				bytePos = 0;
+				byteLimit = n;
+			} catch (IOException e) {
+				throw new LSysException("XML read exception", e);
+			}
+		}
+		return bytes[bytePos++] & 0xFF;
+	}
+
+	private int readUTF8() {
+		final int c = readByte();
+		if (c < 0x80) {
+			return c;
+		}
+		if (c < 0xE0) {
+			return ((c & 0x1F) << 6) | continuation();
+		}
+		if (c < 0xF0) {
+			final int b1 = continuation();
+			return ((c & 0x0F) << 12) | (b1 << 6) | continuation();
+		}
+		final int b1 = continuation();
+		final int b2 = continuation();
+		final int code = (((c & 0x07) << 18) | (b1 << 12) | (b2 << 6) | continuation()) - 0x10000;
+		// 四字节的字符转为两个char,低位的char在下次读取时返回
+		peeked = 0xDC00 | (code & 0x3FF);
+		return 0xD800 | (code >> 10);
+	}
+
+	private int continuation() {
+		final int c = readByte();
+		if (c == -1 || (c & 0xC0) != 0x80) {
+			throw new LSysException("Malformed UTF-8 xml on line " + line);
+		}
+		return c & 0x3F;
+	}
+
+}
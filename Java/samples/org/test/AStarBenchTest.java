@@ -0,0 +1,203 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Screen;
+import loon.Stage;
+import loon.action.map.AStarFinder;
+import loon.action.map.Field2D;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.geom.Vector2f;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 寻径性能对比测试,在同一张随机障碍地图上,每帧以相同的起点与终点分别执行旧版寻径,AStarSearch,跳点搜索(JPS)以及分层寻径(HPA),
+ * 每秒显示各自的平均耗时与展开节点数
+ */
+public class AStarBenchTest extends Stage {
+
+	private final static int MAP_WIDTH = 64;
+
+	private final static int MAP_HEIGHT = 48;
+
+	private final static int TILE_SIZE = 6;
+
+	private final static int SEARCHES_PER_FRAME = 4;
+
+	private final static String[] NAMES = { "legacy", "astar", "jps", "hpa" };
+
+	private Field2D field;
+
+	private AStarFinder[] finders;
+
+	private final long[] nanos = new long[NAMES.length];
+
+	private final long[] expanded = new long[NAMES.length];
+
+	private final int[] mismatch = new int[NAMES.length];
+
+	private int searches;
+
+	private TArray<Vector2f> lastPath;
+
+	@Override
+	public void create() {
+
+		final int[][] map = new int[MAP_HEIGHT][MAP_WIDTH];
+		for (int y = 0; y < MAP_HEIGHT; y++) {
+			for (int x = 0; x < MAP_WIDTH; x++) {
+				map[y][x] = MathUtils.random(100) < 25 ? 1 : 0;
+			}
+		}
+		field = new Field2D(map, TILE_SIZE, TILE_SIZE);
+		field.setLimit(new int[] { 1 });
+
+		finders = new AStarFinder[NAMES.length];
+		for (int i = 0; i < finders.length; i++) {
+			finders[i] = new AStarFinder(AStarFinder.ASTAR_MANHATTAN);
+		}
+
+		final LLabel label = addLabel("astar: ");
+		label.setLocation(10, MAP_HEIGHT * TILE_SIZE + 20);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				if (searches == 0) {
+					return;
+				}
+				final StringBuilder sbr = new StringBuilder();
+				sbr.append("paths ").append(searches);
+				for (int i = 0; i < NAMES.length; i++) {
+					sbr.append(" | ").append(NAMES[i]).append(' ').append(nanos[i] / searches / 1000).append("us ")
+							.append(expanded[i] / searches).append(" nodes");
+					if (i > 0 && mismatch[i] > 0) {
+						sbr.append(" (").append(mismatch[i]).append(" differ)");
+					}
+					nanos[i] = 0;
+					expanded[i] = 0;
+					mismatch[i] = 0;
+				}
+				searches = 0;
+				label.setText(sbr.toString());
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	private int randomFree() {
+		for (;;) {
+			final int x = MathUtils.random(MAP_WIDTH - 1);
+			final int y = MathUtils.random(MAP_HEIGHT - 1);
+			if (field.isHit(x, y)) {
+				return y * MAP_WIDTH + x;
+			}
+		}
+	}
+
+	@Override
+	public void update(LTimerContext timer) {
+		if (finders == null) {
+			return;
+		}
+		for (int n = 0; n < SEARCHES_PER_FRAME; n++) {
+			final int start = randomFree();
+			final int goal = randomFree();
+			final AStarFinder query = new AStarFinder(AStarFinder.ASTAR_MANHATTAN, field, start % MAP_WIDTH,
+					start / MAP_WIDTH, goal % MAP_WIDTH, goal / MAP_WIDTH, false, false);
+			int legacySize = 0;
+			for (int i = 0; i < finders.length; i++) {
+				final AStarFinder finder = finders[i];
+				finder.update(query);
+				finder.setLegacySearch(i == 0);
+				finder.setSearchMode(i == 3 ? AStarFinder.SEARCH_HPA
+						: (i == 2 ? AStarFinder.SEARCH_JPS : AStarFinder.SEARCH_ASTAR));
+				final long begin = TimeUtils.nanoTime();
+				final TArray<Vector2f> path = finder.findPath();
+				nanos[i] += TimeUtils.nanoTime() - begin;
+				expanded[i] += finder.getExpandedCount();
+				final int size = path == null ? 0 : path.size;
+				if (i == 0) {
+					legacySize = size;
+				} else if ((size == 0) != (legacySize == 0)) {
+					// 只比较是否找到路径,不同算法的路径形状与长度允许不同
+					mismatch[i]++;
+				}
+				if (i == 1) {
+					lastPath = path;
+				}
+			}
+			searches++;
+		}
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (field == null) {
+			return;
+		}
+		final int color = g.color();
+		g.setColor(LColor.gray);
+		for (int y = 0; y < MAP_HEIGHT; y++) {
+			for (int x = 0; x < MAP_WIDTH; x++) {
+				if (!field.isHit(x, y)) {
+					g.fillRect(10 + x * TILE_SIZE, 10 + y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+				}
+			}
+		}
+		final TArray<Vector2f> path = lastPath;
+		if (path != null) {
+			g.setColor(LColor.orange);
+			for (int i = 0; i < path.size; i++) {
+				final Vector2f pos = path.get(i);
+				g.fillRect(10 + pos.x() * TILE_SIZE, 10 + pos.y() * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+			}
+		}
+		g.setColor(color);
+	}
+
+	@Override
+	public void dispose() {
+		if (finders != null) {
+			for (int i = 0; i < finders.length; i++) {
+				finders[i].close();
+			}
+			finders = null;
+		}
+		field = null;
+		lastPath = null;
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LTexture;
+import loon.Screen;
+import loon.Stage;
+import loon.action.collision.CollisionResult;
+import loon.action.collision.CollisionWorld;
+import loon.action.sprite.Entity;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.geom.RectF;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 碰撞世界空间哈希的性能测试,5000个对象每帧都在CollisionWorld中移动一次(碰撞检测并更新所在的格子),
+ * 每秒显示每帧move的平均耗时,格子数量以及发生碰撞的次数
+ */
+public class CollisionHashTest extends Stage {
+
+	private final static int BIND_COUNT = 5000;
+
+	private final static float BIND_SIZE = 4f;
+
+	private CollisionWorld world;
+
+	private Entity[] binds;
+
+	private float[] speeds;
+
+	private long nanos;
+
+	private int frames;
+
+	private int collisions;
+
+	@Override
+	public void create() {
+
+		world = new CollisionWorld(null, 32f, 32f, false);
+		binds = new Entity[BIND_COUNT];
+		speeds = new float[BIND_COUNT * 2];
+		final float width = getWidth() - BIND_SIZE;
+		final float height = getHeight() - BIND_SIZE;
+		for (int i = 0; i < BIND_COUNT; i++) {
+			final Entity bind = new Entity((LTexture) null, MathUtils.random(0f, width),
+					MathUtils.random(0f, height), BIND_SIZE, BIND_SIZE);
+			binds[i] = bind;
+			speeds[i * 2] = MathUtils.random(-2f, 2f);
+			speeds[i * 2 + 1] = MathUtils.random(-2f, 2f);
+			world.add(bind);
+		}
+
+		final LLabel label = addLabel("binds: " + BIND_COUNT);
+		label.setLocation(10, 10);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				if (frames == 0 || world == null) {
+					return;
+				}
+				label.setText("binds " + BIND_COUNT + " | move " + (nanos / frames) / 1000000f + "ms per frame | cells "
+						+ world.countNonEmptyCells() + "/" + world.countCells() + " | collisions "
+						+ collisions / frames + " per frame");
+				nanos = 0;
+				frames = 0;
+				collisions = 0;
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void update(LTimerContext timer) {
+		if (world == null) {
+			return;
+		}
+		final float width = getWidth() - BIND_SIZE;
+		final float height = getHeight() - BIND_SIZE;
+		final long start = TimeUtils.nanoTime();
+		for (int i = 0; i < BIND_COUNT; i++) {
+			final Entity bind = binds[i];
+			final int idx = i * 2;
+			float goalX = bind.getX() + speeds[idx];
+			float goalY = bind.getY() + speeds[idx + 1];
+			if (goalX < 0 || goalX > width) {
+				speeds[idx] = -speeds[idx];
+				goalX = MathUtils.clamp(goalX, 0, width);
+			}
+			if (goalY < 0 || goalY > height) {
+				speeds[idx + 1] = -speeds[idx + 1];
+				goalY = MathUtils.clamp(goalY, 0, height);
+			}
+			final CollisionResult.Result result = world.move(bind, goalX, goalY);
+			collisions += result.collisions.size();
+			bind.setLocation(result.goalX, result.goalY);
+		}
+		nanos += TimeUtils.nanoTime() - start;
+		frames++;
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (world == null) {
+			return;
+		}
+		final int color = g.color();
+		g.setColor(LColor.orange);
+		for (int i = 0; i < BIND_COUNT; i++) {
+			final RectF rect = world.getRect(binds[i]);
+			g.fillRect(rect.x, rect.y, rect.width, rect.height);
+		}
+		g.setColor(color);
+	}
+
+	@Override
+	public void dispose() {
+		if (world != null) {
+			world.close();
+			world = null;
+		}
+		binds = null;
+		speeds = null;
+	}
+
+}
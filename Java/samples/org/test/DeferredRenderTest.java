@@ -0,0 +1,108 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSystem;
+import loon.LTexture;
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+
+/**
+ * GLEx延迟渲染模式的测试,每帧交错绘制四种纹理的精灵与填色矩形,每两秒切换一次立即模式与延迟模式,
+ * 显示上一帧的提交次数,状态切换次数与命令数(开启debug后Display也会显示同样的统计)
+ */
+public class DeferredRenderTest extends Stage {
+
+	private final static int COUNT = 400;
+
+	private final LTexture[] textures = new LTexture[4];
+
+	private final float[] xs = new float[COUNT];
+
+	private final float[] ys = new float[COUNT];
+
+	private boolean deferred;
+
+	private int drawCalls, stateChanges, commands;
+
+	@Override
+	public void create() {
+
+		textures[0] = LSystem.loadTexture("ball.png");
+		textures[1] = LSystem.loadTexture("rocket.png");
+		textures[2] = LSystem.loadTexture("bucket.png");
+		textures[3] = LSystem.loadTexture("droplet.png");
+
+		for (int i = 0; i < COUNT; i++) {
+			xs[i] = MathUtils.random(0, getWidth() - 64);
+			ys[i] = MathUtils.random(40, getHeight() - 64);
+		}
+
+		final LLabel label = addLabel("immediate: ");
+		label.setLocation(10, 10);
+
+		addFrameLoop(2f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				label.setText((deferred ? "deferred: " : "immediate: ") + "draw " + drawCalls + " state "
+						+ stateChanges + " command " + commands);
+				deferred = !deferred;
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		drawCalls = g.getFrameDrawCalls();
+		stateChanges = g.getFrameStateChanges();
+		commands = g.getFrameCommands();
+		g.setDeferred(deferred);
+		for (int i = 0; i < COUNT; i++) {
+			if (i % 5 == 4) {
+				g.fillRect(xs[i], ys[i], 16, 16, LColor.orange);
+			} else {
+				g.draw(textures[i % 4], xs[i], ys[i], 32, 32);
+			}
+		}
+		// 只在本场景的内容中使用延迟模式,关闭时提交已记录的命令
+		g.setDeferred(false);
+	}
+
+	@Override
+	public void dispose() {
+
+	}
+
+}
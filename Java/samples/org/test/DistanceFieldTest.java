@@ -0,0 +1,82 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.font.DistanceFieldFont;
+import loon.font.LFont;
+import loon.opengl.GLEx;
+
+/**
+ * 距离场字体的测试,同一张图集以多种字号,缩放与旋转绘制,显示图集生成耗时与占用的内存
+ */
+public class DistanceFieldTest extends Stage {
+
+	private final static int[] SIZES = { 12, 16, 24, 36, 48, 72 };
+
+	private DistanceFieldFont font;
+
+	private float rotation;
+
+	@Override
+	public void create() {
+
+		font = new DistanceFieldFont(LFont.getFont(20),
+				"0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ:.,!?");
+		// 先生成图集,以便显示耗时
+		font.getTexture();
+
+		final LLabel label = addLabel("build: " + font.getBuildTime() + "ms, atlas: "
+				+ font.getAtlas().getWidth() + "x" + font.getAtlas().getHeight() + " ("
+				+ font.getMemorySize() / 1024 + "KB) for all sizes");
+		label.setLocation(10, 10);
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (font == null) {
+			return;
+		}
+		float y = 40;
+		for (int i = 0; i < SIZES.length; i++) {
+			font.setSize(SIZES[i]);
+			font.drawString(g, "Size " + SIZES[i] + ": Loon SDF", 10, y, LColor.white);
+			y += font.getHeight();
+		}
+		rotation += 1f;
+		font.setSize(24);
+		font.drawString(g, "Rotate & Scale", 300, 360, 2f, 2f, 0, 0, rotation, LColor.orange);
+	}
+
+	@Override
+	public void dispose() {
+		if (font != null) {
+			font.close();
+			font = null;
+		}
+	}
+
+}
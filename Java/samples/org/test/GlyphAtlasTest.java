@@ -0,0 +1,111 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.font.LFont;
+import loon.opengl.GLEx;
+import loon.opengl.LSTRAtlas;
+import loon.opengl.LSTRFont;
+import loon.utils.MathUtils;
+import loon.utils.StrBuilder;
+
+/**
+ * LSTRFont动态图集与排版缓存的测试,每帧绘制一批字符串(大部分重复,少量带有新字符),
+ * 每秒显示排版缓存与图集的命中,未命中,淘汰次数以及图集页数
+ */
+public class GlyphAtlasTest extends Stage {
+
+	private final static String WORDS = "图集中的字符只在首次绘制时载入并按行排列写满后创建新页或回收最久未使用的页";
+
+	private final static int LINES = 16;
+
+	private LSTRFont font;
+
+	private final String[] texts = new String[LINES];
+
+	private final StrBuilder buffer = new StrBuilder();
+
+	private int frame;
+
+	@Override
+	public void create() {
+
+		font = new LSTRFont(LFont.getFont(18), "0123456789", true);
+
+		final LLabel label = addLabel("atlas: ");
+		label.setLocation(10, 10);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				final LSTRAtlas atlas = font.getAtlas();
+				label.setText("layout hit " + font.getLayoutHits() + " miss " + font.getLayoutMisses() + " evict "
+						+ font.getLayoutEvictions() + " | glyph hit " + atlas.getGlyphHits() + " miss "
+						+ atlas.getGlyphMisses() + " pages " + atlas.getPageCount() + " evict "
+						+ atlas.getPageEvictions());
+				font.resetStats();
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (font == null) {
+			return;
+		}
+		frame++;
+		for (int i = 0; i < LINES; i++) {
+			// 大部分行每秒只变化一次,最后一行每帧变化
+			if (texts[i] == null || (i == LINES - 1) || (frame % 60 == 0 && MathUtils.random(0, 3) == 0)) {
+				buffer.setLength(0);
+				final int start = MathUtils.random(0, WORDS.length() - 8);
+				buffer.append(WORDS, start, start + 8);
+				buffer.append(' ');
+				buffer.append(MathUtils.random(0, 99999));
+				texts[i] = buffer.toString();
+			}
+			font.drawString(texts[i], 10, 40 + i * 24, LColor.white);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		if (font != null) {
+			font.close();
+			font = null;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Json;
+import loon.LSystem;
+import loon.Screen;
+import loon.Stage;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.utils.StrBuilder;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+import loon.utils.json.JsonBinder;
+import loon.utils.json.JsonReader;
+
+/**
+ * json解析速度的测试,以一个包含20000帧的精灵表数据,每秒分别以JsonParser(生成完整的树后读取),JsonBinder(流式读取并填充对象)
+ * 与JsonReader(只读取x坐标,其余跳过)各解析一次,显示三者的耗时(毫秒)与吞吐量(MB/s)
+ */
+public class JsonStreamTest extends Stage {
+
+	private final static int FRAMES = 20000;
+
+	public static class FrameData {
+
+		public String filename;
+
+		public int x, y, w, h;
+
+		public boolean rotated;
+
+		public float[] pivot;
+	}
+
+	public static class SheetData {
+
+		public String image;
+
+		public float scale;
+
+		public TArray<FrameData> frames;
+	}
+
+	private static String createSheet() {
+		StrBuilder sbr = new StrBuilder(FRAMES * 128);
+		sbr.append("{\"image\":\"sheet.png\",\"scale\":1.0,\"frames\":[");
+		for (int i = 0; i < FRAMES; i++) {
+			if (i > 0) {
+				sbr.append(',');
+			}
+			sbr.append("{\"filename\":\"frame_").append(i).append(".png\",\"x\":").append(i % 64 * 32)
+					.append(",\"y\":").append(i / 64 * 32).append(",\"w\":32,\"h\":32,\"rotated\":")
+					.append(i % 2 == 0 ? "false" : "true").append(",\"pivot\":[0.5,0.5]}");
+		}
+		sbr.append("]}");
+		return sbr.toString();
+	}
+
+	@Override
+	public void create() {
+
+		final String json = createSheet();
+		final byte[] bytes;
+		try {
+			bytes = json.getBytes(LSystem.ENCODING);
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		final JsonBinder binder = new JsonBinder();
+
+		final LLabel domLabel = addLabel("dom: ");
+		domLabel.setLocation(10, 10);
+		final LLabel bindLabel = addLabel("bind: ");
+		bindLabel.setLocation(10, 40);
+		final LLabel skipLabel = addLabel("skip: ");
+		skipLabel.setLocation(10, 70);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			long checksum;
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				// 以前的方式:生成完整的树,所有数字都被装箱
+				long start = TimeUtils.nanoTime();
+				Json.Object root = LSystem.base().json().parse(json);
+				Json.Array frames = root.getArray("frames");
+				for (int i = 0; i < frames.length(); i++) {
+					checksum += frames.getObject(i).getInt("x");
+				}
+				domLabel.setText("dom: " + format(TimeUtils.nanoTime() - start, bytes.length));
+
+				// 流式读取并填充对象
+				start = TimeUtils.nanoTime();
+				SheetData sheet = binder.fromJson(SheetData.class, bytes);
+				for (int i = 0; i < sheet.frames.size; i++) {
+					checksum += sheet.frames.get(i).x;
+				}
+				bindLabel.setText("bind: " + format(TimeUtils.nanoTime() - start, bytes.length));
+
+				// 只读取需要的数据,其余跳过
+				start = TimeUtils.nanoTime();
+				JsonReader reader = new JsonReader(bytes);
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if ("frames".equals(reader.nextName())) {
+						reader.beginArray();
+						while (reader.hasNext()) {
+							reader.beginObject();
+							while (reader.hasNext()) {
+								if ("x".equals(reader.nextName())) {
+									checksum += reader.nextInt();
+								} else {
+									reader.skipValue();
+								}
+							}
+							reader.endObject();
+						}
+						reader.endArray();
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+				reader.close();
+				skipLabel.setText("skip: " + format(TimeUtils.nanoTime() - start, bytes.length));
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	private static String format(long nanos, int size) {
+		final float ms = nanos / 1000000f;
+		return ms + "ms " + (int) (size / 1024f / 1024f / (ms / 1000f)) + "MB/s";
+	}
+
+}
@@ -157,7 +157,7 @@ public class MultiScreenTest extends Screen {
 			"Tetris", "Explosion", "FBird" };
 
 	final String[] page2 = { "Timer", "Snake", "TextEffect", "Margin", "DefineMove", "Interval", "Scheduler",
-			"Shader","FrameBuffer","Taichi","StatusBar","Drag","Radar"};
+			"Shader","FrameBuffer","Taichi","StatusBar","Drag","Radar","TMXChunk","ProcessWheel","Pipeline","JsonStream","PixmapKernel","Rasterizer","GlyphAtlas","DistanceField","StateStack","DeferredRender","ParticleArray","AStarBench","CollisionHash"};
 
 	static BMFont info_font;
 
@@ -288,6 +288,19 @@ public class MultiScreenTest extends Screen {
 			addScreen(page2[index++], new StatusTest());
 			addScreen(page2[index++], new DragTest());
 			addScreen(page2[index++], new RadarTest());
+			addScreen(page2[index++], new TMXChunkTest());
+			addScreen(page2[index++], new ProcessWheelTest());
+			addScreen(page2[index++], new PipelineTest());
+			addScreen(page2[index++], new JsonStreamTest());
+			addScreen(page2[index++], new PixmapKernelTest());
+			addScreen(page2[index++], new RasterizerTest());
+			addScreen(page2[index++], new GlyphAtlasTest());
+			addScreen(page2[index++], new DistanceFieldTest());
+			addScreen(page2[index++], new StateStackTest());
+			addScreen(page2[index++], new DeferredRenderTest());
+			addScreen(page2[index++], new ParticleArrayTest());
+			addScreen(page2[index++], new AStarBenchTest());
+			addScreen(page2[index++], new CollisionHashTest());
 		}
 
 		// 默认按钮大小为100x25
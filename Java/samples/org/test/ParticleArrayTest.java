@@ -0,0 +1,116 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSystem;
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.opengl.GLEx;
+import loon.particle.ArrayParticleSystem;
+import loon.particle.SimpleConfigurableEmitter;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 结构数组粒子系统的测试,一个发射器持续保持约20万个粒子,显示粒子数量与更新,绘制耗时
+ */
+public class ParticleArrayTest extends Stage {
+
+	private final static int MAX_PARTICLES = 200000;
+
+	private ArrayParticleSystem system;
+
+	private long updateTime, drawTime;
+
+	@Override
+	public void create() {
+
+		system = new ArrayParticleSystem(LSystem.getSystemImagePath() + "par.png", MAX_PARTICLES);
+		system.setBlendingState(LSystem.MODE_ALPHA_ONE);
+
+		SimpleConfigurableEmitter emitter = new SimpleConfigurableEmitter("fountain");
+		emitter.setPosition(getHalfWidth(), getHalfHeight());
+		emitter.spawnInterval.setMin(0).setMax(0);
+		// 每帧约4000个,生命约3秒,数量稳定在上限附近
+		emitter.spawnCount.setMin(3500).setMax(4500);
+		emitter.initialLife.setMin(2500).setMax(3500);
+		emitter.initialSize.setMin(2).setMax(6);
+		emitter.speed.setMin(20).setMax(160);
+		emitter.gravityFactor.setValue(4);
+		emitter.length.setEnabled(false);
+		emitter.emitCount.setEnabled(false);
+		emitter.addColorPoint(0.5f, LColor.orange);
+		emitter.useAdditive = true;
+		system.addEmitter(emitter);
+
+		final LLabel label = addLabel("particles: 0");
+		label.setLocation(10, 10);
+
+		addFrameLoop(0.5f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				label.setText("particles: " + system.getParticleCount() + " update: " + updateTime + "ms draw: "
+						+ drawTime + "ms");
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void update(LTimerContext timer) {
+		if (system == null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		system.update(timer.timeSinceLastUpdate);
+		updateTime = System.currentTimeMillis() - start;
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (system == null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		system.render(g);
+		drawTime = System.currentTimeMillis() - start;
+	}
+
+	@Override
+	public void dispose() {
+		if (system != null) {
+			system.removeAllEmitters();
+			system.close();
+			system = null;
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Display;
+import loon.LRelease;
+import loon.LSystem;
+import loon.Screen;
+import loon.Stage;
+import loon.action.sprite.Sprite;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.utils.reply.Port;
+import loon.utils.timer.LTimerContext;
+import loon.utils.timer.SnapshotBuffer;
+
+/**
+ * 流水线模式的测试,小球的运动在simulate事件中以固定步长计算(支持异步时在后台线程),每步发布一个快照,
+ * 渲染时以LTimerContext.alpha在最近两个快照间插值
+ */
+public class PipelineTest extends Stage {
+
+	/**
+	 * 一步模拟的结果,发布后不再修改
+	 */
+	private static class BallState {
+
+		final float x, y, vy;
+
+		final long step;
+
+		BallState(float x, float y, float vy, long step) {
+			this.x = x;
+			this.y = y;
+			this.vy = vy;
+			this.step = step;
+		}
+	}
+
+	private static class BallSimulation extends Port<LTimerContext> {
+
+		final SnapshotBuffer<BallState> buffer = new SnapshotBuffer<BallState>();
+
+		final float floor;
+
+		BallState state;
+
+		BallSimulation(float floor) {
+			this.floor = floor;
+			this.state = new BallState(100, 0, 0, 0);
+			buffer.publish(state);
+		}
+
+		@Override
+		public void onEmit(LTimerContext clock) {
+			final float dt = clock.timeSinceLastUpdate / 1000f;
+			float vy = state.vy + 980f * dt;
+			float y = state.y + vy * dt;
+			if (y > floor) {
+				y = floor;
+				vy = -vy * 0.9f;
+			}
+			state = new BallState(state.x, y, vy, state.step + 1);
+			buffer.publish(state);
+		}
+	}
+
+	private boolean oldPipelined;
+
+	@Override
+	public void create() {
+
+		final Display display = LSystem.base().display();
+		oldPipelined = LSystem.base().setting.isPipelinedUpdate;
+		LSystem.base().setting.isPipelinedUpdate = true;
+
+		final Sprite ball = new Sprite("ball.png");
+		add(ball);
+
+		final BallSimulation simulation = new BallSimulation(getHeight() - ball.getHeight());
+		display.simulate.connect(simulation);
+
+		final LLabel label = addLabel("steps: 0");
+		label.setLocation(10, 10);
+
+		addFrameLoop(new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				if (simulation.buffer.acquire()) {
+					final float alpha = display.getPaint().alpha;
+					final BallState previous = simulation.buffer.getPrevious();
+					final BallState current = simulation.buffer.getCurrent();
+					ball.setLocation(SnapshotBuffer.lerp(previous.x, current.x, alpha),
+							SnapshotBuffer.lerp(previous.y, current.y, alpha));
+					label.setText("steps: " + current.step + " alpha: " + alpha);
+				}
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		// 关闭Stage时停止模拟并恢复原来的设置
+		putRelease(new LRelease() {
+
+			@Override
+			public void close() {
+				display.simulate.disconnect(simulation);
+				LSystem.base().setting.isPipelinedUpdate = oldPipelined;
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSystem;
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.ConvolutionMatrix;
+import loon.canvas.LColor;
+import loon.canvas.Pixmap;
+import loon.canvas.PixmapKernel;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+
+/**
+ * Pixmap像素处理速度的测试,以一张2048x2048的Pixmap,每秒分别以旧的方式(LColor.getRGBAs逐像素生成数组)与PixmapKernel灰化一次,
+ * 再以ConvolutionMatrix锐化一次,显示耗时(毫秒)与可以并行的线程数量
+ */
+public class PixmapKernelTest extends Stage {
+
+	private final static int SIZE = 2048;
+
+	@Override
+	public void create() {
+
+		final Pixmap pixmap = new Pixmap(SIZE, SIZE);
+		final int[] pixels = pixmap.getData();
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0xFF000000 | MathUtils.random(0xFFFFFF);
+		}
+		final int[] source = pixels.clone();
+
+		final ConvolutionMatrix sharpen = new ConvolutionMatrix(3);
+		sharpen.applyConfig(new float[][] { { 0, -1, 0 }, { -1, 5, -1 }, { 0, -1, 0 } });
+		final PixmapKernel grey = PixmapKernel.greyScale(1f);
+
+		final LLabel threadLabel = addLabel("parallelism: " + LSystem.getParallelism());
+		threadLabel.setLocation(10, 10);
+		final LLabel oldLabel = addLabel("old: ");
+		oldLabel.setLocation(10, 40);
+		final LLabel kernelLabel = addLabel("kernel: ");
+		kernelLabel.setLocation(10, 70);
+		final LLabel convolveLabel = addLabel("convolve: ");
+		convolveLabel.setLocation(10, 100);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				// 以前的方式:每个像素生成一个int数组,以浮点数计算
+				System.arraycopy(source, 0, pixels, 0, pixels.length);
+				long start = TimeUtils.nanoTime();
+				for (int i = 0; i < pixels.length; i++) {
+					int[] rgba = LColor.getRGBAs(pixels[i]);
+					int v = (int) (LColor.getLuminanceRGB(rgba[0], rgba[1], rgba[2]) * 255f);
+					pixels[i] = LColor.argb(rgba[3], v, v, v);
+				}
+				oldLabel.setText("old: " + (TimeUtils.nanoTime() - start) / 1000000f + "ms");
+
+				System.arraycopy(source, 0, pixels, 0, pixels.length);
+				start = TimeUtils.nanoTime();
+				pixmap.apply(grey);
+				kernelLabel.setText("kernel: " + (TimeUtils.nanoTime() - start) / 1000000f + "ms");
+
+				System.arraycopy(source, 0, pixels, 0, pixels.length);
+				start = TimeUtils.nanoTime();
+				pixmap.convolve(sharpen);
+				convolveLabel.setText("convolve: " + (TimeUtils.nanoTime() - start) / 1000000f + "ms");
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}
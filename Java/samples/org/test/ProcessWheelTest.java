@@ -0,0 +1,117 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Screen;
+import loon.Stage;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 时间轮调度的基准测试,同时登记10000个随机间隔的计时进程,每帧分别以时间轮管理器与逐个调用的方式执行,
+ * 每秒显示一次两者平均每帧的耗时(微秒)与时间轮每帧实际调用的进程数量
+ */
+public class ProcessWheelTest extends Stage {
+
+	private final static int TIMERS = 10000;
+
+	private static class BenchProcess extends RealtimeProcess {
+
+		int runs;
+
+		public BenchProcess(long delay) {
+			super(delay);
+		}
+
+		@Override
+		public void run(LTimerContext time) {
+			runs++;
+		}
+
+	}
+
+	@Override
+	public void create() {
+
+		final RealtimeProcessManager manager = RealtimeProcessManager.newProcess();
+		final BenchProcess[] legacy = new BenchProcess[TIMERS];
+		for (int i = 0; i < TIMERS; i++) {
+			final long delay = MathUtils.random(0, 5000);
+			manager.addProcess(new BenchProcess(delay));
+			legacy[i] = new BenchProcess(delay);
+		}
+
+		final LLabel label = addLabel("timers: " + TIMERS);
+		label.setLocation(10, 10);
+
+		addFrameLoop(new FrameLoopEvent() {
+
+			final LTimerContext context = new LTimerContext();
+
+			int frames;
+
+			long wheelTime;
+
+			long legacyTime;
+
+			long due;
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				context.timeSinceLastUpdate = elapsedTime;
+
+				long start = TimeUtils.nanoTime();
+				manager.tick(context);
+				wheelTime += TimeUtils.nanoTime() - start;
+				due += manager.getLastDueCount();
+
+				// 以前的方式:每帧调用全部进程
+				start = TimeUtils.nanoTime();
+				for (int i = 0; i < TIMERS; i++) {
+					legacy[i].tick(context);
+				}
+				legacyTime += TimeUtils.nanoTime() - start;
+
+				if (++frames == 60) {
+					label.setText("timers: " + TIMERS + " wheel: " + (wheelTime / frames / 1000) + "us legacy: "
+							+ (legacyTime / frames / 1000) + "us due/frame: " + (due / frames));
+					frames = 0;
+					wheelTime = 0;
+					legacyTime = 0;
+					due = 0;
+				}
+			}
+
+			@Override
+			public void completed() {
+				manager.clear();
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LTexture;
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.Path2D;
+import loon.canvas.Pixmap;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+
+/**
+ * Pixmap软件绘制图形的测试,每秒在一张400x300的Pixmap上填充500个图形(多边形,椭圆,扇形,圆角矩形,路径与粗曲线),
+ * 交替开启与关闭抗锯齿,显示耗时(毫秒)与结果
+ */
+public class RasterizerTest extends Stage {
+
+	private final static int SHAPES = 500;
+
+	private Pixmap pixmap;
+
+	private LTexture texture;
+
+	private final float[] xs = new float[10];
+
+	private final float[] ys = new float[10];
+
+	@Override
+	public void create() {
+
+		pixmap = new Pixmap(400, 300);
+
+		final Path2D path = new Path2D();
+		path.moveTo(0, 0);
+		path.cubicCurveTo(30, -20, 50, 20, 60, 0);
+		path.quadTo(40, 40, 0, 30);
+		path.close();
+		final Path2D shape = new Path2D();
+
+		final LLabel label = addLabel("fill: ");
+		label.setLocation(10, 10);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			boolean antialias;
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				antialias = !antialias;
+				pixmap.setAntialias(antialias);
+				pixmap.setColor(0xFF202020);
+				pixmap.fillRect(0, 0, pixmap.getWidth(), pixmap.getHeight());
+				final long start = TimeUtils.nanoTime();
+				for (int i = 0; i < SHAPES; i++) {
+					final float x = MathUtils.random(0, 360);
+					final float y = MathUtils.random(0, 260);
+					pixmap.setColor(0xFF000000 | MathUtils.random(0xFFFFFF));
+					switch (i % 6) {
+					case 0:
+						for (int j = 0; j < 10; j++) {
+							final float r = j % 2 == 0 ? 20 : 8;
+							final float a = MathUtils.TWO_PI * j / 10;
+							xs[j] = x + MathUtils.cos(a) * r;
+							ys[j] = y + MathUtils.sin(a) * r;
+						}
+						pixmap.fillPolygon(xs, ys, 10);
+						break;
+					case 1:
+						pixmap.fillOval((int) x, (int) y, 40, 24);
+						break;
+					case 2:
+						pixmap.fillArc((int) x, (int) y, 40, 40, 30, 270);
+						break;
+					case 3:
+						pixmap.fillRoundRect((int) x, (int) y, 40, 30, 8);
+						break;
+					case 4:
+						shape.reset();
+						shape.addPath(path, x, y);
+						pixmap.fill(shape);
+						break;
+					default:
+						pixmap.drawCurve(x, y, x + 10, y - 30, x + 30, y + 30, x + 40, y, 12, 3f);
+						break;
+					}
+				}
+				label.setText((antialias ? "antialias: " : "fill: ") + (TimeUtils.nanoTime() - start) / 1000000f
+						+ "ms / " + SHAPES + " shapes");
+				texture = pixmap.getImage().updateTexture();
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		if (texture != null) {
+			g.draw(texture, 10, 40);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Screen;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+import loon.opengl.GLEx;
+import loon.utils.TimeUtils;
+
+/**
+ * GLEx状态栈的分配计数测试,每帧执行大量嵌套的save/restore/restoreToCount,
+ * 每秒显示调用次数,耗时,以及这一秒内和累计的状态栈扩容次数(状态栈只在扩容时分配对象,层级稳定后应为0).
+ * 
+ * 精确的分配字节数测试见Loon-Neo-JavaSE/test下的StateStackBench
+ */
+public class StateStackTest extends Stage {
+
+	private final static int ROUNDS = 2000;
+
+	private long saves;
+
+	private long nanos;
+
+	private int growCount;
+
+	private int lastGrowCount;
+
+	private int capacity;
+
+	private float rotation;
+
+	@Override
+	public void create() {
+
+		final LLabel label = addLabel("state stack: ");
+		label.setLocation(10, 10);
+
+		addFrameLoop(1f, new FrameLoopEvent() {
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				label.setText("saves " + saves + " in " + nanos / 1000000f + "ms | stack grows "
+						+ (growCount - lastGrowCount) + " (total " + growCount + ") capacity " + capacity);
+				lastGrowCount = growCount;
+				saves = 0;
+				nanos = 0;
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	@Override
+	public void draw(GLEx g) {
+		super.draw(g);
+		final long start = TimeUtils.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			final int idx = g.saveCount();
+			g.translate(1f, 1f);
+			g.setColor(LColor.red);
+			g.save();
+			g.rotate(1f);
+			g.setAlpha(0.5f);
+			g.save();
+			g.scale(1.01f);
+			g.restore();
+			g.restoreToCount(idx);
+		}
+		nanos += TimeUtils.nanoTime() - start;
+		saves += ROUNDS * 3;
+		growCount = g.getStateStackGrowCount();
+		capacity = g.getStateStackCapacity();
+
+		rotation += 1f;
+		for (int i = 0; i < 12; i++) {
+			g.save();
+			g.rotate(240, 240, rotation + i * 30);
+			g.setColor(i % 2 == 0 ? LColor.orange : LColor.lightBlue);
+			g.fillRect(240, 120, 20, 80);
+			g.restore();
+		}
+	}
+
+	@Override
+	public void dispose() {
+
+	}
+
+}
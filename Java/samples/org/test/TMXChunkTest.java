@@ -0,0 +1,87 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Screen;
+import loon.Stage;
+import loon.action.map.tmx.TMXMap;
+import loon.action.map.tmx.renderers.TMXMapRenderer;
+import loon.component.LLabel;
+import loon.event.FrameLoopEvent;
+
+/**
+ * 分块渲染TMX地图的测试,地图来回滚动,每秒显示一次平均每帧生成的顶点数量(直接提交缓存的分块不生成顶点)
+ */
+public class TMXChunkTest extends Stage {
+
+	@Override
+	public void create() {
+
+		TMXMap tmx = new TMXMap("assets/desert.tmx", "assets");
+		final TMXMapRenderer renderer = tmx.getMapRenderer();
+		// 以8x8个图块为一个分块
+		renderer.setChunkSize(8);
+		add(renderer);
+
+		final LLabel label = addLabel("vertices/frame: 0");
+		label.setLocation(10, 10);
+
+		final float maxScroll = renderer.getWidth() - getWidth();
+
+		addFrameLoop(new FrameLoopEvent() {
+
+			float speed = 4f;
+
+			int frames;
+
+			int vertices;
+
+			int builds;
+
+			@Override
+			public void invoke(long elapsedTime, Screen e) {
+				// 横向滚动地图
+				float x = renderer.getX() - speed;
+				if (x < -maxScroll || x > 0) {
+					speed = -speed;
+				}
+				renderer.setX(x);
+				vertices += renderer.getLastVertexCount();
+				builds += renderer.getLastBuildChunkCount();
+				if (++frames == 60) {
+					label.setText("vertices/frame: " + (vertices / frames) + " chunks/frame: " + (builds / frames)
+							+ " visible: " + renderer.getLastVisibleChunkCount());
+					frames = 0;
+					vertices = 0;
+					builds = 0;
+				}
+			}
+
+			@Override
+			public void completed() {
+
+			}
+		});
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}